@@ -2,33 +2,39 @@ package swerve;
 
 import static swerve.Constants.*;
 
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.scene.*;
 import javafx.scene.canvas.*;
 import javafx.scene.control.CheckBox;
-import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.text.TextAlignment;
 import javafx.stage.Stage;
-import swerve.Constants.Drivebase;
 import swerve.Constants.Field;
 import swerve.asteroids.Asteroids;
 
 public class App extends Application {
 
-  private static final double secondsPerUpdate = 1 / 60;
+  /** The simulation runs on its own thread, and we just draw what it
+   * sends us, see Simulator. Or, with -Dswerve.replay=<directory>, we
+   * play back a telemetry log instead, see Replay.
+   */
+  private final SnapshotSource simulator = createSource();
 
-  private Swerve swerve = new Swerve();
-  private boolean destroyed = false;
-
-  // Asteroids are toggleable, so at each tick
-  // we either have and work with an existing Asteroids object,
-  // or we don't.
-  private Optional<Asteroids> asteroids = Optional.of(new Asteroids());
+  private static SnapshotSource createSource() {
+    String replay = System.getProperty("swerve.replay");
+    if (replay == null) {
+      return new Simulator();
+    }
+    try {
+      return new Replay(Path.of(replay));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
 
   private GraphicsContext ctx;
   private CheckBox fieldOrientedCheckbox = new CheckBox("Field oriented?") {
@@ -46,84 +52,10 @@ public class App extends Application {
     }
   };
 
-  // Variables for tracking what keys are held
-  private Set<KeyCode> heldKeys = new HashSet<KeyCode>();
-
-  private boolean isSwerveEnabled() {
-    boolean disabled = asteroids.isPresent() && destroyed;
-    return !disabled;
-  }
-
-  private boolean holding(KeyCode key) {
-    return heldKeys.contains(key);
-  }
-
-  public void drive() {
-    // Process inputs, then update swerve
-    Vector2 targetVelocity = new Vector2(0, 0);
-
-    if (holding(KeyCode.W)) targetVelocity.plusEquals(new Vector2(0, 1));
-    if (holding(KeyCode.A)) targetVelocity.plusEquals(new Vector2(-1, 0));
-    if (holding(KeyCode.S)) targetVelocity.plusEquals(new Vector2(0, -1));
-    if (holding(KeyCode.D)) targetVelocity.plusEquals(new Vector2(1, 0));
-
-    targetVelocity =
-      targetVelocity.rescale(Drivebase.MAX_SPEED_METERS_PER_SECOND);
-
-    double targetAngularVelocity = 0;
-    if (holding(KeyCode.E)) targetAngularVelocity +=
-      Drivebase.MAX_ANGULAR_SPEED_RADIANS_PER_SECOND;
-    if (holding(KeyCode.Q)) targetAngularVelocity -=
-      Drivebase.MAX_ANGULAR_SPEED_RADIANS_PER_SECOND;
-
-    boolean fieldOriented = fieldOrientedCheckbox.selectedProperty().get();
-
-    swerve.drive(targetVelocity, targetAngularVelocity, fieldOriented);
-  }
-
-  private void update(double dt) {
-    if (isSwerveEnabled()) {
-      drive();
-      swerve.update(dt);
-    }
-
-    boolean enableAsteroids = asteroidsCheckbox.selectedProperty().get();
-    if (enableAsteroids) {
-      if (asteroids.isEmpty()) {
-        asteroids = Optional.of(new Asteroids());
-        destroyed = false;
-      }
-    } else {
-      if (asteroids.isPresent()) {
-        asteroids = Optional.empty();
-      }
-    }
-
-    if (asteroids.isPresent()) {
-      asteroids.get().setTicking(isSwerveEnabled());
-      asteroids.get().update(dt);
-
-      boolean hitAsteroid = asteroids
-        .get()
-        .collidesWithAsteroids(
-          Drivebase.SHAPE,
-          swerve.getRigidbody().getPosition()
-        );
-      if (!destroyed && hitAsteroid) {
-        asteroids
-          .get()
-          .addDestroyedSegments(
-            Drivebase.SHAPE.edges(),
-            swerve.getRigidbody().getPosition(),
-            swerve.getRigidbody().getVelocity(),
-            -swerve.getRigidbody().getHeadingRadians()
-          );
-        destroyed = true;
-      }
-    }
-  }
-
-  private void draw() {
+  /** Draws a snapshot, `interpolation` of the way from before its
+   * update to after, see Snapshot.
+   */
+  private void draw(Snapshot snapshot, double interpolation) {
     /** Draw field objects */
     ctx.save();
 
@@ -140,12 +72,12 @@ public class App extends Application {
 
     ctx.clearRect(0, 0, Field.WIDTH_METERS, Field.HEIGHT_METERS);
 
-    if (isSwerveEnabled()) {
-      swerve.draw(ctx);
+    if (snapshot.robotVisible) {
+      Swerve.draw(ctx, snapshot, interpolation);
     }
 
-    if (asteroids.isPresent()) {
-      asteroids.get().draw(ctx);
+    if (snapshot.asteroidsEnabled) {
+      Asteroids.draw(ctx, snapshot, interpolation);
     }
 
     ctx.restore();
@@ -153,31 +85,32 @@ public class App extends Application {
     // Draw text to display some relevant variables.
     // In this case it is more convenient to just work
     // in terms of pixels, so we do this in screen space.
-    Rigidbody rigidbody = swerve.getRigidbody();
-    Vector2 velocity = rigidbody.getVelocity();
-    Vector2 position = rigidbody.getPosition();
     ctx.fillText(
-      String.format("Velocity: %.2f, %.2f", velocity.x, velocity.y),
+      String.format(
+        "Velocity: %.2f, %.2f",
+        snapshot.velocityX,
+        snapshot.velocityY
+      ),
       10,
       20
     );
     ctx.fillText(
-      String.format("Position: %.2f, %.2f", position.x, position.y),
+      String.format("Position: %.2f, %.2f", snapshot.x, snapshot.y),
       10,
       40
     );
     ctx.fillText(
-      String.format("Heading: %.2f deg", rigidbody.getHeadingDegrees()),
+      String.format("Heading: %.2f deg", Math.toDegrees(snapshot.heading)),
       10,
       60
     );
 
     ctx.save();
 
-    if (asteroids.isPresent()) {
+    if (snapshot.asteroidsEnabled) {
       ctx.setTextAlign(TextAlignment.RIGHT);
       ctx.fillText(
-        String.valueOf(asteroids.get().getScore()),
+        String.valueOf(snapshot.score),
         SCREEN_WIDTH - 10,
         20
       );
@@ -186,11 +119,6 @@ public class App extends Application {
     ctx.restore();
   }
 
-  private void tick(double dt) {
-    update(dt);
-    draw();
-  }
-
   public void start(Stage stage) {
     // Set up window, canvas/drawing context
     stage.setTitle("Swerve Visualizer");
@@ -213,73 +141,58 @@ public class App extends Application {
 
     stage.show();
 
+    // Everything the simulation needs to know about goes to it as a
+    // Command, starting with how the checkboxes are now.
     scene.addEventHandler(
       KeyEvent.KEY_PRESSED,
       keyEvent -> {
-        handleKeyPressed(keyEvent);
+        simulator.send(new Simulator.KeyPressed(keyEvent.getCode()));
       }
     );
 
     scene.addEventHandler(
       KeyEvent.KEY_RELEASED,
       keyEvent -> {
-        handleKeyReleased(keyEvent);
+        simulator.send(new Simulator.KeyReleased(keyEvent.getCode()));
       }
     );
 
-    // Schedule game loop to run every frame
+    simulator.send(
+      new Simulator.SetFieldOriented(fieldOrientedCheckbox.isSelected())
+    );
+    fieldOrientedCheckbox
+      .selectedProperty()
+      .addListener((property, was, selected) -> {
+        simulator.send(new Simulator.SetFieldOriented(selected));
+      });
+
+    simulator.send(new Simulator.SetAsteroids(asteroidsCheckbox.isSelected()));
+    asteroidsCheckbox
+      .selectedProperty()
+      .addListener((property, was, selected) -> {
+        simulator.send(new Simulator.SetAsteroids(selected));
+      });
+
+    simulator.start();
+
+    // Draw every frame. The simulation updates on its own schedule,
+    // so by the time we draw, we're usually part of the way towards
+    // the next update; we draw things that far along, so the motion
+    // looks smooth even though frames and updates don't line up.
     AnimationTimer loop = new AnimationTimer() {
-      boolean calledYet = false;
-      double lastCallTime;
-
       public void handle(long now) {
-        if (!calledYet) {
-          calledYet = true;
-          lastCallTime = now;
-          return;
-        }
-
-        double secondsElapsed = (now - lastCallTime) / 1e9;
-        if (secondsElapsed >= secondsPerUpdate) {
-          tick(secondsElapsed);
-          lastCallTime = now;
-        }
+        Snapshot snapshot = simulator.latest();
+        double sinceUpdate = (now - snapshot.time) /
+        (double) Simulator.NANOS_PER_UPDATE;
+        draw(snapshot, Math.max(0, Math.min(1, sinceUpdate)));
       }
     };
     loop.start();
   }
 
-  private void asteroidsShoot() {
-    Rigidbody rigidbody = swerve.getRigidbody();
-    asteroids.get().shoot(rigidbody, rigidbody.getHeadingVector().rescale(0.3));
-  }
-
-  private void handleKeyReleased(KeyEvent keyEvent) {
-    heldKeys.remove(keyEvent.getCode());
-  }
-
-  private void handleKeyPressed(KeyEvent keyEvent) {
-    heldKeys.add(keyEvent.getCode());
-
-    switch (keyEvent.getCode()) {
-      case KeyCode.X:
-        {
-          if (asteroids.isPresent() && isSwerveEnabled()) {
-            asteroidsShoot();
-          }
-          break;
-        }
-      case KeyCode.R:
-        {
-          asteroids.get().setScore(0);
-          destroyed = false;
-          break;
-        }
-      default:
-        {
-          break;
-        }
-    }
+  @Override
+  public void stop() {
+    simulator.stop();
   }
 
   public static void main(String[] args) {
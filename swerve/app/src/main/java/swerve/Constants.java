@@ -5,6 +5,12 @@ public class Constants {
   public static final double SCREEN_WIDTH = 400;
   public static final double SCREEN_HEIGHT = 400;
 
+  /** The physics always steps by exactly this much (200 times a
+   * second), however often the screen is drawn. Trajectories have a
+   * setpoint for every step.
+   */
+  public static final double SECONDS_PER_UPDATE = 1.0 / 200;
+
   public static class Field {
 
     public static final double WIDTH_METERS = 10;
@@ -23,6 +29,11 @@ public class Constants {
       1000
     );
 
+    /** How hard paths (see swerve.path.Trajectory) may speed up, slow
+     * down or corner.
+     */
+    public static final double MAX_ACCELERATION_METERS_PER_SECOND_SQUARED = 8;
+
     public static final double ALIGN_IMPORTANCE = 50;
 
     public static final double FRICTION = 0.8;
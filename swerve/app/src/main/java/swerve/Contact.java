@@ -0,0 +1,27 @@
+package swerve;
+
+/** How two overlapping shapes overlap, filled in by Shape.contact().
+ *
+ * `normal` is the direction to push the *other* shape (a unit vector)
+ * and `depth` is how far it would have to go to stop overlapping:
+ * together, the smallest push that separates them. That's exactly what
+ * you need to bounce things off each other, or stop them sinking in.
+ *
+ * Contacts are meant to be reused, so that finding one doesn't make
+ * any garbage.
+ */
+public class Contact {
+
+  public final Vector2 normal = new Vector2(0, 0);
+  public double depth;
+
+  void set(double normalX, double normalY, double depth) {
+    normal.set(normalX, normalY);
+    this.depth = depth;
+  }
+
+  @Override
+  public String toString() {
+    return "Contact(" + normal + ", " + depth + ")";
+  }
+}
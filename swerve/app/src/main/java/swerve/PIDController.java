@@ -33,6 +33,13 @@ public class PIDController {
     previousError = 0;
   }
 
+  /** The error from the last calculate() (in rotations per second for
+   * driving, radians for steering).
+   */
+  public double getLastError() {
+    return previousError;
+  }
+
   public double calculate(double measurement, double reference) {
     double error = reference - measurement;
 
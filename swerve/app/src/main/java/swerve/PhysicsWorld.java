@@ -0,0 +1,256 @@
+package swerve;
+
+import java.util.Arrays;
+
+/** Holds the physics state of lots of bodies at once.
+ *
+ * The obvious way to store bodies is one object each, with fields
+ * for position, velocity and so on (an "array of structures"). Here
+ * we do it the other way around (a "structure of arrays"): one array
+ * of every body's x, one of every body's y, etc. A body is then just
+ * an index into the arrays, which we call its "handle".
+ *
+ * Why bother? When we step the simulation we do the same thing to
+ * every body, e.g. x += vx * dt. With separate objects, the CPU has
+ * to chase a pointer to each one, wherever it happens to be in memory.
+ * With arrays, the x's (and vx's) are all right next to each other,
+ * so it can stream through them, which CPUs are *very* good at.
+ *
+ * Rigidbody is a friendly object wrapper around a handle, so most
+ * code doesn't need to know about any of this.
+ *
+ * The world also remembers where every body was before the last
+ * integrate(), so that drawing can "interpolate" between then and now
+ * (see Snapshot). The physics runs at a fixed rate that doesn't line
+ * up with the screen's, so a frame is usually drawn somewhere in
+ * between two physics steps.
+ */
+public class PhysicsWorld {
+
+  private int capacity;
+
+  /** How many slots have ever been used. Slots that were freed
+   * (see destroy()) are reused before we use a new one.
+   */
+  private int size = 0;
+  private int[] freeHandles;
+  private int nFree = 0;
+  private boolean[] alive;
+
+  double[] x, y, heading;
+  double[] previousX, previousY, previousHeading;
+  double[] velocityX, velocityY, angularVelocity;
+  double[] mass, momentOfInertia;
+
+  public PhysicsWorld(int initialCapacity) {
+    capacity = Math.max(1, initialCapacity);
+    x = new double[capacity];
+    y = new double[capacity];
+    heading = new double[capacity];
+    previousX = new double[capacity];
+    previousY = new double[capacity];
+    previousHeading = new double[capacity];
+    velocityX = new double[capacity];
+    velocityY = new double[capacity];
+    angularVelocity = new double[capacity];
+    mass = new double[capacity];
+    momentOfInertia = new double[capacity];
+    alive = new boolean[capacity];
+    freeHandles = new int[capacity];
+  }
+
+  public PhysicsWorld() {
+    this(64);
+  }
+
+  /** Adds a body (at rest) and returns its handle. */
+  public int create(
+    double x,
+    double y,
+    double heading,
+    double mass,
+    double momentOfInertia
+  ) {
+    int handle;
+    if (nFree > 0) {
+      handle = freeHandles[--nFree];
+    } else {
+      if (size == capacity) grow();
+      handle = size++;
+    }
+
+    alive[handle] = true;
+    this.x[handle] = x;
+    this.y[handle] = y;
+    this.heading[handle] = heading;
+    previousX[handle] = x;
+    previousY[handle] = y;
+    previousHeading[handle] = heading;
+    velocityX[handle] = 0;
+    velocityY[handle] = 0;
+    angularVelocity[handle] = 0;
+    this.mass[handle] = mass;
+    this.momentOfInertia[handle] = momentOfInertia;
+    return handle;
+  }
+
+  /** Removes a body. Its handle may be given to a body created later. */
+  public void destroy(int handle) {
+    if (!alive[handle]) {
+      throw new IllegalArgumentException("Body " + handle + " doesn't exist");
+    }
+    alive[handle] = false;
+    // A dead body stands still, so the loops below can go over
+    // it like any other without it going anywhere.
+    velocityX[handle] = 0;
+    velocityY[handle] = 0;
+    angularVelocity[handle] = 0;
+    freeHandles[nFree++] = handle;
+  }
+
+  public boolean isAlive(int handle) {
+    return handle >= 0 && handle < size && alive[handle];
+  }
+
+  /** How many bodies there are. */
+  public int count() {
+    return size - nFree;
+  }
+
+  private void grow() {
+    capacity *= 2;
+    x = Arrays.copyOf(x, capacity);
+    y = Arrays.copyOf(y, capacity);
+    heading = Arrays.copyOf(heading, capacity);
+    previousX = Arrays.copyOf(previousX, capacity);
+    previousY = Arrays.copyOf(previousY, capacity);
+    previousHeading = Arrays.copyOf(previousHeading, capacity);
+    velocityX = Arrays.copyOf(velocityX, capacity);
+    velocityY = Arrays.copyOf(velocityY, capacity);
+    angularVelocity = Arrays.copyOf(angularVelocity, capacity);
+    mass = Arrays.copyOf(mass, capacity);
+    momentOfInertia = Arrays.copyOf(momentOfInertia, capacity);
+    alive = Arrays.copyOf(alive, capacity);
+    freeHandles = Arrays.copyOf(freeHandles, capacity);
+  }
+
+  /** Moves every body along by its velocity for dt seconds. */
+  public void integrate(double dt) {
+    System.arraycopy(x, 0, previousX, 0, size);
+    System.arraycopy(y, 0, previousY, 0, size);
+    System.arraycopy(heading, 0, previousHeading, 0, size);
+
+    for (int i = 0; i < size; i++) {
+      x[i] += velocityX[i] * dt;
+      y[i] += velocityY[i] * dt;
+    }
+    for (int i = 0; i < size; i++) {
+      heading[i] =
+        Utils.angleModulusRadians(heading[i] + angularVelocity[i] * dt);
+    }
+  }
+
+  /** Slows every body down, see Rigidbody.applyFriction(). */
+  public void applyFriction(double friction, double dt) {
+    for (int i = 0; i < size; i++) {
+      angularVelocity[i] -= friction * angularVelocity[i] * dt;
+      velocityX[i] += velocityX[i] * (-friction * dt);
+      velocityY[i] += velocityY[i] * (-friction * dt);
+    }
+  }
+
+  /** Pushes n bodies at once: body handles[i] gets force
+   * (forceX[i], forceY[i]) and torque[i] for dt seconds.
+   */
+  public void applyImpulses(
+    int[] handles,
+    double[] forceX,
+    double[] forceY,
+    double[] torque,
+    int n,
+    double dt
+  ) {
+    for (int i = 0; i < n; i++) {
+      applyImpulse(handles[i], forceX[i], forceY[i], torque[i], dt);
+    }
+  }
+
+  /** The same as the above, but for just one body. */
+  public void integrate(int handle, double dt) {
+    previousX[handle] = x[handle];
+    previousY[handle] = y[handle];
+    previousHeading[handle] = heading[handle];
+
+    x[handle] += velocityX[handle] * dt;
+    y[handle] += velocityY[handle] * dt;
+    heading[handle] =
+      Utils.angleModulusRadians(
+        heading[handle] + angularVelocity[handle] * dt
+      );
+  }
+
+  public void applyFriction(int handle, double friction, double dt) {
+    angularVelocity[handle] -= friction * angularVelocity[handle] * dt;
+    velocityX[handle] += velocityX[handle] * (-friction * dt);
+    velocityY[handle] += velocityY[handle] * (-friction * dt);
+  }
+
+  public void applyImpulse(
+    int handle,
+    double forceX,
+    double forceY,
+    double torque,
+    double dt
+  ) {
+    angularVelocity[handle] =
+      angularVelocity[handle] + torque / momentOfInertia[handle] * dt;
+    velocityX[handle] += forceX * (dt / mass[handle]);
+    velocityY[handle] += forceY * (dt / mass[handle]);
+  }
+
+  public double getX(int handle) {
+    return x[handle];
+  }
+
+  public double getY(int handle) {
+    return y[handle];
+  }
+
+  public double getHeading(int handle) {
+    return heading[handle];
+  }
+
+  public double getVelocityX(int handle) {
+    return velocityX[handle];
+  }
+
+  public double getVelocityY(int handle) {
+    return velocityY[handle];
+  }
+
+  public double getAngularVelocity(int handle) {
+    return angularVelocity[handle];
+  }
+
+  /** Moves a body straight there (so it won't be drawn sliding over). */
+  public void setPosition(int handle, double x, double y) {
+    this.x[handle] = x;
+    this.y[handle] = y;
+    previousX[handle] = x;
+    previousY[handle] = y;
+  }
+
+  public void setHeading(int handle, double heading) {
+    this.heading[handle] = heading;
+    previousHeading[handle] = heading;
+  }
+
+  public void setVelocity(int handle, double x, double y) {
+    velocityX[handle] = x;
+    velocityY[handle] = y;
+  }
+
+  public void setAngularVelocity(int handle, double angularVelocity) {
+    this.angularVelocity[handle] = angularVelocity;
+  }
+}
@@ -0,0 +1,201 @@
+package swerve;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import swerve.telemetry.Schema.Field;
+import swerve.telemetry.SwerveTelemetry;
+import swerve.telemetry.TelemetryReader;
+
+/** Plays a telemetry log (see SwerveTelemetry) back in the window,
+ * instead of simulating: run with -Dswerve.replay=<directory>.
+ *
+ * It works just like Simulator, on its own thread, except that each
+ * update reads where the robot was from the log rather than working it
+ * out. Only the robot is logged, so there are no asteroids.
+ *
+ * Keys: space pauses, left and right jump 5 seconds back or forward,
+ * and home goes back to the start. Jumping uses the log's index (see
+ * TelemetryReader.seek()), so it's instant however long the log is.
+ */
+public class Replay implements SnapshotSource {
+
+  private static final long SKIP_NANOS = 5_000_000_000L;
+
+  private final TelemetryReader reader;
+  private final Field x, y, heading, velocityX, velocityY;
+  private final Field[] moduleHeading, moduleSpeed;
+  private final Field[] moduleTargetX, moduleTargetY;
+
+  /** Never driven, it's just for where the modules go, see publish(). */
+  private final Swerve layout = new Swerve();
+
+  private final ConcurrentLinkedQueue<Simulator.Command> commands =
+    new ConcurrentLinkedQueue<>();
+  private final TripleBuffer<Snapshot> snapshots = new TripleBuffer<>(
+    () -> new Snapshot(layout.getModuleCount())
+  );
+
+  private volatile boolean running = false;
+  private Thread thread;
+
+  /** Where we are in the log: its clock, and the record at that time. */
+  private long playTime;
+  private long record = 0;
+  private boolean paused = false;
+  /** The record we published last time, which is where the robot is
+   * drawn moving from.
+   */
+  private long previousRecord = 0;
+
+  public Replay(Path directory) throws IOException {
+    reader = TelemetryReader.open(directory, SwerveTelemetry.NAME);
+    if (reader.size() == 0) {
+      reader.close();
+      throw new IOException("The log in " + directory + " is empty");
+    }
+    x = reader.field("x");
+    y = reader.field("y");
+    heading = reader.field("heading");
+    velocityX = reader.field("velocityX");
+    velocityY = reader.field("velocityY");
+
+    int modules = layout.getModuleCount();
+    moduleHeading = new Field[modules];
+    moduleSpeed = new Field[modules];
+    moduleTargetX = new Field[modules];
+    moduleTargetY = new Field[modules];
+    for (int i = 0; i < modules; i++) {
+      String module = "module" + i + ".";
+      moduleHeading[i] = reader.field(module + "heading");
+      moduleSpeed[i] = reader.field(module + "speed");
+      moduleTargetX[i] = reader.field(module + "targetX");
+      moduleTargetY[i] = reader.field(module + "targetY");
+    }
+
+    playTime = reader.startTime();
+  }
+
+  @Override
+  public void send(Simulator.Command command) {
+    commands.add(command);
+  }
+
+  @Override
+  public Snapshot latest() {
+    return snapshots.read();
+  }
+
+  @Override
+  public void start() {
+    running = true;
+    thread = new Thread(this::run, "replay");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try {
+      reader.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void run() {
+    long last = System.nanoTime();
+    while (running) {
+      LockSupport.parkNanos(Simulator.NANOS_PER_UPDATE);
+      long now = System.nanoTime();
+
+      Simulator.Command command;
+      while ((command = commands.poll()) != null) {
+        if (command instanceof Simulator.KeyPressed pressed) {
+          keyPressed(pressed);
+        }
+      }
+
+      if (!paused) {
+        playTime = Math.min(reader.endTime(), playTime + (now - last));
+      }
+      last = now;
+
+      // Usually we've only moved on a record or so, so just step
+      // forward rather than searching.
+      while (
+        record + 1 < reader.size() && reader.time(record + 1) <= playTime
+      ) {
+        record++;
+      }
+      publish();
+    }
+  }
+
+  private void keyPressed(Simulator.KeyPressed pressed) {
+    switch (pressed.key()) {
+      case SPACE -> paused = !paused;
+      case LEFT -> seek(playTime - SKIP_NANOS);
+      case RIGHT -> seek(playTime + SKIP_NANOS);
+      case HOME -> seek(reader.startTime());
+      default -> {}
+    }
+  }
+
+  private void seek(long time) {
+    playTime = Math.max(reader.startTime(), Math.min(reader.endTime(), time));
+    // The last record at or before playTime.
+    long after = reader.seek(playTime);
+    record =
+      after < reader.size() && reader.time(after) == playTime
+        ? after
+        : Math.max(0, after - 1);
+    // Jump straight there, rather than sliding across.
+    previousRecord = record;
+  }
+
+  private void publish() {
+    Snapshot snapshot = snapshots.writeBuffer();
+    snapshot.time = System.nanoTime();
+    snapshot.robotVisible = true;
+    snapshot.asteroidsEnabled = false;
+    snapshot.clearBodies();
+
+    // Fills in the track, wheelbase and module positions, which
+    // aren't logged; the rest gets written over below.
+    layout.snapshot(snapshot);
+
+    long previous = previousRecord;
+    previousRecord = record;
+    snapshot.previousX = reader.getDouble(previous, x);
+    snapshot.previousY = reader.getDouble(previous, y);
+    snapshot.previousHeading = reader.getDouble(previous, heading);
+    snapshot.x = reader.getDouble(record, x);
+    snapshot.y = reader.getDouble(record, y);
+    snapshot.heading = reader.getDouble(record, heading);
+    snapshot.velocityX = reader.getDouble(record, velocityX);
+    snapshot.velocityY = reader.getDouble(record, velocityY);
+
+    for (int i = 0; i < moduleHeading.length; i++) {
+      double speed = reader.getDouble(record, moduleSpeed[i]);
+      double angle = reader.getDouble(record, moduleHeading[i]);
+      snapshot.moduleVelocityX[i] = speed * Math.cos(angle);
+      snapshot.moduleVelocityY[i] = speed * Math.sin(angle);
+      snapshot.moduleTargetX[i] = reader.getDouble(record, moduleTargetX[i]);
+      snapshot.moduleTargetY[i] = reader.getDouble(record, moduleTargetY[i]);
+    }
+
+    snapshots.publish();
+  }
+}
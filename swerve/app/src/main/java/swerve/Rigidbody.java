@@ -1,53 +1,85 @@
 package swerve;
 
-import javafx.scene.canvas.GraphicsContext;
-
 /**
  * Owns pose (position + heading) of object that
  * is affected by inertia/physics, approximating
  * a point particle. Handles basic physics simulation.
+ *
+ * The numbers themselves live in a PhysicsWorld, and a
+ * Rigidbody is just a "handle" to one of the world's bodies.
+ * Lots of bodies that share a world can then be stepped all
+ * at once with PhysicsWorld.integrate(), instead of calling
+ * update() on each one.
  */
 public class Rigidbody {
 
-  private Vector2 position;
-  private double headingRadians;
+  private final PhysicsWorld world;
+  private final int handle;
 
-  // Momentum
-  private final double mass;
-  private Vector2 velocity = new Vector2(0, 0);
+  /** Vectors handed out by getPosition() and getVelocity(). */
+  private final Vector2 position = new Vector2(0, 0);
+  private final Vector2 velocity = new Vector2(0, 0);
 
-  // Angular momentum
-  private final double momentOfInertia;
-  private double angularVelocity = 0;
+  /** A body in the given world. */
+  public Rigidbody(
+    PhysicsWorld world,
+    Vector2 position,
+    double headingRadians,
+    double mass,
+    double momentOfInertia
+  ) {
+    this.world = world;
+    this.handle =
+      world.create(
+        position.x,
+        position.y,
+        headingRadians,
+        mass,
+        momentOfInertia
+      );
+  }
 
+  /** A body all on its own, in a world of its own. */
   public Rigidbody(
     Vector2 position,
     double headingRadians,
     double mass,
     double momentOfInertia
   ) {
-    this.position = position;
-    this.headingRadians = headingRadians;
-    this.mass = mass;
-    this.momentOfInertia = momentOfInertia;
+    this(new PhysicsWorld(1), position, headingRadians, mass, momentOfInertia);
+  }
+
+  public PhysicsWorld getWorld() {
+    return world;
+  }
+
+  public int getHandle() {
+    return handle;
+  }
+
+  /** Takes this body out of its world. Don't use it after this. */
+  public void destroy() {
+    world.destroy(handle);
   }
 
   public void setVelocity(Vector2 velocity) {
-    this.velocity = velocity;
+    world.setVelocity(handle, velocity.x, velocity.y);
   }
 
   public void setAngularVelocity(double angularVelocity) {
-    this.angularVelocity = angularVelocity;
+    world.setAngularVelocity(handle, angularVelocity);
   }
 
   public void setPosition(Vector2 position) {
-    this.position = position;
+    world.setPosition(handle, position.x, position.y);
+  }
+
+  public void setHeadingRadians(double headingRadians) {
+    world.setHeading(handle, headingRadians);
   }
 
   public void update(double dt) {
-    position = position.plus(velocity.times(dt));
-    headingRadians =
-      Utils.angleModulusRadians(headingRadians + angularVelocity * dt);
+    world.integrate(handle, dt);
   }
 
   public void applyFriction(double friction, double dt) {
@@ -56,40 +88,39 @@ public class Rigidbody {
     // To be more realistic, you'd calculate this based on the momentum
     // of the wheel, and the internal FRICTION/dampening would be from the gearbox, back-EMF,
     // and the contact between the tread and the floor.
-    angularVelocity -= friction * angularVelocity * dt;
-    velocity = velocity.plus(velocity.times(-friction * dt));
+    world.applyFriction(handle, friction, dt);
   }
 
   public void applyImpulse(Vector2 force, double torque, double dt) {
-    angularVelocity = angularVelocity + torque / momentOfInertia * dt;
-    velocity = velocity.plus(force.times(dt / mass));
-  }
-
-  public void translate(GraphicsContext ctx) {
-    ctx.translate(position.x, position.y);
-  }
-
-  public void rotate(GraphicsContext ctx) {
-    ctx.rotate(headingRadians);
+    world.applyImpulse(handle, force.x, force.y, torque, dt);
   }
 
   public double getHeadingRadians() {
-    return headingRadians;
+    return world.getHeading(handle);
   }
 
   public double getHeadingDegrees() {
-    return Math.toDegrees(headingRadians);
+    return Math.toDegrees(getHeadingRadians());
   }
 
   public Vector2 getHeadingVector() {
-    return Vector2.fromPolar(1, headingRadians);
+    return Vector2.fromPolar(1, getHeadingRadians());
+  }
+
+  public double getAngularVelocity() {
+    return world.getAngularVelocity(handle);
   }
 
+  /** So that we don't make new vectors every time, these fill in
+   * and return the same vector every call. That means it's only
+   * up to date until the body moves again (and it's no use changing
+   * it, use the setters). Make a copy if you want to keep it.
+   */
   public Vector2 getVelocity() {
-    return velocity;
+    return velocity.set(world.getVelocityX(handle), world.getVelocityY(handle));
   }
 
   public Vector2 getPosition() {
-    return position;
+    return position.set(world.getX(handle), world.getY(handle));
   }
 }
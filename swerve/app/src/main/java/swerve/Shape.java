@@ -1,59 +1,205 @@
 package swerve;
 
+import java.util.ArrayList;
 import java.util.List;
 import javafx.scene.canvas.GraphicsContext;
 
 /**
  * A shape has a boundary defined by an Edges object,
  * and a hit() method that returns whether a point is inside it.
+ *
+ * Every shape also has a "bounding circle" (centered on the shape's
+ * center, big enough to hold all of it) and a "bounding box" (the
+ * smallest rectangle around it, lined up with the x and y axes).
+ * They're rough, but checking whether two circles or two boxes overlap
+ * is super cheap, and if they don't, the shapes can't either. So
+ * intersects() checks those first and can skip the expensive edge
+ * by edge test for shapes that are nowhere near each other, which
+ * is most of them. They're worked out once and then remembered.
+ *
+ * Shapes that are convex (no dents: a straight line between any two
+ * points inside stays inside) can be tested against each other much
+ * more reliably with the "separating axis theorem", see
+ * Edges.overlapsConvex(). Shapes that aren't can often be cut up into
+ * convex pieces, see convexPieces().
  */
 public abstract class Shape {
 
-  /** List of points defining a closed surface. */
+  private boolean boundsDirty = true;
+  private double minX, minY, maxX, maxY, boundingRadius;
+
+  /** Call if the shape changes, so the bounds get worked out again. */
+  protected void invalidateBounds() {
+    boundsDirty = true;
+  }
+
+  private void updateBounds() {
+    if (!boundsDirty) return;
+
+    // The center counts as part of the shape too, since intersects()
+    // also checks whether the other shape's center is inside this one.
+    minX = 0;
+    minY = 0;
+    maxX = 0;
+    maxY = 0;
+    double radiusSquared = 0;
+
+    Edges edges = edges();
+    for (int i = 0; i < edges.n(); i++) {
+      double x = edges.x(i), y = edges.y(i);
+      minX = Math.min(minX, x);
+      minY = Math.min(minY, y);
+      maxX = Math.max(maxX, x);
+      maxY = Math.max(maxY, y);
+      radiusSquared = Math.max(radiusSquared, x * x + y * y);
+    }
+    boundingRadius = Math.sqrt(radiusSquared);
+    boundsDirty = false;
+  }
+
+  /** The radius of the smallest circle around the shape's center
+   * that the whole shape fits in.
+   */
+  public double boundingRadius() {
+    updateBounds();
+    return boundingRadius;
+  }
+
+  /** The bounding box, relative to the shape's center. */
+  public double minX() {
+    updateBounds();
+    return minX;
+  }
+
+  public double minY() {
+    updateBounds();
+    return minY;
+  }
+
+  public double maxX() {
+    updateBounds();
+    return maxX;
+  }
+
+  public double maxY() {
+    updateBounds();
+    return maxY;
+  }
+
+  /** Whether the bounding circles and boxes of this shape, and of
+   * `other` at (localX, localY), overlap. If they don't, the shapes
+   * definitely don't; if they do, they might.
+   */
+  public boolean boundsOverlap(Shape other, double localX, double localY) {
+    double radii = boundingRadius() + other.boundingRadius();
+    if (localX * localX + localY * localY > radii * radii) {
+      return false;
+    }
+    return (
+      other.minX() + localX <= maxX() &&
+      other.maxX() + localX >= minX() &&
+      other.minY() + localY <= maxY() &&
+      other.maxY() + localY >= minY()
+    );
+  }
+
+  /** List of points defining a closed surface.
+   *
+   * The points are packed into one array of doubles,
+   * x0, y0, x1, y1, ..., rather than a list of Vector2s,
+   * so going through them is just walking along an array.
+   * x(i) and y(i) read them without making a Vector2.
+   */
   public static class Edges extends Shape {
 
-    private final List<Vector2> points;
+    private final double[] coordinates;
     private final int n;
 
     public Edges(List<Vector2> points) {
-      this.points = points;
-      this.n = points.size();
+      this(points.size());
+      for (int i = 0; i < n; i++) {
+        coordinates[2 * i] = points.get(i).x;
+        coordinates[2 * i + 1] = points.get(i).y;
+      }
+    }
+
+    /** Edges with n points, all at (0, 0) until set() or transform(). */
+    public Edges(int n) {
+      this.n = n;
+      this.coordinates = new double[2 * n];
     }
 
     public int n() {
       return n;
     }
 
+    /** Point i's x. Like point(), i can be up to n (which is point 0
+     * again, since the edges go all the way around).
+     */
+    public double x(int i) {
+      return coordinates[2 * (i < n ? i : i % n)];
+    }
+
+    public double y(int i) {
+      return coordinates[2 * (i < n ? i : i % n) + 1];
+    }
+
     public Vector2 point(int i) {
-      return points.get(i % n);
+      return new Vector2(x(i), y(i));
+    }
+
+    public void set(int i, double x, double y) {
+      coordinates[2 * i] = x;
+      coordinates[2 * i + 1] = y;
+      invalidateBounds();
+    }
+
+    /** Fills in `out` (which needs the same n) with these points rotated
+     * counterclockwise by `radians` and then moved by (x, y). E.g. to
+     * go from a body's own "local" space to world space.
+     */
+    public void transform(double x, double y, double radians, Edges out) {
+      double cos = Math.cos(radians), sin = Math.sin(radians);
+      double[] from = coordinates, to = out.coordinates;
+      for (int i = 0; i < 2 * n; i += 2) {
+        double localX = from[i], localY = from[i + 1];
+        to[i] = x + cos * localX - sin * localY;
+        to[i + 1] = y + sin * localX + cos * localY;
+      }
+      out.invalidateBounds();
     }
 
     public void stroke(GraphicsContext ctx) {
       ctx.beginPath();
       for (int i = 0; i < n + 1; i++) {
-        Vector2 point = point(i);
-        if (i == 0) ctx.moveTo(point.x, point.y); else ctx.lineTo(
-          point.x,
-          point.y
-        );
+        if (i == 0) ctx.moveTo(x(i), y(i)); else ctx.lineTo(x(i), y(i));
       }
       ctx.stroke();
     }
 
     public boolean intersects(Edges other, double otherX, double otherY) {
-      Vector2 localPosition = new Vector2(otherX, otherY);
+      double[] self = coordinates, others = other.coordinates;
 
       // Naively iterates through all combinations of line-line pairs
       // to see if any intersect each other.
       for (int i = 0; i < n; i++) {
-        for (int j = 0; j < other.n; j++) {
-          Vector2 selfStart = point(i);
-          Vector2 selfEnd = point(i + 1);
+        int iNext = i + 1 == n ? 0 : i + 1;
+        double selfStartX = self[2 * i], selfStartY = self[2 * i + 1];
+        double selfEndX = self[2 * iNext], selfEndY = self[2 * iNext + 1];
 
-          Vector2 otherStart = other.point(j).plus(localPosition);
-          Vector2 otherEnd = other.point(j + 1).plus(localPosition);
-
-          if (linesIntersect(selfStart, selfEnd, otherStart, otherEnd)) {
+        for (int j = 0; j < other.n; j++) {
+          int jNext = j + 1 == other.n ? 0 : j + 1;
+          boolean intersect = linesIntersect(
+            selfStartX,
+            selfStartY,
+            selfEndX,
+            selfEndY,
+            others[2 * j] + otherX,
+            others[2 * j + 1] + otherY,
+            others[2 * jNext] + otherX,
+            others[2 * jNext + 1] + otherY
+          );
+          if (intersect) {
             return true;
           }
         }
@@ -62,6 +208,92 @@ public abstract class Shape {
       return false;
     }
 
+    /** Whether these edges and `other` (moved by otherX, otherY)
+     * overlap, if both are the outlines of convex shapes. If they do
+     * and `contact` isn't null, it's filled in with the smallest push
+     * (for other) that would separate them.
+     *
+     * This uses the "separating axis theorem": two convex shapes don't
+     * overlap if and only if there's a line you can draw between them.
+     * And if there is such a line, one of the shapes has an edge that
+     * lies along it. So for every edge of both shapes we "project"
+     * (squash) both shapes onto the direction perpendicular to the
+     * edge, its "normal", which turns each shape into a range of
+     * numbers. If the two ranges don't overlap for some edge, that edge
+     * separates the shapes. If they overlap for every edge, the shapes
+     * overlap, and the edge with the smallest overlap tells us the
+     * easiest way to push them apart.
+     * https://dyn4j.org/2010/01/sat/
+     *
+     * Unlike intersects(), this gets it right when one shape is
+     * completely inside the other, since there's no edge crossing needed.
+     */
+    public boolean overlapsConvex(
+      Edges other,
+      double otherX,
+      double otherY,
+      Contact contact
+    ) {
+      double bestDepth = Double.POSITIVE_INFINITY;
+      double bestNormalX = 0, bestNormalY = 0;
+
+      for (int k = 0; k < n + other.n; k++) {
+        Edges owner = k < n ? this : other;
+        int i = k < n ? k : k - n;
+        double edgeX = owner.x(i + 1) - owner.x(i);
+        double edgeY = owner.y(i + 1) - owner.y(i);
+        double length = Math.sqrt(edgeX * edgeX + edgeY * edgeY);
+        if (length == 0) continue;
+        double axisX = -edgeY / length, axisY = edgeX / length;
+
+        double selfMin = Double.POSITIVE_INFINITY;
+        double selfMax = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < 2 * n; j += 2) {
+          double projection = coordinates[j] * axisX + coordinates[j + 1] * axisY;
+          selfMin = Math.min(selfMin, projection);
+          selfMax = Math.max(selfMax, projection);
+        }
+
+        double otherMin = Double.POSITIVE_INFINITY;
+        double otherMax = Double.NEGATIVE_INFINITY;
+        double[] others = other.coordinates;
+        for (int j = 0; j < 2 * other.n; j += 2) {
+          double projection = others[j] * axisX + others[j + 1] * axisY;
+          otherMin = Math.min(otherMin, projection);
+          otherMax = Math.max(otherMax, projection);
+        }
+        // Moving other moves all of its projections by the same amount.
+        double offset = otherX * axisX + otherY * axisY;
+        otherMin += offset;
+        otherMax += offset;
+
+        // How far other would have to move along the axis (forwards),
+        // or against it (backwards), to not overlap any more.
+        double forwards = selfMax - otherMin, backwards = otherMax - selfMin;
+        if (forwards <= 0 || backwards <= 0) {
+          return false; // Found a gap
+        }
+        if (forwards < bestDepth) {
+          bestDepth = forwards;
+          bestNormalX = axisX;
+          bestNormalY = axisY;
+        }
+        if (backwards < bestDepth) {
+          bestDepth = backwards;
+          bestNormalX = -axisX;
+          bestNormalY = -axisY;
+        }
+      }
+
+      if (bestDepth == Double.POSITIVE_INFINITY) {
+        return false; // No edges at all (every point is the same point)
+      }
+      if (contact != null) {
+        contact.set(bestNormalX, bestNormalY, bestDepth);
+      }
+      return true;
+    }
+
     @Override
     public boolean hit(double localX, double localY) {
       // A polyline is one-dimensional, so nothing can "hit" it
@@ -72,11 +304,18 @@ public abstract class Shape {
     public Edges edges() {
       return this;
     }
+
+    @Override
+    public List<Edges> convexPieces() {
+      // A single line is convex, but a hollow outline isn't.
+      return n <= 2 ? List.of(this) : null;
+    }
   }
 
   public static class Line extends Shape {
 
     private Vector2 start, end;
+    private Edges edges = null;
 
     public Line(Vector2 start, Vector2 end) {
       this.start = start;
@@ -93,10 +332,14 @@ public abstract class Shape {
 
     public void setStart(Vector2 start) {
       this.start = start;
+      edges = null;
+      invalidateBounds();
     }
 
     public void setEnd(Vector2 end) {
       this.end = end;
+      edges = null;
+      invalidateBounds();
     }
 
     @Override
@@ -106,7 +349,15 @@ public abstract class Shape {
 
     @Override
     public Edges edges() {
-      return new Edges(List.of(start, end));
+      if (edges == null) {
+        edges = new Edges(List.of(start, end));
+      }
+      return edges;
+    }
+
+    @Override
+    public List<Edges> convexPieces() {
+      return List.of(edges());
     }
   }
 
@@ -118,17 +369,91 @@ public abstract class Shape {
   /** Returns the edges that define the shape. */
   public abstract Edges edges();
 
+  /** The shape cut up into convex pieces, which together cover
+   * exactly the shape, or null if we don't know how to do that
+   * for this shape.
+   */
+  public List<Edges> convexPieces() {
+    return null;
+  }
+
   public boolean intersects(Shape other, double localX, double localY) {
-    // If either the edges of the two shapes intersect,
-    // or the center of the first shape is inside the other,
-    // the shapes intersect. (I think this is true?)
-    // We find the latter by transforming the center of the first shape
-    // to be relative to the center of the second and calling .hit().
+    if (!boundsOverlap(other, localX, localY)) {
+      return false;
+    }
+
+    List<Edges> pieces = convexPieces(), otherPieces = other.convexPieces();
+    if (pieces != null && otherPieces != null) {
+      // Two shapes overlap if any piece of one overlaps any piece of the other.
+      for (Edges piece : pieces) {
+        for (Edges otherPiece : otherPieces) {
+          if (piece.overlapsConvex(otherPiece, localX, localY, null)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    // Otherwise, if either the edges of the two shapes intersect,
+    // or the center of the second shape is inside the first,
+    // say the shapes intersect. That's usually right, but not always:
+    // a small shape can sit completely inside a big one (no edges
+    // crossing) with its center somewhere else, e.g. off to the side
+    // of a big polygon's own center.
+    // We find the latter by transforming the center of the second shape
+    // to be relative to the center of the first and calling .hit().
     boolean edgesIntersect = edges().intersects(other.edges(), localX, localY);
     boolean centerInside = hit(localX, localY);
     return edgesIntersect || centerInside;
   }
 
+  /** Like intersects(), but if the shapes overlap, also fills in
+   * `contact` with how to push `other` out of this shape. Only works
+   * for shapes that have convexPieces(), otherwise it throws.
+   *
+   * If either shape is made of several pieces, this is the deepest
+   * overlap between any two of them. That's a good guess at how to
+   * separate them, but no more than that: pushing one piece out might
+   * push it into another.
+   */
+  public boolean contact(
+    Shape other,
+    double localX,
+    double localY,
+    Contact contact
+  ) {
+    List<Edges> pieces = convexPieces(), otherPieces = other.convexPieces();
+    if (pieces == null || otherPieces == null) {
+      throw new UnsupportedOperationException(
+        "Contacts only work for shapes made of convex pieces"
+      );
+    }
+    if (!boundsOverlap(other, localX, localY)) {
+      return false;
+    }
+
+    boolean found = false;
+    double depth = 0, normalX = 0, normalY = 0;
+    for (Edges piece : pieces) {
+      for (Edges otherPiece : otherPieces) {
+        if (
+          piece.overlapsConvex(otherPiece, localX, localY, contact) &&
+          contact.depth > depth
+        ) {
+          found = true;
+          depth = contact.depth;
+          normalX = contact.normal.x;
+          normalY = contact.normal.y;
+        }
+      }
+    }
+    if (found) {
+      contact.set(normalX, normalY, depth);
+    }
+    return found;
+  }
+
   /** Returns whether two lines, (a, b) -> (c, d) and (p, q) -> (r, q), intersect.
    * Where does it come from? Linear algebra! You can define a matrix that maps
    * "line space" to "world space", then apply it to the offset of (p, q) from (a, b)
@@ -157,24 +482,6 @@ public abstract class Shape {
     }
   }
 
-  private static boolean linesIntersect(
-    Vector2 start0,
-    Vector2 end0,
-    Vector2 start1,
-    Vector2 end1
-  ) {
-    return linesIntersect(
-      start0.x,
-      start0.y,
-      end0.x,
-      end0.y,
-      start1.x,
-      start1.y,
-      end1.x,
-      end1.y
-    );
-  }
-
   public static class Rectangle extends Shape {
 
     private Edges edges = null;
@@ -205,14 +512,39 @@ public abstract class Shape {
     public boolean hit(double localX, double localY) {
       return (Math.abs(localX) <= width / 2 && Math.abs(localY) <= height / 2);
     }
+
+    @Override
+    public List<Edges> convexPieces() {
+      return List.of(edges());
+    }
   }
 
   public static class Polygon extends Shape {
 
     private final Edges edges;
 
+    /** The corners, and for each edge (from corner i to corner i + 1)
+     * how much x changes per unit of y along it, for hit().
+     */
+    private final double[] xs, ys, inverseSlopes;
+
+    private List<Edges> convexPieces;
+    private boolean piecesWorkedOut = false;
+
     public Polygon(Edges edges) {
       this.edges = edges;
+
+      int n = edges.n();
+      xs = new double[n];
+      ys = new double[n];
+      inverseSlopes = new double[n];
+      for (int i = 0; i < n; i++) {
+        xs[i] = edges.x(i);
+        ys[i] = edges.y(i);
+        double dx = edges.x(i + 1) - xs[i], dy = edges.y(i + 1) - ys[i];
+        // Flat edges never get crossed (see hit()), so it doesn't matter.
+        inverseSlopes[i] = dy == 0 ? 0 : dx / dy;
+      }
     }
 
     @Override
@@ -220,6 +552,134 @@ public abstract class Shape {
       return edges;
     }
 
+    /** Whether turning from a -> b, then b -> c, turns the same way
+     * as the polygon goes around (or goes straight on).
+     */
+    private static boolean turnsWith(
+      double orientation,
+      double ax,
+      double ay,
+      double bx,
+      double by,
+      double cx,
+      double cy
+    ) {
+      double cross = (bx - ax) * (cy - by) - (by - ay) * (cx - bx);
+      return cross * orientation >= 0;
+    }
+
+    /** The polygon cut into convex pieces, null if we can't. Worked out
+     * the first time you ask.
+     *
+     * Any polygon can be cut up into triangles, but the general methods
+     * for that are fiddly. Our asteroids are a special case though:
+     * their points go once around the center, each further around
+     * than the last (they're "star-shaped" around the center). So we can
+     * cut them like a pizza, from the center out to each point, and every
+     * slice is a triangle. That's lots of little pieces, so we then
+     * glue neighbouring slices back together for as long as the result
+     * stays convex. A convex polygon just stays as one piece.
+     *
+     * Polygons that aren't star-shaped around their center get null,
+     * and intersects() falls back to comparing edges.
+     */
+    @Override
+    public List<Edges> convexPieces() {
+      if (!piecesWorkedOut) {
+        convexPieces = cutIntoConvexPieces();
+        piecesWorkedOut = true;
+      }
+      return convexPieces;
+    }
+
+    private List<Edges> cutIntoConvexPieces() {
+      int n = xs.length;
+      if (n < 3) return null;
+
+      // Which way around the points go: positive for counterclockwise.
+      double orientation = 0;
+      for (int i = 0; i < n; i++) {
+        int next = i + 1 == n ? 0 : i + 1;
+        orientation += xs[i] * ys[next] - ys[i] * xs[next];
+      }
+      if (orientation == 0) return null;
+
+      boolean convex = true;
+      for (int i = 0; i < n && convex; i++) {
+        int next = (i + 1) % n, afterNext = (i + 2) % n;
+        convex =
+          turnsWith(
+            orientation,
+            xs[i],
+            ys[i],
+            xs[next],
+            ys[next],
+            xs[afterNext],
+            ys[afterNext]
+          );
+      }
+      if (convex) return List.of(edges);
+
+      // Star-shaped means every edge goes the same way around the center.
+      boolean starShaped = true;
+      for (int i = 0; i < n && starShaped; i++) {
+        int next = i + 1 == n ? 0 : i + 1;
+        double sweep = xs[i] * ys[next] - ys[i] * xs[next];
+        starShaped = sweep * orientation > 0;
+      }
+      if (!starShaped) return null;
+
+      List<Edges> pieces = new ArrayList<>();
+      int start = 0;
+      while (start < n) {
+        // The piece is the center, then points start up to end.
+        int end = start + 1;
+        while (end < n && canGrow(orientation, start, end)) {
+          end++;
+        }
+
+        Edges piece = new Edges(end - start + 2);
+        piece.set(0, 0, 0);
+        for (int i = start; i <= end; i++) {
+          piece.set(i - start + 1, xs[i % n], ys[i % n]);
+        }
+        pieces.add(piece);
+        start = end;
+      }
+      return pieces;
+    }
+
+    /** Whether the piece from the center to points start...end stays
+     * convex if we add point end + 1 to it.
+     */
+    private boolean canGrow(double orientation, int start, int end) {
+      int n = xs.length;
+      int previous = (end - 1) % n, next = (end + 1) % n;
+      start %= n;
+      end %= n;
+      boolean cornerAtEnd = turnsWith(
+        orientation,
+        xs[previous],
+        ys[previous],
+        xs[end],
+        ys[end],
+        xs[next],
+        ys[next]
+      );
+      boolean cornerAtNext = turnsWith(
+        orientation,
+        xs[end],
+        ys[end],
+        xs[next],
+        ys[next],
+        0,
+        0
+      );
+      // The corner at the center has to stay less than half a turn.
+      double centerSweep = xs[start] * ys[next] - ys[start] * xs[next];
+      return cornerAtEnd && cornerAtNext && centerSweep * orientation > 0;
+    }
+
     @Override
     public boolean hit(double localX, double localY) {
       /** One way of checking whether a point is inside a polygon
@@ -230,23 +690,32 @@ public abstract class Shape {
        * If odd, then eventually it moved in but never moved out, and the
        * point must be inside the polygon.
        * https://en.wikipedia.org/wiki/Point_in_polygon
+       *
+       * We use a ray going straight right from the point, which makes
+       * checking each edge cheap: the edge has to go from below the
+       * ray to above it (or vice versa), and where it crosses the ray's
+       * height has to be right of the point (localX < crossing). That's
+       * the classic "PNPOLY" algorithm:
+       * https://wrfranklin.org/Research/Short_Notes/pnpoly.html
        */
-      Vector2 rayStart = new Vector2(localX - 10_000, localY - 10_000);
-      Vector2 rayEnd = new Vector2(localX, localY);
-
-      int hits = 0;
-
-      for (int i = 0; i < edges.n; i++) {
-        Vector2 start = edges.point(i), end = edges.point(i + 1);
-        boolean intersect = linesIntersect(rayStart, rayEnd, start, end);
+      if (
+        localX < minX() || localX > maxX() || localY < minY() || localY > maxY()
+      ) {
+        return false;
+      }
 
-        if (intersect) {
-          hits += 1;
+      boolean inside = false;
+      int n = xs.length;
+      for (int i = 0; i < n; i++) {
+        int next = i + 1 == n ? 0 : i + 1;
+        boolean crossesHeight = (ys[i] > localY) != (ys[next] > localY);
+        if (!crossesHeight) continue;
+        double crossing = xs[i] + (localY - ys[i]) * inverseSlopes[i];
+        if (localX < crossing) {
+          inside = !inside;
         }
       }
-
-      boolean oddNumberOfHits = hits % 2 == 1;
-      return oddNumberOfHits;
+      return inside;
     }
   }
 }
@@ -0,0 +1,364 @@
+package swerve;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import javafx.scene.input.KeyCode;
+import swerve.Constants.Drivebase;
+import swerve.asteroids.Asteroids;
+import swerve.path.Trajectory;
+import swerve.path.TrajectoryFollower;
+import swerve.path.Waypoint;
+import swerve.telemetry.SwerveTelemetry;
+
+/** Runs the simulation (driving, physics, asteroids, collisions) on its
+ * own thread, so a busy asteroid field can't make the window stutter,
+ * and a slow frame can't hold up the physics.
+ *
+ * The two threads never share anything that changes, and never wait
+ * for each other:
+ *
+ *  - The JavaFX thread tells us about keys and checkboxes by sending
+ *    Commands, which go in a ConcurrentLinkedQueue (a queue that's safe
+ *    to use from several threads at once, without locks). We take them
+ *    out at the start of every update.
+ *  - We tell the JavaFX thread what to draw by copying it into a
+ *    Snapshot after every update and publishing that through a
+ *    TripleBuffer, where the JavaFX thread picks up the latest one
+ *    whenever it draws a frame.
+ *
+ * Everything else in here is only ever touched by the simulation thread.
+ *
+ * Run with -Dswerve.telemetry=<directory> to log the robot's state
+ * every tick, see SwerveTelemetry.
+ */
+public class Simulator implements SnapshotSource {
+
+  public static final long NANOS_PER_UPDATE = Math.round(
+    Constants.SECONDS_PER_UPDATE * 1e9
+  );
+
+  /** If we fall really far behind (say the computer was busy), don't
+   * try to catch up by more than this many updates. Otherwise catching
+   * up takes so long we fall even further behind.
+   */
+  private static final int MAX_CATCH_UP_UPDATES = 20;
+
+  /** Something that happened in the window. */
+  public sealed interface Command {}
+
+  public record KeyPressed(KeyCode key) implements Command {}
+
+  public record KeyReleased(KeyCode key) implements Command {}
+
+  public record SetFieldOriented(boolean fieldOriented) implements Command {}
+
+  public record SetAsteroids(boolean enabled) implements Command {}
+
+  /** Drive through these waypoints by ourselves, see swerve.path. */
+  public record FollowPath(List<Waypoint> waypoints) implements Command {}
+
+  /** The path P drives, after going from wherever the robot is to the
+   * first waypoint.
+   */
+  private static final List<Waypoint> DEMO_PATH = List.of(
+    new Waypoint(5, 5, 0),
+    new Waypoint(8, 7, Math.PI / 2),
+    new Waypoint(5, 9, Math.PI),
+    new Waypoint(2, 7, -Math.PI / 2),
+    new Waypoint(5, 5, 0)
+  );
+
+  private final ConcurrentLinkedQueue<Command> commands =
+    new ConcurrentLinkedQueue<>();
+
+  /** Made before the snapshots, which need to know how many modules
+   * it has.
+   */
+  private Swerve swerve = new Swerve();
+
+  private final TripleBuffer<Snapshot> snapshots = new TripleBuffer<>(
+    () -> new Snapshot(swerve.getModuleCount())
+  );
+
+  private volatile boolean running = false;
+  private Thread thread;
+
+  private boolean destroyed = false;
+
+  /** Set while we're driving along a path rather than with the keys. */
+  private TrajectoryFollower follower;
+
+  /** How many updates we've done. The logs use this for their clock,
+   * so they line up exactly with the physics.
+   */
+  private long ticks = 0;
+  private SwerveTelemetry telemetry;
+
+  // Asteroids are toggleable, so at each tick
+  // we either have and work with an existing Asteroids object,
+  // or we don't.
+  private Optional<Asteroids> asteroids = Optional.of(new Asteroids());
+
+  // What the window has told us about
+  private Set<KeyCode> heldKeys = new HashSet<KeyCode>();
+  private boolean fieldOriented = true;
+  private boolean enableAsteroids = false;
+
+  @Override
+  public void send(Command command) {
+    commands.add(command);
+  }
+
+  @Override
+  public Snapshot latest() {
+    return snapshots.read();
+  }
+
+  @Override
+  public void start() {
+    String telemetryDirectory = System.getProperty("swerve.telemetry");
+    if (telemetryDirectory != null) {
+      try {
+        telemetry =
+          new SwerveTelemetry(
+            Path.of(telemetryDirectory),
+            swerve.getModuleCount()
+          );
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    running = true;
+    thread = new Thread(this::run, "simulation");
+    // Don't keep the program running if the window's closed.
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (telemetry != null) {
+      try {
+        telemetry.close();
+      } catch (IOException e) {
+        System.err.println("Couldn't finish the telemetry log: " + e);
+      }
+    }
+  }
+
+  private void run() {
+    long nextUpdate = System.nanoTime();
+    while (running) {
+      long now = System.nanoTime();
+      if (now < nextUpdate) {
+        // Nothing to do until the next update is due.
+        LockSupport.parkNanos(nextUpdate - now);
+        continue;
+      }
+      if (now - nextUpdate > MAX_CATCH_UP_UPDATES * NANOS_PER_UPDATE) {
+        // Give up on catching up; the game just runs slower.
+        nextUpdate = now;
+      }
+
+      Command command;
+      while ((command = commands.poll()) != null) {
+        handle(command);
+      }
+      update(Constants.SECONDS_PER_UPDATE);
+      ticks++;
+      if (telemetry != null) {
+        telemetry.log(ticks * NANOS_PER_UPDATE, swerve);
+      }
+      publish();
+      nextUpdate += NANOS_PER_UPDATE;
+    }
+  }
+
+  private void handle(Command command) {
+    switch (command) {
+      case KeyPressed pressed -> {
+        heldKeys.add(pressed.key());
+        keyPressed(pressed.key());
+      }
+      case KeyReleased released -> heldKeys.remove(released.key());
+      case SetFieldOriented set -> fieldOriented = set.fieldOriented();
+      case SetAsteroids set -> enableAsteroids = set.enabled();
+      case FollowPath follow -> followPath(follow.waypoints());
+    }
+  }
+
+  private void keyPressed(KeyCode key) {
+    switch (key) {
+      case KeyCode.X:
+        {
+          if (asteroids.isPresent() && isSwerveEnabled()) {
+            asteroidsShoot();
+          }
+          break;
+        }
+      case KeyCode.P:
+        {
+          // Get to the start of the demo path first (unless we're
+          // there already), then go round it.
+          Vector2 position = swerve.getRigidbody().getPosition();
+          Waypoint start = DEMO_PATH.get(0);
+          if (position.x == start.x() && position.y == start.y()) {
+            followPath(DEMO_PATH);
+          } else {
+            List<Waypoint> path = new ArrayList<>();
+            path.add(
+              new Waypoint(
+                position.x,
+                position.y,
+                swerve.getRigidbody().getHeadingRadians()
+              )
+            );
+            path.addAll(DEMO_PATH);
+            followPath(path);
+          }
+          break;
+        }
+      case KeyCode.W:
+      case KeyCode.A:
+      case KeyCode.S:
+      case KeyCode.D:
+      case KeyCode.Q:
+      case KeyCode.E:
+        {
+          // Take back control.
+          follower = null;
+          break;
+        }
+      case KeyCode.R:
+        {
+          asteroids.ifPresent(a -> a.setScore(0));
+          destroyed = false;
+          break;
+        }
+      default:
+        {
+          break;
+        }
+    }
+  }
+
+  private boolean isSwerveEnabled() {
+    boolean disabled = asteroids.isPresent() && destroyed;
+    return !disabled;
+  }
+
+  private boolean holding(KeyCode key) {
+    return heldKeys.contains(key);
+  }
+
+  private void asteroidsShoot() {
+    Rigidbody rigidbody = swerve.getRigidbody();
+    asteroids.get().shoot(rigidbody, rigidbody.getHeadingVector().rescale(0.3));
+  }
+
+  private void followPath(List<Waypoint> waypoints) {
+    follower = new TrajectoryFollower(Trajectory.of(waypoints));
+  }
+
+  private void drive() {
+    // Process inputs, then update swerve
+    Vector2 targetVelocity = new Vector2(0, 0);
+
+    if (holding(KeyCode.W)) targetVelocity.plusEquals(new Vector2(0, 1));
+    if (holding(KeyCode.A)) targetVelocity.plusEquals(new Vector2(-1, 0));
+    if (holding(KeyCode.S)) targetVelocity.plusEquals(new Vector2(0, -1));
+    if (holding(KeyCode.D)) targetVelocity.plusEquals(new Vector2(1, 0));
+
+    targetVelocity =
+      targetVelocity.rescale(Drivebase.MAX_SPEED_METERS_PER_SECOND);
+
+    double targetAngularVelocity = 0;
+    if (holding(KeyCode.E)) targetAngularVelocity +=
+      Drivebase.MAX_ANGULAR_SPEED_RADIANS_PER_SECOND;
+    if (holding(KeyCode.Q)) targetAngularVelocity -=
+      Drivebase.MAX_ANGULAR_SPEED_RADIANS_PER_SECOND;
+
+    swerve.drive(targetVelocity, targetAngularVelocity, fieldOriented);
+  }
+
+  private void update(double dt) {
+    if (isSwerveEnabled()) {
+      if (follower != null && !follower.isFinished()) {
+        follower.update(swerve);
+      } else {
+        follower = null;
+        drive();
+      }
+      swerve.update(dt);
+    }
+
+    if (enableAsteroids) {
+      if (asteroids.isEmpty()) {
+        asteroids = Optional.of(new Asteroids());
+        destroyed = false;
+      }
+    } else {
+      if (asteroids.isPresent()) {
+        asteroids = Optional.empty();
+      }
+    }
+
+    if (asteroids.isPresent()) {
+      asteroids.get().setTicking(isSwerveEnabled());
+      asteroids.get().update(dt);
+
+      boolean hitAsteroid = asteroids
+        .get()
+        .collidesWithAsteroids(
+          Drivebase.SHAPE,
+          swerve.getRigidbody().getPosition(),
+          swerve.getRigidbody().getHeadingRadians()
+        );
+      if (!destroyed && hitAsteroid) {
+        asteroids
+          .get()
+          .addDestroyedSegments(
+            Drivebase.SHAPE.edges(),
+            swerve.getRigidbody().getPosition(),
+            swerve.getRigidbody().getVelocity(),
+            -swerve.getRigidbody().getHeadingRadians()
+          );
+        destroyed = true;
+      }
+    }
+  }
+
+  private void publish() {
+    Snapshot snapshot = snapshots.writeBuffer();
+    snapshot.time = System.nanoTime();
+    snapshot.robotVisible = isSwerveEnabled();
+    swerve.snapshot(snapshot);
+
+    snapshot.clearBodies();
+    snapshot.asteroidsEnabled = asteroids.isPresent();
+    if (asteroids.isPresent()) {
+      snapshot.score = asteroids.get().getScore();
+      asteroids.get().snapshot(snapshot);
+    }
+
+    snapshots.publish();
+  }
+}
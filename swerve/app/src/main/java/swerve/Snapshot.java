@@ -0,0 +1,141 @@
+package swerve;
+
+import java.util.Arrays;
+import swerve.Shape.Edges;
+
+/** Everything needed to draw one moment of the simulation, copied out
+ * of the live objects.
+ *
+ * The simulation runs on its own thread (see Simulator) and changes
+ * things constantly, so the JavaFX thread can't safely look at them
+ * while it draws. Instead, after every update the simulation copies
+ * what's on screen into one of these and hands it over through a
+ * TripleBuffer. Once it's handed over, nobody changes it, so the
+ * drawing code can take its time.
+ *
+ * For everything that moves we keep where it was before the update
+ * as well as after, so it can be drawn somewhere in between, see
+ * interpolate().
+ */
+public class Snapshot {
+
+  /** When (in System.nanoTime()) the update that made this finished. */
+  long time;
+
+  /** The robot (if it's not been destroyed). */
+  boolean robotVisible;
+  double previousX, previousY, previousHeading;
+  double x, y, heading;
+  double velocityX, velocityY;
+  double track, wheelbase;
+  final double[] modulePositionX;
+  final double[] modulePositionY;
+  final double[] moduleVelocityX;
+  final double[] moduleVelocityY;
+  final double[] moduleTargetX;
+  final double[] moduleTargetY;
+
+  /** Asteroids, if they're on. */
+  boolean asteroidsEnabled;
+  int score;
+
+  /** Everything else that moves, as an outline at a pose. The Edges are
+   * shared with the live objects rather than copied, which is fine as
+   * long as nothing changes its shape after it's made.
+   */
+  int nBodies = 0;
+  Edges[] bodyEdges = new Edges[64];
+  double[] bodyPreviousX = new double[64];
+  double[] bodyPreviousY = new double[64];
+  double[] bodyPreviousHeading = new double[64];
+  double[] bodyX = new double[64];
+  double[] bodyY = new double[64];
+  double[] bodyHeading = new double[64];
+
+  /** A snapshot for a Swerve with `moduleCount` modules. */
+  public Snapshot(int moduleCount) {
+    modulePositionX = new double[moduleCount];
+    modulePositionY = new double[moduleCount];
+    moduleVelocityX = new double[moduleCount];
+    moduleVelocityY = new double[moduleCount];
+    moduleTargetX = new double[moduleCount];
+    moduleTargetY = new double[moduleCount];
+  }
+
+  public void clearBodies() {
+    // Let go of the edges, so old ones can be garbage collected.
+    Arrays.fill(bodyEdges, 0, nBodies, null);
+    nBodies = 0;
+  }
+
+  /** Adds something to draw: `edges`, wherever `rigidbody` is. */
+  public void addBody(Edges edges, Rigidbody rigidbody) {
+    if (nBodies == bodyEdges.length) {
+      int capacity = nBodies * 2;
+      bodyEdges = Arrays.copyOf(bodyEdges, capacity);
+      bodyPreviousX = Arrays.copyOf(bodyPreviousX, capacity);
+      bodyPreviousY = Arrays.copyOf(bodyPreviousY, capacity);
+      bodyPreviousHeading = Arrays.copyOf(bodyPreviousHeading, capacity);
+      bodyX = Arrays.copyOf(bodyX, capacity);
+      bodyY = Arrays.copyOf(bodyY, capacity);
+      bodyHeading = Arrays.copyOf(bodyHeading, capacity);
+    }
+
+    PhysicsWorld world = rigidbody.getWorld();
+    int handle = rigidbody.getHandle();
+    bodyEdges[nBodies] = edges;
+    bodyPreviousX[nBodies] = world.previousX[handle];
+    bodyPreviousY[nBodies] = world.previousY[handle];
+    bodyPreviousHeading[nBodies] = world.previousHeading[handle];
+    bodyX[nBodies] = world.x[handle];
+    bodyY[nBodies] = world.y[handle];
+    bodyHeading[nBodies] = world.heading[handle];
+    nBodies++;
+  }
+
+  public int getBodyCount() {
+    return nBodies;
+  }
+
+  public Edges getBodyEdges(int i) {
+    return bodyEdges[i];
+  }
+
+  public double getBodyX(int i, double interpolation) {
+    return interpolate(bodyPreviousX[i], bodyX[i], interpolation);
+  }
+
+  public double getBodyY(int i, double interpolation) {
+    return interpolate(bodyPreviousY[i], bodyY[i], interpolation);
+  }
+
+  public double getBodyHeading(int i, double interpolation) {
+    return interpolateAngle(
+      bodyPreviousHeading[i],
+      bodyHeading[i],
+      interpolation
+    );
+  }
+
+  /** `interpolation` of the way from `from` to `to`: 0 is from,
+   * 1 is to, 0.5 is halfway between, and so on.
+   */
+  public static double interpolate(
+    double from,
+    double to,
+    double interpolation
+  ) {
+    return from + (to - from) * interpolation;
+  }
+
+  /** The same, but turning the short way round, e.g. from 179 degrees
+   * to -179 degrees is 2 degrees, not 358 back the other way.
+   */
+  public static double interpolateAngle(
+    double from,
+    double to,
+    double interpolation
+  ) {
+    return from + Utils.angleModulusRadians(to - from) * interpolation;
+  }
+}
@@ -0,0 +1,18 @@
+package swerve;
+
+/** Something that makes Snapshots for App to draw: either the live
+ * Simulator, or a Replay of a telemetry log.
+ */
+public interface SnapshotSource {
+  /** Tells the source about something that happened in the window.
+   * Can be called from any thread.
+   */
+  void send(Simulator.Command command);
+
+  /** The latest snapshot. Only call this from one thread (the JavaFX one). */
+  Snapshot latest();
+
+  void start();
+
+  void stop();
+}
@@ -0,0 +1,171 @@
+package swerve;
+
+import java.util.Arrays;
+
+/** A "broad phase" for collision detection: a quick way to find
+ * which objects are even *near* each other, so the slow, exact
+ * Shape tests only run on pairs that might actually touch.
+ *
+ * We chop the world into a grid of square cells and write down,
+ * for each cell, which objects overlap it (using a box around each
+ * object). Two objects can only touch if they share a cell, so to
+ * find what might hit something we only look in the cells it covers.
+ *
+ * The grid is rebuilt from scratch whenever things move: add()
+ * everything, then build(). Rather than a list per cell, all of the
+ * (cell, object) entries go in one array sorted by cell (with a
+ * "counting sort", since there are only so many cells), and
+ * cellStart[c] says where cell c's objects start. Nothing is allocated
+ * once the arrays have grown big enough.
+ *
+ * Objects are identified by an int id, e.g. their index in a list.
+ * Anything outside the grid's area is treated as being in the
+ * nearest cell on the edge, so it still gets found, just less quickly.
+ */
+public class SpatialGrid {
+
+  private final double minX, minY, cellSize;
+  private final int columns, rows;
+
+  /** Entry i says object entryIds[i] overlaps cell entryCells[i]. */
+  private int nEntries = 0;
+  private int[] entryCells = new int[64];
+  private int[] entryIds = new int[64];
+
+  /** Cell c's objects are sorted[cellStart[c]] up to sorted[cellStart[c + 1]]. */
+  private final int[] cellStart;
+  private int[] sorted = new int[64];
+
+  /** Stops query() returning the same object twice when it's in
+   * several cells: stamps[id] == stamp if we've already seen it.
+   */
+  private int[] stamps = new int[64];
+  private int stamp = 0;
+
+  public SpatialGrid(
+    double minX,
+    double minY,
+    double maxX,
+    double maxY,
+    double cellSize
+  ) {
+    this.minX = minX;
+    this.minY = minY;
+    this.cellSize = cellSize;
+    columns = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize));
+    rows = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize));
+    cellStart = new int[columns * rows + 1];
+  }
+
+  /** Forgets everything, to start adding things again. */
+  public void clear() {
+    nEntries = 0;
+  }
+
+  private int column(double x) {
+    return Math.min(columns - 1, Math.max(0, (int) ((x - minX) / cellSize)));
+  }
+
+  private int row(double y) {
+    return Math.min(rows - 1, Math.max(0, (int) ((y - minY) / cellSize)));
+  }
+
+  /** Adds an object with the given id, that fits in the box from
+   * (minX, minY) to (maxX, maxY).
+   */
+  public void add(int id, double minX, double minY, double maxX, double maxY) {
+    if (id >= stamps.length) {
+      stamps = Arrays.copyOf(stamps, Math.max(id + 1, stamps.length * 2));
+    }
+
+    int column0 = column(minX), column1 = column(maxX);
+    int row0 = row(minY), row1 = row(maxY);
+    for (int row = row0; row <= row1; row++) {
+      for (int column = column0; column <= column1; column++) {
+        if (nEntries == entryCells.length) {
+          entryCells = Arrays.copyOf(entryCells, nEntries * 2);
+          entryIds = Arrays.copyOf(entryIds, nEntries * 2);
+        }
+        entryCells[nEntries] = row * columns + column;
+        entryIds[nEntries] = id;
+        nEntries++;
+      }
+    }
+  }
+
+  /** Adds an object that fits in a circle around (x, y). */
+  public void add(int id, double x, double y, double radius) {
+    add(id, x - radius, y - radius, x + radius, y + radius);
+  }
+
+  /** Sorts the entries by cell. Call after adding everything,
+   * before querying.
+   */
+  public void build() {
+    if (sorted.length < nEntries) {
+      sorted = new int[entryIds.length];
+    }
+
+    // Count the entries in each cell...
+    Arrays.fill(cellStart, 0);
+    for (int i = 0; i < nEntries; i++) {
+      cellStart[entryCells[i] + 1]++;
+    }
+    // ...which tells us where each cell's entries start...
+    for (int c = 0; c < columns * rows; c++) {
+      cellStart[c + 1] += cellStart[c];
+    }
+    // ...then put each entry in its place. (We use cellStart[c] as
+    // "where the next entry for c goes", which leaves it pointing at
+    // the end of c's entries, i.e. the start of c + 1's. So we shift
+    // everything back by one afterwards.)
+    for (int i = 0; i < nEntries; i++) {
+      sorted[cellStart[entryCells[i]]++] = entryIds[i];
+    }
+    for (int c = columns * rows; c > 0; c--) {
+      cellStart[c] = cellStart[c - 1];
+    }
+    cellStart[0] = 0;
+  }
+
+  /** Finds every object whose cells overlap the box, writes their
+   * ids (each only once) into `out` and returns how many there are.
+   * `out` needs room for every object that was added.
+   */
+  public int query(
+    double minX,
+    double minY,
+    double maxX,
+    double maxY,
+    int[] out
+  ) {
+    stamp++;
+    if (stamp == 0) {
+      // Wrapped around after 4 billion queries, so old stamps
+      // could be mistaken for new ones.
+      Arrays.fill(stamps, 0);
+      stamp = 1;
+    }
+
+    int count = 0;
+    int column0 = column(minX), column1 = column(maxX);
+    int row0 = row(minY), row1 = row(maxY);
+    for (int row = row0; row <= row1; row++) {
+      for (int column = column0; column <= column1; column++) {
+        int cell = row * columns + column;
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+          int id = sorted[i];
+          if (stamps[id] == stamp) continue;
+          stamps[id] = stamp;
+          out[count++] = id;
+        }
+      }
+    }
+    return count;
+  }
+
+  /** Finds everything near a circle around (x, y), see above. */
+  public int query(double x, double y, double radius, int[] out) {
+    return query(x - radius, y - radius, x + radius, y + radius, out);
+  }
+}
@@ -2,55 +2,166 @@ package swerve;
 
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
-import swerve.Constants.Drivebase;
 import swerve.Constants.Field;
 
 public class Swerve {
 
-  private final double track = Drivebase.TRACK_METERS;
-  private final double wheelbase = Drivebase.WHEELBASE_METERS;
-
-  private Vector2 centerOfRotation = new Vector2(0, 0);
-
-  private final SwerveModule[] modules = new SwerveModule[] {
-    new SwerveModule(), // Top right
-    new SwerveModule(), // Top left
-    new SwerveModule(), // Bottom right
-    new SwerveModule(), // Bottom left
-  };
-  private final Vector2[] modulePositions = new Vector2[] {
-    new Vector2(track / 2, wheelbase / 2),
-    new Vector2(-track / 2, wheelbase / 2),
-    new Vector2(track / 2, -wheelbase / 2),
-    new Vector2(-track / 2, -wheelbase / 2),
-  };
-
-  private final Rigidbody rigidbody = new Rigidbody(
-    // Starts in the center of the field
-    new Vector2(Field.WIDTH_METERS / 2, Field.HEIGHT_METERS / 2),
-    // Faces 0 degrees
-    Math.toRadians(0),
-    // Some made up physics constants
-    Drivebase.MASS_KG,
-    Drivebase.MOMENT_OF_INERTIA
-  );
+  private final SwerveConfig config;
+  private final double track;
+  private final double wheelbase;
+
+  private final SwerveModule[] modules;
+  private final Vector2[] modulePositions;
+
+  private final SwerveKinematics kinematics;
+
+  /** Scratch space for drive(), so it doesn't make new vectors
+   * every time it's called (which is every tick).
+   */
+  private final Vector2 translation = new Vector2(0, 0);
+  private final Vector2 moduleVelocity = new Vector2(0, 0);
+  private final double[] moduleVelocityX, moduleVelocityY;
+
+  private final Rigidbody rigidbody;
+
+  /** Where the modules think the robot is, see SwerveOdometry. */
+  private final SwerveOdometry odometry;
+
+  /** A swerve with the usual values, from Constants. */
+  public Swerve() {
+    this(new SwerveConfig());
+  }
+
+  public Swerve(SwerveConfig config) {
+    this.config = config;
+    track = config.trackMeters;
+    wheelbase = config.wheelbaseMeters;
+
+    modules =
+      new SwerveModule[] {
+        new SwerveModule(config), // Top right
+        new SwerveModule(config), // Top left
+        new SwerveModule(config), // Bottom right
+        new SwerveModule(config), // Bottom left
+      };
+    modulePositions =
+      new Vector2[] {
+        new Vector2(track / 2, wheelbase / 2),
+        new Vector2(-track / 2, wheelbase / 2),
+        new Vector2(track / 2, -wheelbase / 2),
+        new Vector2(-track / 2, -wheelbase / 2),
+      };
+    kinematics = new SwerveKinematics(modulePositions);
+    moduleVelocityX = new double[modules.length];
+    moduleVelocityY = new double[modules.length];
+
+    rigidbody =
+      new Rigidbody(
+        // Starts in the center of the field
+        new Vector2(Field.WIDTH_METERS / 2, Field.HEIGHT_METERS / 2),
+        // Faces 0 degrees
+        Math.toRadians(0),
+        // Some made up physics constants
+        config.massKg,
+        config.momentOfInertia
+      );
+    odometry = new SwerveOdometry(this);
+  }
+
+  public SwerveConfig getConfig() {
+    return config;
+  }
 
   public Rigidbody getRigidbody() {
     return rigidbody;
   }
 
-  public void draw(GraphicsContext ctx) {
+  /** Puts the robot somewhere else, at rest, and tells the odometry. */
+  public void setPose(double x, double y, double headingRadians) {
+    rigidbody.setPosition(new Vector2(x, y));
+    rigidbody.setHeadingRadians(headingRadians);
+    rigidbody.setVelocity(new Vector2(0, 0));
+    rigidbody.setAngularVelocity(0);
+    odometry.resetPose(x, y, headingRadians);
+  }
+
+  public SwerveKinematics getKinematics() {
+    return kinematics;
+  }
+
+  public SwerveOdometry getOdometry() {
+    return odometry;
+  }
+
+  /** Where each module is, relative to the center of the chassis.
+   * Don't change them.
+   */
+  public Vector2[] getModulePositions() {
+    return modulePositions.clone();
+  }
+
+  public int getModuleCount() {
+    return modules.length;
+  }
+
+  public SwerveModule getModule(int i) {
+    return modules[i];
+  }
+
+  /** Copies what draw() needs into `out`. */
+  public void snapshot(Snapshot out) {
+    PhysicsWorld world = rigidbody.getWorld();
+    int handle = rigidbody.getHandle();
+    out.previousX = world.previousX[handle];
+    out.previousY = world.previousY[handle];
+    out.previousHeading = world.previousHeading[handle];
+    out.x = world.x[handle];
+    out.y = world.y[handle];
+    out.heading = world.heading[handle];
+    out.velocityX = world.velocityX[handle];
+    out.velocityY = world.velocityY[handle];
+    out.track = track;
+    out.wheelbase = wheelbase;
+
+    for (int i = 0; i < modules.length; i++) {
+      out.modulePositionX[i] = modulePositions[i].x;
+      out.modulePositionY[i] = modulePositions[i].y;
+      out.moduleVelocityX[i] = modules[i].getVelocity().x;
+      out.moduleVelocityY[i] = modules[i].getVelocity().y;
+      out.moduleTargetX[i] = modules[i].getTargetVelocity().x;
+      out.moduleTargetY[i] = modules[i].getTargetVelocity().y;
+    }
+  }
+
+  /** Draws the swerve in a snapshot (see Snapshot), `interpolation`
+   * of the way from before its last update to after.
+   */
+  public static void draw(
+    GraphicsContext ctx,
+    Snapshot snapshot,
+    double interpolation
+  ) {
+    double track = snapshot.track, wheelbase = snapshot.wheelbase;
+
     ctx.save();
 
     // Draw with swerve at (0, 0)
-    ctx.translate(rigidbody.getPosition().x, rigidbody.getPosition().y);
+    ctx.translate(
+      Snapshot.interpolate(snapshot.previousX, snapshot.x, interpolation),
+      Snapshot.interpolate(snapshot.previousY, snapshot.y, interpolation)
+    );
 
-    Vector2 velocity = rigidbody.getVelocity();
+    Vector2 velocity = new Vector2(snapshot.velocityX, snapshot.velocityY);
     Vector2 velocityDirection = velocity.normalize();
     velocity.draw(ctx, velocityDirection.x, velocityDirection.y, Color.ORANGE);
 
     // Then rotate so 0 degrees is the front of the robot.
-    ctx.rotate(Math.toDegrees(rigidbody.getHeadingRadians()));
+    double heading = Snapshot.interpolateAngle(
+      snapshot.previousHeading,
+      snapshot.heading,
+      interpolation
+    );
+    ctx.rotate(Math.toDegrees(heading));
 
     ctx.setLineWidth(0.03);
 
@@ -63,17 +174,20 @@ public class Swerve {
       .draw(ctx, -arrowLength / 2 - 0.02, 0, Color.RED);
 
     // Draw each module.
-    for (int i = 0; i < modules.length; i++) {
-      SwerveModule module = modules[i];
-      Vector2 modulePosition = modulePositions[i];
-      module.draw(ctx, modulePosition);
+    for (int i = 0; i < snapshot.modulePositionX.length; i++) {
+      SwerveModule.draw(
+        ctx,
+        new Vector2(snapshot.modulePositionX[i], snapshot.modulePositionY[i]),
+        new Vector2(snapshot.moduleVelocityX[i], snapshot.moduleVelocityY[i]),
+        new Vector2(snapshot.moduleTargetX[i], snapshot.moduleTargetY[i])
+      );
     }
 
     ctx.restore();
   }
 
   public void setCenterOfRotation(Vector2 centerOfRotation) {
-    this.centerOfRotation = centerOfRotation;
+    kinematics.setCenterOfRotation(centerOfRotation.x, centerOfRotation.y);
   }
 
   public void drive(
@@ -81,38 +195,27 @@ public class Swerve {
     double targetAngularVelocityRadiansPerSecond,
     boolean fieldOriented
   ) {
+    // Copy into scratch space rather than changing the caller's vector.
+    translation.set(targetTransVelocityMetersPerSecond);
     if (fieldOriented) {
-      targetTransVelocityMetersPerSecond =
-        targetTransVelocityMetersPerSecond.rotate(
-          rigidbody.getHeadingRadians()
-        );
+      translation.rotateEquals(rigidbody.getHeadingRadians());
     }
 
-    Vector2[] moduleVelocities = new Vector2[modules.length];
-    double maxSpeed = 0;
+    // Positive angular velocity here turns clockwise (E turns right),
+    // but SwerveKinematics counts counterclockwise, like the heading.
+    kinematics.toModuleVelocities(
+      translation.x,
+      translation.y,
+      -targetAngularVelocityRadiansPerSecond,
+      config.maxSpeedMetersPerSecond,
+      moduleVelocityX,
+      moduleVelocityY
+    );
 
     for (int i = 0; i < modules.length; i++) {
-      Vector2 modulePosition = modulePositions[i];
-      Vector2 offset = modulePosition.minus(centerOfRotation);
-      Vector2 perp = offset.ninetyCounterClockwise();
-      Vector2 moduleVelocity = targetTransVelocityMetersPerSecond.plus(
-        perp.times(targetAngularVelocityRadiansPerSecond)
+      modules[i].drive(
+        moduleVelocity.set(moduleVelocityX[i], moduleVelocityY[i])
       );
-      moduleVelocities[i] = moduleVelocity;
-      maxSpeed = Math.max(maxSpeed, moduleVelocity.magnitude());
-    }
-
-    if (maxSpeed > Drivebase.MAX_SPEED_METERS_PER_SECOND) {
-      double scalingFactor = Drivebase.MAX_SPEED_METERS_PER_SECOND / maxSpeed;
-      for (int i = 0; i < moduleVelocities.length; i++) {
-        moduleVelocities[i] = moduleVelocities[i].times(scalingFactor);
-      }
-    }
-
-    for (int i = 0; i < modules.length; i++) {
-      SwerveModule module = modules[i];
-      Vector2 moduleVelocity = moduleVelocities[i];
-      module.drive(moduleVelocity);
     }
   }
 
@@ -126,5 +229,6 @@ public class Swerve {
     }
 
     rigidbody.update(dt);
+    odometry.update(this, dt);
   }
 }
@@ -0,0 +1,85 @@
+package swerve;
+
+import swerve.Constants.Drivebase;
+import swerve.Constants.PID;
+
+/** Every number that decides how a Swerve behaves: its gains,
+ * mass, friction, gear ratios and so on.
+ *
+ * The interactive App just uses the values in Constants, which is what
+ * `new SwerveConfig()` gives you. But to try out lots of different
+ * values (see swerve.sim.Sweep), each Swerve needs its own copy that
+ * can be changed without touching anyone else's, so Swerve and
+ * SwerveModule read everything from one of these instead.
+ *
+ * The fields are public and can be changed freely, but change them
+ * *before* you make a Swerve with it, not while it's driving.
+ */
+public class SwerveConfig {
+
+  public double maxSpeedMetersPerSecond =
+    Drivebase.MAX_SPEED_METERS_PER_SECOND;
+  public double maxAngularSpeedRadiansPerSecond =
+    Drivebase.MAX_ANGULAR_SPEED_RADIANS_PER_SECOND;
+
+  public double friction = Drivebase.FRICTION;
+  public double massKg = Drivebase.MASS_KG;
+  public double momentOfInertia = Drivebase.MOMENT_OF_INERTIA;
+  public double trackMeters = Drivebase.TRACK_METERS;
+  public double wheelbaseMeters = Drivebase.WHEELBASE_METERS;
+
+  public double steeringGearRatio = Drivebase.STEERING_GEAR_RATIO;
+  public double drivingGearRatio = Drivebase.DRIVING_GEAR_RATIO;
+  public double wheelDiameter = Drivebase.WHEEL_DIAMETER;
+
+  public double driveP = PID.DRIVE_P;
+  public double driveI = PID.DRIVE_I;
+  public double driveD = PID.DRIVE_D;
+
+  public double steerP = PID.STEER_P;
+  public double steerI = PID.STEER_I;
+  public double steerD = PID.STEER_D;
+
+  public double wheelCircumference() {
+    return wheelDiameter * Math.PI;
+  }
+
+  public SwerveConfig copy() {
+    SwerveConfig copy = new SwerveConfig();
+    copy.maxSpeedMetersPerSecond = maxSpeedMetersPerSecond;
+    copy.maxAngularSpeedRadiansPerSecond = maxAngularSpeedRadiansPerSecond;
+    copy.friction = friction;
+    copy.massKg = massKg;
+    copy.momentOfInertia = momentOfInertia;
+    copy.trackMeters = trackMeters;
+    copy.wheelbaseMeters = wheelbaseMeters;
+    copy.steeringGearRatio = steeringGearRatio;
+    copy.drivingGearRatio = drivingGearRatio;
+    copy.wheelDiameter = wheelDiameter;
+    copy.driveP = driveP;
+    copy.driveI = driveI;
+    copy.driveD = driveD;
+    copy.steerP = steerP;
+    copy.steerI = steerI;
+    copy.steerD = steerD;
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "drive PID (%.3g, %.3g, %.3g), steer PID (%.3g, %.3g, %.3g), " +
+      "mass %.3g kg, friction %.3g, gear ratios %.4g / %.4g",
+      driveP,
+      driveI,
+      driveD,
+      steerP,
+      steerI,
+      steerD,
+      massKg,
+      friction,
+      drivingGearRatio,
+      steeringGearRatio
+    );
+  }
+}
@@ -0,0 +1,154 @@
+package swerve;
+
+/** Works out what every module has to do to move the chassis a given
+ * way ("inverse kinematics", the other way round from SwerveOdometry).
+ *
+ * Module i, at (x_i, y_i) relative to the center of rotation, has to
+ * move at
+ *
+ *   vx_i = vx - omega * y_i
+ *   vy_i = vy + omega * x_i
+ *
+ * for the chassis to move at (vx, vy) (in chassis space) while turning
+ * at omega (counterclockwise). If any module would have to go faster
+ * than it can, they're all slowed down by the same amount, so the
+ * robot still goes the right way, just slower ("desaturating").
+ *
+ * The results go into arrays you pass in, so nothing is allocated.
+ * There's also a batch version, for e.g. a planner that wants to try
+ * out thousands of commands at once, which saves a call (and a few
+ * square roots) per command, and keeps everything in flat arrays.
+ *
+ * Any number of modules, anywhere.
+ */
+public class SwerveKinematics {
+
+  private final int n;
+  private final double[] moduleX, moduleY;
+  /** The modules relative to the center of rotation. */
+  private final double[] offsetX, offsetY;
+
+  public SwerveKinematics(
+    Vector2[] modulePositions,
+    Vector2 centerOfRotation
+  ) {
+    n = modulePositions.length;
+    moduleX = new double[n];
+    moduleY = new double[n];
+    offsetX = new double[n];
+    offsetY = new double[n];
+    for (int i = 0; i < n; i++) {
+      moduleX[i] = modulePositions[i].x;
+      moduleY[i] = modulePositions[i].y;
+    }
+    setCenterOfRotation(centerOfRotation.x, centerOfRotation.y);
+  }
+
+  /** Turning around the center of the chassis. */
+  public SwerveKinematics(Vector2[] modulePositions) {
+    this(modulePositions, new Vector2(0, 0));
+  }
+
+  public int getModuleCount() {
+    return n;
+  }
+
+  public void setCenterOfRotation(double x, double y) {
+    for (int i = 0; i < n; i++) {
+      offsetX[i] = moduleX[i] - x;
+      offsetY[i] = moduleY[i] - y;
+    }
+  }
+
+  /** Writes module i's velocity (in chassis space) into
+   * (outX[i], outY[i]), slowed down so no module goes faster than
+   * `maxSpeed`.
+   */
+  public void toModuleVelocities(
+    double vx,
+    double vy,
+    double omega,
+    double maxSpeed,
+    double[] outX,
+    double[] outY
+  ) {
+    double fastest = 0;
+    for (int i = 0; i < n; i++) {
+      double x = vx - omega * offsetY[i];
+      double y = vy + omega * offsetX[i];
+      outX[i] = x;
+      outY[i] = y;
+      fastest = Math.max(fastest, Math.sqrt(x * x + y * y));
+    }
+
+    if (fastest > maxSpeed) {
+      double scale = maxSpeed / fastest;
+      for (int i = 0; i < n; i++) {
+        outX[i] *= scale;
+        outY[i] *= scale;
+      }
+    }
+  }
+
+  /** The same, but as each module's speed and which way it should
+   * point (relative to the chassis). A module that shouldn't move at
+   * all gets angle 0.
+   */
+  public void toModuleStates(
+    double vx,
+    double vy,
+    double omega,
+    double maxSpeed,
+    double[] speeds,
+    double[] angles
+  ) {
+    // Use the outputs as scratch space for the velocities first.
+    toModuleVelocities(vx, vy, omega, maxSpeed, speeds, angles);
+    for (int i = 0; i < n; i++) {
+      double x = speeds[i], y = angles[i];
+      speeds[i] = Math.sqrt(x * x + y * y);
+      angles[i] = Math.atan2(y, x);
+    }
+  }
+
+  /** toModuleStates() for `count` commands at once: command c is
+   * (vx[c], vy[c], omega[c]), and module i's speed and angle for it go
+   * in speeds[c * n + i] and angles[c * n + i], where n is the number
+   * of modules. It's safe to call from several threads at once (e.g.
+   * from a parallel stream), as long as each has its own arrays.
+   */
+  public void toModuleStates(
+    double[] vx,
+    double[] vy,
+    double[] omega,
+    int count,
+    double maxSpeed,
+    double[] speeds,
+    double[] angles
+  ) {
+    for (int c = 0; c < count; c++) {
+      int base = c * n;
+      double commandX = vx[c], commandY = vy[c], commandOmega = omega[c];
+
+      // Squared speeds, so there's only one square root per command
+      // until the end.
+      double fastestSquared = 0;
+      for (int i = 0; i < n; i++) {
+        double x = commandX - commandOmega * offsetY[i];
+        double y = commandY + commandOmega * offsetX[i];
+        speeds[base + i] = x;
+        angles[base + i] = y;
+        fastestSquared = Math.max(fastestSquared, x * x + y * y);
+      }
+
+      double scale = fastestSquared > maxSpeed * maxSpeed
+        ? maxSpeed / Math.sqrt(fastestSquared)
+        : 1;
+      for (int i = base; i < base + n; i++) {
+        double x = speeds[i], y = angles[i];
+        speeds[i] = Math.sqrt(x * x + y * y) * scale;
+        angles[i] = Math.atan2(y, x);
+      }
+    }
+  }
+}
@@ -2,49 +2,102 @@ package swerve;
 
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
-import swerve.Constants.Drivebase;
-import swerve.Constants.PID;
 
 public class SwerveModule {
 
-  private final PIDController steerPid = new PIDController(
-    PID.STEER_P,
-    PID.STEER_I,
-    PID.STEER_D
-  );
+  private final SwerveConfig config;
+  private final PIDController steerPid;
+  private final PIDController drivePid;
 
-  private final PIDController drivePid = new PIDController(
-    PID.DRIVE_P,
-    PID.DRIVE_I,
-    PID.DRIVE_D
-  );
+  private final Vector2 velocity = new Vector2(0, 0);
+  private final Vector2 targetVelocity = new Vector2(0, 0);
 
-  private Vector2 velocity = new Vector2(0, 0);
-  private Vector2 targetVelocity = new Vector2(0, 0);
+  /** Scratch space for update() and applyPhysics(), which run every
+   * tick, so they don't have to make new vectors every time.
+   */
+  private final Vector2 currentTargetVelocity = new Vector2(0, 0);
+  private final Vector2 absoluteCurrentVelocity = new Vector2(0, 0);
 
   private double headingAngle = 0;
   private double speedRotations = 0;
 
   public SwerveModule() {
+    this(new SwerveConfig());
+  }
+
+  public SwerveModule(SwerveConfig config) {
+    this(
+      config,
+      new PIDController(config.steerP, config.steerI, config.steerD),
+      new PIDController(config.driveP, config.driveI, config.driveD)
+    );
+  }
+
+  /** A module with controllers of your choosing (the gains in `config`
+   * are ignored), e.g. to try out different gains, see swerve.sim.PidTuner.
+   */
+  public SwerveModule(
+    SwerveConfig config,
+    PIDController steerPid,
+    PIDController drivePid
+  ) {
+    this.config = config;
+    this.steerPid = steerPid;
+    this.drivePid = drivePid;
     steerPid.setContinuous(-Math.PI, Math.PI);
   }
 
+  /** Which way the wheel points, relative to the robot. */
+  public double getHeadingRadians() {
+    return headingAngle;
+  }
+
+  /** The wheel's velocity, relative to the robot. Like
+   * Rigidbody.getVelocity(), don't change it.
+   */
+  public Vector2 getVelocity() {
+    return velocity;
+  }
+
+  public Vector2 getTargetVelocity() {
+    return targetVelocity;
+  }
+
+  /** How fast the wheel is rolling. */
+  public double getSpeedMetersPerSecond() {
+    return rotationsPerSecondToMeters(speedRotations);
+  }
+
+  /** How far off the steering was last update(), in radians. */
+  public double getSteerError() {
+    return steerPid.getLastError();
+  }
+
+  /** How far off the wheel speed was last update(), in rotations per
+   * second.
+   */
+  public double getDriveError() {
+    return drivePid.getLastError();
+  }
+
   public void drive(Vector2 targetVelocity) {
-    this.targetVelocity = targetVelocity;
+    this.targetVelocity.set(targetVelocity);
   }
 
-  private static double metersToRotationsPerSecond(double meters) {
-    return meters / Drivebase.WHEEL_CIRCUMFERENCE;
+  private double metersToRotationsPerSecond(double meters) {
+    return meters / config.wheelCircumference();
   }
 
-  private static double rotationsPerSecondToMeters(double rotations) {
-    return rotations * Drivebase.WHEEL_CIRCUMFERENCE;
+  private double rotationsPerSecondToMeters(double rotations) {
+    return rotations * config.wheelCircumference();
   }
 
   public void update(double dt) {
-    Vector2 heading = Vector2.unitCircle(headingAngle);
-    double targetSpeed = targetVelocity.dot(heading);
-    Vector2 currentTargetVelocity = targetVelocity.times(targetSpeed);
+    // The dot product with the unit vector pointing at headingAngle.
+    double targetSpeed =
+      targetVelocity.x * Math.cos(headingAngle) +
+      targetVelocity.y * Math.sin(headingAngle);
+    currentTargetVelocity.set(targetVelocity).timesEquals(targetSpeed);
 
     double targetHeadingAngle = currentTargetVelocity.magnitude() < 1e-3
       ? targetVelocity.angle()
@@ -52,18 +105,17 @@ public class SwerveModule {
     double steering = steerPid.calculate(headingAngle, targetHeadingAngle);
     headingAngle =
       Utils.angleModulusRadians(
-        headingAngle + Drivebase.STEERING_GEAR_RATIO * steering * dt
+        headingAngle + config.steeringGearRatio * steering * dt
       );
 
     double targetSpeedRotations = metersToRotationsPerSecond(targetSpeed);
     double driving = drivePid.calculate(speedRotations, targetSpeedRotations);
-    speedRotations += Drivebase.DRIVING_GEAR_RATIO * driving * dt;
+    speedRotations += config.drivingGearRatio * driving * dt;
 
-    velocity =
-      Vector2.fromPolar(
-        rotationsPerSecondToMeters(speedRotations),
-        headingAngle
-      );
+    velocity.setPolar(
+      rotationsPerSecondToMeters(speedRotations),
+      headingAngle
+    );
   }
 
   public void applyPhysics(
@@ -74,18 +126,26 @@ public class SwerveModule {
     // Applied force (for simplicity the same as velocity)
     // is in *world* space, so we transform the velocity from
     // module space.
-    Vector2 absoluteCurrentVelocity = velocity.rotate(
-      -rigidbody.getHeadingRadians()
-    );
+    absoluteCurrentVelocity
+      .set(velocity)
+      .rotateEquals(-rigidbody.getHeadingRadians());
     // But torque is applied "locally" to an object relative to
     // its center of mass (in this case the center of the drivebase),
     // so we don't rotate it here.
     double torque = modulePosition.crossZ(velocity); // Torque = r x F
     rigidbody.applyImpulse(absoluteCurrentVelocity, torque, dt);
-    rigidbody.applyFriction(Drivebase.FRICTION, dt);
+    rigidbody.applyFriction(config.friction, dt);
   }
 
-  public void draw(GraphicsContext ctx, Vector2 modulePosition) {
+  /** Draws a module (whose velocity and target velocity were copied
+   * out of it earlier, see Snapshot).
+   */
+  public static void draw(
+    GraphicsContext ctx,
+    Vector2 modulePosition,
+    Vector2 velocity,
+    Vector2 targetVelocity
+  ) {
     // Note that SwerveModule expects to be drawn
     // in *chassis space*. So (0, 0) is *not* the bottom left
     // of the screen like it is in "world space", but is the
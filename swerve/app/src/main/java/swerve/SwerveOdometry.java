@@ -0,0 +1,226 @@
+package swerve;
+
+/** Works out where the robot is from what its modules say they're
+ * doing ("odometry"), the way a real robot has to: it can't ask the
+ * physics engine, all it has is each wheel's angle and speed.
+ *
+ * Swerve.drive() goes from a chassis velocity to module velocities
+ * ("inverse kinematics"): module i, at (x_i, y_i) from the center,
+ * moves at
+ *
+ *   vx_i = vx - omega * y_i
+ *   vy_i = vy + omega * x_i
+ *
+ * where (vx, vy) is the chassis velocity (in chassis space) and omega
+ * how fast it's turning (counterclockwise, like the heading). Odometry
+ * goes the other way ("forward kinematics"). Every module gives two of
+ * those equations but there are only three unknowns, and real wheels
+ * slip and real sensors are noisy, so they won't all agree. So we pick
+ * the (vx, vy, omega) that fits them best, i.e. with the smallest total
+ * squared error: "least squares".
+ *
+ * Written as a matrix equation, that's A * (vx, vy, omega) = v, where
+ * v has all the module velocities, and the best fit is
+ * (vx, vy, omega) = pinv(A) * v, pinv(A) = (A^T A)^-1 A^T being A's
+ * "pseudoinverse". A only depends on where the modules are, so we
+ * work pinv(A) out once up front, and each update is just a few
+ * multiplications.
+ *
+ * Then we move the pose along by that velocity. Just adding
+ * velocity * dt assumes the robot went in a straight line, which it
+ * doesn't if it's turning at the same time, so we use the "pose
+ * exponential", which works out the arc it actually drove along.
+ *
+ * Any number of modules, anywhere (as long as there are at least two,
+ * in different places), and nothing is allocated per update, so it's
+ * fine to run it 1000 times a second.
+ */
+public class SwerveOdometry {
+
+  private final int n;
+  /** pinv(A), 3 rows of 2n, by rows: vx, vy, omega. */
+  private final double[] pseudoinverse;
+
+  private double x, y, headingRadians;
+  private double velocityX, velocityY, angularVelocity;
+
+  /** Odometry for modules at `modulePositions` (in chassis space),
+   * starting at the given pose.
+   */
+  public SwerveOdometry(
+    Vector2[] modulePositions,
+    double x,
+    double y,
+    double headingRadians
+  ) {
+    n = modulePositions.length;
+
+    // A has rows (1, 0, -y_i) and (0, 1, x_i) for each module.
+    double[][] a = new double[2 * n][];
+    for (int i = 0; i < n; i++) {
+      a[2 * i] = new double[] { 1, 0, -modulePositions[i].y };
+      a[2 * i + 1] = new double[] { 0, 1, modulePositions[i].x };
+    }
+
+    double[][] ata = new double[3][3];
+    for (double[] row : a) {
+      for (int r = 0; r < 3; r++) {
+        for (int c = 0; c < 3; c++) {
+          ata[r][c] += row[r] * row[c];
+        }
+      }
+    }
+    double[][] inverse = invert3x3(ata);
+
+    pseudoinverse = new double[3 * 2 * n];
+    for (int r = 0; r < 3; r++) {
+      for (int j = 0; j < 2 * n; j++) {
+        double sum = 0;
+        for (int k = 0; k < 3; k++) {
+          sum += inverse[r][k] * a[j][k];
+        }
+        pseudoinverse[r * 2 * n + j] = sum;
+      }
+    }
+
+    resetPose(x, y, headingRadians);
+  }
+
+  /** Odometry for a Swerve's modules, starting where it is now. */
+  public SwerveOdometry(Swerve swerve) {
+    this(
+      swerve.getModulePositions(),
+      swerve.getRigidbody().getPosition().x,
+      swerve.getRigidbody().getPosition().y,
+      swerve.getRigidbody().getHeadingRadians()
+    );
+  }
+
+  private static double[][] invert3x3(double[][] m) {
+    double a = m[0][0], b = m[0][1], c = m[0][2];
+    double d = m[1][0], e = m[1][1], f = m[1][2];
+    double g = m[2][0], h = m[2][1], i = m[2][2];
+    double determinant =
+      a * (e * i - f * h) - b * (d * i - f * g) + c * (d * h - e * g);
+    if (Math.abs(determinant) < 1e-12) {
+      throw new IllegalArgumentException(
+        "Can't tell how the robot turns from these module positions"
+      );
+    }
+    double s = 1 / determinant;
+    return new double[][] {
+      { (e * i - f * h) * s, (c * h - b * i) * s, (b * f - c * e) * s },
+      { (f * g - d * i) * s, (a * i - c * g) * s, (c * d - a * f) * s },
+      { (d * h - e * g) * s, (b * g - a * h) * s, (a * e - b * d) * s },
+    };
+  }
+
+  public void resetPose(double x, double y, double headingRadians) {
+    this.x = x;
+    this.y = y;
+    this.headingRadians = headingRadians;
+    velocityX = 0;
+    velocityY = 0;
+    angularVelocity = 0;
+  }
+
+  /** Moves the pose along by dt seconds, given every module's heading
+   * (relative to the chassis) and speed, in the same order as the
+   * positions given to the constructor.
+   */
+  public void update(
+    double[] moduleHeadings,
+    double[] moduleSpeeds,
+    double dt
+  ) {
+    double vx = 0, vy = 0, omega = 0;
+    int columns = 2 * n;
+    for (int i = 0; i < n; i++) {
+      double moduleX = moduleSpeeds[i] * Math.cos(moduleHeadings[i]);
+      double moduleY = moduleSpeeds[i] * Math.sin(moduleHeadings[i]);
+      int j = 2 * i;
+      vx += pseudoinverse[j] * moduleX + pseudoinverse[j + 1] * moduleY;
+      vy +=
+        pseudoinverse[columns + j] * moduleX +
+        pseudoinverse[columns + j + 1] * moduleY;
+      omega +=
+        pseudoinverse[2 * columns + j] * moduleX +
+        pseudoinverse[2 * columns + j + 1] * moduleY;
+    }
+    integrate(vx, vy, omega, dt);
+  }
+
+  /** The same, reading the modules straight out of a Swerve. */
+  public void update(Swerve swerve, double dt) {
+    double vx = 0, vy = 0, omega = 0;
+    int columns = 2 * n;
+    for (int i = 0; i < n; i++) {
+      Vector2 velocity = swerve.getModule(i).getVelocity();
+      int j = 2 * i;
+      vx += pseudoinverse[j] * velocity.x + pseudoinverse[j + 1] * velocity.y;
+      vy +=
+        pseudoinverse[columns + j] * velocity.x +
+        pseudoinverse[columns + j + 1] * velocity.y;
+      omega +=
+        pseudoinverse[2 * columns + j] * velocity.x +
+        pseudoinverse[2 * columns + j + 1] * velocity.y;
+    }
+    integrate(vx, vy, omega, dt);
+  }
+
+  private void integrate(double vx, double vy, double omega, double dt) {
+    velocityX = vx;
+    velocityY = vy;
+    angularVelocity = omega;
+
+    // How far we went in chassis space, along an arc: moving at a
+    // steady (vx, vy) while turning at a steady omega. (For tiny
+    // turns, sin(t) / t and (1 - cos(t)) / t are worked out with their
+    // Taylor series instead, since dividing by ~0 loses precision.)
+    double dx = vx * dt, dy = vy * dt, turn = omega * dt;
+    double sinOverTurn, cosOverTurn;
+    if (Math.abs(turn) < 1e-6) {
+      sinOverTurn = 1 - turn * turn / 6;
+      cosOverTurn = turn / 2;
+    } else {
+      sinOverTurn = Math.sin(turn) / turn;
+      cosOverTurn = (1 - Math.cos(turn)) / turn;
+    }
+    double localX = dx * sinOverTurn - dy * cosOverTurn;
+    double localY = dx * cosOverTurn + dy * sinOverTurn;
+
+    // Then turn that into field space.
+    double cos = Math.cos(headingRadians), sin = Math.sin(headingRadians);
+    x += cos * localX - sin * localY;
+    y += sin * localX + cos * localY;
+    headingRadians = Utils.angleModulusRadians(headingRadians + turn);
+  }
+
+  public double getX() {
+    return x;
+  }
+
+  public double getY() {
+    return y;
+  }
+
+  public double getHeadingRadians() {
+    return headingRadians;
+  }
+
+  /** The chassis velocity from the last update, in chassis space. */
+  public double getVelocityX() {
+    return velocityX;
+  }
+
+  public double getVelocityY() {
+    return velocityY;
+  }
+
+  /** How fast the chassis was turning at the last update
+   * (counterclockwise, in radians per second).
+   */
+  public double getAngularVelocity() {
+    return angularVelocity;
+  }
+}
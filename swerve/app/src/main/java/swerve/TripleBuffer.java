@@ -0,0 +1,70 @@
+package swerve;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/** Hands things (e.g. Snapshots) from one thread that writes them to
+ * another that reads them, without either ever waiting for the other.
+ *
+ * With one buffer, the reader could see it half written. With two
+ * (write one while reading the other, then swap), someone has to wait
+ * whenever the other is in the middle of something. With three, there's
+ * always a spare: the writer has one, the reader has one, and the third
+ * holds the latest finished one. When the writer finishes, it swaps
+ * its buffer with that "ready" one; when the reader wants something
+ * new, it swaps its buffer with the ready one (if it's new). The swap
+ * is a single atomic operation, so there are no locks.
+ *
+ * The reader only ever gets the *latest* thing written: if the writer
+ * is quicker, the ones in between are just written over.
+ *
+ * Each buffer gets reused, so don't hold on to one after the next
+ * read() (or, for the writer, publish()).
+ */
+public class TripleBuffer<T> {
+
+  /** Set in `ready` when the ready buffer hasn't been read yet. */
+  private static final int FRESH = 4;
+  private static final int INDEX = 3;
+
+  private final Object[] buffers = new Object[3];
+  /** Only the writer thread touches `writing`, only the reader `reading`. */
+  private int writing = 0;
+  private int reading = 1;
+  private final AtomicInteger ready = new AtomicInteger(2);
+
+  public TripleBuffer(Supplier<T> create) {
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = create.get();
+    }
+  }
+
+  /** The buffer to write the next thing into. (Writer only.) */
+  @SuppressWarnings("unchecked")
+  public T writeBuffer() {
+    return (T) buffers[writing];
+  }
+
+  /** Makes what's been written in writeBuffer() the latest, and
+   * switches to another buffer for the next one. (Writer only.)
+   */
+  public void publish() {
+    writing = ready.getAndSet(writing | FRESH) & INDEX;
+  }
+
+  /** Whether there's something newer than what read() last returned. */
+  public boolean hasNew() {
+    return (ready.get() & FRESH) != 0;
+  }
+
+  /** The latest published thing (or, if nothing's been published yet,
+   * whatever the Supplier made). (Reader only.)
+   */
+  @SuppressWarnings("unchecked")
+  public T read() {
+    if (hasNew()) {
+      reading = ready.getAndSet(reading) & INDEX;
+    }
+    return (T) buffers[reading];
+  }
+}
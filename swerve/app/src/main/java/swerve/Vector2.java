@@ -3,6 +3,20 @@ package swerve;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Paint;
 
+/** A 2D vector.
+ *
+ * Most methods (plus, times, rotate...) return a brand new Vector2
+ * and leave this one alone, which is the easiest to reason about.
+ * But creating objects isn't free: in code that runs for every module,
+ * every tick, the garbage adds up. So there are also "in-place"
+ * versions, named like plusEquals() after the += operator, that change
+ * this vector and return it (so they can be chained). The hot paths
+ * (Swerve, SwerveModule, Rigidbody) keep a few "scratch" vectors
+ * around and reuse them with these instead of allocating.
+ *
+ * x and y are public for reading. If you write them directly, angle()
+ * won't know they changed, so use set() or update() instead.
+ */
 public class Vector2 {
 
   public double x, y;
@@ -20,6 +34,23 @@ public class Vector2 {
     update(x, y);
   }
 
+  /** Same as update(), but returns this so it can be chained. */
+  public Vector2 set(double x, double y) {
+    update(x, y);
+    return this;
+  }
+
+  public Vector2 set(Vector2 other) {
+    update(other.x, other.y);
+    return this;
+  }
+
+  /** In-place fromPolar(). */
+  public Vector2 setPolar(double radius, double theta) {
+    update(radius * Math.cos(theta), radius * Math.sin(theta));
+    return this;
+  }
+
   public static Vector2 fromPolar(double radius, double theta) {
     return new Vector2(radius * Math.cos(theta), radius * Math.sin(theta));
   }
@@ -49,6 +80,27 @@ public class Vector2 {
     return this;
   }
 
+  public Vector2 minusEquals(Vector2 other) {
+    update(x - other.x, y - other.y);
+    return this;
+  }
+
+  public Vector2 timesEquals(double scalar) {
+    update(x * scalar, y * scalar);
+    return this;
+  }
+
+  /** this += other * scalar, without making a vector for other * scalar. */
+  public Vector2 addScaled(Vector2 other, double scalar) {
+    return addScaled(other.x, other.y, scalar);
+  }
+
+  /** this += (otherX, otherY) * scalar. */
+  public Vector2 addScaled(double otherX, double otherY, double scalar) {
+    update(x + otherX * scalar, y + otherY * scalar);
+    return this;
+  }
+
   public Vector2 times(double scalar) {
     return new Vector2(x * scalar, y * scalar);
   }
@@ -80,6 +132,7 @@ public class Vector2 {
     // changed since last call.)
     if (angleDirty) {
       angle = Math.atan2(y, x);
+      angleDirty = false;
     }
     return angle;
   }
@@ -89,10 +142,16 @@ public class Vector2 {
   }
 
   public Vector2 rotate(double radians) {
+    return new Vector2(x, y).rotateEquals(radians);
+  }
+
+  /** In-place rotate(). */
+  public Vector2 rotateEquals(double radians) {
     double cos = Math.cos(radians), sin = Math.sin(radians);
     double rotatedX = cos * x + sin * y;
     double rotatedY = -sin * x + cos * y;
-    return new Vector2(rotatedX, rotatedY);
+    update(rotatedX, rotatedY);
+    return this;
   }
 
   @Override
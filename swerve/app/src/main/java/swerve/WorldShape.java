@@ -0,0 +1,202 @@
+package swerve;
+
+import java.util.List;
+import swerve.Shape.Edges;
+
+/** A Shape placed somewhere in the world: moved to a position and
+ * turned to a heading.
+ *
+ * Shape.intersects() works in one shape's "local" space, so every
+ * test has to shift the other shape's points over first. When the
+ * same body gets tested against lots of others, it's cheaper to work
+ * out where its points are in the world once, keep them (along with
+ * a bounding box around them) and then compare world points directly.
+ * setPose() only redoes that when the body has actually moved.
+ *
+ * The same goes for the shape's convex pieces (if it has them),
+ * which intersects() and contact() test with the separating axis
+ * theorem, see Shape.Edges.overlapsConvex().
+ */
+public class WorldShape {
+
+  private final Shape shape;
+  private final Edges worldEdges;
+
+  /** The convex pieces, in the shape's space and in the world's.
+   * Null if the shape doesn't have any.
+   */
+  private final Edges[] pieces, worldPieces;
+
+  private double x, y, headingRadians;
+  private double cos = 1, sin = 0;
+  private boolean posed = false;
+  private double minX, minY, maxX, maxY;
+
+  public WorldShape(Shape shape) {
+    this.shape = shape;
+    this.worldEdges = new Edges(shape.edges().n());
+
+    List<Edges> convexPieces = shape.convexPieces();
+    if (convexPieces == null) {
+      pieces = null;
+      worldPieces = null;
+    } else {
+      pieces = convexPieces.toArray(new Edges[0]);
+      worldPieces = new Edges[pieces.length];
+      for (int i = 0; i < pieces.length; i++) {
+        // A convex shape is its own only piece, so don't move it twice.
+        worldPieces[i] =
+          pieces[i] == shape.edges() ? worldEdges : new Edges(pieces[i].n());
+      }
+    }
+  }
+
+  public Shape getShape() {
+    return shape;
+  }
+
+  /** Moves the shape (if it's moved since last time). */
+  public void setPose(double x, double y, double headingRadians) {
+    if (
+      posed && x == this.x && y == this.y && headingRadians == this.headingRadians
+    ) {
+      return;
+    }
+    this.x = x;
+    this.y = y;
+    this.headingRadians = headingRadians;
+    posed = true;
+    cos = Math.cos(headingRadians);
+    sin = Math.sin(headingRadians);
+
+    shape.edges().transform(x, y, headingRadians, worldEdges);
+    if (pieces != null) {
+      for (int i = 0; i < pieces.length; i++) {
+        if (worldPieces[i] != worldEdges) {
+          pieces[i].transform(x, y, headingRadians, worldPieces[i]);
+        }
+      }
+    }
+
+    // Like Shape's bounds, the center counts as part of the shape.
+    minX = x;
+    minY = y;
+    maxX = x;
+    maxY = y;
+    for (int i = 0; i < worldEdges.n(); i++) {
+      minX = Math.min(minX, worldEdges.x(i));
+      minY = Math.min(minY, worldEdges.y(i));
+      maxX = Math.max(maxX, worldEdges.x(i));
+      maxY = Math.max(maxY, worldEdges.y(i));
+    }
+  }
+
+  public void setPose(Rigidbody rigidbody) {
+    Vector2 position = rigidbody.getPosition();
+    setPose(position.x, position.y, rigidbody.getHeadingRadians());
+  }
+
+  /** The edges, in world space. */
+  public Edges getEdges() {
+    return worldEdges;
+  }
+
+  public double getX() {
+    return x;
+  }
+
+  public double getY() {
+    return y;
+  }
+
+  public double getHeadingRadians() {
+    return headingRadians;
+  }
+
+  /** The bounding box, in world space. */
+  public double minX() {
+    return minX;
+  }
+
+  public double minY() {
+    return minY;
+  }
+
+  public double maxX() {
+    return maxX;
+  }
+
+  public double maxY() {
+    return maxY;
+  }
+
+  /** Whether the world point (x, y) is inside the shape. */
+  public boolean hit(double worldX, double worldY) {
+    // Undo the move and turn to get back into the shape's own space.
+    double dx = worldX - x, dy = worldY - y;
+    return shape.hit(cos * dx + sin * dy, -sin * dx + cos * dy);
+  }
+
+  private boolean boxesOverlap(WorldShape other) {
+    return (
+      other.minX <= maxX &&
+      other.maxX >= minX &&
+      other.minY <= maxY &&
+      other.maxY >= minY
+    );
+  }
+
+  /** The same test as Shape.intersects(), but in world space. */
+  public boolean intersects(WorldShape other) {
+    if (!boxesOverlap(other)) {
+      return false;
+    }
+
+    if (pieces != null && other.pieces != null) {
+      for (Edges piece : worldPieces) {
+        for (Edges otherPiece : other.worldPieces) {
+          if (piece.overlapsConvex(otherPiece, 0, 0, null)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    return (
+      worldEdges.intersects(other.worldEdges, 0, 0) || hit(other.x, other.y)
+    );
+  }
+
+  /** The same as Shape.contact(), but in world space. */
+  public boolean contact(WorldShape other, Contact contact) {
+    if (pieces == null || other.pieces == null) {
+      throw new UnsupportedOperationException(
+        "Contacts only work for shapes made of convex pieces"
+      );
+    }
+    if (!boxesOverlap(other)) {
+      return false;
+    }
+
+    boolean found = false;
+    double depth = 0, normalX = 0, normalY = 0;
+    for (Edges piece : worldPieces) {
+      for (Edges otherPiece : other.worldPieces) {
+        if (
+          piece.overlapsConvex(otherPiece, 0, 0, contact) &&
+          contact.depth > depth
+        ) {
+          found = true;
+          depth = contact.depth;
+          normalX = contact.normal.x;
+          normalY = contact.normal.y;
+        }
+      }
+    }
+    if (found) {
+      contact.set(normalX, normalY, depth);
+    }
+    return found;
+  }
+}
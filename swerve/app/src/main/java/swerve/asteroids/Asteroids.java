@@ -1,16 +1,21 @@
 package swerve.asteroids;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import javafx.scene.canvas.GraphicsContext;
 import swerve.Constants.Field;
+import swerve.PhysicsWorld;
 import swerve.Rigidbody;
 import swerve.Shape;
 import swerve.Shape.Edges;
 import swerve.Shape.Line;
 import swerve.Shape.Polygon;
+import swerve.Snapshot;
+import swerve.SpatialGrid;
 import swerve.Vector2;
+import swerve.WorldShape;
 
 /** Encapsulates the (extraneous) "Asteroids" logic!
  * Manages both an array of "Asteroids"
@@ -19,6 +24,8 @@ import swerve.Vector2;
 public class Asteroids {
 
   private static final int SCORE_PER_ASTEROID = 100;
+  /** You also get points for staying alive, this many per second. */
+  private static final double SCORE_PER_SECOND = 60;
 
   /** The difference between a base/abstract class and an interface
    * is that a class can extend ("be") only one base class, but can
@@ -32,16 +39,26 @@ public class Asteroids {
     public abstract Vector2 getPosition();
   }
 
-  class DestroyedSegment implements HasPosition, HasShape {
+  /** Everything that moves is a body in our PhysicsWorld. */
+  interface HasRigidbody {
+    public abstract Rigidbody getRigidbody();
+  }
+
+  class DestroyedSegment implements HasPosition, HasShape, HasRigidbody {
 
     private Line line;
-    private Vector2 position, velocity;
+    private Rigidbody rigidbody;
 
     private static double BLAST_SPEED = 10;
 
     @Override
     public Vector2 getPosition() {
-      return position;
+      return rigidbody.getPosition();
+    }
+
+    @Override
+    public Rigidbody getRigidbody() {
+      return rigidbody;
     }
 
     @Override
@@ -53,8 +70,8 @@ public class Asteroids {
       Vector2 middle = line.getStart().plus(line.getEnd()).divide(2);
       Vector2 blast = middle.rescale(BLAST_SPEED);
 
-      this.position = position.plus(middle);
-      this.velocity = velocity.plus(blast);
+      this.rigidbody = new Rigidbody(world, position.plus(middle), 0, 1, 1);
+      this.rigidbody.setVelocity(velocity.plus(blast));
 
       /** Center the given line so that (0, 0) is the middle of line,
        * rather than the center of the entity that line came from,
@@ -66,32 +83,13 @@ public class Asteroids {
       );
       this.line = centeredLine;
     }
-
-    public void update(double dt) {
-      position = position.plus(velocity.times(dt));
-    }
-
-    public void draw(GraphicsContext ctx) {
-      ctx.save();
-
-      ctx.translate(position.x, position.y);
-
-      ctx.setLineWidth(0.03);
-      ctx.strokeLine(
-        line.getStart().x,
-        line.getStart().y,
-        line.getEnd().x,
-        line.getEnd().y
-      );
-
-      ctx.restore();
-    }
   }
 
-  class Asteroid implements HasShape, HasPosition {
+  class Asteroid implements HasShape, HasPosition, HasRigidbody {
 
     private Polygon polygon;
     private Rigidbody rigidbody;
+    private WorldShape worldShape;
 
     @Override
     public Shape getShape() {
@@ -103,6 +101,11 @@ public class Asteroids {
       return rigidbody.getPosition();
     }
 
+    @Override
+    public Rigidbody getRigidbody() {
+      return rigidbody;
+    }
+
     Asteroid(
       Rigidbody rigidbody,
       double maxAngleStep,
@@ -122,33 +125,25 @@ public class Asteroids {
 
       Edges edges = new Edges(points);
       polygon = new Polygon(edges);
+      // The points go once around the center, so the polygon can be
+      // cut into convex pieces (see Polygon.convexPieces()) for the
+      // collision tests. WorldShape does that here, when it spawns.
+      worldShape = new WorldShape(polygon);
     }
 
-    public void draw(GraphicsContext ctx) {
-      ctx.save();
-
-      rigidbody.translate(ctx);
-      rigidbody.rotate(ctx);
-
-      ctx.setLineWidth(0.03);
-
-      Edges edges = polygon.edges();
-      edges.stroke(ctx);
-
-      ctx.restore();
-    }
-
-    public void update(double dt) {
-      // Rigidbody updates position
-      rigidbody.update(dt);
+    /** The polygon where the asteroid is now. */
+    public WorldShape worldShape() {
+      worldShape.setPose(rigidbody);
+      return worldShape;
     }
   }
 
-  class Pellet implements HasShape, HasPosition {
+  class Pellet implements HasShape, HasPosition, HasRigidbody {
 
-    private final Vector2 position, velocity;
+    private final Rigidbody rigidbody;
     private static final double PELLET_LENGTH = 0.1;
     private Edges line;
+    private WorldShape worldShape;
 
     @Override
     public Shape getShape() {
@@ -157,38 +152,68 @@ public class Asteroids {
 
     @Override
     public Vector2 getPosition() {
-      return position;
+      return rigidbody.getPosition();
+    }
+
+    @Override
+    public Rigidbody getRigidbody() {
+      return rigidbody;
     }
 
     public Pellet(Vector2 position, Vector2 velocity) {
-      this.position = position;
-      this.velocity = velocity;
+      this.rigidbody = new Rigidbody(world, position, 0, 1, 1);
+      this.rigidbody.setVelocity(velocity);
       this.line =
         new Edges(List.of(new Vector2(0, 0), velocity.rescale(PELLET_LENGTH)));
+      this.worldShape = new WorldShape(line);
     }
 
-    public void update(double dt) {
-      this.position.plusEquals(velocity.times(dt));
+    public WorldShape worldShape() {
+      worldShape.setPose(rigidbody);
+      return worldShape;
     }
+  }
 
-    public void draw(GraphicsContext ctx) {
-      ctx.save();
-
-      ctx.translate(position.x, position.y);
-
-      ctx.setLineWidth(0.03);
-      line.stroke(ctx);
+  /** Every asteroid, pellet and bit of debris is a body in here,
+   * so they can all be moved along in one go.
+   */
+  private final PhysicsWorld world = new PhysicsWorld(256);
 
-      ctx.restore();
-    }
-  }
+  /** The asteroids, by their index in `asteroids`, sorted into a
+   * grid so we only need to check things against the ones nearby.
+   * It covers the field plus a margin, since asteroids start off it.
+   */
+  private static final double GRID_MARGIN = 5;
+  private static final double GRID_CELL_SIZE = 2;
+  private final SpatialGrid asteroidGrid = new SpatialGrid(
+    -GRID_MARGIN,
+    -GRID_MARGIN,
+    Field.WIDTH_METERS + GRID_MARGIN,
+    Field.HEIGHT_METERS + GRID_MARGIN,
+    GRID_CELL_SIZE
+  );
+  private boolean asteroidGridDirty = true;
+  private int[] nearbyAsteroids = new int[16];
+
+  /** Which asteroids a pellet hit this tick, by index, see
+   * collidePelletsAndAsteroids(). Kept to save making one every tick.
+   */
+  private boolean[] hitAsteroids = new boolean[16];
 
   private int nAsteroids = 5;
   private List<Asteroid> asteroids = new ArrayList<>();
   private List<DestroyedSegment> destroyedSegments = new ArrayList<>();
   private List<Pellet> pellets = new ArrayList<>();
 
+  /** Handed out by asteroidShapes(). */
+  private final List<WorldShape> asteroidShapes = new ArrayList<>();
+
   private int score = 0;
+  /** Survival points not added to the score yet, since they're not
+   * a whole point. Going by time rather than one point per update
+   * means the score doesn't depend on how often we update.
+   */
+  private double partialScore = 0;
   private boolean ticking = true;
 
   public void setTicking(boolean ticking) {
@@ -197,6 +222,7 @@ public class Asteroids {
 
   public void setScore(int score) {
     this.score = score;
+    partialScore = 0;
   }
 
   public int getScore() {
@@ -204,31 +230,48 @@ public class Asteroids {
   }
 
   private void updateArrays(double dt) {
-    for (Asteroid asteroid : asteroids) {
-      asteroid.update(dt);
-    }
-
-    for (DestroyedSegment segment : destroyedSegments) {
-      segment.update(dt);
-    }
-
-    for (Pellet pellet : pellets) {
-      pellet.update(dt);
-    }
+    world.integrate(dt);
+    asteroidGridDirty = true;
   }
 
-  public void drawArrays(GraphicsContext ctx) {
-    for (Asteroid asteroid : asteroids) {
-      asteroid.draw(ctx);
+  /** Rebuilds the grid if anything's moved since it was last built. */
+  private void updateAsteroidGrid() {
+    if (!asteroidGridDirty) return;
+
+    asteroidGrid.clear();
+    for (int i = 0; i < asteroids.size(); i++) {
+      WorldShape shape = asteroids.get(i).worldShape();
+      asteroidGrid.add(
+        i,
+        shape.minX(),
+        shape.minY(),
+        shape.maxX(),
+        shape.maxY()
+      );
     }
+    asteroidGrid.build();
 
-    for (DestroyedSegment segment : destroyedSegments) {
-      segment.draw(ctx);
+    if (nearbyAsteroids.length < asteroids.size()) {
+      nearbyAsteroids = new int[asteroids.size() * 2];
     }
+    asteroidGridDirty = false;
+  }
 
-    for (Pellet pellet : pellets) {
-      pellet.draw(ctx);
-    }
+  /** Puts the indices of the asteroids near a shape into
+   * nearbyAsteroids, from the lowest index to the highest,
+   * and returns how many there are.
+   */
+  private int findNearbyAsteroids(WorldShape shape) {
+    updateAsteroidGrid();
+    int n = asteroidGrid.query(
+      shape.minX(),
+      shape.minY(),
+      shape.maxX(),
+      shape.maxY(),
+      nearbyAsteroids
+    );
+    Arrays.sort(nearbyAsteroids, 0, n);
+    return n;
   }
 
   private final Random random = new Random();
@@ -240,6 +283,7 @@ public class Asteroids {
     for (int i = 0; i < nAsteroids; i++) {
       asteroids.add(spawn());
     }
+    asteroidGridDirty = true;
   }
 
   public void shoot(Rigidbody shooter, Vector2 offset) {
@@ -272,6 +316,7 @@ public class Asteroids {
     double mass = 1, MOMENT_OF_INERTIA = 1, heading = 0;
 
     Rigidbody rigidbody = new Rigidbody(
+      world,
       position,
       heading,
       mass,
@@ -303,21 +348,47 @@ public class Asteroids {
     return asteroid;
   }
 
+  /** The last shape collidesWithAsteroids() was asked about,
+   * placed in the world. (It's always the robot.)
+   */
+  private WorldShape collider;
+
   public boolean collidesWithAsteroids(Shape shape, Vector2 position) {
-    for (Asteroid asteroid : asteroids) {
-      Vector2 asteroidPosition = asteroid.getPosition();
-      boolean collides = asteroid.polygon.intersects(
-        shape,
-        position.x - asteroidPosition.x,
-        position.y - asteroidPosition.y
-      );
-      if (collides) {
+    return collidesWithAsteroids(shape, position, 0);
+  }
+
+  public boolean collidesWithAsteroids(
+    Shape shape,
+    Vector2 position,
+    double headingRadians
+  ) {
+    if (collider == null || collider.getShape() != shape) {
+      collider = new WorldShape(shape);
+    }
+    collider.setPose(position.x, position.y, headingRadians);
+
+    int n = findNearbyAsteroids(collider);
+    for (int i = n - 1; i >= 0; i--) {
+      Asteroid asteroid = asteroids.get(nearbyAsteroids[i]);
+      if (asteroid.worldShape().intersects(collider)) {
         return true;
       }
     }
     return false;
   }
 
+  /** Every asteroid's polygon, where it is right now (e.g. for
+   * GridPlanner). The list is reused, so it's only up to date until
+   * the asteroids move again.
+   */
+  public List<WorldShape> asteroidShapes() {
+    asteroidShapes.clear();
+    for (Asteroid asteroid : asteroids) {
+      asteroidShapes.add(asteroid.worldShape());
+    }
+    return asteroidShapes;
+  }
+
   public void addDestroyedSegments(
     Edges edges,
     Vector2 position,
@@ -339,22 +410,29 @@ public class Asteroids {
   private void collidePelletsAndAsteroids() {
     // You have to be careful about removing elements from an array
     // while iterating through it. If you go from the end to the start,
-    // then you can do it safely.
+    // then you can do it safely. Asteroids are found through the grid,
+    // by index, so we can't remove them until we're done with it;
+    // instead we remember which were hit and remove them at the end.
+    if (hitAsteroids.length < asteroids.size()) {
+      hitAsteroids = new boolean[asteroids.size() * 2];
+    }
+    Arrays.fill(hitAsteroids, 0, asteroids.size(), false);
     int nAsteroidsRemoved = 0;
 
     for (int pelletI = pellets.size() - 1; pelletI >= 0; pelletI--) {
-      for (int asteroidI = asteroids.size() - 1; asteroidI >= 0; asteroidI--) {
-        Asteroid asteroid = asteroids.get(asteroidI);
-        Pellet pellet = pellets.get(pelletI);
+      Pellet pellet = pellets.get(pelletI);
+      WorldShape pelletShape = pellet.worldShape();
 
-        Vector2 asteroidPosition = asteroid.rigidbody.getPosition();
-        Vector2 pelletPosition = pellet.getPosition();
+      // Only the asteroids near the pellet could possibly hit it.
+      int nNearby = findNearbyAsteroids(pelletShape);
 
-        boolean intersect = asteroid.polygon.intersects(
-          pellet.line,
-          pelletPosition.x - asteroidPosition.x,
-          pelletPosition.y - asteroidPosition.y
-        );
+      // Highest index first, like the lists are gone through.
+      for (int nearbyI = nNearby - 1; nearbyI >= 0; nearbyI--) {
+        int asteroidI = nearbyAsteroids[nearbyI];
+        if (hitAsteroids[asteroidI]) continue;
+
+        Asteroid asteroid = asteroids.get(asteroidI);
+        boolean intersect = asteroid.worldShape().intersects(pelletShape);
 
         if (intersect) {
           // Hit!
@@ -364,8 +442,8 @@ public class Asteroids {
             asteroid.rigidbody.getVelocity(),
             asteroid.rigidbody.getHeadingRadians()
           );
-          pellets.remove(pelletI);
-          asteroids.remove(asteroidI);
+          pellets.remove(pelletI).rigidbody.destroy();
+          hitAsteroids[asteroidI] = true;
           nAsteroidsRemoved += 1;
           score += SCORE_PER_ASTEROID;
           break;
@@ -373,9 +451,16 @@ public class Asteroids {
       }
     }
 
+    for (int i = asteroids.size() - 1; i >= 0; i--) {
+      if (hitAsteroids[i]) {
+        asteroids.remove(i).rigidbody.destroy();
+      }
+    }
+
     for (int i = 0; i < nAsteroidsRemoved; i++) {
       asteroids.add(spawn());
     }
+    asteroidGridDirty = true;
   }
 
   /** This function is very well unnecessary
@@ -384,7 +469,7 @@ public class Asteroids {
    * some Java type programming. (Which, compared to a
    * fancier language like Haskell, is extremely limited.)
    */
-  private <T extends HasShape & HasPosition> int removeOutOfBoundsObjects(
+  private <T extends HasShape & HasPosition & HasRigidbody> int removeOutOfBoundsObjects(
     List<T> objects
   ) {
     int nRemoved = 0;
@@ -394,14 +479,26 @@ public class Asteroids {
       Vector2 position = object.getPosition();
       Shape shape = object.getShape();
 
-      boolean inField = Field.shape.intersects(
-        shape,
-        position.x - Field.WIDTH_METERS / 2,
-        position.y - Field.HEIGHT_METERS / 2
-      );
+      // Most things are well inside the field, which a circle around
+      // them can tell us without the full Shape test.
+      double radius = shape.boundingRadius();
+      boolean wellInside =
+        position.x - radius > 0 &&
+        position.x + radius < Field.WIDTH_METERS &&
+        position.y - radius > 0 &&
+        position.y + radius < Field.HEIGHT_METERS;
+
+      boolean inField =
+        wellInside ||
+        Field.shape.intersects(
+          shape,
+          position.x - Field.WIDTH_METERS / 2,
+          position.y - Field.HEIGHT_METERS / 2
+        );
 
       if (!inField) {
-        objects.remove(i);
+        objects.remove(i).getRigidbody().destroy();
+        asteroidGridDirty = true;
         nRemoved += 1;
       }
     }
@@ -419,15 +516,52 @@ public class Asteroids {
     for (int i = 0; i < nAsteroidsRemoved; i++) {
       asteroids.add(spawn());
     }
+    asteroidGridDirty = true;
 
     if (ticking) {
-      score += 1;
+      partialScore += SCORE_PER_SECOND * dt;
+      int wholePoints = (int) partialScore;
+      score += wholePoints;
+      partialScore -= wholePoints;
     }
 
     updateArrays(dt);
   }
 
-  public void draw(GraphicsContext ctx) {
-    drawArrays(ctx);
+  /** Adds everything there is to draw to `out` (see Snapshot). */
+  public void snapshot(Snapshot out) {
+    for (Asteroid asteroid : asteroids) {
+      out.addBody(asteroid.polygon.edges(), asteroid.rigidbody);
+    }
+    for (DestroyedSegment segment : destroyedSegments) {
+      out.addBody(segment.line.edges(), segment.rigidbody);
+    }
+    for (Pellet pellet : pellets) {
+      out.addBody(pellet.line, pellet.rigidbody);
+    }
+  }
+
+  /** Draws the asteroids, pellets and debris in a snapshot,
+   * `interpolation` of the way from before the last update to after.
+   */
+  public static void draw(
+    GraphicsContext ctx,
+    Snapshot snapshot,
+    double interpolation
+  ) {
+    for (int i = 0; i < snapshot.getBodyCount(); i++) {
+      ctx.save();
+
+      ctx.translate(
+        snapshot.getBodyX(i, interpolation),
+        snapshot.getBodyY(i, interpolation)
+      );
+      ctx.rotate(Math.toDegrees(snapshot.getBodyHeading(i, interpolation)));
+
+      ctx.setLineWidth(0.03);
+      snapshot.getBodyEdges(i).stroke(ctx);
+
+      ctx.restore();
+    }
   }
 }
@@ -0,0 +1,729 @@
+package swerve.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import swerve.Constants.Drivebase;
+import swerve.Constants.Field;
+import swerve.Shape.Edges;
+import swerve.Utils;
+import swerve.WorldShape;
+import swerve.asteroids.Asteroids;
+
+/** Finds a way across the field that doesn't hit anything, quickly
+ * enough to do again every tick while the obstacles (e.g. asteroids)
+ * fly around.
+ *
+ * It goes in three steps:
+ *
+ *  1. Chop the field up into a grid of little square cells, and mark
+ *     the ones with an obstacle in them ("rasterize" the obstacles).
+ *  2. Work out, for every cell, how far it is to the nearest obstacle
+ *     (a "distance field"). Inside an obstacle it's how far to get out
+ *     again, as a negative number (so it's a "signed" distance field).
+ *     The robot can be facing any way, so we treat it as the circle
+ *     around it: it fits wherever the distance is at least the
+ *     circle's radius (plus a little, see `neededRoom`).
+ *  3. Search for the shortest way through the cells it fits in, with
+ *     A* (see plan()), then straighten the zig-zags out of it.
+ *
+ * The distance field is worked out one direction at a time: first how
+ * far each cell is from an obstacle in its own column, then, using
+ * that, in its whole row (the "Felzenszwalb" distance transform, see
+ * distanceTransform()). Distances are capped a little beyond where
+ * the robot stops caring (see `cap`), which means a cell changing can
+ * only change the distances up to `cap` cells away from it. So when things
+ * move, we only redo the bits of columns near cells that changed, and
+ * then only the bits of rows where that changed anything. Obstacles
+ * only move a little each tick, so that's usually not much.
+ *
+ * As with SpatialGrid, everything is allocated up front and reused, so
+ * replanning doesn't make any garbage (except for waypoints()).
+ */
+public class GridPlanner {
+
+  /** How much further we're willing to go to keep this much further
+   * from things than we strictly need to: a step that's right up
+   * against something costs 1 + CLEARANCE_COST times as much as one
+   * out in the open.
+   */
+  private static final double COMFORT_DISTANCE = 0.5;
+  private static final double CLEARANCE_COST = 2;
+
+  private static final double INFINITY = 1e20;
+
+  private final double cellSize, robotRadius;
+
+  /** How much room a cell needs for the robot to go in it. The grid
+   * can only tell where things are to within a cell or so, so that's
+   * the robot's radius plus a cell, to be safe.
+   */
+  private final double neededRoom;
+  private final int columns, rows;
+
+  /** Distances are capped at this many cells: any further than the
+   * robot plus COMFORT_DISTANCE are all the same to us.
+   */
+  private final int cap, capSquared;
+
+  /** Whether each cell (row * columns + column) has an obstacle in it,
+   * now and as of the last setObstacles().
+   */
+  private boolean[] occupied, previousOccupied;
+
+  /** The squared distance (in cells) from each cell to the nearest
+   * occupied (or, for `columnInside`, free) cell in the same column.
+   */
+  private final double[] columnOutside, columnInside;
+
+  /** The signed distance field, in meters. */
+  private final double[] distance;
+
+  /** Which rows of each column (dirtyColumnFrom[column] up to
+   * dirtyColumnTo[column]) have changed, and the same for the columns
+   * of each row. From > to if none have.
+   */
+  private final int[] dirtyColumnFrom, dirtyColumnTo;
+  private final int[] dirtyRowFrom, dirtyRowTo;
+
+  /** Scratch space for distanceTransform() (and updateColumn()). */
+  private final double[] transformIn, transformOut, parabolaStart;
+  private final int[] parabolaCells;
+
+  /** A* state, see plan(). A cell's cost and parent only mean anything
+   * if its stamp is this search's (the same trick as SpatialGrid).
+   */
+  private final double[] cost;
+  private final int[] parent, stamps;
+  private final boolean[] closed;
+  private int stamp = 0;
+  private int[] heap;
+  private double[] heapKeys;
+  private int heapSize;
+
+  /** The last path plan() found. */
+  private final double[] pathX, pathY;
+  private int pathLength = 0;
+  private final int[] pathCells;
+
+  public GridPlanner(double cellSize, double robotRadius) {
+    this.cellSize = cellSize;
+    this.robotRadius = robotRadius;
+    neededRoom = robotRadius + cellSize;
+    columns = (int) Math.ceil(Field.WIDTH_METERS / cellSize);
+    rows = (int) Math.ceil(Field.HEIGHT_METERS / cellSize);
+    cap = (int) Math.ceil((neededRoom + COMFORT_DISTANCE) / cellSize) + 1;
+    capSquared = cap * cap;
+
+    int cells = columns * rows;
+    occupied = new boolean[cells];
+    previousOccupied = new boolean[cells];
+    columnOutside = new double[cells];
+    columnInside = new double[cells];
+    distance = new double[cells];
+    dirtyColumnFrom = new int[columns];
+    dirtyColumnTo = new int[columns];
+    dirtyRowFrom = new int[rows];
+    dirtyRowTo = new int[rows];
+
+    int longest = Math.max(columns, rows);
+    transformIn = new double[longest];
+    transformOut = new double[longest];
+    parabolaStart = new double[longest + 1];
+    parabolaCells = new int[longest];
+
+    cost = new double[cells];
+    parent = new int[cells];
+    stamps = new int[cells];
+    closed = new boolean[cells];
+    heap = new int[cells];
+    heapKeys = new double[cells];
+
+    pathX = new double[cells + 2];
+    pathY = new double[cells + 2];
+    pathCells = new int[cells];
+
+    // Start with an empty field, and everything to work out.
+    Arrays.fill(dirtyColumnFrom, 0);
+    Arrays.fill(dirtyColumnTo, rows - 1);
+    Arrays.fill(dirtyRowFrom, 0);
+    Arrays.fill(dirtyRowTo, columns - 1);
+    updateDistances();
+  }
+
+  /** A planner for the robot (as the circle around Drivebase.SHAPE). */
+  public GridPlanner() {
+    this(0.2, Drivebase.SHAPE.boundingRadius());
+  }
+
+  public double getCellSize() {
+    return cellSize;
+  }
+
+  public double getRobotRadius() {
+    return robotRadius;
+  }
+
+  private int column(double x) {
+    return Math.min(columns - 1, Math.max(0, (int) (x / cellSize)));
+  }
+
+  private int row(double y) {
+    return Math.min(rows - 1, Math.max(0, (int) (y / cellSize)));
+  }
+
+  private double centerX(int cell) {
+    return (cell % columns + 0.5) * cellSize;
+  }
+
+  private double centerY(int cell) {
+    return (cell / columns + 0.5) * cellSize;
+  }
+
+  /** Replaces the obstacles with these, and updates the distance
+   * field (only where it's changed). Obstacles should be closed
+   * shapes, like polygons and rectangles.
+   */
+  public void setObstacles(List<WorldShape> obstacles) {
+    // Swap rather than copy: `occupied` gets filled in afresh.
+    boolean[] swap = previousOccupied;
+    previousOccupied = occupied;
+    occupied = swap;
+    Arrays.fill(occupied, false);
+
+    for (int i = 0; i < obstacles.size(); i++) {
+      rasterize(obstacles.get(i));
+    }
+
+    for (int cell = 0; cell < occupied.length; cell++) {
+      if (occupied[cell] != previousOccupied[cell]) {
+        int column = cell % columns, row = cell / columns;
+        dirtyColumnFrom[column] = Math.min(dirtyColumnFrom[column], row);
+        dirtyColumnTo[column] = Math.max(dirtyColumnTo[column], row);
+      }
+    }
+    updateDistances();
+  }
+
+  /** The asteroids, where they are right now. */
+  public void setObstacles(Asteroids asteroids) {
+    setObstacles(asteroids.asteroidShapes());
+  }
+
+  /** Marks every cell that any of the shape is in.
+   *
+   * Rather than asking the shape about every cell (see Polygon.hit()
+   * for how that works), we go along each row of cells and find how
+   * far left and right the shape goes within the row: the ends of
+   * every bit of edge that's in the row. Everything between those is
+   * marked, which can be a bit more than the shape, if it has a dent
+   * in it, but never less. (Marking just the cells whose centers are
+   * inside would miss the asteroids' thin spikes.)
+   */
+  private void rasterize(WorldShape shape) {
+    if (
+      shape.maxX() < 0 ||
+      shape.maxY() < 0 ||
+      shape.minX() > Field.WIDTH_METERS ||
+      shape.minY() > Field.HEIGHT_METERS
+    ) {
+      return;
+    }
+    Edges edges = shape.getEdges();
+    int row0 = row(shape.minY()), row1 = row(shape.maxY());
+    for (int row = row0; row <= row1; row++) {
+      double bottom = row * cellSize, top = bottom + cellSize;
+      double minX = Double.POSITIVE_INFINITY;
+      double maxX = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < edges.n(); i++) {
+        double x0 = edges.x(i), y0 = edges.y(i);
+        double x1 = edges.x(i + 1), y1 = edges.y(i + 1);
+        // The part of the edge between the bottom and the top of the
+        // row, as fractions of the way along it.
+        double from = 0, to = 1;
+        if (y0 != y1) {
+          double atBottom = (bottom - y0) / (y1 - y0);
+          double atTop = (top - y0) / (y1 - y0);
+          from = Math.max(0, Math.min(atBottom, atTop));
+          to = Math.min(1, Math.max(atBottom, atTop));
+        } else if (y0 < bottom || y0 > top) {
+          continue;
+        }
+        if (from > to) continue;
+
+        double xFrom = x0 + (x1 - x0) * from, xTo = x0 + (x1 - x0) * to;
+        minX = Math.min(minX, Math.min(xFrom, xTo));
+        maxX = Math.max(maxX, Math.max(xFrom, xTo));
+      }
+      if (minX > maxX) continue;
+
+      int rowStart = row * columns;
+      for (int column = column(minX); column <= column(maxX); column++) {
+        occupied[rowStart + column] = true;
+      }
+    }
+  }
+
+  private void updateDistances() {
+    // First pass: up and down the columns, near the cells that have
+    // changed, noting which rows that changes.
+    for (int column = 0; column < columns; column++) {
+      if (dirtyColumnFrom[column] > dirtyColumnTo[column]) continue;
+      int from = Math.max(0, dirtyColumnFrom[column] - cap);
+      int to = Math.min(rows - 1, dirtyColumnTo[column] + cap);
+      dirtyColumnFrom[column] = Integer.MAX_VALUE;
+      dirtyColumnTo[column] = -1;
+      updateColumn(column, from, to, columnOutside, false);
+      updateColumn(column, from, to, columnInside, true);
+    }
+
+    // Second pass: along the rows, where that changed anything.
+    for (int row = 0; row < rows; row++) {
+      if (dirtyRowFrom[row] > dirtyRowTo[row]) continue;
+      int from = Math.max(0, dirtyRowFrom[row] - cap);
+      int to = Math.min(columns - 1, dirtyRowTo[row] + cap);
+      dirtyRowFrom[row] = Integer.MAX_VALUE;
+      dirtyRowTo[row] = -1;
+      updateRow(row, from, to, columnOutside, false);
+      updateRow(row, from, to, columnInside, true);
+    }
+  }
+
+  /** Works out the squared distance (in cells) from rows `from` to
+   * `to` of a column to the nearest occupied cell (or free one, if
+   * `inside`) in the column, and marks the rows where it's changed.
+   *
+   * In one dimension that's easy: go down the column remembering the
+   * last cell we were looking for, then back up doing the same, and
+   * keep whichever's nearer.
+   */
+  private void updateColumn(
+    int column,
+    int from,
+    int to,
+    double[] out,
+    boolean inside
+  ) {
+    // Anything further than `cap` away doesn't matter, so neither do
+    // cells further than that outside the rows we want.
+    int first = Math.max(0, from - cap), last = Math.min(rows - 1, to + cap);
+    int found = -cap;
+    for (int row = first; row <= last; row++) {
+      if (occupied[row * columns + column] != inside) found = row;
+      parabolaCells[row - first] = Math.min(cap, row - found);
+    }
+    found = rows + cap;
+    for (int row = last; row >= from; row--) {
+      if (occupied[row * columns + column] != inside) found = row;
+      if (row > to) continue;
+
+      int cells = Math.min(parabolaCells[row - first], found - row);
+      double value = cells * cells;
+      int cell = row * columns + column;
+      if (out[cell] != value) {
+        out[cell] = value;
+        dirtyRowFrom[row] = Math.min(dirtyRowFrom[row], column);
+        dirtyRowTo[row] = Math.max(dirtyRowTo[row], column);
+      }
+    }
+  }
+
+  /** Finishes off columns `from` to `to` of a row: the distance to
+   * the nearest occupied cell (for free cells), or free cell (for
+   * occupied ones, if `inside`) anywhere, using `columnDistances`.
+   */
+  private void updateRow(
+    int row,
+    int from,
+    int to,
+    double[] columnDistances,
+    boolean inside
+  ) {
+    int first = Math.max(0, from - cap);
+    int last = Math.min(columns - 1, to + cap);
+    int rowStart = row * columns;
+    // Most rows are nowhere near anything (or, inside, nowhere near
+    // a free cell), and then the answer's the same all along.
+    boolean nearAnything = false;
+    for (int column = first; column <= last; column++) {
+      double value = columnDistances[rowStart + column];
+      transformIn[column - first] = value;
+      nearAnything |= inside ? value > 0 : value < capSquared;
+    }
+    if (!nearAnything) {
+      Arrays.fill(transformOut, 0, last - first + 1, inside ? 0 : capSquared);
+    } else {
+      distanceTransform(last - first + 1);
+    }
+
+    double y = (row + 0.5) * cellSize;
+    for (int column = from; column <= to; column++) {
+      int cell = rowStart + column;
+      if (occupied[cell] != inside) continue;
+      double cells = Math.sqrt(
+        Math.min(transformOut[column - first], capSquared)
+      );
+      // Measure to the nearest cell's nearest corner, not its center,
+      // since the obstacle could be anywhere in it.
+      double meters = (cells - Math.sqrt(0.5)) * cellSize;
+      if (inside) {
+        distance[cell] = -meters;
+      } else {
+        // The field's walls are obstacles too, and they're easy: the
+        // distance to them is just how far from the edge we are.
+        double x = (column + 0.5) * cellSize;
+        double wall = Math.min(
+          Math.min(x, Field.WIDTH_METERS - x),
+          Math.min(y, Field.HEIGHT_METERS - y)
+        );
+        distance[cell] = Math.min(meters, wall);
+      }
+    }
+  }
+
+  /** The 1D distance transform: for each i < n, transformOut[i] is
+   * the smallest (i - j)^2 + transformIn[j] over every j < n.
+   *
+   * Each j gives a parabola (i - j)^2 + transformIn[j], and we want
+   * the lowest of them at each i. Going through them in order, we keep
+   * the ones that are lowest somewhere (their j's in parabolaCells),
+   * and where each one takes over from the one before (parabolaStart).
+   * A new parabola takes over from where it crosses the last one kept,
+   * and if that's before where the last one took over, the last one's
+   * never lowest anywhere, so we throw it away and try again. Then we
+   * just read off whichever parabola is lowest at each i. All that is
+   * O(n), rather than O(n^2) for trying every j for every i.
+   */
+  private void distanceTransform(int n) {
+    double[] f = transformIn;
+    int k = 0;
+    parabolaCells[0] = 0;
+    parabolaStart[0] = -INFINITY;
+    parabolaStart[1] = INFINITY;
+    for (int q = 1; q < n; q++) {
+      double s = crossing(q, parabolaCells[k]);
+      while (s <= parabolaStart[k]) {
+        k--;
+        s = crossing(q, parabolaCells[k]);
+      }
+      k++;
+      parabolaCells[k] = q;
+      parabolaStart[k] = s;
+      parabolaStart[k + 1] = INFINITY;
+    }
+    k = 0;
+    for (int q = 0; q < n; q++) {
+      while (parabolaStart[k + 1] < q) k++;
+      int p = parabolaCells[k];
+      transformOut[q] = (q - p) * (q - p) + f[p];
+    }
+  }
+
+  /** Where parabola q crosses parabola p (for p < q). */
+  private double crossing(int q, int p) {
+    double[] f = transformIn;
+    return ((f[q] + q * q) - (f[p] + p * p)) / (2.0 * q - 2.0 * p);
+  }
+
+  /** How far (x, y) is from the nearest obstacle or wall, in meters
+   * (negative if it's inside one), as of the nearest cell's center.
+   * At the centers it's never more than the real distance.
+   */
+  public double distance(double x, double y) {
+    return distance[row(y) * columns + column(x)];
+  }
+
+  /** Whether the robot fits at (x, y). */
+  public boolean isFree(double x, double y) {
+    return distance(x, y) >= neededRoom;
+  }
+
+  /** Whether the robot can go to a cell with this much room from one
+   * with `from` much. Normally that's if it fits, but if it's already
+   * stuck in something, anywhere with more room than here will do, so
+   * it can get itself out.
+   */
+  private boolean canEnter(double room, double from) {
+    return room >= neededRoom || room > from;
+  }
+
+  /** Finds a way from (startX, startY) to (goalX, goalY). Returns
+   * whether there is one; if so, it's in getPathX()/getPathY().
+   */
+  public boolean plan(
+    double startX,
+    double startY,
+    double goalX,
+    double goalY
+  ) {
+    pathLength = 0;
+    int start = row(startY) * columns + column(startX);
+    int goal = row(goalY) * columns + column(goalX);
+    if (distance[goal] < neededRoom) return false;
+
+    // Out in the open, there's no need to search at all.
+    if (clear(startX, startY, goalX, goalY)) {
+      pathX[0] = startX;
+      pathY[0] = startY;
+      pathX[1] = goalX;
+      pathY[1] = goalY;
+      pathLength = 2;
+      return true;
+    }
+
+    stamp++;
+    if (stamp == 0) {
+      Arrays.fill(stamps, 0);
+      stamp = 1;
+    }
+    heapSize = 0;
+    visit(start, -1, 0, goal);
+
+    // A*: always carry on from the cell that looks like it's on the
+    // shortest way there, going by how far it's taken to get to it
+    // plus the shortest it could possibly be from there (a straight
+    // line, as far as the grid allows).
+    boolean found = false;
+    while (heapSize > 0) {
+      int cell = pop();
+      if (closed[cell]) continue; // Already found a better way here
+      closed[cell] = true;
+      if (cell == goal) {
+        found = true;
+        break;
+      }
+
+      int column = cell % columns, row = cell / columns;
+      double room = distance[cell];
+      for (int dy = -1; dy <= 1; dy++) {
+        int nextRow = row + dy;
+        if (nextRow < 0 || nextRow >= rows) continue;
+        for (int dx = -1; dx <= 1; dx++) {
+          int nextColumn = column + dx;
+          if (
+            (dx == 0 && dy == 0) || nextColumn < 0 || nextColumn >= columns
+          ) {
+            continue;
+          }
+          int next = nextRow * columns + nextColumn;
+          double nextRoom = distance[next];
+          if (!canEnter(nextRoom, room)) continue;
+          // Don't cut corners between two cells we can't go in.
+          if (
+            dx != 0 &&
+            dy != 0 &&
+            (!canEnter(distance[row * columns + nextColumn], room) ||
+              !canEnter(distance[nextRow * columns + column], room))
+          ) {
+            continue;
+          }
+
+          double step = (dx != 0 && dy != 0 ? Math.sqrt(2) : 1) * cellSize;
+          double tightness = Math.max(
+            0,
+            1 - (nextRoom - neededRoom) / COMFORT_DISTANCE
+          );
+          double nextCost =
+            cost[cell] + step * (1 + CLEARANCE_COST * Math.min(1, tightness));
+          visit(next, cell, nextCost, goal);
+        }
+      }
+    }
+    if (!found) return false;
+
+    // Follow the parents back from the goal.
+    int nCells = 0;
+    for (int cell = goal; cell != -1; cell = parent[cell]) {
+      pathCells[nCells++] = cell;
+    }
+    straighten(startX, startY, goalX, goalY, nCells);
+    return true;
+  }
+
+  /** Notes a way to get to `cell` (from `from`), if it's the best yet. */
+  private void visit(int cell, int from, double cellCost, int goal) {
+    if (stamps[cell] == stamp) {
+      if (closed[cell] || cellCost >= cost[cell]) return;
+    } else {
+      stamps[cell] = stamp;
+      closed[cell] = false;
+    }
+    cost[cell] = cellCost;
+    parent[cell] = from;
+
+    // The "octile" distance: the length of the shortest way on a grid
+    // where you can go diagonally.
+    int dx = Math.abs(cell % columns - goal % columns);
+    int dy = Math.abs(cell / columns - goal / columns);
+    double estimate =
+      (Math.max(dx, dy) + (Math.sqrt(2) - 1) * Math.min(dx, dy)) * cellSize;
+    push(cell, cellCost + estimate);
+  }
+
+  /** The A* cells go in a binary heap (like java.util.PriorityQueue,
+   * but of ints, so nothing's allocated). When we find a better way to
+   * a cell that's already in it, we just add it again; the old one
+   * comes out later and is skipped, since the cell's closed by then.
+   */
+  private void push(int cell, double key) {
+    if (heapSize == heap.length) {
+      heap = Arrays.copyOf(heap, heapSize * 2);
+      heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+    }
+    int i = heapSize++;
+    while (i > 0) {
+      int up = (i - 1) / 2;
+      if (heapKeys[up] <= key) break;
+      heap[i] = heap[up];
+      heapKeys[i] = heapKeys[up];
+      i = up;
+    }
+    heap[i] = cell;
+    heapKeys[i] = key;
+  }
+
+  private int pop() {
+    int top = heap[0];
+    int last = heap[--heapSize];
+    double key = heapKeys[heapSize];
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= heapSize) break;
+      if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+        child++;
+      }
+      if (key <= heapKeys[child]) break;
+      heap[i] = heap[child];
+      heapKeys[i] = heapKeys[child];
+      i = child;
+    }
+    heap[i] = last;
+    heapKeys[i] = key;
+    return top;
+  }
+
+  /** Turns the cells (goal first) into as few straight lines as we
+   * can: from each corner, go straight to the furthest cell along the
+   * path that we can see (see clear()) without hitting anything.
+   */
+  private void straighten(
+    double startX,
+    double startY,
+    double goalX,
+    double goalY,
+    int nCells
+  ) {
+    pathX[0] = startX;
+    pathY[0] = startY;
+    pathLength = 1;
+    double x = startX, y = startY;
+    int i = nCells - 1; // The start's cell
+    while (i > 0) {
+      // Cell i - 1 is always next to us, so always reachable.
+      int furthest = i - 1;
+      for (int j = 0; j < i - 1; j++) {
+        int cell = pathCells[j];
+        if (clear(x, y, centerX(cell), centerY(cell))) {
+          furthest = j;
+          break;
+        }
+      }
+      if (furthest == 0) break;
+      x = centerX(pathCells[furthest]);
+      y = centerY(pathCells[furthest]);
+      pathX[pathLength] = x;
+      pathY[pathLength] = y;
+      pathLength++;
+      i = furthest;
+    }
+    pathX[pathLength] = goalX;
+    pathY[pathLength] = goalY;
+    pathLength++;
+  }
+
+  /** Whether the robot can go in a straight line from (x0, y0) to
+   * (x1, y1), checking every half a cell along the way.
+   */
+  private boolean clear(double x0, double y0, double x1, double y1) {
+    double length = Math.hypot(x1 - x0, y1 - y0);
+    int steps = (int) Math.ceil(length / (cellSize / 2));
+    double room = distance(x0, y0);
+    for (int i = 1; i <= steps; i++) {
+      double t = (double) i / steps;
+      double next = distance(x0 + (x1 - x0) * t, y0 + (y1 - y0) * t);
+      if (!canEnter(next, room)) return false;
+      room = Math.min(room, next);
+    }
+    return true;
+  }
+
+  /** How many points are in the last path found, including the start
+   * and the goal. 0 if there wasn't one.
+   */
+  public int getPathLength() {
+    return pathLength;
+  }
+
+  public double getPathX(int i) {
+    return pathX[i];
+  }
+
+  public double getPathY(int i) {
+    return pathY[i];
+  }
+
+  /** The last path found, as waypoints for a Trajectory, turning
+   * evenly from one heading to the other along the way.
+   */
+  public List<Waypoint> waypoints(double startHeading, double goalHeading) {
+    List<Waypoint> waypoints = new ArrayList<>();
+    double turn = Utils.angleModulusRadians(goalHeading - startHeading);
+    for (int i = 0; i < pathLength; i++) {
+      double t = pathLength == 1 ? 1 : (double) i / (pathLength - 1);
+      waypoints.add(new Waypoint(pathX[i], pathY[i], startHeading + turn * t));
+    }
+    return waypoints;
+  }
+
+  /** Replans every tick through a field of asteroids, and prints how
+   * long it takes.
+   */
+  public static void main(String[] args) {
+    int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    double dt = 1.0 / 200;
+
+    Asteroids asteroids = new Asteroids();
+    GridPlanner planner = new GridPlanner();
+    long obstacleNanos = 0, planNanos = 0;
+    int found = 0, points = 0;
+    for (int tick = 0; tick < ticks; tick++) {
+      asteroids.update(dt);
+
+      long start = System.nanoTime();
+      planner.setObstacles(asteroids);
+      long planned = System.nanoTime();
+      if (planner.plan(1, 1, 9, 9)) {
+        found++;
+        points += planner.getPathLength();
+      }
+      long end = System.nanoTime();
+
+      // The first ticks are slow while the JIT warms up.
+      if (tick >= ticks / 10) {
+        obstacleNanos += planned - start;
+        planNanos += end - planned;
+      }
+    }
+    int timed = ticks - ticks / 10;
+    System.out.printf(
+      "%d ticks: %.1f us updating the distance field, %.1f us planning " +
+      "per tick; found a path %.0f%% of the time (%.1f points)%n",
+      ticks,
+      obstacleNanos / 1e3 / timed,
+      planNanos / 1e3 / timed,
+      100.0 * found / ticks,
+      found == 0 ? 0.0 : (double) points / found
+    );
+  }
+}
@@ -0,0 +1,86 @@
+package swerve.path;
+
+/** A smooth curve from one point to another, that leaves the first
+ * and arrives at the second with a given velocity and acceleration.
+ *
+ * "Hermite" means it's described by what happens at its ends rather
+ * than by control points, and "quintic" that x and y are both
+ * polynomials of degree 5 in a parameter t that goes from 0 to 1. Six
+ * numbers per axis (position, velocity and acceleration at each end)
+ * pin down the six coefficients exactly. Matching velocity and
+ * acceleration where one spline meets the next means there's no sudden
+ * change in direction or in how sharply the path bends.
+ */
+public class QuinticHermiteSpline {
+
+  /** x(t) = xs[0] + xs[1] t + ... + xs[5] t^5, and the same for y. */
+  private final double[] xs, ys;
+
+  /** The ends, each as {position, velocity, acceleration}. */
+  public QuinticHermiteSpline(
+    double[] startX,
+    double[] endX,
+    double[] startY,
+    double[] endY
+  ) {
+    xs = coefficients(startX, endX);
+    ys = coefficients(startY, endY);
+  }
+
+  private static double[] coefficients(double[] start, double[] end) {
+    double p0 = start[0], v0 = start[1], a0 = start[2];
+    double p1 = end[0], v1 = end[1], a1 = end[2];
+    return new double[] {
+      p0,
+      v0,
+      a0 / 2,
+      -10 * p0 - 6 * v0 - 1.5 * a0 + 0.5 * a1 - 4 * v1 + 10 * p1,
+      15 * p0 + 8 * v0 + 1.5 * a0 - a1 + 7 * v1 - 15 * p1,
+      -6 * p0 - 3 * v0 - 0.5 * a0 + 0.5 * a1 - 3 * v1 + 6 * p1,
+    };
+  }
+
+  private static double value(double[] c, double t) {
+    return c[0] + t * (c[1] + t * (c[2] + t * (c[3] + t * (c[4] + t * c[5]))));
+  }
+
+  private static double derivative(double[] c, double t) {
+    return (
+      c[1] + t * (2 * c[2] + t * (3 * c[3] + t * (4 * c[4] + t * 5 * c[5])))
+    );
+  }
+
+  private static double secondDerivative(double[] c, double t) {
+    return 2 * c[2] + t * (6 * c[3] + t * (12 * c[4] + t * 20 * c[5]));
+  }
+
+  public double x(double t) {
+    return value(xs, t);
+  }
+
+  public double y(double t) {
+    return value(ys, t);
+  }
+
+  /** The velocity along the curve (as t goes up), which points the
+   * way the curve is going.
+   */
+  public double dx(double t) {
+    return derivative(xs, t);
+  }
+
+  public double dy(double t) {
+    return derivative(ys, t);
+  }
+
+  /** How tightly the curve bends at t: 1 / the radius of the circle
+   * it's following there. Positive bends left.
+   */
+  public double curvature(double t) {
+    double dx = derivative(xs, t), dy = derivative(ys, t);
+    double ddx = secondDerivative(xs, t), ddy = secondDerivative(ys, t);
+    double speed = Math.sqrt(dx * dx + dy * dy);
+    if (speed < 1e-9) return 0;
+    return (dx * ddy - dy * ddx) / (speed * speed * speed);
+  }
+}
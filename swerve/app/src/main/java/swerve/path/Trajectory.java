@@ -0,0 +1,348 @@
+package swerve.path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import swerve.Constants;
+import swerve.Utils;
+
+/** A path through some Waypoints, and when to be where along it: a
+ * list of "setpoints" (where to be, which way to face and how fast to
+ * be going) for every tick, from standing still at the start to
+ * standing still at the end.
+ *
+ * Making one goes like this:
+ *
+ *  1. Join the waypoints up with QuinticHermiteSplines. Each waypoint
+ *     gets a velocity pointing from the one before it to the one after
+ *     (a "Catmull-Rom" spline), so the path flows through it.
+ *  2. Chop the path up into lots of tiny steps, and work out the
+ *     fastest we could go at each one: no faster than the robot's top
+ *     speed, slow enough around bends that the sideways acceleration
+ *     (v^2 / radius) stays in limits, and slow enough that the robot
+ *     can turn to face the next waypoint in time.
+ *  3. Go forwards along the steps, speeding up no faster than we're
+ *     allowed to, then backwards, making sure we can slow down in time
+ *     for every slow bit (and the end). That gives how fast to go at
+ *     every step, and so how long each step takes.
+ *  4. Write down where we are every SECONDS_PER_UPDATE along the way.
+ *
+ * All that is slow-ish, but it only happens once per path: the result
+ * is a few arrays of doubles, one entry per tick, so following the
+ * path only has to look up entry number `ticks since we started`, see
+ * indexAt(). Paths are also cached by their waypoints, see of().
+ */
+public class Trajectory {
+
+  /** How finely each spline is chopped up in step 2. */
+  private static final int STEPS_PER_SPLINE = 512;
+
+  /** Stops the cache growing forever if something makes lots of paths. */
+  private static final int MAX_CACHED = 256;
+
+  private static final Map<Key, Trajectory> cache = new ConcurrentHashMap<>();
+
+  private record Key(
+    List<Waypoint> waypoints,
+    TrajectoryConstraints constraints
+  ) {}
+
+  private final double dt;
+  private final double[] x, y, heading;
+  private final double[] velocityX, velocityY, angularVelocity;
+
+  private Trajectory(double dt, int samples) {
+    this.dt = dt;
+    x = new double[samples];
+    y = new double[samples];
+    heading = new double[samples];
+    velocityX = new double[samples];
+    velocityY = new double[samples];
+    angularVelocity = new double[samples];
+  }
+
+  /** The trajectory through `waypoints`, made the first time it's
+   * asked for and then remembered.
+   */
+  public static Trajectory of(
+    List<Waypoint> waypoints,
+    TrajectoryConstraints constraints
+  ) {
+    Key key = new Key(List.copyOf(waypoints), constraints);
+    Trajectory cached = cache.get(key);
+    if (cached != null) return cached;
+
+    if (cache.size() >= MAX_CACHED) {
+      cache.clear();
+    }
+    return cache.computeIfAbsent(
+      key,
+      k ->
+        generate(
+          k.waypoints(),
+          k.constraints(),
+          Constants.SECONDS_PER_UPDATE
+        )
+    );
+  }
+
+  public static Trajectory of(List<Waypoint> waypoints) {
+    return of(waypoints, TrajectoryConstraints.DEFAULT);
+  }
+
+  /** Makes a trajectory (without the cache), with a setpoint every
+   * `dt` seconds.
+   */
+  public static Trajectory generate(
+    List<Waypoint> waypoints,
+    TrajectoryConstraints constraints,
+    double dt
+  ) {
+    int n = waypoints.size();
+    if (n < 2) {
+      throw new IllegalArgumentException("A path needs at least 2 waypoints");
+    }
+    for (int i = 1; i < n; i++) {
+      Waypoint a = waypoints.get(i - 1), b = waypoints.get(i);
+      if (a.x() == b.x() && a.y() == b.y()) {
+        throw new IllegalArgumentException("Waypoint " + i + " repeats");
+      }
+    }
+
+    // 1. The splines, with Catmull-Rom velocities at each waypoint.
+    List<QuinticHermiteSpline> splines = new ArrayList<>();
+    for (int i = 0; i < n - 1; i++) {
+      Waypoint a = waypoints.get(i), b = waypoints.get(i + 1);
+      double[] startVelocity = tangent(waypoints, i);
+      double[] endVelocity = tangent(waypoints, i + 1);
+      splines.add(
+        new QuinticHermiteSpline(
+          new double[] { a.x(), startVelocity[0], 0 },
+          new double[] { b.x(), endVelocity[0], 0 },
+          new double[] { a.y(), startVelocity[1], 0 },
+          new double[] { b.y(), endVelocity[1], 0 }
+        )
+      );
+    }
+
+    // 2. The steps, and how fast we could go at each.
+    int steps = splines.size() * STEPS_PER_SPLINE + 1;
+    double[] px = new double[steps], py = new double[steps];
+    double[] ph = new double[steps];
+    // Which way the path goes at each step (as a unit vector).
+    double[] tx = new double[steps], ty = new double[steps];
+    double[] distance = new double[steps];
+    double[] speed = new double[steps];
+    double[] curvature = new double[steps];
+    for (int s = 0; s < splines.size(); s++) {
+      QuinticHermiteSpline spline = splines.get(s);
+      double fromHeading = waypoints.get(s).headingRadians();
+      double turn = Utils.angleModulusRadians(
+        waypoints.get(s + 1).headingRadians() - fromHeading
+      );
+      for (int k = s == 0 ? 0 : 1; k <= STEPS_PER_SPLINE; k++) {
+        int i = s * STEPS_PER_SPLINE + k;
+        double t = (double) k / STEPS_PER_SPLINE;
+        px[i] = spline.x(t);
+        py[i] = spline.y(t);
+        double dx = spline.dx(t), dy = spline.dy(t);
+        double length = Math.hypot(dx, dy);
+        if (length > 1e-9) {
+          tx[i] = dx / length;
+          ty[i] = dy / length;
+        }
+        // Turn smoothly, starting and finishing slowly.
+        double smooth = t * t * (3 - 2 * t);
+        ph[i] = Utils.angleModulusRadians(fromHeading + turn * smooth);
+
+        curvature[i] = Math.abs(spline.curvature(t));
+        speed[i] = Math.min(
+          constraints.maxSpeedMetersPerSecond(),
+          Math.sqrt(
+            constraints.maxAccelerationMetersPerSecondSquared() / curvature[i]
+          )
+        );
+      }
+    }
+    // If the path doubles back on itself (e.g. there and back along a
+    // line), the spline comes to a dead stop at the turning point, and
+    // the direction flips from one step to the next. No robot can
+    // reverse without stopping, so make it stop there. Those steps
+    // don't have a direction of their own (we're not going anywhere),
+    // so the ones either side decide which way we're going in step 4.
+    for (int i = 1; i < steps; i++) {
+      boolean stopped = tx[i] == 0 && ty[i] == 0;
+      boolean reverses = tx[i] * tx[i - 1] + ty[i] * ty[i - 1] < 0;
+      if (stopped || reverses) {
+        speed[i] = 0;
+        tx[i] = 0;
+        ty[i] = 0;
+      }
+    }
+    for (int i = 1; i < steps; i++) {
+      double ds = Math.hypot(px[i] - px[i - 1], py[i] - py[i - 1]);
+      distance[i] = distance[i - 1] + ds;
+      double turned = Math.abs(Utils.angleModulusRadians(ph[i] - ph[i - 1]));
+      if (turned > 0) {
+        double limit =
+          constraints.maxAngularSpeedRadiansPerSecond() * ds / turned;
+        speed[i] = Math.min(speed[i], limit);
+        speed[i - 1] = Math.min(speed[i - 1], limit);
+      }
+    }
+
+    // 3. Forwards then backwards, using v^2 = u^2 + 2 a s. Going round
+    // a bend already takes some of the acceleration we're allowed (the
+    // sideways part, v^2 * curvature), so we only get what's left over
+    // for speeding up or slowing down.
+    speed[0] = 0;
+    for (int i = 1; i < steps; i++) {
+      double ds = distance[i] - distance[i - 1];
+      double available = leftoverAcceleration(
+        constraints,
+        speed[i - 1],
+        Math.max(curvature[i - 1], curvature[i])
+      );
+      speed[i] = Math.min(
+        speed[i],
+        Math.sqrt(speed[i - 1] * speed[i - 1] + 2 * available * ds)
+      );
+    }
+    speed[steps - 1] = 0;
+    for (int i = steps - 2; i >= 0; i--) {
+      double ds = distance[i + 1] - distance[i];
+      double available = leftoverAcceleration(
+        constraints,
+        speed[i + 1],
+        Math.max(curvature[i], curvature[i + 1])
+      );
+      speed[i] = Math.min(
+        speed[i],
+        Math.sqrt(speed[i + 1] * speed[i + 1] + 2 * available * ds)
+      );
+    }
+
+    double[] time = new double[steps];
+    for (int i = 1; i < steps; i++) {
+      double ds = distance[i] - distance[i - 1];
+      double average = (speed[i - 1] + speed[i]) / 2;
+      time[i] = time[i - 1] + (ds == 0 ? 0 : ds / average);
+    }
+
+    // 4. A setpoint every dt.
+    int samples = (int) Math.ceil(time[steps - 1] / dt) + 1;
+    Trajectory trajectory = new Trajectory(dt, samples);
+    int i = 0;
+    for (int k = 0; k < samples; k++) {
+      double t = Math.min(k * dt, time[steps - 1]);
+      while (i < steps - 2 && time[i + 1] < t) {
+        i++;
+      }
+      double stepTime = time[i + 1] - time[i];
+      double f = stepTime == 0 ? 0 : (t - time[i]) / stepTime;
+
+      trajectory.x[k] = px[i] + (px[i + 1] - px[i]) * f;
+      trajectory.y[k] = py[i] + (py[i + 1] - py[i]) * f;
+      trajectory.heading[k] =
+        Utils.angleModulusRadians(
+          ph[i] + Utils.angleModulusRadians(ph[i + 1] - ph[i]) * f
+        );
+
+      double v = speed[i] + (speed[i + 1] - speed[i]) * f;
+      double directionX = tx[i] + (tx[i + 1] - tx[i]) * f;
+      double directionY = ty[i] + (ty[i + 1] - ty[i]) * f;
+      double length = Math.hypot(directionX, directionY);
+      if (length > 0) {
+        trajectory.velocityX[k] = v * directionX / length;
+        trajectory.velocityY[k] = v * directionY / length;
+      }
+    }
+    for (int k = 0; k < samples - 1; k++) {
+      trajectory.angularVelocity[k] =
+        Utils.angleModulusRadians(
+          trajectory.heading[k + 1] - trajectory.heading[k]
+        ) /
+        dt;
+    }
+    return trajectory;
+  }
+
+  /** How much acceleration is left for speeding up or slowing down,
+   * going at `speed` round a bend of `curvature`. The total can't be
+   * more than the maximum, and the two parts are at right angles, so
+   * (by Pythagoras) it's sqrt(max^2 - sideways^2). We always leave a
+   * little, so we can't get stuck at one speed.
+   */
+  private static double leftoverAcceleration(
+    TrajectoryConstraints constraints,
+    double speed,
+    double curvature
+  ) {
+    double max = constraints.maxAccelerationMetersPerSecondSquared();
+    double sideways = speed * speed * curvature;
+    double left = Math.sqrt(Math.max(0, max * max - sideways * sideways));
+    return Math.max(0.05 * max, left);
+  }
+
+  /** Which way to leave waypoint i: towards the next one, away from
+   * the last one, or (in the middle) halfway between the two.
+   */
+  private static double[] tangent(List<Waypoint> waypoints, int i) {
+    Waypoint before = waypoints.get(Math.max(0, i - 1));
+    Waypoint after = waypoints.get(Math.min(waypoints.size() - 1, i + 1));
+    double scale = i == 0 || i == waypoints.size() - 1 ? 1 : 0.5;
+    return new double[] {
+      (after.x() - before.x()) * scale,
+      (after.y() - before.y()) * scale,
+    };
+  }
+
+  /** How many setpoints there are. */
+  public int size() {
+    return x.length;
+  }
+
+  /** How long the trajectory takes, in seconds. */
+  public double getDuration() {
+    return (x.length - 1) * dt;
+  }
+
+  public double getDt() {
+    return dt;
+  }
+
+  /** The setpoint for `seconds` after the start (the first or last
+   * one, if it's before or after the trajectory).
+   */
+  public int indexAt(double seconds) {
+    int i = (int) Math.round(seconds / dt);
+    return Math.max(0, Math.min(x.length - 1, i));
+  }
+
+  public double getX(int i) {
+    return x[i];
+  }
+
+  public double getY(int i) {
+    return y[i];
+  }
+
+  public double getHeadingRadians(int i) {
+    return heading[i];
+  }
+
+  /** The velocity (in field space) at setpoint i. */
+  public double getVelocityX(int i) {
+    return velocityX[i];
+  }
+
+  public double getVelocityY(int i) {
+    return velocityY[i];
+  }
+
+  /** How fast to turn at setpoint i (counterclockwise). */
+  public double getAngularVelocity(int i) {
+    return angularVelocity[i];
+  }
+}
@@ -0,0 +1,17 @@
+package swerve.path;
+
+import swerve.Constants.Drivebase;
+
+/** How fast a Trajectory may go. */
+public record TrajectoryConstraints(
+  double maxSpeedMetersPerSecond,
+  double maxAccelerationMetersPerSecondSquared,
+  double maxAngularSpeedRadiansPerSecond
+) {
+  /** The robot's limits, from Constants. */
+  public static final TrajectoryConstraints DEFAULT = new TrajectoryConstraints(
+    Drivebase.MAX_SPEED_METERS_PER_SECOND,
+    Drivebase.MAX_ACCELERATION_METERS_PER_SECOND_SQUARED,
+    Drivebase.MAX_ANGULAR_SPEED_RADIANS_PER_SECOND
+  );
+}
@@ -0,0 +1,128 @@
+package swerve.path;
+
+import swerve.Rigidbody;
+import swerve.Swerve;
+import swerve.Utils;
+import swerve.Vector2;
+
+/** Drives a Swerve along a Trajectory, one tick at a time.
+ *
+ * Each tick we look up where the trajectory says we should be
+ * (entry number `ticks`, so no searching), and drive at the velocity
+ * it says to ("feedforward"), plus some extra towards wherever we
+ * should be if we've drifted off, and to make up for going slower or
+ * faster than we should ("feedback", P controllers). The feedforward
+ * does most of the work; the feedback soaks up everything the
+ * trajectory didn't know about, like friction and the modules taking
+ * a moment to turn.
+ *
+ * The robot is usually a little behind when the setpoints run out, so
+ * after the last one we keep steering towards it (a "settle" phase),
+ * and only call it finished once we're there and stopped, or after
+ * SETTLE_TICKS if we never quite get there.
+ */
+public class TrajectoryFollower {
+
+  /** How hard to pull back towards the path, per meter (or radian)
+   * we're off it, or per meter per second too slow. (Picked by trying
+   * a few in the simulator, whose physics are quite sluggish.)
+   */
+  private static final double POSITION_P = 20;
+  private static final double VELOCITY_P = 1;
+  private static final double HEADING_P = 8;
+
+  /** How long to keep trying to stop at the end, at most (2 seconds:
+   * a quick turn can overshoot and take over a second to swing back).
+   */
+  private static final int SETTLE_TICKS = 400;
+
+  /** How close to the last setpoint counts as there. */
+  private static final double POSITION_TOLERANCE = 0.1;
+  private static final double HEADING_TOLERANCE = Math.toRadians(10);
+  private static final double SPEED_TOLERANCE = 0.25;
+
+  private final Trajectory trajectory;
+  private int tick = 0;
+
+  /** The robot we're driving, from the last update(). */
+  private Rigidbody rigidbody;
+
+  /** Scratch space, so following doesn't allocate. */
+  private final Vector2 velocity = new Vector2(0, 0);
+
+  public TrajectoryFollower(Trajectory trajectory) {
+    this.trajectory = trajectory;
+  }
+
+  public Trajectory getTrajectory() {
+    return trajectory;
+  }
+
+  /** Whether we're done: past the last setpoint, and either there or
+   * out of time to get there.
+   */
+  public boolean isFinished() {
+    return (
+      tick >= trajectory.size() &&
+      (arrived() || tick >= trajectory.size() + SETTLE_TICKS)
+    );
+  }
+
+  /** Whether the robot is past the last setpoint and stopped on it
+   * (give or take the tolerances).
+   */
+  public boolean arrived() {
+    if (tick < trajectory.size()) return false;
+
+    int last = trajectory.size() - 1;
+    double dx = rigidbody.getPosition().x - trajectory.getX(last);
+    double dy = rigidbody.getPosition().y - trajectory.getY(last);
+    double heading = Utils.angleModulusRadians(
+      rigidbody.getHeadingRadians() - trajectory.getHeadingRadians(last)
+    );
+    double vx = rigidbody.getVelocity().x, vy = rigidbody.getVelocity().y;
+    return (
+      dx * dx + dy * dy < POSITION_TOLERANCE * POSITION_TOLERANCE &&
+      Math.abs(heading) < HEADING_TOLERANCE &&
+      vx * vx + vy * vy < SPEED_TOLERANCE * SPEED_TOLERANCE
+    );
+  }
+
+  /** How many times update() has been called. */
+  public int getTicks() {
+    return tick;
+  }
+
+  /** Drives the swerve towards this tick's setpoint (or the last one,
+   * once they've run out). Call it instead of Swerve.drive(), once per
+   * tick, at the trajectory's dt, until isFinished().
+   */
+  public void update(Swerve swerve) {
+    int i = Math.min(tick, trajectory.size() - 1);
+    tick++;
+
+    rigidbody = swerve.getRigidbody();
+    Vector2 position = rigidbody.getPosition();
+    double positionX = position.x, positionY = position.y;
+    Vector2 current = rigidbody.getVelocity();
+    double targetX = trajectory.getVelocityX(i);
+    double targetY = trajectory.getVelocityY(i);
+    velocity.set(
+      targetX +
+      POSITION_P * (trajectory.getX(i) - positionX) +
+      VELOCITY_P * (targetX - current.x),
+      targetY +
+      POSITION_P * (trajectory.getY(i) - positionY) +
+      VELOCITY_P * (targetY - current.y)
+    );
+    double headingError = Utils.angleModulusRadians(
+      trajectory.getHeadingRadians(i) - rigidbody.getHeadingRadians()
+    );
+    double angularVelocity =
+      trajectory.getAngularVelocity(i) + HEADING_P * headingError;
+
+    // Swerve.drive() turns clockwise for positive angular velocities,
+    // the trajectory counterclockwise.
+    swerve.drive(velocity, -angularVelocity, true);
+  }
+}
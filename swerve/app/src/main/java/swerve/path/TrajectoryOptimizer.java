@@ -0,0 +1,374 @@
+package swerve.path;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import swerve.Constants;
+import swerve.Constants.Drivebase;
+import swerve.Constants.Field;
+import swerve.Rigidbody;
+import swerve.Shape;
+import swerve.Swerve;
+import swerve.SwerveConfig;
+import swerve.Utils;
+import swerve.WorldShape;
+
+/** Looks for the quickest way to drive from one pose to another
+ * without hitting anything.
+ *
+ * A straight Trajectory from A to B is quickest if nothing's in the
+ * way, but if something is we have to go round it, and which way round
+ * (and how fast to take the bends) isn't obvious. So we guess, lots:
+ *
+ *  - A candidate is a path through up to MAX_VIA_POINTS extra
+ *    waypoints between A and B, driven at some fraction of the robot's
+ *    top speed and acceleration (a gentler path can be quicker
+ *    overall, if the robot can actually keep up with it).
+ *  - We score a candidate by actually driving it: a fresh Swerve, with
+ *    no window, follows it with a TrajectoryFollower (a "rollout"). Its
+ *    score is how long it takes to get to B and stop there. If it hits
+ *    anything (or leaves the field, or never gets there) on the way,
+ *    it's no good at all. Since the real Swerve drives it, with its
+ *    module limits, PID loops and all, a good score means the robot
+ *    can really do it, not just that the spline looks nice.
+ *  - Each "round" tries a batch of candidates: half new random ones,
+ *    half small changes to the best so far (smaller and smaller changes
+ *    as the rounds go on), and keeps the best few.
+ *
+ * Rollouts are independent, so each round's run in parallel on every
+ * core (with a parallel stream, like sim.Sweep).
+ *
+ * It's an "anytime" search: start() returns straight away, and the
+ * search keeps going in the background, always knowing its best
+ * answer so far, until you stop() it. optimize() does that for a fixed
+ * amount of time.
+ */
+public class TrajectoryOptimizer {
+
+  public static final int MAX_VIA_POINTS = 2;
+
+  /** How many candidates are kept to make changes to. */
+  private static final int ELITES = 8;
+
+  /** The slowest fraction of top speed a candidate might try. */
+  private static final double MIN_SPEED_SCALE = 0.2;
+
+  /** A way to get there, and how long it took. */
+  public record Result(
+    List<Waypoint> waypoints,
+    double speedScale,
+    Trajectory trajectory,
+    double seconds
+  ) {}
+
+  private record Candidate(double[] via, double speedScale) {}
+
+  private static final Comparator<Result> QUICKEST_FIRST =
+    Comparator.comparingDouble(Result::seconds);
+
+  private final SwerveConfig config;
+  private final List<WorldShape> obstacles;
+  private final int roundSize;
+
+  /** `obstacles` should already be where they go (see
+   * WorldShape.setPose()), and mustn't move while we're searching.
+   */
+  public TrajectoryOptimizer(SwerveConfig config, List<WorldShape> obstacles) {
+    this.config = config;
+    this.obstacles = List.copyOf(obstacles);
+    this.roundSize =
+      Math.max(32, 4 * Runtime.getRuntime().availableProcessors());
+    // The shapes work some things out the first time they're used, so
+    // do that here, before lots of threads use them at once.
+    new WorldShape(Drivebase.SHAPE);
+  }
+
+  /** Searches for `budgetMillis` milliseconds, and returns the best
+   * way found (or null, if there's none at all).
+   */
+  public Result optimize(Waypoint from, Waypoint to, long budgetMillis) {
+    Search search = start(from, to, 0);
+    try {
+      search.await(budgetMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    search.stop();
+    return search.best();
+  }
+
+  /** Starts searching in the background. */
+  public Search start(Waypoint from, Waypoint to, long seed) {
+    Search search = new Search(from, to, seed);
+    search.thread.start();
+    return search;
+  }
+
+  public class Search {
+
+    private final Waypoint from, to;
+    private final Random random;
+    private final Thread thread;
+    private volatile boolean stopped = false;
+    private volatile Result best;
+    private final AtomicInteger evaluated = new AtomicInteger();
+    private volatile int rounds = 0;
+
+    private Search(Waypoint from, Waypoint to, long seed) {
+      this.from = from;
+      this.to = to;
+      this.random = new Random(seed);
+      thread = new Thread(this::run, "trajectory-optimizer");
+      thread.setDaemon(true);
+    }
+
+    /** The best way found so far (null if none yet). */
+    public Result best() {
+      return best;
+    }
+
+    /** How many candidates have been driven so far. */
+    public int evaluated() {
+      return evaluated.get();
+    }
+
+    public int rounds() {
+      return rounds;
+    }
+
+    /** Stops searching (rollouts already going finish early). */
+    public void stop() {
+      stopped = true;
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /** Waits for up to `millis` milliseconds (or until it's stopped),
+     * then returns the best so far.
+     */
+    public Result await(long millis) throws InterruptedException {
+      thread.join(millis);
+      return best;
+    }
+
+    private void run() {
+      List<Result> elites = new ArrayList<>();
+      // Start with the obvious: straight there, at a few speeds.
+      List<Candidate> candidates = new ArrayList<>();
+      for (double scale : new double[] { 1, 0.7, 0.5, 0.3 }) {
+        candidates.add(new Candidate(new double[0], scale));
+      }
+
+      for (int round = 0; !stopped; round++) {
+        // Changes start at about a fifth of the field, and shrink.
+        double spread = Math.max(0.05, 2 * Math.pow(0.85, round));
+        while (candidates.size() < roundSize) {
+          if (elites.isEmpty() || candidates.size() % 2 == 0) {
+            candidates.add(randomCandidate());
+          } else {
+            Result elite = elites.get(candidates.size() % elites.size());
+            candidates.add(nudge(elite, spread));
+          }
+        }
+
+        List<Result> results = candidates
+          .parallelStream()
+          .map(candidate -> evaluate(from, to, candidate, this))
+          .filter(Objects::nonNull)
+          .toList();
+        evaluated.addAndGet(candidates.size());
+        candidates.clear();
+        if (stopped) break; // Those were cut short, so don't trust them.
+
+        elites.addAll(results);
+        elites.sort(QUICKEST_FIRST);
+        while (elites.size() > ELITES) {
+          elites.remove(elites.size() - 1);
+        }
+        if (!elites.isEmpty()) {
+          best = elites.get(0);
+        }
+        rounds = round + 1;
+      }
+    }
+
+    private Candidate randomCandidate() {
+      int n = random.nextInt(MAX_VIA_POINTS + 1);
+      double[] via = new double[2 * n];
+      for (int i = 0; i < n; i++) {
+        via[2 * i] = random.nextDouble(0, Field.WIDTH_METERS);
+        via[2 * i + 1] = random.nextDouble(0, Field.HEIGHT_METERS);
+      }
+      return new Candidate(via, random.nextDouble(MIN_SPEED_SCALE, 1));
+    }
+
+    private Candidate nudge(Result elite, double spread) {
+      List<Waypoint> waypoints = elite.waypoints();
+      double[] via = new double[2 * (waypoints.size() - 2)];
+      for (int i = 0; i < via.length / 2; i++) {
+        Waypoint waypoint = waypoints.get(i + 1);
+        via[2 * i] = clamp(
+          waypoint.x() + random.nextGaussian() * spread,
+          0,
+          Field.WIDTH_METERS
+        );
+        via[2 * i + 1] = clamp(
+          waypoint.y() + random.nextGaussian() * spread,
+          0,
+          Field.HEIGHT_METERS
+        );
+      }
+      double scale = clamp(
+        elite.speedScale() + random.nextGaussian() * spread / 10,
+        MIN_SPEED_SCALE,
+        1
+      );
+      return new Candidate(via, scale);
+    }
+  }
+
+  private static double clamp(double value, double min, double max) {
+    return Math.max(min, Math.min(max, value));
+  }
+
+  /** The waypoints for a candidate, turning evenly from `from`'s
+   * heading to `to`'s along the way.
+   */
+  private static List<Waypoint> waypoints(
+    Waypoint from,
+    Waypoint to,
+    double[] via
+  ) {
+    int n = via.length / 2;
+    double turn = Utils.angleModulusRadians(
+      to.headingRadians() - from.headingRadians()
+    );
+    List<Waypoint> waypoints = new ArrayList<>();
+    waypoints.add(from);
+    for (int i = 0; i < n; i++) {
+      double heading = from.headingRadians() + turn * (i + 1) / (n + 1);
+      waypoints.add(new Waypoint(via[2 * i], via[2 * i + 1], heading));
+    }
+    waypoints.add(to);
+    return waypoints;
+  }
+
+  /** Drives a candidate. Returns null if it's no good. */
+  private Result evaluate(
+    Waypoint from,
+    Waypoint to,
+    Candidate candidate,
+    Search search
+  ) {
+    List<Waypoint> waypoints = waypoints(from, to, candidate.via());
+    double scale = candidate.speedScale();
+    TrajectoryConstraints constraints = new TrajectoryConstraints(
+      config.maxSpeedMetersPerSecond * scale,
+      Drivebase.MAX_ACCELERATION_METERS_PER_SECOND_SQUARED * scale,
+      config.maxAngularSpeedRadiansPerSecond * scale
+    );
+    Trajectory trajectory;
+    try {
+      trajectory =
+        Trajectory.generate(
+          waypoints,
+          constraints,
+          Constants.SECONDS_PER_UPDATE
+        );
+    } catch (IllegalArgumentException e) {
+      return null; // e.g. two waypoints in the same place
+    }
+
+    // Quick check first: if the trajectory itself goes through
+    // something, the robot following it will too.
+    WorldShape robot = new WorldShape(Drivebase.SHAPE);
+    for (int i = 0; i < trajectory.size(); i += 4) {
+      robot.setPose(
+        trajectory.getX(i),
+        trajectory.getY(i),
+        trajectory.getHeadingRadians(i)
+      );
+      if (blocked(robot)) return null;
+    }
+
+    // Then drive it for real.
+    Swerve swerve = new Swerve(config);
+    swerve.setPose(from.x(), from.y(), from.headingRadians());
+    Rigidbody rigidbody = swerve.getRigidbody();
+    TrajectoryFollower follower = new TrajectoryFollower(trajectory);
+    while (!follower.isFinished()) {
+      if (search.stopped) return null;
+
+      follower.update(swerve);
+      swerve.update(Constants.SECONDS_PER_UPDATE);
+      robot.setPose(rigidbody);
+      if (blocked(robot)) return null;
+    }
+    if (!follower.arrived()) return null; // Never got there
+
+    return new Result(
+      waypoints,
+      scale,
+      trajectory,
+      follower.getTicks() * Constants.SECONDS_PER_UPDATE
+    );
+  }
+
+  private boolean blocked(WorldShape robot) {
+    if (
+      robot.minX() < 0 ||
+      robot.minY() < 0 ||
+      robot.maxX() > Field.WIDTH_METERS ||
+      robot.maxY() > Field.HEIGHT_METERS
+    ) {
+      return true;
+    }
+    for (WorldShape obstacle : obstacles) {
+      if (robot.intersects(obstacle)) return true;
+    }
+    return false;
+  }
+
+  /** Finds a way round a wall in the middle of the field, printing
+   * the best so far every so often.
+   */
+  public static void main(String[] args) throws InterruptedException {
+    long budget = args.length > 0 ? Long.parseLong(args[0]) : 5000;
+
+    WorldShape wall = new WorldShape(new Shape.Rectangle(1, 6));
+    wall.setPose(5, 4, 0);
+    TrajectoryOptimizer optimizer = new TrajectoryOptimizer(
+      new SwerveConfig(),
+      List.of(wall)
+    );
+    Waypoint from = new Waypoint(1.5, 2, 0);
+    Waypoint to = new Waypoint(8.5, 2, Math.PI / 2);
+
+    Search search = optimizer.start(from, to, 1);
+    long start = System.nanoTime();
+    while (System.nanoTime() - start < budget * 1_000_000) {
+      Result best = search.await(500);
+      System.out.printf(
+        "%5.1f s: %d rounds, %d rollouts, best %s%n",
+        (System.nanoTime() - start) / 1e9,
+        search.rounds(),
+        search.evaluated(),
+        best == null
+          ? "(nothing yet)"
+          : String.format(
+            "%.2f s at %.0f%% speed through %s",
+            best.seconds(),
+            best.speedScale() * 100,
+            best.waypoints().subList(1, best.waypoints().size() - 1)
+          )
+      );
+    }
+    search.stop();
+  }
+}
@@ -0,0 +1,7 @@
+package swerve.path;
+
+/** A point a path goes through, and which way the robot should be
+ * facing when it gets there. (A swerve can face any way it likes while
+ * it drives, so the heading has nothing to do with the path's shape.)
+ */
+public record Waypoint(double x, double y, double headingRadians) {}
@@ -0,0 +1,70 @@
+package swerve.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A list of drive commands to play back, instead of a person on
+ * the keyboard: "drive at this velocity (and turn at this rate) for
+ * this many seconds, then this, then this...".
+ *
+ * The velocities are always field oriented, so the path the robot
+ * *should* follow is easy to work out (see Simulation).
+ */
+public class DriveScript {
+
+  public record Step(
+    double seconds,
+    double velocityX,
+    double velocityY,
+    double angularVelocity
+  ) {}
+
+  private final List<Step> steps = new ArrayList<>();
+  private double duration = 0;
+
+  /** Adds a step and returns the script, so they can be chained. */
+  public DriveScript then(
+    double seconds,
+    double velocityX,
+    double velocityY,
+    double angularVelocity
+  ) {
+    steps.add(new Step(seconds, velocityX, velocityY, angularVelocity));
+    duration += seconds;
+    return this;
+  }
+
+  /** Sits still for a while, e.g. to see if the robot settles. */
+  public DriveScript rest(double seconds) {
+    return then(seconds, 0, 0, 0);
+  }
+
+  public List<Step> getSteps() {
+    return steps;
+  }
+
+  public double getDuration() {
+    return duration;
+  }
+
+  /** A bit of everything: a square at a few speeds, a spin on the
+   * spot, and then driving while spinning, with rests in between.
+   * Speeds are in meters per second, so keep them under the max.
+   */
+  public static DriveScript standard() {
+    return new DriveScript()
+      .rest(0.5)
+      .then(1, 2, 0, 0)
+      .then(1, 0, 2, 0)
+      .then(1, -2, 0, 0)
+      .then(1, 0, -2, 0)
+      .rest(1)
+      .then(0.5, 5, 0, 0)
+      .then(0.5, -5, 0, 0)
+      .rest(1)
+      .then(1, 0, 0, Math.PI)
+      .rest(1)
+      .then(2, 1, 1, Math.PI / 2)
+      .rest(1);
+  }
+}
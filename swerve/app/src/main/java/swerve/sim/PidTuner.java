@@ -0,0 +1,383 @@
+package swerve.sim;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import swerve.PIDController;
+import swerve.SwerveConfig;
+import swerve.SwerveModule;
+import swerve.Vector2;
+
+/** Picks PID gains for a SwerveModule's steering or driving loop,
+ * instead of guessing them by hand.
+ *
+ * A good loop gets to its target quickly and doesn't overshoot it.
+ * We score gains by simulating a "step response" (the target suddenly
+ * jumps, how does the module follow?) and adding up the "ITAE", the
+ * integral of time times absolute error: being off at all costs
+ * something, and being off *late* costs more. Overshooting gets an
+ * extra penalty on top. Smaller is better.
+ *
+ * Then it's a search for the gains with the smallest cost:
+ *
+ *  1. A "relay experiment" gives a starting point. We swap the PID
+ *     for a relay (full power one way or the other, depending on which
+ *     side of the target we're on) which makes the loop oscillate, and
+ *     the size and speed of that oscillation tell us how much gain the
+ *     loop can take. The Ziegler-Nichols rules turn those into gains.
+ *     https://en.wikipedia.org/wiki/Ziegler%E2%80%93Nichols_method
+ *  2. We try a bunch of random gains around that, and the hand-picked
+ *     ones in Constants, and keep the best.
+ *  3. A "pattern search" then nudges each gain up and down, moves to
+ *     whichever is better, and takes smaller nudges when nothing is.
+ *
+ * Every simulation is independent, so each batch of candidates runs in
+ * parallel, and costs are cached by gains (rounded a little), since
+ * the pattern search comes back to the same gains a lot.
+ *
+ * Run it with `./gradlew tunePid`.
+ */
+public class PidTuner {
+
+  public enum Loop {
+    STEER,
+    DRIVE,
+  }
+
+  public record Gains(double kP, double kI, double kD) {
+    @Override
+    public String toString() {
+      return String.format("kP = %.4g, kI = %.4g, kD = %.4g", kP, kI, kD);
+    }
+  }
+
+  public record Result(Gains gains, double cost) {}
+
+  /** Simulated at the same rate as Simulation. Note that
+   * PIDController's kI and kD are per tick, so gains tuned at one rate
+   * won't behave the same at another.
+   */
+  public static final double DT = Simulation.DEFAULT_DT;
+  public static final double STEP_SECONDS = 0.5;
+  public static final double OVERSHOOT_PENALTY = 10;
+
+  /** The step: turn the wheel from 0 to 90 degrees, or speed it up
+   * from 0 to 2 meters per second.
+   */
+  public static final double STEER_TARGET_RADIANS = Math.PI / 2;
+  public static final double DRIVE_TARGET_METERS_PER_SECOND = 2;
+
+  private static final int RANDOM_CANDIDATES = 64;
+  private static final int MAX_ITERATIONS = 200;
+
+  private final SwerveConfig config;
+  private final Loop loop;
+  private final Map<Gains, Double> cache = new ConcurrentHashMap<>();
+  private final AtomicInteger simulations = new AtomicInteger();
+
+  public PidTuner(SwerveConfig config, Loop loop) {
+    this.config = config;
+    this.loop = loop;
+  }
+
+  /** How many step responses have actually been simulated (rather
+   * than found in the cache).
+   */
+  public int getSimulations() {
+    return simulations.get();
+  }
+
+  public Gains handTuned() {
+    return loop == Loop.STEER
+      ? new Gains(config.steerP, config.steerI, config.steerD)
+      : new Gains(config.driveP, config.driveI, config.driveD);
+  }
+
+  private double target() {
+    return loop == Loop.STEER
+      ? STEER_TARGET_RADIANS
+      : DRIVE_TARGET_METERS_PER_SECOND;
+  }
+
+  /** Where the loop is at the end of each tick, with the given
+   * controller in charge of it (the other loop keeps its gains from
+   * the config).
+   */
+  public double[] response(PIDController controller, double seconds) {
+    PIDController steer = loop == Loop.STEER
+      ? controller
+      : new PIDController(config.steerP, config.steerI, config.steerD);
+    PIDController drive = loop == Loop.DRIVE
+      ? controller
+      : new PIDController(config.driveP, config.driveI, config.driveD);
+    SwerveModule module = new SwerveModule(config, steer, drive);
+
+    // Driving straight ahead, the wheel already points the right way;
+    // to steer, ask for a (slow) velocity off to the side.
+    Vector2 targetVelocity = loop == Loop.STEER
+      ? Vector2.fromPolar(1, STEER_TARGET_RADIANS)
+      : new Vector2(DRIVE_TARGET_METERS_PER_SECOND, 0);
+    module.drive(targetVelocity);
+
+    double[] measurements = new double[(int) Math.round(seconds / DT)];
+    for (int i = 0; i < measurements.length; i++) {
+      module.update(DT);
+      measurements[i] = loop == Loop.STEER
+        ? module.getHeadingRadians()
+        : module.getSpeedMetersPerSecond();
+    }
+    return measurements;
+  }
+
+  public double[] response(Gains gains) {
+    PIDController controller = new PIDController(gains.kP, gains.kI, gains.kD);
+    return response(controller, STEP_SECONDS);
+  }
+
+  /** ITAE plus the overshoot penalty, see above. */
+  public double cost(Gains gains) {
+    Gains key = round(gains);
+    Double cached = cache.get(key);
+    if (cached != null) return cached;
+
+    simulations.incrementAndGet();
+    double[] response = response(key);
+    double target = target();
+    double itae = 0, highest = 0;
+    for (int i = 0; i < response.length; i++) {
+      double time = (i + 1) * DT;
+      itae += time * Math.abs(target - response[i]) * DT;
+      highest = Math.max(highest, response[i]);
+    }
+    // Both measured relative to the size of the step, so steering and
+    // driving costs are on a similar scale.
+    double overshoot = Math.max(0, highest - target) / target;
+    double cost = itae / target + OVERSHOOT_PENALTY * overshoot;
+    if (!Double.isFinite(cost)) {
+      cost = Double.MAX_VALUE; // Blew up
+    }
+
+    cache.put(key, cost);
+    return cost;
+  }
+
+  /** Rounds to 4 significant figures, which is plenty for gains. */
+  private static Gains round(Gains gains) {
+    MathContext context = new MathContext(4);
+    return new Gains(
+      new BigDecimal(gains.kP).round(context).doubleValue(),
+      new BigDecimal(gains.kI).round(context).doubleValue(),
+      new BigDecimal(gains.kD).round(context).doubleValue()
+    );
+  }
+
+  private List<Double> costs(List<Gains> candidates) {
+    return candidates.parallelStream().map(this::cost).toList();
+  }
+
+  /** A controller that only ever pushes full power one way or the other. */
+  private static class Relay extends PIDController {
+
+    private final double amplitude;
+
+    Relay(double amplitude) {
+      // A plain P controller with kP = 1 just returns the error
+      // (wrapped around properly, for steering).
+      super(1, 0, 0);
+      this.amplitude = amplitude;
+    }
+
+    @Override
+    public double calculate(double measurement, double reference) {
+      return Math.signum(super.calculate(measurement, reference)) * amplitude;
+    }
+  }
+
+  /** Step 1 above. Returns null if the loop didn't oscillate. */
+  public Gains zieglerNichols() {
+    double amplitude = handTuned().kP * target();
+    double seconds = 2;
+    double[] response = response(new Relay(amplitude), seconds);
+
+    // Skip the first half, while it's still getting to the target.
+    double target = target();
+    double lowest = Double.POSITIVE_INFINITY;
+    double highest = Double.NEGATIVE_INFINITY;
+    int crossings = 0;
+    for (int i = response.length / 2; i < response.length; i++) {
+      lowest = Math.min(lowest, response[i]);
+      highest = Math.max(highest, response[i]);
+      if ((response[i] > target) != (response[i - 1] > target)) {
+        crossings++;
+      }
+    }
+    if (crossings < 2 || highest == lowest) {
+      return null;
+    }
+
+    // The "ultimate" gain and period: at this gain, a P controller would
+    // oscillate forever, this fast.
+    double oscillation = (highest - lowest) / 2;
+    double ultimateGain = 4 * amplitude / (Math.PI * oscillation);
+    double ultimatePeriod = 2 * (seconds / 2) / crossings;
+
+    double kP = 0.6 * ultimateGain;
+    double integralTime = ultimatePeriod / 2;
+    double derivativeTime = ultimatePeriod / 8;
+    // Ziegler-Nichols gives gains per second, but PIDController
+    // wants them per tick.
+    return new Gains(kP, kP / integralTime * DT, kP * derivativeTime / DT);
+  }
+
+  private static Gains fromLog(double[] logGains) {
+    return new Gains(
+      Math.exp(logGains[0]),
+      Math.exp(logGains[1]),
+      Math.exp(logGains[2])
+    );
+  }
+
+  /** Gains of exactly 0 can't be searched "by ratio", so nudge them. */
+  private static double[] toLog(Gains gains) {
+    double floor = gains.kP * 1e-4;
+    return new double[] {
+      Math.log(gains.kP),
+      Math.log(Math.max(gains.kI, floor)),
+      Math.log(Math.max(gains.kD, floor)),
+    };
+  }
+
+  /** Steps 1-3 above. */
+  public Result tune(long seed) {
+    Gains handTuned = handTuned();
+    Gains start = zieglerNichols();
+    if (start == null) start = handTuned;
+
+    // Step 2: scatter candidates around both starting points, each
+    // gain anywhere from 8x smaller to 8x bigger.
+    Random random = new Random(seed);
+    List<Gains> candidates = new ArrayList<>();
+    candidates.add(start);
+    candidates.add(handTuned);
+    for (int i = 0; i < RANDOM_CANDIDATES; i++) {
+      double[] around = toLog(i % 2 == 0 ? start : handTuned);
+      for (int j = 0; j < around.length; j++) {
+        around[j] += random.nextDouble(-Math.log(8), Math.log(8));
+      }
+      candidates.add(fromLog(around));
+    }
+    List<Double> candidateCosts = costs(candidates);
+    int bestI = 0;
+    for (int i = 1; i < candidates.size(); i++) {
+      if (candidateCosts.get(i) < candidateCosts.get(bestI)) bestI = i;
+    }
+
+    // Step 3: pattern search, in "log space" so a nudge is a ratio
+    // (x2, /2) rather than an amount, which suits gains of any size.
+    double[] current = toLog(candidates.get(bestI));
+    double currentCost = candidateCosts.get(bestI);
+    double step = Math.log(2);
+    for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+      if (step < Math.log(1.001)) break;
+
+      List<Gains> neighbours = new ArrayList<>();
+      for (int j = 0; j < current.length; j++) {
+        for (int direction = -1; direction <= 1; direction += 2) {
+          double[] neighbour = current.clone();
+          neighbour[j] += direction * step;
+          neighbours.add(fromLog(neighbour));
+        }
+      }
+      List<Double> neighbourCosts = costs(neighbours);
+
+      int best = -1;
+      for (int i = 0; i < neighbours.size(); i++) {
+        if (neighbourCosts.get(i) < currentCost) {
+          currentCost = neighbourCosts.get(i);
+          best = i;
+        }
+      }
+      if (best == -1) {
+        step /= 2;
+      } else {
+        current = toLog(neighbours.get(best));
+      }
+    }
+
+    // The search can't get kI or kD to exactly 0, only small, so if
+    // they're doing nothing, get rid of them.
+    Gains tuned = round(fromLog(current));
+    Gains withoutI = new Gains(tuned.kP, 0, tuned.kD);
+    if (cost(withoutI) <= currentCost) {
+      tuned = withoutI;
+      currentCost = cost(withoutI);
+    }
+    Gains withoutD = new Gains(tuned.kP, tuned.kI, 0);
+    if (cost(withoutD) <= currentCost) {
+      tuned = withoutD;
+      currentCost = cost(withoutD);
+    }
+    return new Result(tuned, currentCost);
+  }
+
+  public static void main(String[] args) {
+    SwerveConfig config = new SwerveConfig();
+    for (Loop loop : Loop.values()) {
+      PidTuner tuner = new PidTuner(config, loop);
+      long start = System.nanoTime();
+      Gains handTuned = tuner.handTuned();
+      Gains zieglerNichols = tuner.zieglerNichols();
+      Result tuned = tuner.tune(1);
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      System.out.printf(
+        "%s loop (%d simulations in %.2f s)%n",
+        loop,
+        tuner.getSimulations(),
+        seconds
+      );
+      System.out.printf(
+        "  hand tuned:      %s, cost %.4g%n",
+        handTuned,
+        tuner.cost(handTuned)
+      );
+      if (zieglerNichols != null) {
+        System.out.printf(
+          "  Ziegler-Nichols: %s, cost %.4g%n",
+          zieglerNichols,
+          tuner.cost(zieglerNichols)
+        );
+      }
+      System.out.printf(
+        "  tuned:           %s, cost %.4g%n",
+        tuned.gains(),
+        tuned.cost()
+      );
+
+      // The step responses, side by side.
+      double[] before = tuner.response(handTuned);
+      double[] after = tuner.response(tuned.gains());
+      System.out.printf(
+        "  %8s %8s %10s %8s%n",
+        "time",
+        "target",
+        "hand",
+        "tuned"
+      );
+      for (int i = 4; i < before.length; i += 5) {
+        System.out.printf(
+          "  %8.3f %8.3f %10.4f %8.4f%n",
+          (i + 1) * DT,
+          tuner.target(),
+          before[i],
+          after[i]
+        );
+      }
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package swerve.sim;
+
+import swerve.Rigidbody;
+import swerve.Swerve;
+import swerve.SwerveConfig;
+import swerve.Vector2;
+import swerve.sim.DriveScript.Step;
+
+/** Drives a Swerve through a DriveScript with no window, as fast as
+ * the computer can go, and measures how well it followed along.
+ *
+ * Nothing here waits for the clock: "one second" of driving is just
+ * 1 / dt calls to update(), so a ten second script takes a few
+ * milliseconds. Each Simulation has its own Swerve, so several can run
+ * at the same time on different threads (see Sweep).
+ */
+public class Simulation {
+
+  /** How long one tick is, in seconds. Smaller is more accurate, but slower. */
+  public static final double DEFAULT_DT = 1.0 / 200;
+
+  /** How close the speed has to stay to where it ends up, as a
+   * fraction of the change in speed (or at least
+   * SETTLED_MIN_METERS_PER_SECOND), for the robot to count as settled.
+   */
+  public static final double SETTLED_FRACTION = 0.05;
+  public static final double SETTLED_MIN_METERS_PER_SECOND = 0.01;
+
+  /** How well a run went. Smaller is better for all of them.
+   *
+   * These are the usual ways of describing a "step response", i.e. what
+   * a controller does when its target suddenly changes, measured for
+   * every step of the script and then the worst taken:
+   *
+   * @param settlingTime how long (in seconds) the speed took to get
+   * close to the speed it ended the step at, and stay there.
+   * @param overshoot how far past that speed the robot went on the way,
+   * as a fraction of the change (so 0.1 means it went 10% too far).
+   * @param steadyStateError how far (in meters per second) the speed
+   * it ended up at was from the target speed.
+   * @param pathError the root mean square distance (in meters) between
+   * where the robot was and where it would have been if it had followed
+   * the script perfectly, over the whole run.
+   */
+  public record Metrics(
+    double settlingTime,
+    double overshoot,
+    double steadyStateError,
+    double pathError
+  ) {
+    @Override
+    public String toString() {
+      return String.format(
+        "settling %.3f s, overshoot %.1f%%, steady state error %.3f m/s, " +
+        "path error %.4f m",
+        settlingTime,
+        overshoot * 100,
+        steadyStateError,
+        pathError
+      );
+    }
+  }
+
+  public static Metrics run(SwerveConfig config, DriveScript script) {
+    return run(config, script, DEFAULT_DT);
+  }
+
+  public static Metrics run(
+    SwerveConfig config,
+    DriveScript script,
+    double dt
+  ) {
+    Swerve swerve = new Swerve(config);
+    Rigidbody rigidbody = swerve.getRigidbody();
+    Vector2 command = new Vector2(0, 0);
+
+    // Where the robot should be: the start, plus every commanded
+    // velocity so far times how long it was commanded for.
+    Vector2 start = rigidbody.getPosition();
+    double idealX = start.x, idealY = start.y;
+
+    double worstSettlingTime = 0, worstOvershoot = 0, worstSteadyState = 0;
+    double squaredErrorSum = 0;
+    long ticks = 0;
+
+    // The velocity at every tick of the current step, since we only know
+    // whether it settled once we know where it ended up.
+    double[] velocityXs = new double[0], velocityYs = new double[0];
+
+    for (Step step : script.getSteps()) {
+      command.set(step.velocityX(), step.velocityY());
+      Vector2 initial = rigidbody.getVelocity();
+      double initialX = initial.x, initialY = initial.y;
+
+      // Run to the nearest tick, so rounding doesn't drift over lots of steps.
+      int stepTicks = (int) Math.round(step.seconds() / dt);
+      if (stepTicks == 0) continue;
+      if (velocityXs.length < stepTicks) {
+        velocityXs = new double[stepTicks];
+        velocityYs = new double[stepTicks];
+      }
+
+      for (int tick = 0; tick < stepTicks; tick++) {
+        swerve.drive(command, step.angularVelocity(), true);
+        swerve.update(dt);
+        idealX += step.velocityX() * dt;
+        idealY += step.velocityY() * dt;
+
+        Vector2 position = rigidbody.getPosition();
+        double errorX = position.x - idealX, errorY = position.y - idealY;
+        squaredErrorSum += errorX * errorX + errorY * errorY;
+        ticks++;
+
+        Vector2 velocity = rigidbody.getVelocity();
+        velocityXs[tick] = velocity.x;
+        velocityYs[tick] = velocity.y;
+      }
+
+      double finalX = velocityXs[stepTicks - 1];
+      double finalY = velocityYs[stepTicks - 1];
+      double changeX = finalX - initialX, changeY = finalY - initialY;
+      double change = Math.sqrt(changeX * changeX + changeY * changeY);
+      double band = Math.max(
+        SETTLED_FRACTION * change,
+        SETTLED_MIN_METERS_PER_SECOND
+      );
+
+      int settledFrom = stepTicks;
+      double furthest = 0;
+      for (int tick = stepTicks - 1; tick >= 0; tick--) {
+        double offX = velocityXs[tick] - finalX;
+        double offY = velocityYs[tick] - finalY;
+        boolean close = Math.sqrt(offX * offX + offY * offY) <= band;
+        if (close && settledFrom == tick + 1) {
+          settledFrom = tick;
+        }
+        if (change > 0) {
+          // How far past the final speed, in the direction it changed.
+          double past = (offX * changeX + offY * changeY) / change;
+          furthest = Math.max(furthest, past);
+        }
+      }
+      worstSettlingTime = Math.max(worstSettlingTime, settledFrom * dt);
+      if (change > band) {
+        worstOvershoot = Math.max(worstOvershoot, furthest / change);
+      }
+      worstSteadyState =
+        Math.max(
+          worstSteadyState,
+          Math.hypot(finalX - step.velocityX(), finalY - step.velocityY())
+        );
+    }
+
+    double pathError = ticks == 0 ? 0 : Math.sqrt(squaredErrorSum / ticks);
+    return new Metrics(
+      worstSettlingTime,
+      worstOvershoot,
+      worstSteadyState,
+      pathError
+    );
+  }
+}
@@ -0,0 +1,145 @@
+package swerve.sim;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import swerve.SwerveConfig;
+import swerve.sim.Simulation.Metrics;
+
+/** Tries lots of different SwerveConfigs on the same DriveScript to
+ * see which values drive best, e.g. to pick PID gains.
+ *
+ * Every Simulation is independent of the others, so this is what's
+ * called "embarrassingly parallel": we can hand them out to every core
+ * the computer has and they never have to talk to each other. A
+ * parallel stream does exactly that (splitting the list up between the
+ * threads of Java's shared "fork/join pool") and puts the results back
+ * in the original order.
+ *
+ * Run it with `./gradlew sweep`, or `./gradlew sweep --args="random 5000"`.
+ */
+public class Sweep {
+
+  public record Result(SwerveConfig config, Metrics metrics) {}
+
+  /** Best (smallest path error) first. */
+  public static final Comparator<Result> BEST_FIRST =
+    Comparator.comparingDouble(result -> result.metrics().pathError());
+
+  public static List<Result> run(
+    List<SwerveConfig> configs,
+    DriveScript script
+  ) {
+    return IntStream
+      .range(0, configs.size())
+      .parallel()
+      .mapToObj(i ->
+        new Result(configs.get(i), Simulation.run(configs.get(i), script))
+      )
+      .toList();
+  }
+
+  /** Every combination of the given values, on top of `base`. */
+  public static List<SwerveConfig> grid(
+    SwerveConfig base,
+    double[] driveP,
+    double[] steerP,
+    double[] massKg,
+    double[] friction,
+    double[] drivingGearRatio
+  ) {
+    List<SwerveConfig> configs = new ArrayList<>();
+    for (double dp : driveP) {
+      for (double sp : steerP) {
+        for (double mass : massKg) {
+          for (double f : friction) {
+            for (double ratio : drivingGearRatio) {
+              SwerveConfig config = base.copy();
+              config.driveP = dp;
+              config.steerP = sp;
+              config.massKg = mass;
+              config.friction = f;
+              config.drivingGearRatio = ratio;
+              configs.add(config);
+            }
+          }
+        }
+      }
+    }
+    return configs;
+  }
+
+  /** n random configs around `base`. Gains are picked "log uniformly"
+   * (as likely to be between 1 and 10 as between 10 and 100), since
+   * we usually only know them to within a factor of ten or so.
+   */
+  public static List<SwerveConfig> random(SwerveConfig base, int n, long seed) {
+    Random random = new Random(seed);
+    List<SwerveConfig> configs = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      SwerveConfig config = base.copy();
+      config.driveP = logUniform(random, base.driveP / 10, base.driveP * 10);
+      config.driveD = random.nextDouble(0, base.driveP / 10);
+      config.steerP = logUniform(random, base.steerP / 10, base.steerP * 10);
+      config.steerD = random.nextDouble(0, base.steerP / 10);
+      config.massKg = random.nextDouble(base.massKg / 2, base.massKg * 2);
+      config.friction = random.nextDouble(base.friction / 2, base.friction * 2);
+      config.drivingGearRatio =
+        logUniform(
+          random,
+          base.drivingGearRatio / 2,
+          base.drivingGearRatio * 2
+        );
+      configs.add(config);
+    }
+    return configs;
+  }
+
+  private static double logUniform(Random random, double min, double max) {
+    return Math.exp(random.nextDouble(Math.log(min), Math.log(max)));
+  }
+
+  public static void main(String[] args) {
+    SwerveConfig base = new SwerveConfig();
+    List<SwerveConfig> configs;
+    if (args.length > 0 && args[0].equals("random")) {
+      int n = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+      configs = random(base, n, 1);
+    } else {
+      configs =
+        grid(
+          base,
+          new double[] { 25, 50, 100, 200, 400 },
+          new double[] { 125, 250, 500, 1000, 2000 },
+          new double[] { 1, 2, 4 },
+          new double[] { 0.4, 0.8, 1.6 },
+          new double[] { 1 / 8.14, 1 / 6.75, 1 / 5.9 }
+        );
+    }
+    DriveScript script = DriveScript.standard();
+
+    long start = System.nanoTime();
+    List<Result> results = new ArrayList<>(run(configs, script));
+    double seconds = (System.nanoTime() - start) / 1e9;
+    results.sort(BEST_FIRST);
+
+    double simulated = configs.size() * script.getDuration();
+    System.out.printf(
+      "%d configs, %.0f simulated seconds in %.2f s " +
+      "(%.0fx real time) on %d cores%n",
+      configs.size(),
+      simulated,
+      seconds,
+      simulated / seconds,
+      Runtime.getRuntime().availableProcessors()
+    );
+    System.out.println("Constants: " + Simulation.run(base, script));
+    System.out.println("Best:");
+    for (int i = 0; i < Math.min(10, results.size()); i++) {
+      Result result = results.get(i);
+      System.out.println("  " + result.metrics() + "  <-  " + result.config());
+    }
+  }
+}
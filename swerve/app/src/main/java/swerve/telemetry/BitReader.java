@@ -0,0 +1,43 @@
+package swerve.telemetry;
+
+import java.nio.ByteBuffer;
+
+/** Reads back what a BitWriter wrote, for GorillaDecoder. */
+class BitReader {
+
+  private ByteBuffer buffer;
+  private int position;
+  private long word;
+  /** How many bits of `word` haven't been read yet, at the bottom. */
+  private int left;
+
+  void reset(ByteBuffer buffer, int position) {
+    this.buffer = buffer;
+    this.position = position;
+    word = 0;
+    left = 0;
+  }
+
+  /** Reads `n` bits (0 to 64). */
+  long read(int n) {
+    if (n == 0) return 0;
+    if (n <= left) {
+      left -= n;
+      long bits = word >>> left;
+      return n == 64 ? bits : bits & ((1L << n) - 1);
+    }
+
+    // Take what's left of this word, then the rest from the next.
+    long high = left == 0 ? 0 : word & ((1L << left) - 1);
+    int need = n - left;
+    word = buffer.getLong(position);
+    position += 8;
+    left = 64 - need;
+    long low = word >>> left;
+    return need == 64 ? low : (high << need) | low;
+  }
+
+  boolean readBit() {
+    return read(1) != 0;
+  }
+}
@@ -0,0 +1,71 @@
+package swerve.telemetry;
+
+import java.nio.ByteBuffer;
+
+/** Writes a stream of bits (rather than whole bytes) into a ByteBuffer,
+ * for GorillaEncoder.
+ *
+ * Bits are collected in a long, and written out 64 at a time, first
+ * bit first (the buffer should be big-endian). Nothing is allocated,
+ * and the buffer can be anything, e.g. a memory-mapped file.
+ */
+class BitWriter {
+
+  private ByteBuffer buffer;
+  private int position;
+  private long word;
+  /** How many bits of `word` are in use, from the top down. */
+  private int used;
+
+  /** Starts writing at `position` in `buffer`. */
+  void reset(ByteBuffer buffer, int position) {
+    this.buffer = buffer;
+    this.position = position;
+    word = 0;
+    used = 0;
+  }
+
+  /** Writes the lowest `n` bits of `value` (n is 0 to 64). */
+  void write(long value, int n) {
+    if (n == 0) return;
+    if (n < 64) {
+      value &= (1L << n) - 1;
+    }
+
+    int free = 64 - used;
+    if (n < free) {
+      word |= value << (free - n);
+      used += n;
+    } else {
+      // Fill up this word, and put what's left at the top of the next.
+      int left = n - free;
+      word |= value >>> left;
+      buffer.putLong(position, word);
+      position += 8;
+      word = left == 0 ? 0 : value << (64 - left);
+      used = left;
+    }
+  }
+
+  void writeBit(boolean bit) {
+    write(bit ? 1 : 0, 1);
+  }
+
+  /** Writes out the last, partly filled word. Returns where the
+   * writing ended (always a whole number of words from the start).
+   */
+  int finish() {
+    if (used > 0) {
+      buffer.putLong(position, word);
+      position += 8;
+      word = 0;
+      used = 0;
+    }
+    return position;
+  }
+
+  /** How many bytes finish() would end up at, so far. */
+  int position() {
+    return position + (used > 0 ? 8 : 0);
+  }
+}
@@ -0,0 +1,106 @@
+package swerve.telemetry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/** Reads back blocks written by GorillaEncoder, one pair at a time.
+ * Nothing is allocated; reuse the decoder for every block.
+ *
+ *   decoder.begin(buffer);
+ *   while (decoder.next()) {
+ *     ... decoder.time(), decoder.value() ...
+ *   }
+ */
+public class GorillaDecoder {
+
+  private final BitReader bits = new BitReader();
+
+  private ByteBuffer buffer;
+  private int start;
+  private int count, read;
+  private long time, delta;
+  private long value;
+  private int leading, trailing;
+
+  /** Starts reading the block at `buffer`'s position, and moves the
+   * position to the end of it (so the next block is ready to begin()).
+   * Returns how many pairs it has.
+   */
+  public int begin(ByteBuffer buffer) {
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    this.buffer = buffer;
+    start = buffer.position();
+    int bytes = buffer.getInt(start + GorillaEncoder.BYTES_OFFSET);
+    if (bytes < GorillaEncoder.HEADER_BYTES || start + bytes > buffer.limit()) {
+      throw new IllegalArgumentException("Not a Gorilla block at " + start);
+    }
+    count = buffer.getInt(start + GorillaEncoder.COUNT_OFFSET);
+    read = 0;
+    bits.reset(buffer, start + GorillaEncoder.HEADER_BYTES);
+    buffer.position(start + bytes);
+    return count;
+  }
+
+  /** Moves on to the next pair. Returns false at the end of the block. */
+  public boolean next() {
+    if (read == count) {
+      return false;
+    }
+
+    if (read == 0) {
+      time = buffer.getLong(start + GorillaEncoder.FIRST_TIME_OFFSET);
+      value = buffer.getLong(start + GorillaEncoder.FIRST_VALUE_OFFSET);
+      delta = 0;
+      leading = 64;
+      trailing = 64;
+    } else {
+      readTime();
+      readValue();
+    }
+    read++;
+    return true;
+  }
+
+  /** Sign extends the bottom `n` bits of `bits`. */
+  private static long signed(long bits, int n) {
+    return (bits << (64 - n)) >> (64 - n);
+  }
+
+  private void readTime() {
+    long deltaOfDelta;
+    if (!bits.readBit()) {
+      deltaOfDelta = 0;
+    } else if (!bits.readBit()) {
+      deltaOfDelta = signed(bits.read(7), 7);
+    } else if (!bits.readBit()) {
+      deltaOfDelta = signed(bits.read(9), 9);
+    } else if (!bits.readBit()) {
+      deltaOfDelta = signed(bits.read(12), 12);
+    } else {
+      deltaOfDelta = bits.read(64);
+    }
+    delta += deltaOfDelta;
+    time += delta;
+  }
+
+  private void readValue() {
+    if (!bits.readBit()) {
+      return; // The same as last time
+    }
+    if (bits.readBit()) {
+      leading = (int) bits.read(5);
+      int meaningful = (int) bits.read(6);
+      if (meaningful == 0) meaningful = 64;
+      trailing = 64 - leading - meaningful;
+    }
+    value ^= bits.read(64 - leading - trailing) << trailing;
+  }
+
+  public long time() {
+    return time;
+  }
+
+  public double value() {
+    return Double.longBitsToDouble(value);
+  }
+}
@@ -0,0 +1,193 @@
+package swerve.telemetry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/** Squashes a stream of (time, value) pairs, e.g. one field of a
+ * telemetry log, into a lot fewer bytes. The trick comes from
+ * Facebook's "Gorilla" database, which had the same problem: lots
+ * and lots of numbers that mostly change slowly.
+ *
+ * Times: we log at a fixed rate, so the gap between one time and the
+ * next is nearly always the same as the last gap. So we store how
+ * much the gap *changed* (the "delta of delta"), which is nearly
+ * always 0, and takes just one bit:
+ *
+ *   0                       the same gap as last time
+ *   10   + 7 bits           changed by -64 to 63
+ *   110  + 9 bits           changed by -256 to 255
+ *   1110 + 12 bits          changed by -2048 to 2047
+ *   1111 + 64 bits          anything else
+ *
+ * Values: we XOR each double's bits with the last one's. If it's the
+ * same, that's all zeros, stored as one bit. If it's close, the sign,
+ * exponent and top of the mantissa are probably the same, so the XOR
+ * starts with a run of zeros (and often ends with one too); we only
+ * store the bits in between (the "meaningful" bits):
+ *
+ *   0                       the same as the last value
+ *   10 + bits               the meaningful bits fit where the last
+ *                           ones were, so just store those bits
+ *   11 + 5 bits + 6 bits    how many zeros come first, how many
+ *      + bits               meaningful bits there are, then them
+ *
+ * The stream is cut into "blocks" of at most `maxRecords` pairs, each
+ * of which starts from scratch. That means a reader can start at any
+ * block, and one bad block doesn't ruin the rest. A block is:
+ *
+ *   int   how many bytes the block takes, header and all
+ *   int   how many pairs are in it
+ *   long  the first time
+ *   long  the first value's bits
+ *   ...   the rest of the pairs, as above, padded to a whole long
+ *
+ * Nothing is allocated while encoding; reuse the encoder for every
+ * block.
+ */
+public class GorillaEncoder {
+
+  static final int HEADER_BYTES = 24;
+  static final int BYTES_OFFSET = 0;
+  static final int COUNT_OFFSET = 4;
+  static final int FIRST_TIME_OFFSET = 8;
+  static final int FIRST_VALUE_OFFSET = 16;
+
+  /** The most bits one pair can take: 4 + 64 for the time and
+   * 2 + 5 + 6 + 64 for the value, rounded up to whole bytes (and
+   * then some, for the padding at the end of the block).
+   */
+  static final int MAX_RECORD_BYTES = 32;
+
+  private final int maxRecords;
+  private final BitWriter bits = new BitWriter();
+
+  private ByteBuffer buffer;
+  private int start, limit;
+  private int count;
+  private long previousTime, previousDelta;
+  private long previousValue;
+  private int previousLeading, previousTrailing;
+
+  public GorillaEncoder(int maxRecords) {
+    this.maxRecords = maxRecords;
+  }
+
+  /** Starts a block at `buffer`'s position. The block can use the
+   * buffer up to its limit. The buffer's byte order is set to
+   * big-endian.
+   */
+  public void begin(ByteBuffer buffer) {
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    this.buffer = buffer;
+    start = buffer.position();
+    limit = buffer.limit();
+    count = 0;
+    bits.reset(buffer, start + HEADER_BYTES);
+  }
+
+  /** How many pairs are in the block so far. */
+  public int count() {
+    return count;
+  }
+
+  /** Adds a pair to the block. Returns false if it's full (call
+   * finish() and begin() another one, then add it there).
+   */
+  public boolean add(long time, double value) {
+    if (count == maxRecords) {
+      return false;
+    }
+    long valueBits = Double.doubleToRawLongBits(value);
+
+    if (count == 0) {
+      if (limit - start < HEADER_BYTES) {
+        return false;
+      }
+      buffer.putLong(start + FIRST_TIME_OFFSET, time);
+      buffer.putLong(start + FIRST_VALUE_OFFSET, valueBits);
+      previousTime = time;
+      previousDelta = 0;
+      previousValue = valueBits;
+      // Nothing fits in this, so the first change writes its size.
+      previousLeading = 64;
+      previousTrailing = 64;
+      count++;
+      return true;
+    }
+
+    if (limit - bits.position() < MAX_RECORD_BYTES) {
+      return false;
+    }
+    writeTime(time);
+    writeValue(valueBits);
+    count++;
+    return true;
+  }
+
+  private void writeTime(long time) {
+    long delta = time - previousTime;
+    long deltaOfDelta = delta - previousDelta;
+    previousTime = time;
+    previousDelta = delta;
+
+    if (deltaOfDelta == 0) {
+      bits.write(0b0, 1);
+    } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+      bits.write(0b10, 2);
+      bits.write(deltaOfDelta, 7);
+    } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+      bits.write(0b110, 3);
+      bits.write(deltaOfDelta, 9);
+    } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+      bits.write(0b1110, 4);
+      bits.write(deltaOfDelta, 12);
+    } else {
+      bits.write(0b1111, 4);
+      bits.write(deltaOfDelta, 64);
+    }
+  }
+
+  private void writeValue(long valueBits) {
+    long xor = valueBits ^ previousValue;
+    previousValue = valueBits;
+
+    if (xor == 0) {
+      bits.write(0b0, 1);
+      return;
+    }
+
+    int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+    int trailing = Long.numberOfTrailingZeros(xor);
+    if (leading >= previousLeading && trailing >= previousTrailing) {
+      bits.write(0b10, 2);
+      bits.write(
+        xor >>> previousTrailing,
+        64 - previousLeading - previousTrailing
+      );
+    } else {
+      int meaningful = 64 - leading - trailing;
+      bits.write(0b11, 2);
+      bits.write(leading, 5);
+      // 64 doesn't fit in 6 bits, but 0 never happens, so 0 means 64.
+      bits.write(meaningful, 6);
+      bits.write(xor >>> trailing, meaningful);
+      previousLeading = leading;
+      previousTrailing = trailing;
+    }
+  }
+
+  /** Finishes the block, and moves the buffer's position to just
+   * after it. Returns how many bytes it took.
+   */
+  public int finish() {
+    int end = count == 0 ? start + HEADER_BYTES : bits.finish();
+    buffer.putInt(start + BYTES_OFFSET, end - start);
+    buffer.putInt(start + COUNT_OFFSET, count);
+    if (count == 0) {
+      buffer.putLong(start + FIRST_TIME_OFFSET, 0);
+      buffer.putLong(start + FIRST_VALUE_OFFSET, 0);
+    }
+    buffer.position(end);
+    return end - start;
+  }
+}
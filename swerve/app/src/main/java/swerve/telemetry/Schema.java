@@ -0,0 +1,165 @@
+package swerve.telemetry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Says what's in each record of a telemetry log: a list of named,
+ * typed fields, each at a fixed place in the record.
+ *
+ * Every record is the same size ("fixed width"): an 8 byte timestamp
+ * and then the fields, one after the other. So record i of a file
+ * starts at `headerBytes + i * recordBytes` and field f of it is
+ * `field.offset()` bytes in, without reading anything before it.
+ *
+ * The schema is written at the start of every log file (its
+ * "header"), so a reader knows what it's looking at without having
+ * to be told.
+ */
+public class Schema {
+
+  public enum Type {
+    INT(4),
+    LONG(8),
+    FLOAT(4),
+    DOUBLE(8);
+
+    public final int bytes;
+
+    Type(int bytes) {
+      this.bytes = bytes;
+    }
+  }
+
+  /** One column of the log. Hang on to these and pass them to
+   * TelemetryLogger's put methods.
+   */
+  public record Field(String name, Type type, int index, int offset) {}
+
+  /** "SWTL" (SWerve TeLemetry), so we can tell our files apart. */
+  public static final int MAGIC = 0x5357544C;
+  public static final int VERSION = 1;
+
+  /** Where things are in the header. */
+  static final int MAGIC_OFFSET = 0;
+  static final int VERSION_OFFSET = 4;
+  static final int HEADER_BYTES_OFFSET = 8;
+  static final int RECORD_BYTES_OFFSET = 12;
+  static final int SEGMENT_OFFSET = 16;
+  /** How many records have been written, kept up to date as we go. */
+  static final int RECORD_COUNT_OFFSET = 24;
+  static final int FIELD_COUNT_OFFSET = 32;
+  static final int FIELDS_OFFSET = 36;
+
+  /** The timestamp comes first in every record. */
+  public static final int TIME_OFFSET = 0;
+
+  private final List<Field> fields = new ArrayList<>();
+  private int recordBytes = 8;
+
+  public Field addInt(String name) {
+    return add(name, Type.INT);
+  }
+
+  public Field addLong(String name) {
+    return add(name, Type.LONG);
+  }
+
+  public Field addFloat(String name) {
+    return add(name, Type.FLOAT);
+  }
+
+  public Field addDouble(String name) {
+    return add(name, Type.DOUBLE);
+  }
+
+  public Field add(String name, Type type) {
+    if (find(name) != null) {
+      throw new IllegalArgumentException("There's already a field " + name);
+    }
+    // Keep every field lined up to a multiple of its size, which is
+    // a little faster to read and write.
+    recordBytes = align(recordBytes, type.bytes);
+    Field field = new Field(name, type, fields.size(), recordBytes);
+    fields.add(field);
+    recordBytes += type.bytes;
+    return field;
+  }
+
+  private static int align(int bytes, int alignment) {
+    return (bytes + alignment - 1) / alignment * alignment;
+  }
+
+  public List<Field> getFields() {
+    return Collections.unmodifiableList(fields);
+  }
+
+  /** The field with this name, or null. */
+  public Field find(String name) {
+    for (Field field : fields) {
+      if (field.name().equals(name)) return field;
+    }
+    return null;
+  }
+
+  /** How many bytes a record takes, rounded up so every record starts
+   * on a multiple of 8 bytes too.
+   */
+  public int recordBytes() {
+    return align(recordBytes, 8);
+  }
+
+  /** How many bytes the header takes (also a multiple of 8). */
+  public int headerBytes() {
+    int bytes = FIELDS_OFFSET;
+    for (Field field : fields) {
+      bytes += 1 + 2 + field.name().getBytes(StandardCharsets.UTF_8).length;
+    }
+    return align(bytes, 8);
+  }
+
+  /** Writes the header for segment number `segment` of a log. */
+  public void writeHeader(ByteBuffer buffer, long segment) {
+    buffer.putInt(MAGIC_OFFSET, MAGIC);
+    buffer.putInt(VERSION_OFFSET, VERSION);
+    buffer.putInt(HEADER_BYTES_OFFSET, headerBytes());
+    buffer.putInt(RECORD_BYTES_OFFSET, recordBytes());
+    buffer.putLong(SEGMENT_OFFSET, segment);
+    buffer.putLong(RECORD_COUNT_OFFSET, 0);
+    buffer.putInt(FIELD_COUNT_OFFSET, fields.size());
+
+    int position = FIELDS_OFFSET;
+    for (Field field : fields) {
+      byte[] name = field.name().getBytes(StandardCharsets.UTF_8);
+      buffer.put(position, (byte) field.type().ordinal());
+      buffer.putShort(position + 1, (short) name.length);
+      buffer.put(position + 3, name);
+      position += 3 + name.length;
+    }
+  }
+
+  /** Reads back a schema written by writeHeader(). */
+  public static Schema readHeader(ByteBuffer buffer) {
+    if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+      throw new IllegalArgumentException("Not a telemetry log");
+    }
+    if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+      throw new IllegalArgumentException(
+        "Unknown telemetry log version " + buffer.getInt(VERSION_OFFSET)
+      );
+    }
+
+    Schema schema = new Schema();
+    int position = FIELDS_OFFSET;
+    for (int i = 0; i < buffer.getInt(FIELD_COUNT_OFFSET); i++) {
+      Type type = Type.values()[buffer.get(position)];
+      byte[] name = new byte[buffer.getShort(position + 1)];
+      buffer.get(position + 3, name);
+      schema.add(new String(name, StandardCharsets.UTF_8), type);
+      position += 3 + name.length;
+    }
+    return schema;
+  }
+}
@@ -0,0 +1,166 @@
+package swerve.telemetry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import swerve.Rigidbody;
+import swerve.Swerve;
+import swerve.SwerveModule;
+import swerve.SwerveOdometry;
+import swerve.Vector2;
+import swerve.telemetry.Schema.Field;
+
+/** Logs everything interesting about a Swerve every tick: where the
+ * robot is and how it's moving, and for each module which way it
+ * points, how fast it's going, what it was asked to do and how far
+ * off its PID loops are. Also where odometry (see SwerveOdometry)
+ * thinks the robot is, to compare.
+ *
+ * Turn it on with -Dswerve.telemetry=<directory>, see Simulator.
+ */
+public class SwerveTelemetry implements Closeable {
+
+  /** 64 MiB segments, at most 8 of them (so 512 MiB on disk). With 4
+   * modules a record is 272 bytes, so a segment holds about 246,000
+   * of them: about 20 minutes at 200 ticks a second. One of the 8 is
+   * always the empty spare waiting to be written to next, so the other
+   * 7 hold about the last 2.4 hours.
+   */
+  public static final long SEGMENT_BYTES = 64L << 20;
+  public static final int MAX_SEGMENTS = 8;
+  public static final String NAME = "swerve";
+
+  final Field x, y, heading;
+  final Field velocityX, velocityY, angularVelocity;
+  final Field odometryX, odometryY, odometryHeading;
+  final Field[] moduleHeading, moduleSpeed;
+  final Field[] moduleTargetX, moduleTargetY;
+  final Field[] steerError, driveError;
+
+  private final TelemetryLogger logger;
+
+  public SwerveTelemetry(Path directory, int moduleCount) throws IOException {
+    this(directory, moduleCount, SEGMENT_BYTES, MAX_SEGMENTS);
+  }
+
+  public SwerveTelemetry(
+    Path directory,
+    int moduleCount,
+    long segmentBytes,
+    int maxSegments
+  ) throws IOException {
+    Schema schema = new Schema();
+    x = schema.addDouble("x");
+    y = schema.addDouble("y");
+    heading = schema.addDouble("heading");
+    velocityX = schema.addDouble("velocityX");
+    velocityY = schema.addDouble("velocityY");
+    angularVelocity = schema.addDouble("angularVelocity");
+    odometryX = schema.addDouble("odometryX");
+    odometryY = schema.addDouble("odometryY");
+    odometryHeading = schema.addDouble("odometryHeading");
+
+    moduleHeading = new Field[moduleCount];
+    moduleSpeed = new Field[moduleCount];
+    moduleTargetX = new Field[moduleCount];
+    moduleTargetY = new Field[moduleCount];
+    steerError = new Field[moduleCount];
+    driveError = new Field[moduleCount];
+    for (int i = 0; i < moduleCount; i++) {
+      String module = "module" + i + ".";
+      moduleHeading[i] = schema.addDouble(module + "heading");
+      moduleSpeed[i] = schema.addDouble(module + "speed");
+      moduleTargetX[i] = schema.addDouble(module + "targetX");
+      moduleTargetY[i] = schema.addDouble(module + "targetY");
+      steerError[i] = schema.addDouble(module + "steerError");
+      driveError[i] = schema.addDouble(module + "driveError");
+    }
+
+    logger =
+      new TelemetryLogger(schema, directory, NAME, segmentBytes, maxSegments);
+  }
+
+  public TelemetryLogger getLogger() {
+    return logger;
+  }
+
+  /** Logs the state of `swerve` at `timeNanos`. Call this from the
+   * simulation thread (and only that thread), after the update.
+   */
+  public void log(long timeNanos, Swerve swerve) {
+    if (!logger.begin(timeNanos)) {
+      return;
+    }
+
+    Rigidbody rigidbody = swerve.getRigidbody();
+    logger.putDouble(x, rigidbody.getPosition().x);
+    logger.putDouble(y, rigidbody.getPosition().y);
+    logger.putDouble(heading, rigidbody.getHeadingRadians());
+    logger.putDouble(velocityX, rigidbody.getVelocity().x);
+    logger.putDouble(velocityY, rigidbody.getVelocity().y);
+    logger.putDouble(angularVelocity, rigidbody.getAngularVelocity());
+    SwerveOdometry odometry = swerve.getOdometry();
+    logger.putDouble(odometryX, odometry.getX());
+    logger.putDouble(odometryY, odometry.getY());
+    logger.putDouble(odometryHeading, odometry.getHeadingRadians());
+
+    for (int i = 0; i < moduleHeading.length; i++) {
+      SwerveModule module = swerve.getModule(i);
+      logger.putDouble(moduleHeading[i], module.getHeadingRadians());
+      logger.putDouble(moduleSpeed[i], module.getSpeedMetersPerSecond());
+      logger.putDouble(moduleTargetX[i], module.getTargetVelocity().x);
+      logger.putDouble(moduleTargetY[i], module.getTargetVelocity().y);
+      logger.putDouble(steerError[i], module.getSteerError());
+      logger.putDouble(driveError[i], module.getDriveError());
+    }
+
+    logger.end();
+  }
+
+  @Override
+  public void close() throws IOException {
+    logger.close();
+  }
+
+  /** Times how long logging takes: simulates a swerve for a while,
+   * logging every tick into a temporary directory.
+   */
+  public static void main(String[] args) throws IOException {
+    int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    Path directory = Files.createTempDirectory("swerve-telemetry");
+    Swerve swerve = new Swerve();
+    swerve.drive(new Vector2(1, 0.5), 1, true);
+    double dt = 1.0 / 200;
+
+    try (
+      SwerveTelemetry telemetry = new SwerveTelemetry(
+        directory,
+        swerve.getModuleCount()
+      )
+    ) {
+      int fields = telemetry.getLogger().getSchema().getFields().size();
+      // The clock keeps going across rounds, so the log's times only
+      // ever go up (TelemetryReader relies on that).
+      long time = 0;
+      for (int round = 0; round < 3; round++) {
+        long loggingNanos = 0;
+        for (int tick = 0; tick < ticks; tick++) {
+          swerve.update(dt);
+          time += 5_000_000L;
+          long start = System.nanoTime();
+          telemetry.log(time, swerve);
+          loggingNanos += System.nanoTime() - start;
+        }
+        System.out.printf(
+          "%d ticks: %.1f ns per tick, %.2f ns per field, %d dropped%n",
+          ticks,
+          (double) loggingNanos / ticks,
+          (double) loggingNanos / ticks / fields,
+          telemetry.getLogger().getDropped()
+        );
+      }
+    }
+    System.out.println("Logged to " + directory);
+  }
+}
@@ -0,0 +1,225 @@
+package swerve.telemetry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import swerve.Swerve;
+import swerve.Vector2;
+import swerve.telemetry.Schema.Field;
+
+/** Shrinks a telemetry log for keeping, using GorillaEncoder.
+ *
+ * A compressed log (a .tlz file) starts with the same header as a
+ * segment of the original (see Schema), with the record count of the
+ * whole log. Then come "groups" of up to GROUP_RECORDS records: each
+ * group has one Gorilla block per field, in the schema's order. So to
+ * read one field, we decode its block in each group and skip straight
+ * over the others (each block starts with its size).
+ *
+ * Every value is stored as a double, whatever the field's type. (Ints
+ * and floats fit in a double exactly, and so do longs up to 2^53.)
+ */
+public class TelemetryCompressor {
+
+  /** The same as TelemetryReader's index blocks, so a group lines up
+   * with an index entry.
+   */
+  public static final int GROUP_RECORDS = TelemetryReader.BLOCK_RECORDS;
+
+  /** Gets the pairs read out of a compressed log. */
+  public interface Sink {
+    void accept(long time, double value);
+  }
+
+  /** Compresses the whole log `reader` into `file`. Returns how big
+   * the file is.
+   */
+  public static long compress(TelemetryReader reader, Path file)
+    throws IOException {
+    Schema schema = reader.getSchema();
+    int fields = schema.getFields().size();
+    GorillaEncoder encoder = new GorillaEncoder(GROUP_RECORDS);
+
+    ByteBuffer header = ByteBuffer
+      .allocate(schema.headerBytes())
+      .order(ByteOrder.LITTLE_ENDIAN);
+    schema.writeHeader(header, 0);
+    header.putLong(Schema.RECORD_COUNT_OFFSET, reader.size());
+
+    // Room for a group even if nothing compresses at all.
+    ByteBuffer group = ByteBuffer.allocateDirect(
+      fields *
+      (GorillaEncoder.HEADER_BYTES +
+        GROUP_RECORDS * GorillaEncoder.MAX_RECORD_BYTES)
+    );
+
+    try (
+      FileChannel channel = FileChannel.open(
+        file,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE
+      )
+    ) {
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+
+      for (long first = 0; first < reader.size(); first += GROUP_RECORDS) {
+        long end = Math.min(reader.size(), first + GROUP_RECORDS);
+        group.clear();
+        for (Field field : schema.getFields()) {
+          encoder.begin(group);
+          for (long record = first; record < end; record++) {
+            encoder.add(reader.time(record), reader.getDouble(record, field));
+          }
+          encoder.finish();
+        }
+        group.flip();
+        while (group.hasRemaining()) {
+          channel.write(group);
+        }
+      }
+      return channel.size();
+    }
+  }
+
+  /** Reads one field, all the way through, out of a compressed log. */
+  public static void read(Path file, String name, Sink sink)
+    throws IOException {
+    try (FileChannel channel = FileChannel.open(file)) {
+      MappedByteBuffer buffer = channel.map(
+        FileChannel.MapMode.READ_ONLY,
+        0,
+        channel.size()
+      );
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      Schema schema = Schema.readHeader(buffer);
+      Field field = schema.find(name);
+      if (field == null) {
+        throw new IllegalArgumentException("The log has no field " + name);
+      }
+      int fields = schema.getFields().size();
+
+      GorillaDecoder decoder = new GorillaDecoder();
+      buffer.position(schema.headerBytes());
+      // The blocks themselves are big-endian, see BitWriter.
+      buffer.order(ByteOrder.BIG_ENDIAN);
+      while (buffer.hasRemaining()) {
+        for (int f = 0; f < fields; f++) {
+          if (f != field.index()) {
+            // Skip it: the block starts with its size.
+            int bytes = buffer.getInt(
+              buffer.position() + GorillaEncoder.BYTES_OFFSET
+            );
+            buffer.position(buffer.position() + bytes);
+            continue;
+          }
+          decoder.begin(buffer);
+          while (decoder.next()) {
+            sink.accept(decoder.time(), decoder.value());
+          }
+        }
+      }
+    }
+  }
+
+  /** Either compresses a log:
+   *
+   *   TelemetryCompressor <directory> <file.tlz>
+   *
+   * or, with no arguments, times encoding and decoding some simulated
+   * driving in memory.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 2) {
+      try (
+        TelemetryReader reader = TelemetryReader.open(
+          Path.of(args[0]),
+          SwerveTelemetry.NAME
+        )
+      ) {
+        long raw = reader.size() * reader.getSchema().recordBytes();
+        long compressed = compress(reader, Path.of(args[1]));
+        System.out.printf(
+          "%d bytes -> %d bytes (%.1fx smaller)%n",
+          raw,
+          compressed,
+          (double) raw / compressed
+        );
+      }
+      return;
+    }
+    benchmark();
+  }
+
+  private static void benchmark() {
+    // The heading of one module while driving about, 200 times a
+    // second, which is a fairly typical field.
+    int n = 1 << 20;
+    long[] times = new long[n];
+    double[] values = new double[n];
+    Swerve swerve = new Swerve();
+    Vector2 target = new Vector2(0, 0);
+    for (int i = 0; i < n; i++) {
+      if (i % 2000 == 0) {
+        target.update(Math.cos(i * 0.001), Math.sin(i * 0.0007));
+        swerve.drive(target, Math.sin(i * 0.0003), true);
+      }
+      swerve.update(1.0 / 200);
+      times[i] = i * 5_000_000L;
+      values[i] = swerve.getModule(0).getHeadingRadians();
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(
+      (n / GROUP_RECORDS + 1) *
+      (GorillaEncoder.HEADER_BYTES +
+        GROUP_RECORDS * GorillaEncoder.MAX_RECORD_BYTES)
+    );
+    GorillaEncoder encoder = new GorillaEncoder(GROUP_RECORDS);
+    GorillaDecoder decoder = new GorillaDecoder();
+    double rawMegabytes = n * 16.0 / 1e6;
+
+    for (int round = 0; round < 5; round++) {
+      long start = System.nanoTime();
+      buffer.clear();
+      encoder.begin(buffer);
+      for (int i = 0; i < n; i++) {
+        if (!encoder.add(times[i], values[i])) {
+          encoder.finish();
+          encoder.begin(buffer);
+          encoder.add(times[i], values[i]);
+        }
+      }
+      encoder.finish();
+      int bytes = buffer.position();
+      long encoded = System.nanoTime();
+
+      buffer.flip();
+      int i = 0, wrong = 0;
+      while (buffer.hasRemaining()) {
+        decoder.begin(buffer);
+        while (decoder.next()) {
+          if (decoder.time() != times[i] || decoder.value() != values[i]) {
+            wrong++;
+          }
+          i++;
+        }
+      }
+      long decoded = System.nanoTime();
+
+      System.out.printf(
+        "%.1fx smaller, encode %.0f MB/s, decode %.0f MB/s, %d wrong%n",
+        n * 16.0 / bytes,
+        rawMegabytes / ((encoded - start) / 1e9),
+        rawMegabytes / ((decoded - encoded) / 1e9),
+        wrong + (n - i)
+      );
+    }
+  }
+}
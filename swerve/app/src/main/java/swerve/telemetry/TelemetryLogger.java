@@ -0,0 +1,322 @@
+package swerve.telemetry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import swerve.telemetry.Schema.Field;
+
+/** Writes telemetry (numbers we want to look at after a run) to disk,
+ * one fixed-width record per tick, see Schema.
+ *
+ * It's meant to be called from the simulation thread every tick, so it
+ * has to be really cheap: logging a field is just writing 8 bytes into
+ * memory. That memory is a "memory-mapped file": the operating system
+ * makes part of a file look like an ordinary block of memory, and
+ * writes what we put there out to the file by itself, in its own time.
+ * So there are no write() calls, no copying and nothing allocated.
+ *
+ * A log is a "ring" of fixed-size segment files, name-000000.tlm,
+ * name-000001.tlm and so on. When one fills up we move on to the next,
+ * and once there are more than `maxSegments` the oldest get deleted,
+ * so a long run can't fill up the disk. The slow parts (creating and
+ * mapping the next file, flushing, closing and deleting old ones)
+ * happen on a background thread, which always has the next segment
+ * ready before we need it. If it somehow isn't, records are dropped
+ * (and counted, see getDropped()) rather than making the caller wait.
+ *
+ * Usage, every tick:
+ *
+ *   if (logger.begin(time)) {
+ *     logger.putDouble(x, ...);
+ *     logger.putDouble(y, ...);
+ *     logger.end();
+ *   }
+ *
+ * Only one thread may log. Everything is little-endian.
+ */
+public class TelemetryLogger implements Closeable {
+
+  /** How often the background thread asks the OS to write things out. */
+  private static final long FLUSH_INTERVAL_NANOS = 100_000_000;
+
+  private static final int PAGE_BYTES = 4096;
+
+  private final Schema schema;
+  private final Path directory;
+  private final String name;
+  private final long segmentBytes;
+  private final int maxSegments;
+  private final int headerBytes, recordBytes;
+
+  private static class Segment {
+
+    final long number;
+    final Path path;
+    final FileChannel channel;
+    final MappedByteBuffer buffer;
+
+    Segment(
+      long number,
+      Path path,
+      FileChannel channel,
+      MappedByteBuffer buffer
+    ) {
+      this.number = number;
+      this.path = path;
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+  }
+
+  /** The logging thread's state. */
+  private Segment current;
+  private MappedByteBuffer buffer;
+  private int position;
+  private int recordsInSegment;
+  private long records = 0;
+  private long dropped = 0;
+  private boolean recording = false;
+
+  /** Handed between the two threads. */
+  private final AtomicReference<Segment> next = new AtomicReference<>();
+  private final ConcurrentLinkedQueue<Segment> finished =
+    new ConcurrentLinkedQueue<>();
+  private volatile Segment flushing;
+  private volatile boolean closed = false;
+  private volatile IOException backgroundError;
+
+  private final Thread background;
+  private long nextSegmentNumber = 0;
+
+  public TelemetryLogger(
+    Schema schema,
+    Path directory,
+    String name,
+    long segmentBytes,
+    int maxSegments
+  ) throws IOException {
+    this.schema = schema;
+    this.directory = directory;
+    this.name = name;
+    this.segmentBytes = segmentBytes;
+    this.maxSegments = Math.max(2, maxSegments);
+    this.headerBytes = schema.headerBytes();
+    this.recordBytes = schema.recordBytes();
+    if (
+      segmentBytes > Integer.MAX_VALUE ||
+      segmentBytes < headerBytes + recordBytes
+    ) {
+      throw new IllegalArgumentException("Bad segment size " + segmentBytes);
+    }
+
+    Files.createDirectories(directory);
+    // Segment numbers start from 0 again, so any left from an earlier
+    // run would be read back as if they came after this one.
+    deleteExistingSegments();
+    useSegment(createSegment());
+    next.set(createSegment());
+
+    background = new Thread(this::runBackground, "telemetry");
+    background.setDaemon(true);
+    background.start();
+  }
+
+  public static Path segmentPath(Path directory, String name, long number) {
+    return directory.resolve(String.format("%s-%06d.tlm", name, number));
+  }
+
+  /** Whether `path` is one of the segments of the log called `name`
+   * (that's `name`, a dash, a number and ".tlm").
+   */
+  public static boolean isSegment(Path path, String name) {
+    String file = path.getFileName().toString();
+    if (!file.startsWith(name + "-") || !file.endsWith(".tlm")) {
+      return false;
+    }
+    String number = file.substring(name.length() + 1, file.length() - 4);
+    return !number.isEmpty() && number.chars().allMatch(Character::isDigit);
+  }
+
+  private void deleteExistingSegments() throws IOException {
+    try (Stream<Path> list = Files.list(directory)) {
+      for (Path path : (Iterable<Path>) list::iterator) {
+        if (isSegment(path, name)) {
+          Files.delete(path);
+        }
+      }
+    }
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /** How many records have been logged. */
+  public long getRecords() {
+    return records;
+  }
+
+  /** How many records had to be thrown away (see above). */
+  public long getDropped() {
+    return dropped;
+  }
+
+  private Segment createSegment() throws IOException {
+    long number = nextSegmentNumber++;
+    Path path = segmentPath(directory, name, number);
+    FileChannel channel = FileChannel.open(
+      path,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.TRUNCATE_EXISTING,
+      StandardOpenOption.READ,
+      StandardOpenOption.WRITE
+    );
+    MappedByteBuffer buffer = channel.map(
+      FileChannel.MapMode.READ_WRITE,
+      0,
+      segmentBytes
+    );
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    // Touch every page now, so the OS sets them up here rather than
+    // the first time the logging thread writes to each one.
+    for (int i = 0; i < segmentBytes; i += PAGE_BYTES) {
+      buffer.put(i, (byte) 0);
+    }
+    schema.writeHeader(buffer, number);
+    return new Segment(number, path, channel, buffer);
+  }
+
+  private void useSegment(Segment segment) {
+    current = segment;
+    flushing = segment;
+    buffer = segment.buffer;
+    position = headerBytes;
+    recordsInSegment = 0;
+  }
+
+  /** Starts a record at `timeNanos`. Returns false if it had to be
+   * dropped, in which case don't put anything or call end().
+   */
+  public boolean begin(long timeNanos) {
+    if (position + recordBytes > segmentBytes) {
+      Segment segment = next.getAndSet(null);
+      if (segment == null) {
+        dropped++;
+        return false;
+      }
+      finished.add(current);
+      useSegment(segment);
+      LockSupport.unpark(background);
+    }
+    buffer.putLong(position + Schema.TIME_OFFSET, timeNanos);
+    recording = true;
+    return true;
+  }
+
+  public void putDouble(Field field, double value) {
+    assert recording && field.type() == Schema.Type.DOUBLE;
+    buffer.putDouble(position + field.offset(), value);
+  }
+
+  public void putFloat(Field field, float value) {
+    assert recording && field.type() == Schema.Type.FLOAT;
+    buffer.putFloat(position + field.offset(), value);
+  }
+
+  public void putLong(Field field, long value) {
+    assert recording && field.type() == Schema.Type.LONG;
+    buffer.putLong(position + field.offset(), value);
+  }
+
+  public void putInt(Field field, int value) {
+    assert recording && field.type() == Schema.Type.INT;
+    buffer.putInt(position + field.offset(), value);
+  }
+
+  /** Finishes the record started by begin(). */
+  public void end() {
+    position += recordBytes;
+    recordsInSegment++;
+    records++;
+    recording = false;
+    // Updated after the record, so a reader never counts a
+    // half-written one.
+    buffer.putLong(Schema.RECORD_COUNT_OFFSET, recordsInSegment);
+  }
+
+  private void runBackground() {
+    try {
+      while (!closed) {
+        if (next.get() == null) {
+          next.set(createSegment());
+          deleteOldSegments();
+        }
+        retireFinished();
+        Segment segment = flushing;
+        if (segment != null) {
+          segment.buffer.force();
+        }
+        LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+      }
+    } catch (IOException e) {
+      backgroundError = e;
+    }
+  }
+
+  private void retireFinished() throws IOException {
+    Segment segment;
+    while ((segment = finished.poll()) != null) {
+      segment.buffer.force();
+      segment.channel.close();
+    }
+  }
+
+  private void deleteOldSegments() throws IOException {
+    // The newest segment is the one waiting in `next`.
+    long oldestKept = nextSegmentNumber - maxSegments;
+    for (long number = oldestKept - 1; number >= 0; number--) {
+      if (!Files.deleteIfExists(segmentPath(directory, name, number))) {
+        break; // Already deleted this one, and everything before it
+      }
+    }
+  }
+
+  /** Stops logging, and writes everything out. The last segment (and
+   * the spare one that was never used) keep their full size on disk;
+   * the record count in the header says how much of it is real.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    LockSupport.unpark(background);
+    try {
+      background.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    retireFinished();
+    current.buffer.force();
+    current.channel.close();
+    Segment spare = next.getAndSet(null);
+    if (spare != null) {
+      spare.channel.close();
+      Files.deleteIfExists(spare.path);
+    }
+
+    if (backgroundError != null) {
+      throw new UncheckedIOException(backgroundError);
+    }
+  }
+}
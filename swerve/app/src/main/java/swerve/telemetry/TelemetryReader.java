@@ -0,0 +1,365 @@
+package swerve.telemetry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators.AbstractDoubleSpliterator;
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import swerve.telemetry.Schema.Field;
+
+/** Reads back a log written by TelemetryLogger.
+ *
+ * A long run makes a big log (hundreds of megabytes), and usually we
+ * only want a little of it, e.g. "the steering error of module 2
+ * between 30 and 35 seconds". So nothing is read up front: the
+ * segment files are memory-mapped (see TelemetryLogger), and the OS
+ * only actually loads the parts of them we look at.
+ *
+ * Since every record is the same size, record i is easy to find. To
+ * find the record at a *time* we'd have to search, and a plain binary
+ * search over a whole segment jumps all over the file, loading a page
+ * for every step. Instead we keep a small "sparse index": the time of
+ * every BLOCK_RECORDS-th record. Finding a time is then a binary search
+ * of the index (which is tiny and in memory), and then of one block
+ * (which is a few neighbouring pages).
+ *
+ * Records are numbered from 0 across all of the segments, oldest first.
+ * Times must only ever go up, which they do for logs from Simulator.
+ */
+public class TelemetryReader implements Closeable {
+
+  /** How many records each entry of the index covers. */
+  static final int BLOCK_RECORDS = 1024;
+
+  private static class Segment {
+
+    final FileChannel channel;
+    final MappedByteBuffer buffer;
+    final long firstRecord;
+    final int records;
+    /** blockTimes[b] is the time of record b * BLOCK_RECORDS. */
+    final long[] blockTimes;
+
+    Segment(
+      FileChannel channel,
+      MappedByteBuffer buffer,
+      long firstRecord,
+      int records,
+      long[] blockTimes
+    ) {
+      this.channel = channel;
+      this.buffer = buffer;
+      this.firstRecord = firstRecord;
+      this.records = records;
+      this.blockTimes = blockTimes;
+    }
+  }
+
+  private final Schema schema;
+  private final int headerBytes, recordBytes;
+  private final List<Segment> segments = new ArrayList<>();
+  private final long records;
+
+  /** Opens every segment of the log `name` in `directory`. */
+  public static TelemetryReader open(Path directory, String name)
+    throws IOException {
+    List<Path> files;
+    try (Stream<Path> list = Files.list(directory)) {
+      files =
+        list
+          .filter(path -> TelemetryLogger.isSegment(path, name))
+          .sorted(Comparator.comparing(Path::getFileName))
+          .toList();
+    }
+    if (files.isEmpty()) {
+      throw new IOException("No " + name + " log in " + directory);
+    }
+    return new TelemetryReader(files);
+  }
+
+  /** Opens these segment files, which should be in order. */
+  public TelemetryReader(List<Path> files) throws IOException {
+    Schema schema = null;
+    long records = 0;
+    int headerBytes = 0, recordBytes = 0;
+
+    try {
+      for (Path file : files) {
+        FileChannel channel = FileChannel.open(file);
+        MappedByteBuffer buffer = channel.map(
+          FileChannel.MapMode.READ_ONLY,
+          0,
+          channel.size()
+        );
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        Schema segmentSchema = Schema.readHeader(buffer);
+        if (schema == null) {
+          schema = segmentSchema;
+          headerBytes = schema.headerBytes();
+          recordBytes = schema.recordBytes();
+        } else if (!schema.getFields().equals(segmentSchema.getFields())) {
+          channel.close();
+          throw new IOException(file + " is from a different log");
+        }
+
+        int count = (int) Math.min(
+          buffer.getLong(Schema.RECORD_COUNT_OFFSET),
+          (buffer.capacity() - headerBytes) / recordBytes
+        );
+        long[] blockTimes = new long[
+          (count + BLOCK_RECORDS - 1) / BLOCK_RECORDS
+        ];
+        for (int b = 0; b < blockTimes.length; b++) {
+          int position = headerBytes + b * BLOCK_RECORDS * recordBytes;
+          blockTimes[b] = buffer.getLong(position + Schema.TIME_OFFSET);
+        }
+
+        segments.add(new Segment(channel, buffer, records, count, blockTimes));
+        records += count;
+      }
+    } catch (IOException | RuntimeException e) {
+      close();
+      throw e;
+    }
+
+    this.schema = schema;
+    this.headerBytes = headerBytes;
+    this.recordBytes = recordBytes;
+    this.records = records;
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /** The field with this name. */
+  public Field field(String name) {
+    Field field = schema.find(name);
+    if (field == null) {
+      throw new IllegalArgumentException("The log has no field " + name);
+    }
+    return field;
+  }
+
+  /** How many records there are. */
+  public long size() {
+    return records;
+  }
+
+  private Segment segment(long record) {
+    if (record < 0 || record >= records) {
+      throw new IndexOutOfBoundsException(record);
+    }
+    int low = 0, high = segments.size() - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (segments.get(middle).firstRecord <= record) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return segments.get(low);
+  }
+
+  private int position(Segment segment, long record) {
+    return headerBytes + (int) (record - segment.firstRecord) * recordBytes;
+  }
+
+  /** When record `record` was logged. */
+  public long time(long record) {
+    Segment segment = segment(record);
+    return segment.buffer.getLong(
+      position(segment, record) + Schema.TIME_OFFSET
+    );
+  }
+
+  /** A field of a record, whatever its type, as a double. */
+  public double getDouble(long record, Field field) {
+    Segment segment = segment(record);
+    return read(segment.buffer, position(segment, record), field);
+  }
+
+  private static double read(
+    MappedByteBuffer buffer,
+    int position,
+    Field field
+  ) {
+    int at = position + field.offset();
+    return switch (field.type()) {
+      case INT -> buffer.getInt(at);
+      case LONG -> buffer.getLong(at);
+      case FLOAT -> buffer.getFloat(at);
+      case DOUBLE -> buffer.getDouble(at);
+    };
+  }
+
+  public long startTime() {
+    return records == 0 ? 0 : time(0);
+  }
+
+  public long endTime() {
+    return records == 0 ? 0 : time(records - 1);
+  }
+
+  /** The first record logged at or after `timeNanos` (or size(), if
+   * they're all before it).
+   */
+  public long seek(long timeNanos) {
+    for (Segment segment : segments) {
+      if (segment.records == 0) continue;
+      int last = segment.records - 1;
+      long lastTime = segment.buffer.getLong(
+        headerBytes + last * recordBytes + Schema.TIME_OFFSET
+      );
+      if (lastTime < timeNanos) continue;
+
+      // The last block starting at or before the time...
+      long[] blockTimes = segment.blockTimes;
+      int low = 0, high = blockTimes.length - 1;
+      while (low < high) {
+        int middle = (low + high + 1) >>> 1;
+        if (blockTimes[middle] <= timeNanos) {
+          low = middle;
+        } else {
+          high = middle - 1;
+        }
+      }
+      // ...and the first record in it that's not before it.
+      int first = low * BLOCK_RECORDS;
+      int end = Math.min(segment.records, first + BLOCK_RECORDS);
+      while (first < end) {
+        int middle = (first + end) >>> 1;
+        long time = segment.buffer.getLong(
+          headerBytes + middle * recordBytes + Schema.TIME_OFFSET
+        );
+        if (time < timeNanos) {
+          first = middle + 1;
+        } else {
+          end = middle;
+        }
+      }
+      return segment.firstRecord + first;
+    }
+    return records;
+  }
+
+  /** Walks through the records from `fromNanos` up to (but not
+   * including) `toNanos`, reading only the fields asked for.
+   */
+  public Cursor cursor(long fromNanos, long toNanos) {
+    return new Cursor(seek(fromNanos), toNanos);
+  }
+
+  /** One field from `fromNanos` up to `toNanos`. Nothing is read until
+   * the stream gets to it.
+   */
+  public DoubleStream column(Field field, long fromNanos, long toNanos) {
+    Cursor cursor = cursor(fromNanos, toNanos);
+    Spliterator.OfDouble spliterator = new AbstractDoubleSpliterator(
+      Long.MAX_VALUE,
+      Spliterator.ORDERED | Spliterator.NONNULL
+    ) {
+      public boolean tryAdvance(DoubleConsumer action) {
+        if (!cursor.next()) return false;
+        action.accept(cursor.getDouble(field));
+        return true;
+      }
+    };
+    return StreamSupport.doubleStream(spliterator, false);
+  }
+
+  /** A position in the log. Call next() to move to the first record,
+   * and keep calling it until it returns false.
+   */
+  public class Cursor {
+
+    private long record;
+    private final long toNanos;
+    private Segment segment;
+    private int position;
+    private boolean finished = false;
+
+    private Cursor(long first, long toNanos) {
+      this.record = first - 1;
+      this.toNanos = toNanos;
+    }
+
+    public boolean next() {
+      if (finished || record + 1 >= records) return false;
+      record++;
+      if (
+        segment == null ||
+        record >= segment.firstRecord + segment.records
+      ) {
+        segment = segment(record);
+      }
+      position = TelemetryReader.this.position(segment, record);
+      finished = time() >= toNanos;
+      return !finished;
+    }
+
+    /** Which record we're on. */
+    public long record() {
+      return record;
+    }
+
+    public long time() {
+      return segment.buffer.getLong(position + Schema.TIME_OFFSET);
+    }
+
+    public double getDouble(Field field) {
+      return read(segment.buffer, position, field);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (Segment segment : segments) {
+      segment.channel.close();
+    }
+    segments.clear();
+  }
+
+  /** Prints one field between two times (in seconds) as CSV, e.g.
+   *
+   *   TelemetryReader <directory> module2.steerError 30 35
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println(
+        "Usage: TelemetryReader <directory> <field> [from] [to]"
+      );
+      System.exit(1);
+    }
+    try (
+      TelemetryReader reader = open(Path.of(args[0]), SwerveTelemetry.NAME)
+    ) {
+      Field field = reader.field(args[1]);
+      long from = args.length > 2
+        ? Math.round(Double.parseDouble(args[2]) * 1e9)
+        : Long.MIN_VALUE;
+      long to = args.length > 3
+        ? Math.round(Double.parseDouble(args[3]) * 1e9)
+        : Long.MAX_VALUE;
+
+      System.out.println("time," + field.name());
+      Cursor cursor = reader.cursor(from, to);
+      while (cursor.next()) {
+        System.out.println(cursor.time() / 1e9 + "," + cursor.getDouble(field));
+      }
+    }
+  }
+}
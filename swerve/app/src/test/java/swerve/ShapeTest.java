@@ -0,0 +1,57 @@
+package swerve;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ShapeTest {
+
+  @Test
+  public void smallShapeInsideBigOneIntersects() {
+    Shape big = new Shape.Rectangle(4, 4);
+    Shape small = new Shape.Rectangle(0.5, 0.5);
+    // No edges cross, and the big one's center isn't in the small one.
+    assertTrue(small.intersects(big, -1, -1));
+    assertTrue(big.intersects(small, 1, 1));
+    assertFalse(big.intersects(small, 3, 3));
+  }
+
+  @Test
+  public void contactSaysHowToSeparate() {
+    Shape a = new Shape.Rectangle(2, 2);
+    Shape b = new Shape.Rectangle(2, 2);
+    Contact contact = new Contact();
+
+    assertTrue(a.contact(b, 1.5, 0.2, contact));
+    assertEquals(1, contact.normal.x, 1e-9);
+    assertEquals(0, contact.normal.y, 1e-9);
+    assertEquals(0.5, contact.depth, 1e-9);
+
+    assertFalse(a.contact(b, 2.5, 0, contact));
+  }
+
+  @Test
+  public void starShapeIsCutIntoConvexPieces() {
+    // A star: points alternate between far out and close in.
+    List<Vector2> points = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      points.add(Vector2.fromPolar(i % 2 == 0 ? 1 : 0.4, i * Math.PI / 5));
+    }
+    Shape.Polygon star = new Shape.Polygon(new Shape.Edges(points));
+
+    List<Shape.Edges> pieces = star.convexPieces();
+    assertNotNull(pieces);
+    assertTrue(pieces.size() > 1);
+    for (double x = -1; x <= 1; x += 0.05) {
+      for (double y = -1; y <= 1; y += 0.05) {
+        boolean inAPiece = false;
+        for (Shape.Edges piece : pieces) {
+          inAPiece |= new Shape.Polygon(piece).hit(x, y);
+        }
+        assertEquals(star.hit(x, y), inAPiece);
+      }
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package swerve;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SwerveKinematicsTest {
+
+  /** Five modules, in no particular pattern. */
+  private static final Vector2[] POSITIONS = {
+    new Vector2(0.3, 0.2),
+    new Vector2(-0.4, 0.25),
+    new Vector2(0.1, -0.5),
+    new Vector2(-0.2, -0.3),
+    new Vector2(0.5, 0),
+  };
+
+  @Test
+  public void givesEachModuleItsShareOfTheMotion() {
+    SwerveKinematics kinematics = new SwerveKinematics(POSITIONS);
+    double[] speeds = new double[POSITIONS.length];
+    double[] angles = new double[POSITIONS.length];
+
+    // Module i moves at (vx - omega * y_i, vy + omega * x_i).
+    kinematics.toModuleStates(1.2, -0.4, 0.9, 100, speeds, angles);
+    for (int i = 0; i < POSITIONS.length; i++) {
+      double moduleX = 1.2 - 0.9 * POSITIONS[i].y;
+      double moduleY = -0.4 + 0.9 * POSITIONS[i].x;
+      assertEquals(Math.hypot(moduleX, moduleY), speeds[i], 1e-9);
+      assertEquals(Math.atan2(moduleY, moduleX), angles[i], 1e-9);
+    }
+  }
+
+  @Test
+  public void batchMatchesOneAtATimeAndDesaturates() {
+    SwerveKinematics kinematics = new SwerveKinematics(POSITIONS);
+    int n = POSITIONS.length, count = 50;
+    double[] vx = new double[count], vy = new double[count];
+    double[] omega = new double[count];
+    for (int c = 0; c < count; c++) {
+      vx[c] = Math.sin(c) * 4;
+      vy[c] = Math.cos(c * 1.7) * 4;
+      omega[c] = Math.sin(c * 0.3) * 6;
+    }
+    double maxSpeed = 3;
+    double[] speeds = new double[count * n], angles = new double[count * n];
+    kinematics.toModuleStates(vx, vy, omega, count, maxSpeed, speeds, angles);
+
+    double[] speed = new double[n], angle = new double[n];
+    for (int c = 0; c < count; c++) {
+      kinematics.toModuleStates(vx[c], vy[c], omega[c], maxSpeed, speed, angle);
+      for (int i = 0; i < n; i++) {
+        assertEquals(speed[i], speeds[c * n + i], 1e-9);
+        assertEquals(angle[i], angles[c * n + i], 1e-9);
+        assertTrue(speed[i] <= maxSpeed + 1e-9);
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package swerve;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SwerveOdometryTest {
+
+  /** Five modules, in no particular pattern. */
+  private static final Vector2[] POSITIONS = {
+    new Vector2(0.3, 0.2),
+    new Vector2(-0.4, 0.25),
+    new Vector2(0.1, -0.5),
+    new Vector2(-0.2, -0.3),
+    new Vector2(0.5, 0),
+  };
+
+  /** What each module does when the chassis moves at (vx, vy, omega),
+   * straight from the formula in SwerveOdometry's comment.
+   */
+  private static void moduleStates(
+    double vx,
+    double vy,
+    double omega,
+    double[] speeds,
+    double[] angles
+  ) {
+    for (int i = 0; i < POSITIONS.length; i++) {
+      double moduleX = vx - omega * POSITIONS[i].y;
+      double moduleY = vy + omega * POSITIONS[i].x;
+      speeds[i] = Math.hypot(moduleX, moduleY);
+      angles[i] = Math.atan2(moduleY, moduleX);
+    }
+  }
+
+  @Test
+  public void recoversTheChassisVelocity() {
+    SwerveOdometry odometry = new SwerveOdometry(POSITIONS, 0, 0, 0);
+    double[] speeds = new double[POSITIONS.length];
+    double[] angles = new double[POSITIONS.length];
+
+    moduleStates(1.2, -0.4, 0.9, speeds, angles);
+    odometry.update(angles, speeds, 0.001);
+    assertEquals(1.2, odometry.getVelocityX(), 1e-9);
+    assertEquals(-0.4, odometry.getVelocityY(), 1e-9);
+    assertEquals(0.9, odometry.getAngularVelocity(), 1e-9);
+  }
+
+  @Test
+  public void followsTheArcExactly() {
+    double vx = 1.2, vy = -0.4, omega = 0.9, heading = 0.3;
+    SwerveOdometry odometry = new SwerveOdometry(POSITIONS, 0, 0, heading);
+    double[] speeds = new double[POSITIONS.length];
+    double[] angles = new double[POSITIONS.length];
+    moduleStates(vx, vy, omega, speeds, angles);
+
+    // Ten big steps should land in the same place as a thousand small
+    // ones, since each one follows the arc rather than a straight line.
+    for (int i = 0; i < 10; i++) {
+      odometry.update(angles, speeds, 0.1);
+    }
+
+    // Integrating the turning velocity by hand over one second:
+    double end = heading + omega;
+    double x =
+      ((Math.sin(end) - Math.sin(heading)) * vx +
+        (Math.cos(end) - Math.cos(heading)) * vy) /
+      omega;
+    double y =
+      ((Math.cos(heading) - Math.cos(end)) * vx +
+        (Math.sin(end) - Math.sin(heading)) * vy) /
+      omega;
+    assertEquals(x, odometry.getX(), 1e-9);
+    assertEquals(y, odometry.getY(), 1e-9);
+    assertEquals(end, odometry.getHeadingRadians(), 1e-9);
+  }
+}
@@ -0,0 +1,51 @@
+package swerve;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TripleBufferTest {
+
+  @Test
+  public void readerSeesLatestPublished() {
+    TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[1]);
+    assertFalse(buffer.hasNew());
+
+    buffer.writeBuffer()[0] = 1;
+    buffer.publish();
+    buffer.writeBuffer()[0] = 2;
+    buffer.publish();
+    assertTrue(buffer.hasNew());
+    assertEquals(2, buffer.read()[0]);
+
+    // Nothing new, so the same one again.
+    assertFalse(buffer.hasNew());
+    assertEquals(2, buffer.read()[0]);
+  }
+
+  @Test
+  public void readerNeverSeesHalfWrittenBuffers() throws InterruptedException {
+    // The writer writes the same number into both halves, so if the
+    // reader ever sees them differ, it's looking at a buffer mid-write.
+    TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[2]);
+    long count = 200_000;
+    Thread writer = new Thread(() -> {
+      for (long i = 1; i <= count; i++) {
+        long[] values = buffer.writeBuffer();
+        values[0] = i;
+        values[1] = i;
+        buffer.publish();
+      }
+    });
+    writer.start();
+
+    long last = 0;
+    while (last < count) {
+      long[] values = buffer.read();
+      assertEquals(values[0], values[1]);
+      assertTrue(values[0] >= last);
+      last = values[0];
+    }
+    writer.join();
+  }
+}
@@ -14,4 +14,41 @@ public class Vector2Test {
     assertEquals(new Vector2(1, 2).dot(new Vector2(5, -3)), -1, 0.001);
     assertEquals(new Vector2(5, -3).dot(new Vector2(1, 2)), -1, 0.001);
   }
+
+  @Test
+  public void inPlaceOperationsMatchCopyingOnes() {
+    Vector2 a = new Vector2(1, 2), b = new Vector2(-3, 0.5);
+
+    Vector2 sum = a.plus(b.times(2));
+    Vector2 same = new Vector2(1, 2);
+    assertSame(same, same.addScaled(b, 2));
+    assertEquals(sum.x, same.x, 1e-9);
+    assertEquals(sum.y, same.y, 1e-9);
+
+    Vector2 rotated = a.rotate(0.7);
+    Vector2 rotatedInPlace = new Vector2(1, 2).rotateEquals(0.7);
+    assertEquals(rotated.x, rotatedInPlace.x, 1e-9);
+    assertEquals(rotated.y, rotatedInPlace.y, 1e-9);
+
+    Vector2 polar = Vector2.fromPolar(2, 1.1);
+    Vector2 polarInPlace = new Vector2(0, 0).setPolar(2, 1.1);
+    assertEquals(polar.x, polarInPlace.x, 1e-9);
+    assertEquals(polar.y, polarInPlace.y, 1e-9);
+
+    Vector2 difference = new Vector2(1, 2).minusEquals(b).timesEquals(0.5);
+    assertEquals(2, difference.x, 1e-9);
+    assertEquals(0.75, difference.y, 1e-9);
+  }
+
+  @Test
+  public void angleFollowsChanges() {
+    Vector2 v = new Vector2(1, 0);
+    assertEquals(0, v.angle(), 1e-9);
+    assertEquals(0, v.angle(), 1e-9); // Cached this time
+
+    v.set(0, 1);
+    assertEquals(Math.PI / 2, v.angle(), 1e-9);
+    v.rotateEquals(Math.PI / 2);
+    assertEquals(0, v.angle(), 1e-9);
+  }
 }
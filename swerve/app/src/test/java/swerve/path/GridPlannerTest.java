@@ -0,0 +1,76 @@
+package swerve.path;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import org.junit.Test;
+import swerve.Shape;
+import swerve.WorldShape;
+
+public class GridPlannerTest {
+
+  private static final double CELL = 0.2;
+
+  @Test
+  public void updatesTheDistanceFieldOnlyWhereNeeded() {
+    WorldShape rock = new WorldShape(new Shape.Rectangle(1.5, 0.7));
+    GridPlanner incremental = new GridPlanner();
+    for (int tick = 0; tick < 50; tick++) {
+      rock.setPose(2 + tick * 0.11, 3 + tick * 0.07, tick * 0.05);
+      incremental.setObstacles(List.of(rock));
+    }
+    GridPlanner fresh = new GridPlanner();
+    fresh.setObstacles(List.of(rock));
+
+    for (double y = CELL / 2; y < 10; y += CELL) {
+      for (double x = CELL / 2; x < 10; x += CELL) {
+        assertEquals(fresh.distance(x, y), incremental.distance(x, y), 0);
+      }
+    }
+    assertTrue(incremental.distance(rock.getX(), rock.getY()) < 0);
+  }
+
+  @Test
+  public void goesAroundAWall() {
+    WorldShape wall = new WorldShape(new Shape.Rectangle(1, 6));
+    wall.setPose(5, 4, 0);
+    GridPlanner planner = new GridPlanner();
+    planner.setObstacles(List.of(wall));
+
+    assertTrue(planner.plan(1.5, 2, 8.5, 2));
+    int n = planner.getPathLength();
+    assertTrue(n > 2);
+    assertEquals(1.5, planner.getPathX(0), 0);
+    assertEquals(8.5, planner.getPathX(n - 1), 0);
+
+    // Nowhere along the way is the robot's circle in the wall.
+    double radius = planner.getRobotRadius();
+    for (int i = 0; i + 1 < n; i++) {
+      for (double t = 0; t <= 1; t += 0.01) {
+        double x = lerp(planner.getPathX(i), planner.getPathX(i + 1), t);
+        double y = lerp(planner.getPathY(i), planner.getPathY(i + 1), t);
+        double dx = Math.max(0, Math.abs(x - 5) - 0.5);
+        double dy = Math.max(0, Math.abs(y - 4) - 3);
+        assertTrue(Math.hypot(dx, dy) >= radius);
+      }
+    }
+  }
+
+  @Test
+  public void givesUpIfTheGoalIsBlocked() {
+    WorldShape rock = new WorldShape(new Shape.Rectangle(2, 2));
+    rock.setPose(7, 7, 0);
+    GridPlanner planner = new GridPlanner();
+    planner.setObstacles(List.of(rock));
+
+    assertFalse(planner.plan(1, 1, 7, 7));
+    assertEquals(0, planner.getPathLength());
+    // In the open, it's just a straight line.
+    assertTrue(planner.plan(1, 1, 3, 2));
+    assertEquals(2, planner.getPathLength());
+  }
+
+  private static double lerp(double a, double b, double t) {
+    return a + (b - a) * t;
+  }
+}
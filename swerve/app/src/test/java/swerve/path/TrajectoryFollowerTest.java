@@ -0,0 +1,38 @@
+package swerve.path;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import org.junit.Test;
+import swerve.Constants;
+import swerve.Rigidbody;
+import swerve.Swerve;
+
+public class TrajectoryFollowerTest {
+
+  @Test
+  public void settlesOnTheLastSetpointBeforeFinishing() {
+    // A quick quarter turn, which overshoots when the setpoints run out.
+    Trajectory trajectory = Trajectory.of(
+      List.of(new Waypoint(5, 5, 0), new Waypoint(8, 5, Math.PI / 2))
+    );
+    Swerve swerve = new Swerve();
+    swerve.setPose(5, 5, 0);
+    TrajectoryFollower follower = new TrajectoryFollower(trajectory);
+    while (!follower.isFinished()) {
+      follower.update(swerve);
+      swerve.update(Constants.SECONDS_PER_UPDATE);
+    }
+
+    assertTrue(follower.arrived());
+    assertTrue(follower.getTicks() > trajectory.size());
+    Rigidbody rigidbody = swerve.getRigidbody();
+    assertEquals(8, rigidbody.getPosition().x, 0.1);
+    assertEquals(5, rigidbody.getPosition().y, 0.1);
+    assertEquals(
+      Math.PI / 2,
+      rigidbody.getHeadingRadians(),
+      Math.toRadians(10)
+    );
+  }
+}
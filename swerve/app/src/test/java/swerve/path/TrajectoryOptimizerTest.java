@@ -0,0 +1,41 @@
+package swerve.path;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import org.junit.Test;
+import swerve.Shape;
+import swerve.SwerveConfig;
+import swerve.WorldShape;
+
+public class TrajectoryOptimizerTest {
+
+  @Test
+  public void findsAWayRoundAWall() throws InterruptedException {
+    WorldShape wall = new WorldShape(new Shape.Rectangle(1, 6));
+    wall.setPose(5, 4, 0);
+    TrajectoryOptimizer optimizer = new TrajectoryOptimizer(
+      new SwerveConfig(),
+      List.of(wall)
+    );
+
+    TrajectoryOptimizer.Search search = optimizer.start(
+      new Waypoint(1.5, 2, 0),
+      new Waypoint(8.5, 2, 0),
+      1
+    );
+    TrajectoryOptimizer.Result first = null;
+    for (int i = 0; i < 100 && first == null; i++) {
+      first = search.await(100);
+    }
+    assertNotNull(first);
+    search.await(1000);
+    search.stop();
+
+    // Straight there goes through the wall, so it must go round.
+    assertTrue(first.waypoints().size() > 2);
+    // It only ever gets better.
+    assertTrue(search.best().seconds() <= first.seconds());
+    assertTrue(search.evaluated() > 0);
+  }
+}
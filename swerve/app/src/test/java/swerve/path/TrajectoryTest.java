@@ -0,0 +1,80 @@
+package swerve.path;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import org.junit.Test;
+
+public class TrajectoryTest {
+
+  private static final List<Waypoint> LOOP = List.of(
+    new Waypoint(5, 5, 0),
+    new Waypoint(8, 7, Math.PI / 2),
+    new Waypoint(5, 9, Math.PI),
+    new Waypoint(2, 7, -Math.PI / 2),
+    new Waypoint(5, 5, 0)
+  );
+
+  @Test
+  public void startsAndEndsAtRestOnTheWaypoints() {
+    Trajectory trajectory = Trajectory.of(LOOP);
+    int last = trajectory.size() - 1;
+    assertEquals(5, trajectory.getX(0), 1e-9);
+    assertEquals(5, trajectory.getY(0), 1e-9);
+    assertEquals(5, trajectory.getX(last), 1e-9);
+    assertEquals(5, trajectory.getY(last), 1e-9);
+    assertEquals(0, trajectory.getVelocityX(0), 1e-9);
+    assertEquals(0, trajectory.getVelocityY(last), 1e-9);
+    assertEquals(last, trajectory.indexAt(trajectory.getDuration() + 10));
+  }
+
+  @Test
+  public void staysWithinTheConstraints() {
+    TrajectoryConstraints constraints = new TrajectoryConstraints(3, 4, 2);
+    Trajectory trajectory = Trajectory.generate(LOOP, constraints, 0.005);
+    for (int i = 1; i < trajectory.size(); i++) {
+      double speed = Math.hypot(
+        trajectory.getVelocityX(i),
+        trajectory.getVelocityY(i)
+      );
+      assertTrue(speed <= 3 + 1e-6);
+      assertTrue(Math.abs(trajectory.getAngularVelocity(i)) <= 2 * 1.05);
+
+      // Total acceleration, give or take a little for the sampling.
+      double ax = (trajectory.getVelocityX(i) - trajectory.getVelocityX(i - 1));
+      double ay = (trajectory.getVelocityY(i) - trajectory.getVelocityY(i - 1));
+      assertTrue(Math.hypot(ax, ay) / 0.005 <= 4 * 1.1);
+    }
+  }
+
+  @Test
+  public void stopsBeforeGoingBackTheWayItCame() {
+    Trajectory trajectory = Trajectory.of(
+      List.of(
+        new Waypoint(2, 2, 0),
+        new Waypoint(6, 2, 0),
+        new Waypoint(2, 2, 0)
+      )
+    );
+    double maxAcceleration =
+      TrajectoryConstraints.DEFAULT.maxAccelerationMetersPerSecondSquared();
+    double furthest = 0;
+    for (int i = 1; i < trajectory.size(); i++) {
+      double ax = trajectory.getVelocityX(i) - trajectory.getVelocityX(i - 1);
+      double ay = trajectory.getVelocityY(i) - trajectory.getVelocityY(i - 1);
+      assertTrue(
+        Math.hypot(ax, ay) / trajectory.getDt() <= maxAcceleration * 1.1
+      );
+      furthest = Math.max(furthest, trajectory.getX(i));
+    }
+    assertEquals(6, furthest, 1e-3);
+    assertEquals(2, trajectory.getX(trajectory.size() - 1), 1e-9);
+  }
+
+  @Test
+  public void cachesByWaypoints() {
+    Trajectory trajectory = Trajectory.of(LOOP);
+    assertSame(trajectory, Trajectory.of(List.copyOf(LOOP)));
+    assertNotSame(trajectory, Trajectory.of(LOOP.subList(0, 3)));
+  }
+}
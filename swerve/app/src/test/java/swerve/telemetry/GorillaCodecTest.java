@@ -0,0 +1,88 @@
+package swerve.telemetry;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+public class GorillaCodecTest {
+
+  private static void assertRoundTrips(long[] times, double[] values) {
+    ByteBuffer buffer = ByteBuffer.allocate(
+      times.length * GorillaEncoder.MAX_RECORD_BYTES + 1024
+    );
+    GorillaEncoder encoder = new GorillaEncoder(100);
+    encoder.begin(buffer);
+    for (int i = 0; i < times.length; i++) {
+      if (!encoder.add(times[i], values[i])) {
+        encoder.finish();
+        encoder.begin(buffer);
+        assertTrue(encoder.add(times[i], values[i]));
+      }
+    }
+    encoder.finish();
+
+    buffer.flip();
+    GorillaDecoder decoder = new GorillaDecoder();
+    int i = 0;
+    while (buffer.hasRemaining()) {
+      decoder.begin(buffer);
+      while (decoder.next()) {
+        assertEquals(times[i], decoder.time());
+        // Compare the bits, so NaN and -0.0 have to come back exactly.
+        assertEquals(
+          Double.doubleToRawLongBits(values[i]),
+          Double.doubleToRawLongBits(decoder.value())
+        );
+        i++;
+      }
+    }
+    assertEquals(times.length, i);
+  }
+
+  @Test
+  public void roundTripsSmoothValuesAtAFixedRate() {
+    int n = 1000;
+    long[] times = new long[n];
+    double[] values = new double[n];
+    for (int i = 0; i < n; i++) {
+      times[i] = 1_000_000_000L + i * 5_000_000L;
+      values[i] = i < 500 ? Math.sin(i * 0.01) : 2.5;
+    }
+    assertRoundTrips(times, values);
+  }
+
+  @Test
+  public void roundTripsAwkwardTimesAndValues() {
+    Random random = new Random(45);
+    int n = 5000;
+    long[] times = new long[n];
+    double[] values = new double[n];
+    double[] special = {
+      0.0,
+      -0.0,
+      Double.NaN,
+      Double.POSITIVE_INFINITY,
+      Double.NEGATIVE_INFINITY,
+      Double.MIN_VALUE,
+      Double.MAX_VALUE,
+    };
+    long time = Long.MIN_VALUE / 2;
+    for (int i = 0; i < n; i++) {
+      // Every size of jump, from none to huge.
+      time += switch (random.nextInt(5)) {
+        case 0 -> 0;
+        case 1 -> random.nextInt(100);
+        case 2 -> random.nextInt(3000);
+        case 3 -> random.nextInt(Integer.MAX_VALUE);
+        default -> random.nextLong(1L << 60);
+      };
+      times[i] = time;
+      values[i] = random.nextInt(4) == 0
+        ? special[random.nextInt(special.length)]
+        : random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+    }
+    assertRoundTrips(times, values);
+  }
+}
@@ -0,0 +1,100 @@
+package swerve.telemetry;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.Test;
+import swerve.telemetry.Schema.Field;
+
+public class TelemetryTest {
+
+  private static void delete(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /** Logs `records` records into `directory`: record i at time 10 * i,
+   * with count i and value i / 2.
+   */
+  private static void log(Path directory, int records, long segmentBytes)
+    throws IOException {
+    Schema schema = new Schema();
+    Field count = schema.addInt("count");
+    Field value = schema.addDouble("value");
+    try (
+      TelemetryLogger logger = new TelemetryLogger(
+        schema,
+        directory,
+        "test",
+        segmentBytes,
+        1000
+      )
+    ) {
+      for (int i = 0; i < records; i++) {
+        while (!logger.begin(i * 10L)) {
+          // Only happens if the background thread is slow to make
+          // the next segment, so just wait for it.
+          Thread.onSpinWait();
+        }
+        logger.putInt(count, i);
+        logger.putDouble(value, i * 0.5);
+        logger.end();
+      }
+    }
+  }
+
+  @Test
+  public void startingAgainForgetsTheLastRun() throws IOException {
+    Path directory = Files.createTempDirectory("telemetry");
+    try {
+      // A long run, then a short one in the same place: none of the
+      // long run's later segments should be read as part of it.
+      log(directory, 2000, 1 << 12);
+      log(directory, 100, 1 << 12);
+      try (TelemetryReader reader = TelemetryReader.open(directory, "test")) {
+        assertEquals(100, reader.size());
+        assertEquals(990, reader.endTime());
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void readsBackWhatWasLoggedAcrossSegments() throws IOException {
+    Path directory = Files.createTempDirectory("telemetry");
+    try {
+      // Small segments, so the log spreads over lots of them.
+      int records = 20_000;
+      log(directory, records, 1 << 16);
+
+      try (TelemetryReader reader = TelemetryReader.open(directory, "test")) {
+        assertEquals(records, reader.size());
+        assertEquals(1234, reader.getDouble(1234, reader.field("count")), 0);
+        assertEquals(617, reader.getDouble(1234, reader.field("value")), 0);
+
+        // Times are 0, 10, 20, ... so 12345 is record 1235.
+        assertEquals(1235, reader.seek(12345));
+        assertEquals(1235, reader.seek(12350));
+        assertEquals(0, reader.seek(-5));
+        assertEquals(records, reader.seek(records * 10L));
+
+        Field read = reader.field("count");
+        assertArrayEquals(
+          new double[] { 100, 101, 102 },
+          reader.column(read, 1000, 1030).toArray(),
+          0
+        );
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+}
@@ -0,0 +1,244 @@
+package tetris;
+
+import static tetris.Game.DrawingConstants.*;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/** Suggests where to put the current piece while you play,
+ * drawn as an outline (a "ghost") where the piece would land.
+ *
+ * Working that out takes a while, far longer than the 1/60th of a
+ * second we have to draw a frame, so it happens on a separate
+ * "worker" thread. Whenever a new piece spawns we take a copy of the
+ * board (so the worker never looks at the real one, which the game
+ * keeps changing) and hand it to the worker, which:
+ *
+ *  1. Tries every placement of the current piece, like Bot does,
+ *     and publishes the best one straight away.
+ *  2. Then, best-looking placements first, also tries every placement
+ *     of the *next* piece after each one. Looking two pieces ahead
+ *     gives better advice, so it publishes improvements as it goes.
+ *
+ * The worker stops as soon as the piece locks (the search is for a
+ * piece that's gone) or after NODE_BUDGET boards, whichever is first,
+ * and runs at a low priority, so it can't hog the computer either.
+ *
+ * The JavaFX thread never waits for the worker: the worker
+ * publishes its answer into a `volatile` field, and draw() just
+ * shows whatever is in there (if it's for the current piece).
+ */
+public class Advisor implements Game.Listener, Closeable {
+
+  /** The most boards to score for one piece. */
+  private static final int NODE_BUDGET = 20_000;
+
+  private static final int MAX_CANDIDATES = Orientations.MAX * 13;
+
+  /** What we think you should do with the piece. */
+  private record Hint(long generation, Piece piece, int x, int y) {}
+
+  /** Goes up every time the piece changes. The worker checks it
+   * regularly and gives up if it's moved on.
+   */
+  private final AtomicLong generation = new AtomicLong();
+  private volatile Hint hint;
+
+  private final ExecutorService worker = Executors.newSingleThreadExecutor(
+    runnable -> {
+      Thread thread = new Thread(runnable, "advisor");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    }
+  );
+  private Future<?> search;
+
+  private final BoardEvaluator evaluator = BoardEvaluator.create();
+
+  /** Called by the Game when a new piece spawns. */
+  @Override
+  public void piecePlaced(Game game, int linesCleared) {
+    restart(game);
+  }
+
+  /** Throws away the current search and starts one for the game as
+   * it is now. Call this when the board changes some other way,
+   * e.g. after an undo or a reset.
+   */
+  public void restart(Game game) {
+    long current = generation.incrementAndGet();
+    if (search != null) {
+      search.cancel(true);
+    }
+    if (game.isGameOver()) {
+      return;
+    }
+
+    // Take the snapshot here, on the JavaFX thread.
+    Board board = new Board(Game.BOARD_WIDTH, Game.BOARD_HEIGHT);
+    game.copyBoard(board);
+    Piece piece = game.getPiece();
+    Piece next = game.getNextPiece(0);
+    int x = game.getPieceX(), y = game.getPieceY();
+
+    search = worker.submit(() -> search(current, board, piece, next, x, y));
+  }
+
+  private boolean cancelled(long current) {
+    return (
+      generation.get() != current || Thread.currentThread().isInterrupted()
+    );
+  }
+
+  private void search(
+    long current,
+    Board board,
+    Piece piece,
+    Piece next,
+    int spawnX,
+    int spawnY
+  ) {
+    Candidates first = new Candidates(board.getWidth(), board.getHeight());
+    first.collect(board, piece, spawnX, spawnY);
+    int best = evaluator.best(first.batch, Bot.WEIGHTS, first.scores);
+    if (best == -1 || cancelled(current)) return;
+    publish(current, first, best);
+
+    int nodes = first.count;
+    if (next.getType() < 0) return;
+
+    // Go through the placements from best to worst (by the first
+    // search's reckoning).
+    // There are only a few dozen, so an insertion sort of plain ints
+    // does fine (and, like Arrays.sort, keeps ties in order).
+    int[] order = new int[first.count];
+    for (int i = 0; i < order.length; i++) {
+      int j = i;
+      while (j > 0 && first.scores[order[j - 1]] < first.scores[i]) {
+        order[j] = order[j - 1];
+        j--;
+      }
+      order[j] = i;
+    }
+
+    Board after = new Board(board.getWidth(), board.getHeight());
+    Candidates second = new Candidates(board.getWidth(), board.getHeight());
+    double bestValue = Double.NEGATIVE_INFINITY;
+
+    for (int i : order) {
+      if (cancelled(current) || nodes >= NODE_BUDGET) return;
+
+      after.copyFrom(board);
+      int lines = after.place(first.pieces[i], first.xs[i], first.ys[i]);
+      Position nextSpawn = after.nextPiecePosition(next);
+      second.collect(after, next, nextSpawn.getX(), nextSpawn.getY());
+      nodes += second.count;
+
+      int secondBest = evaluator.best(second.batch, Bot.WEIGHTS, second.scores);
+      double value = secondBest == -1
+        ? Double.NEGATIVE_INFINITY // The next piece wouldn't fit at all
+        : second.scores[secondBest] +
+        Bot.WEIGHTS[BoardEvaluator.LINES] * lines;
+
+      if (value > bestValue) {
+        bestValue = value;
+        publish(current, first, i);
+      }
+    }
+  }
+
+  private void publish(long current, Candidates candidates, int i) {
+    if (generation.get() != current) return;
+    hint =
+      new Hint(
+        current,
+        candidates.pieces[i],
+        candidates.xs[i],
+        candidates.ys[i]
+      );
+  }
+
+  /** Every placement of a piece on a board, like Bot.plan(). */
+  private static class Candidates {
+
+    final BoardBatch batch;
+    final double[] scores = new double[MAX_CANDIDATES];
+    final Piece[] pieces = new Piece[MAX_CANDIDATES];
+    final int[] xs = new int[MAX_CANDIDATES];
+    final int[] ys = new int[MAX_CANDIDATES];
+    int count;
+
+    private final Board scratch;
+
+    Candidates(int width, int height) {
+      batch = new BoardBatch(width, height, MAX_CANDIDATES);
+      scratch = new Board(width, height);
+    }
+
+    void collect(Board board, Piece piece, int spawnX, int spawnY) {
+      batch.clear();
+      count = 0;
+      if (piece.getType() < 0) return;
+
+      for (int o = 0; o < Orientations.count(piece.getType()); o++) {
+        Piece candidate = Orientations.get(piece.getType(), o);
+        if (board.collides(candidate, spawnX, spawnY)) continue;
+
+        // Slide left and right from the spawn until we hit something.
+        for (int direction = -1; direction <= 1; direction += 2) {
+          int x = direction == -1 ? spawnX : spawnX + 1;
+          while (!board.collides(candidate, x, spawnY)) {
+            int y = spawnY;
+            while (!board.collides(candidate, x, y + 1)) {
+              y++;
+            }
+
+            scratch.copyFrom(board);
+            int i = batch.add(scratch, scratch.place(candidate, x, y));
+            pieces[i] = candidate;
+            xs[i] = x;
+            ys[i] = y;
+            count++;
+            x += direction;
+          }
+        }
+      }
+    }
+  }
+
+  /** Draws the hint, if there's one for the current piece. */
+  public void draw(GraphicsContext ctx) {
+    Hint current = hint;
+    if (current == null || current.generation() != generation.get()) {
+      return;
+    }
+
+    ctx.save();
+    ctx.setStroke(Color.GRAY);
+    Piece piece = current.piece();
+    for (int pieceY = 0; pieceY < piece.getSize(); pieceY++) {
+      for (int pieceX = 0; pieceX < piece.getSize(); pieceX++) {
+        if (!piece.get(pieceX, pieceY)) continue;
+        double screenX =
+          screenStartX + (slotSize + gridGap) * (current.x() + pieceX);
+        double screenY =
+          screenStartY + (slotSize + gridGap) * (current.y() + pieceY);
+        ctx.strokeRect(screenX, screenY, slotSize, slotSize);
+      }
+    }
+    ctx.restore();
+  }
+
+  /** Stops the search, e.g. when the hint is turned off. */
+  @Override
+  public void close() {
+    generation.incrementAndGet();
+    worker.shutdownNow();
+  }
+}
@@ -1,10 +1,16 @@
 package tetris;
 
+import static tetris.Game.DrawingConstants.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.geometry.VPos;
 import javafx.scene.*;
 import javafx.scene.canvas.*;
 import javafx.scene.input.KeyEvent;
+import javafx.scene.text.TextAlignment;
 import javafx.stage.Stage;
 
 /**
@@ -34,13 +40,93 @@ public class App extends Application {
    */
   private Game game = new Game();
 
+  /** High scores are kept in a file next to wherever the game
+   * is run from. If we can't open it for whatever reason, the
+   * game still works, just without a leaderboard.
+   */
+  private static final Path leaderboardPath = Path.of("leaderboard.dat");
+  private Leaderboard leaderboard;
+  private Leaderboard.Entry lastEntry;
+
+  /** Lets you undo pieces (the U key). Keeps the last few thousand
+   * placements in memory, and older ones in a temporary file.
+   */
+  private History history;
+
+  /** Counts how many more keys you pressed than you had to
+   * (see Finesse), shown under the leaderboard.
+   */
+  private final Finesse.Tracker finesse = new Finesse.Tracker();
+
+  /** Shows where it thinks the piece should go (the H key toggles
+   * it). Null while it's turned off.
+   */
+  private Advisor advisor;
+
   private void draw() {
     ctx.clearRect(0, 0, screenWidth, screenHeight);
     game.draw(ctx);
+    if (advisor != null) {
+      advisor.draw(ctx);
+    }
+    drawLeaderboard();
+    drawFinesse();
+  }
+
+  private void drawFinesse() {
+    ctx.save();
+    ctx.setTextAlign(TextAlignment.RIGHT);
+    ctx.setTextBaseline(VPos.TOP);
+
+    ctx.fillText("Faults", textRightX, screenStartY + 5 * rowGap);
+    ctx.fillText(
+      String.valueOf(finesse.getFaults()),
+      textRightX,
+      screenStartY + 5 * rowGap + textGap
+    );
+
+    ctx.restore();
+  }
+
+  private void drawLeaderboard() {
+    if (leaderboard == null) return;
+
+    ctx.save();
+    ctx.setTextAlign(TextAlignment.RIGHT);
+    ctx.setTextBaseline(VPos.TOP);
+
+    Leaderboard.Entry bestEntry = leaderboard.best();
+    int best = bestEntry == null ? 0 : bestEntry.score();
+    ctx.fillText("Best", textRightX, screenStartY + 3 * rowGap);
+    ctx.fillText(
+      String.valueOf(best),
+      textRightX,
+      screenStartY + 3 * rowGap + textGap
+    );
+
+    if (lastEntry != null) {
+      ctx.fillText(
+        "Rank #" + leaderboard.rankOf(lastEntry.score()),
+        textRightX,
+        screenStartY + 4 * rowGap
+      );
+    }
+
+    ctx.restore();
   }
 
   private void update() {
     game.update();
+
+    // Record the game the first tick it's over.
+    if (game.isGameOver() && lastEntry == null && leaderboard != null) {
+      try {
+        lastEntry = leaderboard.submit(game);
+      } catch (IOException e) {
+        e.printStackTrace();
+        leaderboard = null;
+      }
+    }
   }
 
   /** The heart of our game: the game or "tick" loop.
@@ -97,6 +183,32 @@ public class App extends Application {
       case R:
         {
           game.reset();
+          lastEntry = null;
+          finesse.reset();
+          if (history != null) {
+            history.clear();
+            history.push(game);
+          }
+          if (advisor != null) {
+            advisor.restart(game);
+          }
+          break;
+        }
+      case U:
+        {
+          if (history != null && history.undo(game)) {
+            // The game might not be over any more, and if it ends
+            // again that's a new game for the leaderboard.
+            lastEntry = null;
+            if (advisor != null) {
+              advisor.restart(game);
+            }
+          }
+          break;
+        }
+      case H:
+        {
+          toggleAdvisor();
           break;
         }
       case SPACE:
@@ -112,6 +224,18 @@ public class App extends Application {
     }
   }
 
+  private void toggleAdvisor() {
+    if (advisor == null) {
+      advisor = new Advisor();
+      game.addListener(advisor);
+      advisor.restart(game);
+    } else {
+      game.removeListener(advisor);
+      advisor.close();
+      advisor = null;
+    }
+  }
+
   private void initStage() {
     stage.setTitle("Tetris");
 
@@ -164,13 +288,48 @@ public class App extends Application {
     loop.start();
   }
 
+  private void initLeaderboard() {
+    try {
+      leaderboard = new Leaderboard(leaderboardPath);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private void initHistory() {
+    try {
+      history = new History(4096);
+      history.push(game);
+      game.addListener(history);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
   public void start(Stage stage) {
     this.stage = stage;
 
+    initLeaderboard();
+    initHistory();
+    game.addListener(finesse);
     initStage();
     initGameLoop();
   }
 
+  /** Called by JavaFX when the window closes. */
+  @Override
+  public void stop() throws IOException {
+    if (leaderboard != null) {
+      leaderboard.close();
+    }
+    if (history != null) {
+      history.close();
+    }
+    if (advisor != null) {
+      advisor.close();
+    }
+  }
+
   public static void main(String[] args) {
     try {
       launch(args);
@@ -1,7 +1,5 @@
 package tetris;
 
-import java.util.Random;
-
 /** In Tetris, pieces aren't just
  * sampled randomly, but taken from
  * a pregenerated "bag" that iterates
@@ -25,32 +23,70 @@ public class Bag {
   };
   public static final int NUM_PIECES = prototypes.length;
 
-  private static Random random = new Random();
+  static {
+    for (int i = 0; i < NUM_PIECES; i++) {
+      prototypes[i].type = i;
+    }
+  }
+
+  /** The piece with the given index (0 is O, 6 is I) in its
+   * starting orientation. Don't modify it!
+   */
+  static Piece prototype(int index) {
+    return prototypes[index];
+  }
 
-  private static void shuffle(int[] array) {
-    for (int i = 1; i < array.length; i++) {
-      array[random.nextInt(i)] = array[i];
+  /** Rather than one shared java.util.Random, every bag is
+   * shuffled from its own little random number generator
+   * that only depends on the game's seed and which bag
+   * (0th, 1st, 2nd, ...) it is. So the same seed always deals
+   * the same pieces, which is what lets us record a seed
+   * next to a high score and replay that exact game later.
+   *
+   * This is "SplitMix64", a tiny and fast generator: each call
+   * scrambles the bits of a counter until they look random.
+   */
+  static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  /** Fills `indices` with a shuffled 0..NUM_PIECES-1 for
+   * the `bagNumber`th bag of the game with the given seed.
+   * (A Fisher-Yates shuffle: walk backwards, swapping each
+   * slot with a random slot at or before it.)
+   */
+  static void fillBag(long seed, long bagNumber, int[] indices) {
+    for (int i = 0; i < NUM_PIECES; i++) indices[i] = i;
+
+    long state = mix(seed) + bagNumber * 0x9e3779b97f4a7c15L;
+    for (int i = NUM_PIECES - 1; i > 0; i--) {
+      state += 0x9e3779b97f4a7c15L;
+      int j = (int) Long.remainderUnsigned(mix(state), i + 1);
+      int swap = indices[i];
+      indices[i] = indices[j];
+      indices[j] = swap;
     }
   }
 
+  private final long seed;
+
   private int[] bag = new int[NUM_PIECES];
   private int[] nextBag = new int[NUM_PIECES];
+  private long bagNumber = 0;
   private int grabIndex = 0;
 
-  private int[] generatePieceIndices() {
-    int[] indices = new int[NUM_PIECES];
-    for (int i = 0; i < NUM_PIECES; i++) indices[i] = i;
-    shuffle(indices);
-    return indices;
-  }
-
   public Piece nextPiece() {
     int prototypeIndex = bag[grabIndex];
     Piece piece = prototypes[prototypeIndex].clone();
     grabIndex++;
     if (grabIndex == NUM_PIECES) {
+      int[] usedBag = bag;
       bag = nextBag;
-      nextBag = generatePieceIndices();
+      nextBag = usedBag;
+      bagNumber++;
+      fillBag(seed, bagNumber + 1, nextBag);
       grabIndex = 0;
     }
     return piece;
@@ -69,12 +105,40 @@ public class Bag {
     return prototypes[prototypeIndex];
   }
 
+  public long getSeed() {
+    return seed;
+  }
+
+  /** Where we are in the sequence of pieces: the number of the
+   * bag we're grabbing from, and how far into it we are. Since
+   * every bag only depends on the seed and its number, these
+   * two numbers are all it takes to jump back to any point.
+   */
+  public long getBagNumber() {
+    return bagNumber;
+  }
+
+  public int getGrabIndex() {
+    return grabIndex;
+  }
+
+  public void restore(long bagNumber, int grabIndex) {
+    this.bagNumber = bagNumber;
+    this.grabIndex = grabIndex;
+    fillBag(seed, bagNumber, bag);
+    fillBag(seed, bagNumber + 1, nextBag);
+  }
+
   public void reset() {
-    bag = generatePieceIndices();
-    nextBag = generatePieceIndices();
+    restore(0, 0);
   }
 
-  public Bag() {
+  public Bag(long seed) {
+    this.seed = seed;
     reset();
   }
+
+  public Bag() {
+    this(System.nanoTime());
+  }
 }
@@ -0,0 +1,219 @@
+package tetris;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** A battle royale: lots of Games (played by Bots) all at
+ * once, where clearing lines sends "garbage" rows to an opponent.
+ * Last board standing wins.
+ *
+ * There's no window for this one; run it from the command line
+ * (`gradle battle --args="5000"`) and it prints how fast it goes.
+ *
+ * Every board advances one tick at a time, in "lockstep". Each tick
+ * has two phases:
+ *
+ *  1. Every board plays its tick. Boards are split into chunks that
+ *     run in parallel on different threads (cores). While this happens,
+ *     a board only ever touches its *own* slots in the arrays below,
+ *     so no two threads ever write the same thing and no locks are needed.
+ *
+ *  2. Back on one thread, garbage that was sent during the tick is
+ *     moved from each sender's outbox into its target's mailbox,
+ *     which the target will empty at the start of the next tick.
+ *     This is cheap (one pass over the boards) compared to phase 1.
+ */
+public class Battle {
+
+  /** How many garbage rows clearing 0, 1, 2, 3 or 4 lines sends. */
+  private static final int[] GARBAGE_FOR_LINES = new int[] { 0, 0, 1, 2, 4 };
+
+  private static final int BOARD_WIDTH = 10;
+
+  private final Game[] games;
+  private final Bot[] bots;
+
+  /** Outbox: rows board i has sent this tick. Only board i writes it. */
+  private final int[] outgoingRows;
+
+  /** Mailbox: rows waiting to be added to board i, and where the
+   * gap goes. Only filled in between ticks, only emptied by board i.
+   */
+  private final int[] incomingRows;
+  private final int[] incomingHoleX;
+
+  private final ExecutorService threads;
+  private final List<Callable<Void>> chunks = new ArrayList<>();
+
+  private long randomState;
+  private long ticks = 0;
+  private int alive;
+
+  public Battle(int nBoards, long seed, int nThreads) {
+    games = new Game[nBoards];
+    bots = new Bot[nBoards];
+    outgoingRows = new int[nBoards];
+    incomingRows = new int[nBoards];
+    incomingHoleX = new int[nBoards];
+    randomState = seed;
+    alive = nBoards;
+
+    for (int i = 0; i < nBoards; i++) {
+      final int board = i;
+      games[i] = new Game(Bag.mix(seed + i));
+      bots[i] = new Bot();
+      games[i].addListener((game, linesCleared) -> {
+        outgoingRows[board] += GARBAGE_FOR_LINES[linesCleared];
+      });
+    }
+
+    // A few chunks per thread, so if one chunk happens to be slow
+    // (its bots think harder) the other threads can pick up the slack.
+    int nChunks = Math.min(nBoards, nThreads * 4);
+    for (int c = 0; c < nChunks; c++) {
+      int start = (int) ((long) nBoards * c / nChunks);
+      int end = (int) ((long) nBoards * (c + 1) / nChunks);
+      chunks.add(() -> {
+        tickBoards(start, end);
+        return null;
+      });
+    }
+
+    threads =
+      Executors.newFixedThreadPool(
+        nThreads,
+        runnable -> {
+          Thread thread = new Thread(runnable, "battle");
+          thread.setDaemon(true);
+          return thread;
+        }
+      );
+  }
+
+  /** Phase 1, for boards [start, end). */
+  private void tickBoards(int start, int end) {
+    for (int i = start; i < end; i++) {
+      Game game = games[i];
+      if (game.isGameOver()) continue;
+
+      if (incomingRows[i] > 0) {
+        game.receiveGarbage(incomingRows[i], incomingHoleX[i]);
+        incomingRows[i] = 0;
+      }
+
+      bots[i].play(game);
+      game.update();
+    }
+  }
+
+  /** Phase 2: deliver the mail. */
+  private void deliverGarbage() {
+    alive = 0;
+    for (int i = 0; i < games.length; i++) {
+      if (!games[i].isGameOver()) alive++;
+    }
+
+    for (int i = 0; i < games.length; i++) {
+      int rows = outgoingRows[i];
+      outgoingRows[i] = 0;
+      if (rows == 0 || alive < 2) continue;
+
+      // Pick a random opponent that's still in the game.
+      int target;
+      do {
+        target = (int) Long.remainderUnsigned(nextRandom(), games.length);
+      } while (target == i || games[target].isGameOver());
+
+      incomingRows[target] += rows;
+      incomingHoleX[target] =
+        (int) Long.remainderUnsigned(nextRandom(), BOARD_WIDTH);
+    }
+  }
+
+  private long nextRandom() {
+    randomState += 0x9e3779b97f4a7c15L;
+    return Bag.mix(randomState);
+  }
+
+  /** Advances every board by one tick. */
+  public void tick() throws InterruptedException, ExecutionException {
+    // invokeAll() waits for all of the chunks to finish, which also
+    // guarantees we'll see everything they wrote in phase 2.
+    for (var result : threads.invokeAll(chunks)) {
+      result.get(); // Rethrows anything that went wrong on a thread
+    }
+    deliverGarbage();
+    ticks++;
+  }
+
+  public int getAlive() {
+    return alive;
+  }
+
+  public long getTicks() {
+    return ticks;
+  }
+
+  /** Index of a board that's still going (the winner, if only one is). */
+  public int leader() {
+    int best = -1;
+    for (int i = 0; i < games.length; i++) {
+      if (games[i].isGameOver()) continue;
+      if (best == -1 || games[i].getScore() > games[best].getScore()) best = i;
+    }
+    return best;
+  }
+
+  public Game getGame(int i) {
+    return games[i];
+  }
+
+  public void shutdown() {
+    threads.shutdown();
+  }
+
+  /** Usage: Battle [boards] [threads] [maxTicks] */
+  public static void main(String[] args) throws Exception {
+    int nBoards = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int nThreads = args.length > 1
+      ? Integer.parseInt(args[1])
+      : Runtime.getRuntime().availableProcessors();
+    long maxTicks = args.length > 2 ? Long.parseLong(args[2]) : 10_000;
+
+    Battle battle = new Battle(nBoards, System.nanoTime(), nThreads);
+    System.out.printf("%d boards on %d threads%n", nBoards, nThreads);
+
+    long start = System.nanoTime(), windowStart = start;
+    while (battle.getAlive() > 1 && battle.getTicks() < maxTicks) {
+      battle.tick();
+
+      if (battle.getTicks() % 100 == 0) {
+        long now = System.nanoTime();
+        System.out.printf(
+          "tick %d: %d alive, %.3f ms/tick%n",
+          battle.getTicks(),
+          battle.getAlive(),
+          (now - windowStart) / 1e6 / 100
+        );
+        windowStart = now;
+      }
+    }
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    int winner = battle.leader();
+    System.out.printf(
+      "Done after %d ticks (%.2fs, %.3f ms/tick). Board %d wins with %d points.%n",
+      battle.getTicks(),
+      seconds,
+      seconds * 1e3 / battle.getTicks(),
+      winner,
+      winner == -1 ? 0 : battle.getGame(winner).getScore()
+    );
+
+    battle.shutdown();
+  }
+}
@@ -49,6 +49,84 @@ public class Board {
     board[y][x] = filled;
   }
 
+  /** Makes this board a copy of `other` (which has to be the
+   * same size) without allocating a new board, so a bot can
+   * reuse one "scratch" board to try out lots of placements.
+   */
+  public void copyFrom(Board other) {
+    for (int y = 0; y < height; y++) {
+      System.arraycopy(other.board[y], 0, board[y], 0, width);
+    }
+  }
+
+  /** How many rows fit into one long when each slot is one bit. */
+  private int rowsPerWord() {
+    return Long.SIZE / width;
+  }
+
+  /** How many longs pack() needs. */
+  public int packedWords() {
+    return (height + rowsPerWord() - 1) / rowsPerWord();
+  }
+
+  /** Squeezes the board into packedWords() longs starting at
+   * out[offset], one bit per slot (bit x of a row = column x).
+   * A 10x20 board fits in 4 longs, instead of 20 arrays of booleans.
+   */
+  public void pack(long[] out, int offset) {
+    int perWord = rowsPerWord();
+    Arrays.fill(out, offset, offset + packedWords(), 0);
+    for (int y = 0; y < height; y++) {
+      long row = 0;
+      for (int x = 0; x < width; x++) {
+        if (board[y][x]) row |= 1L << x;
+      }
+      out[offset + y / perWord] |= row << ((y % perWord) * width);
+    }
+  }
+
+  /** The reverse of pack(). */
+  public void unpack(long[] in, int offset) {
+    int perWord = rowsPerWord();
+    for (int y = 0; y < height; y++) {
+      long row = in[offset + y / perWord] >>> ((y % perWord) * width);
+      for (int x = 0; x < width; x++) {
+        board[y][x] = ((row >>> x) & 1) != 0;
+      }
+    }
+  }
+
+  /** Pushes `rows` rows of "garbage" in from the bottom: full rows
+   * except for a single gap at `holeX`, as sent by an opponent in
+   * a battle. Everything already on the board moves up.
+   *
+   * Returns true if that pushed anything off the top of the board,
+   * i.e. the player topped out.
+   */
+  public boolean addGarbage(int rows, int holeX) {
+    rows = Math.min(rows, height);
+
+    boolean overflowed = false;
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < width; x++) {
+        overflowed |= board[y][x];
+      }
+    }
+
+    // Same trick as in tryToClearRow(), just in the other direction.
+    // We recycle the rows that fell off the top as the new garbage rows.
+    boolean[][] recycled = Arrays.copyOf(board, rows);
+    System.arraycopy(board, rows, board, 0, height - rows);
+    for (int i = 0; i < rows; i++) {
+      boolean[] row = recycled[i];
+      Arrays.fill(row, true);
+      row[holeX] = false;
+      board[height - rows + i] = row;
+    }
+
+    return overflowed;
+  }
+
   private boolean tryToClearRow(int y) {
     boolean cleared = true;
     for (int x = 0; x < width; x++) {
@@ -63,12 +141,16 @@ public class Board {
       // A nice thing about having the board be row major
       // is that we can just move the arrays around, which
       // saves some steps.
+      boolean[] clearedRow = board[y];
       for (int row = y; row >= 1; row--) {
         board[row] = board[row - 1];
       }
 
-      // Top-most row is emptied out.
-      Arrays.fill(board[0], false);
+      // Top-most row is emptied out. We reuse the cleared row's
+      // array for it, otherwise rows 0 and 1 would end up being
+      // the very same array, and filling one would fill both!
+      Arrays.fill(clearedRow, false);
+      board[0] = clearedRow;
     }
 
     return cleared;
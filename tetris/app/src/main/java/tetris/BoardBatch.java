@@ -0,0 +1,102 @@
+package tetris;
+
+/** A bunch of boards packed together so a BoardEvaluator can
+ * score them all in one go.
+ *
+ * Each row of a board is packed into an int, one bit per slot
+ * (bit x = column x), like VectorEnv does. The unusual part is the
+ * order: rather than all of board 0's rows, then all of board 1's,
+ * we store row 0 of every board, then row 1 of every board, and so on:
+ *
+ *   rows[y * capacity + i] = row y of board i
+ *
+ * That way "row y of boards i, i + 1, i + 2, ..." sit next to each
+ * other in memory, which is exactly what the CPU wants for SIMD
+ * ("single instruction, multiple data"), where one instruction works
+ * on 8 or 16 ints at once. So we can work on 8 or 16 boards at once.
+ */
+public class BoardBatch {
+
+  private final int width;
+  private final int height;
+  private final int capacity;
+  private int size = 0;
+
+  final int[] rows;
+  final int[] linesCleared;
+
+  /** Filled in by BoardEvaluator:
+   * features[feature * capacity + i] is that feature of board i.
+   */
+  final int[] features;
+
+  public BoardBatch(int width, int height, int capacity) {
+    if (width > Integer.SIZE - 2) {
+      throw new IllegalArgumentException(
+        "Boards can be at most " + (Integer.SIZE - 2) + " wide"
+      );
+    }
+    this.width = width;
+    this.height = height;
+    this.capacity = capacity;
+    rows = new int[height * capacity];
+    linesCleared = new int[capacity];
+    features = new int[BoardEvaluator.FEATURES * capacity];
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Empties the batch (without freeing anything) to start a new one. */
+  public void clear() {
+    size = 0;
+  }
+
+  /** Adds a board that was left after clearing `linesCleared` lines,
+   * returning its index in the batch.
+   */
+  public int add(Board board, int linesCleared) {
+    int i = size++;
+    for (int y = 0; y < height; y++) {
+      int row = 0;
+      for (int x = 0; x < width; x++) {
+        if (board.get(x, y)) row |= 1 << x;
+      }
+      rows[y * capacity + i] = row;
+    }
+    this.linesCleared[i] = linesCleared;
+    return i;
+  }
+
+  /** Adds a board that's already packed, one int per row, from
+   * packedRows[offset] (the top row) to packedRows[offset + height - 1].
+   */
+  public int add(int[] packedRows, int offset, int linesCleared) {
+    int i = size++;
+    for (int y = 0; y < height; y++) {
+      rows[y * capacity + i] = packedRows[offset + y];
+    }
+    this.linesCleared[i] = linesCleared;
+    return i;
+  }
+
+  /** One feature (e.g. BoardEvaluator.HOLES) of board i, after
+   * BoardEvaluator.features() or score() has run.
+   */
+  public int getFeature(int i, int feature) {
+    return features[feature * capacity + i];
+  }
+}
@@ -0,0 +1,187 @@
+package tetris;
+
+import java.util.Random;
+
+/** Scores a whole BoardBatch of boards at once.
+ *
+ * A bot searching for the best placement spends most of its time
+ * asking "how good is this board?", so it's worth making that fast.
+ * Each board gets boiled down to a few numbers ("features"), and its
+ * score is a weighted sum of them. The features are:
+ *
+ *  - HEIGHT: the heights of all the columns added up.
+ *  - HOLES: empty slots with something somewhere above them.
+ *  - BUMPINESS: how much the heights of neighbouring columns differ.
+ *  - ROW_TRANSITIONS: how often a row switches between filled and
+ *    empty, going across it (the walls count as filled).
+ *  - WELLS: empty slots, open to the sky, with something (or a wall)
+ *    on both sides. Only one kind of piece fits down a deep well.
+ *  - LINES: the number of lines the placement cleared.
+ *
+ * Instead of looking at one slot at a time, we look at a whole row
+ * (packed into the bits of an int) at a time. E.g. `cover` has a bit
+ * set for every column that's had a block in it so far, going from
+ * the top down, so for a row, `~row & cover` is its holes, and
+ * Integer.bitCount() (the number of 1 bits) counts them.
+ *
+ * This class does one board after another. Call create() to get the
+ * fastest evaluator available, which might be VectorBoardEvaluator,
+ * which does 8 or 16 boards at a time with the same tricks.
+ */
+public class BoardEvaluator {
+
+  public static final int HEIGHT = 0;
+  public static final int HOLES = 1;
+  public static final int BUMPINESS = 2;
+  public static final int ROW_TRANSITIONS = 3;
+  public static final int WELLS = 4;
+  public static final int LINES = 5;
+  public static final int FEATURES = 6;
+
+  /** The Java Vector API (for SIMD) is still an "incubator" module,
+   * so the JVM only has it if it's started with
+   * `--add-modules jdk.incubator.vector` (build.gradle does that).
+   * Without it, or with -Dtetris.scalar=true, we fall back to this class.
+   */
+  public static BoardEvaluator create() {
+    boolean haveVectors = ModuleLayer
+      .boot()
+      .findModule("jdk.incubator.vector")
+      .isPresent();
+    if (haveVectors && !Boolean.getBoolean("tetris.scalar")) {
+      try {
+        return new VectorBoardEvaluator();
+      } catch (LinkageError e) {
+        // Fall through to the plain version.
+      }
+    }
+    return new BoardEvaluator();
+  }
+
+  /** Fills in batch.features for every board in the batch. */
+  public void features(BoardBatch batch) {
+    scalarFeatures(batch, 0, batch.size());
+  }
+
+  /** Scores every board in the batch: scores[i] is the sum of
+   * weights[f] times feature f of board i. Higher is better.
+   */
+  public void score(BoardBatch batch, double[] weights, double[] scores) {
+    features(batch);
+
+    int n = batch.size(), capacity = batch.capacity();
+    int[] features = batch.features;
+    for (int i = 0; i < n; i++) {
+      scores[i] = 0;
+    }
+    for (int f = 0; f < FEATURES; f++) {
+      double weight = weights[f];
+      if (weight == 0) continue;
+      int base = f * capacity;
+      for (int i = 0; i < n; i++) {
+        scores[i] += weight * features[base + i];
+      }
+    }
+  }
+
+  /** Scores the batch and returns the index of the best board
+   * (the first one, if there's a tie), or -1 if it's empty.
+   */
+  public int best(BoardBatch batch, double[] weights, double[] scores) {
+    score(batch, weights, scores);
+    int best = -1;
+    for (int i = 0; i < batch.size(); i++) {
+      if (best == -1 || scores[i] > scores[best]) best = i;
+    }
+    return best;
+  }
+
+  /** The one-board-at-a-time version, for boards [from, to). */
+  static void scalarFeatures(BoardBatch batch, int from, int to) {
+    int width = batch.getWidth(), height = batch.getHeight();
+    int capacity = batch.capacity();
+    int[] rows = batch.rows, features = batch.features;
+
+    int full = (1 << width) - 1;
+    // Bit x of (a ^ (a >>> 1)) says whether columns x and x + 1 differ,
+    // and only the first width - 1 of those are real pairs of columns.
+    int pairs = (1 << (width - 1)) - 1;
+    int walls = 1 | 1 << (width + 1);
+    int walledPairs = (1 << (width + 1)) - 1;
+
+    for (int i = from; i < to; i++) {
+      int cover = 0;
+      int aggregateHeight = 0, holes = 0, bumpiness = 0;
+      int rowTransitions = 0, wells = 0;
+
+      for (int y = 0; y < height; y++) {
+        int row = rows[y * capacity + i];
+
+        // Columns whose first block is in this row are height - y tall.
+        aggregateHeight += Integer.bitCount(row & ~cover) * (height - y);
+        cover |= row;
+
+        holes += Integer.bitCount(~row & cover);
+
+        // Two neighbouring columns whose heights differ by d differ in
+        // `cover` (one has started, the other hasn't) on exactly d rows.
+        bumpiness += Integer.bitCount((cover ^ (cover >>> 1)) & pairs);
+
+        // The row with a filled slot for each wall added on either side.
+        int walled = row << 1 | walls;
+        rowTransitions +=
+          Integer.bitCount((walled ^ (walled >>> 1)) & walledPairs);
+
+        int leftFilled = row << 1 | 1;
+        int rightFilled = row >>> 1 | 1 << (width - 1);
+        wells += Integer.bitCount(~cover & leftFilled & rightFilled & full);
+      }
+
+      features[HEIGHT * capacity + i] = aggregateHeight;
+      features[HOLES * capacity + i] = holes;
+      features[BUMPINESS * capacity + i] = bumpiness;
+      features[ROW_TRANSITIONS * capacity + i] = rowTransitions;
+      features[WELLS * capacity + i] = wells;
+      features[LINES * capacity + i] = batch.linesCleared[i];
+    }
+  }
+
+  /** Times the scalar and vector versions against each other on
+   * random boards.
+   */
+  public static void main(String[] args) {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+    BoardBatch batch = new BoardBatch(10, 20, n);
+    Random random = new Random(1452);
+    int[] packedRows = new int[20];
+    for (int b = 0; b < n; b++) {
+      int stackHeight = random.nextInt(20);
+      for (int y = 0; y < 20; y++) {
+        packedRows[y] = y >= 20 - stackHeight ? random.nextInt(1 << 10) : 0;
+      }
+      batch.add(packedRows, 0, random.nextInt(5));
+    }
+
+    double[] weights = { -0.51, -0.36, -0.18, -0.1, -0.05, 0.76 };
+    double[] scores = new double[n];
+    BoardEvaluator[] evaluators = { new BoardEvaluator(), create() };
+
+    for (BoardEvaluator evaluator : evaluators) {
+      double checksum = 0;
+      long start = 0;
+      int rounds = 2000, warmup = 500;
+      for (int round = 0; round < rounds + warmup; round++) {
+        if (round == warmup) start = System.nanoTime();
+        evaluator.score(batch, weights, scores);
+        checksum += scores[round % n];
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf(
+        "%s: %.1f million boards/s (checksum %.1f)%n",
+        evaluator.getClass().getSimpleName(),
+        (double) n * rounds / seconds / 1e6,
+        checksum
+      );
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package tetris;
+
+/** A simple computer player.
+ *
+ * Whenever it's asked to play, it tries every way of dropping
+ * the current piece (every orientation, every column), scores
+ * the board each one would leave behind, and then presses the
+ * keys to actually do the best one.
+ *
+ * The scoring is the well-known "height, lines, holes, bumpiness"
+ * heuristic: tall stacks, holes (empty slots with something above
+ * them) and jagged surfaces are bad, clearing lines is good.
+ * Rather than scoring each board as we go, we collect all of them
+ * into a BoardBatch and have a BoardEvaluator score them in one go.
+ */
+public class Bot {
+
+  /** How much each of BoardEvaluator's features counts. */
+  static final double[] WEIGHTS = new double[BoardEvaluator.FEATURES];
+
+  static {
+    WEIGHTS[BoardEvaluator.HEIGHT] = -0.510066;
+    WEIGHTS[BoardEvaluator.LINES] = 0.760666;
+    WEIGHTS[BoardEvaluator.HOLES] = -0.35663;
+    WEIGHTS[BoardEvaluator.BUMPINESS] = -0.184483;
+  }
+
+  /** At most 4 rotations times flipped or not. */
+  private static final int MAX_ORIENTATIONS = 8;
+
+  /** Evaluators don't keep any state, so all bots can share one. */
+  private static final BoardEvaluator evaluator = BoardEvaluator.create();
+
+  private final Board board;
+  private final Board scratch;
+
+  /** Every placement we're considering this piece: the board it
+   * leaves behind (in the batch) and how to get there.
+   */
+  private final BoardBatch batch;
+  private final double[] scores;
+  private final int[] candidateRotations;
+  private final boolean[] candidateFlips;
+  private final int[] candidateMasks;
+  private final int[] candidateXs;
+
+  /** The plan for the current piece: rotate right this
+   * many times, flip or not, then move to column bestX.
+   * (bestMask is what the piece looks like after that.)
+   */
+  private int bestRotations;
+  private boolean bestFlip;
+  private int bestMask;
+  private int bestX;
+
+  public Bot(int boardWidth, int boardHeight) {
+    board = new Board(boardWidth, boardHeight);
+    scratch = new Board(boardWidth, boardHeight);
+
+    // A piece can hang at most 3 columns off the left edge.
+    int maxCandidates = MAX_ORIENTATIONS * (boardWidth + 3);
+    batch = new BoardBatch(boardWidth, boardHeight, maxCandidates);
+    scores = new double[maxCandidates];
+    candidateRotations = new int[maxCandidates];
+    candidateFlips = new boolean[maxCandidates];
+    candidateMasks = new int[maxCandidates];
+    candidateXs = new int[maxCandidates];
+  }
+
+  public Bot() {
+    this(10, 20);
+  }
+
+  /** Picks a placement for the game's current piece and plays it. */
+  public void play(Game game) {
+    if (game.isGameOver()) {
+      return;
+    }
+
+    if (plan(game)) {
+      execute(game);
+    } else {
+      // Nothing fits; just let it fall.
+      game.drop();
+    }
+  }
+
+  /** Searches every placement, returning false if none was found. */
+  private boolean plan(Game game) {
+    game.copyBoard(board);
+    Piece piece = game.getPiece();
+    int spawnX = game.getPieceX(), spawnY = game.getPieceY();
+
+    int[] seenMasks = new int[MAX_ORIENTATIONS];
+    int nSeen = 0;
+
+    batch.clear();
+
+    for (int rotations = 0; rotations < 4; rotations++) {
+      for (int f = 0; f < 2; f++) {
+        boolean flip = f == 1;
+
+        // Get the piece into this orientation the same way Game would,
+        // one rotation at a time, and give up on orientations that would
+        // need a wall kick (we don't try to predict those).
+        Piece candidate = piece.clone();
+        boolean reachable = !board.collides(candidate, spawnX, spawnY);
+        for (int i = 0; i < rotations && reachable; i++) {
+          candidate.rotateRight();
+          reachable = !board.collides(candidate, spawnX, spawnY);
+        }
+        if (flip && reachable) {
+          candidate.flip();
+          reachable = !board.collides(candidate, spawnX, spawnY);
+        }
+        if (!reachable) continue;
+
+        // Some pieces look the same in different orientations
+        // (e.g. the O piece always looks the same) so skip repeats.
+        int mask = candidate.toMask();
+        boolean seen = false;
+        for (int i = 0; i < nSeen; i++) {
+          seen |= seenMasks[i] == mask;
+        }
+        if (seen) continue;
+        seenMasks[nSeen++] = mask;
+
+        // Slide left and right from the spawn until we hit something.
+        for (int direction = -1; direction <= 1; direction += 2) {
+          int x = direction == -1 ? spawnX : spawnX + 1;
+          while (!board.collides(candidate, x, spawnY)) {
+            int i = addPlacement(candidate, x, spawnY);
+            candidateRotations[i] = rotations;
+            candidateFlips[i] = flip;
+            candidateMasks[i] = mask;
+            candidateXs[i] = x;
+            x += direction;
+          }
+        }
+      }
+    }
+
+    int best = evaluator.best(batch, WEIGHTS, scores);
+    if (best == -1) {
+      return false;
+    }
+    bestRotations = candidateRotations[best];
+    bestFlip = candidateFlips[best];
+    bestMask = candidateMasks[best];
+    bestX = candidateXs[best];
+    return true;
+  }
+
+  /** Drops the piece straight down from (x, y) onto the scratch
+   * board and adds the result to the batch, returning its index.
+   */
+  private int addPlacement(Piece piece, int x, int y) {
+    while (!board.collides(piece, x, y + 1)) {
+      y++;
+    }
+
+    scratch.copyFrom(board);
+    int linesCleared = scratch.place(piece, x, y);
+    return batch.add(scratch, linesCleared);
+  }
+
+  /** Presses the keys for the plan we came up with.
+   *
+   * If Finesse knows a shorter way there (and it works on this
+   * board, which unlike Finesse's might have blocks in the way)
+   * we use that, otherwise we do it the slow way.
+   */
+  private void execute(Game game) {
+    Piece piece = game.getPiece();
+    if (piece.getType() >= 0) {
+      int orientation = Orientations.indexOf(piece.getType(), bestMask);
+      long path = Finesse.path(piece.getType(), orientation, bestX);
+      Position start = new Position(game.getPieceX(), game.getPieceY());
+      if (
+        path != Finesse.UNREACHABLE &&
+        Finesse.works(path, board, piece, start, orientation, bestX)
+      ) {
+        Finesse.play(path, game);
+        game.drop();
+        return;
+      }
+    }
+
+    for (int i = 0; i < bestRotations; i++) {
+      game.rotateRight();
+    }
+    if (bestFlip) {
+      game.flip();
+    }
+
+    int dx = bestX - game.getPieceX();
+    for (int i = 0; i < Math.abs(dx); i++) {
+      if (dx > 0) game.moveRight(); else game.moveLeft();
+    }
+
+    game.drop();
+  }
+}
@@ -0,0 +1,307 @@
+package tetris;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** "Finesse" is Tetris-player speak for getting a piece where you
+ * want it in as few key presses as possible. E.g. to get an I piece
+ * flat against the left wall you could press left four times, but
+ * there might be a shorter way involving a rotation and a wall kick.
+ *
+ * For every piece, orientation and column, this works out the
+ * shortest sequence of inputs from where the piece spawns, using
+ * Game's own movement rules (including wall kicks) on an empty board.
+ * We do that once, when the class is loaded, with a breadth-first
+ * search: starting from the spawn, try every input, then every input
+ * from each of the places those got us to, and so on. Since we explore
+ * everything reachable in 1 input before anything reachable in 2, the
+ * first time we reach a placement is by the shortest path.
+ *
+ * Each answer is packed into a single long, so looking one up is just
+ * indexing into an array: the low 5 bits are the number of inputs, and
+ * then each input takes 3 bits. (The final drop isn't included.)
+ *
+ * Bots use this to turn "I want the piece here" into key presses, and
+ * faults() compares what a human pressed against the best possible.
+ */
+public class Finesse {
+
+  public enum Input {
+    LEFT,
+    RIGHT,
+    ROTATE_RIGHT,
+    ROTATE_LEFT,
+    FLIP,
+  }
+
+  private static final Input[] INPUTS = Input.values();
+
+  private static final int WIDTH = 10;
+  private static final int HEIGHT = 20;
+
+  public static final int X_OFFSET = 3;
+  public static final int X_SLOTS = WIDTH + X_OFFSET;
+
+  private static final int LENGTH_BITS = 5;
+  private static final int INPUT_BITS = 3;
+  public static final int MAX_INPUTS = (64 - LENGTH_BITS) / INPUT_BITS;
+
+  /** No way to get there. */
+  public static final long UNREACHABLE = -1;
+
+  /** Indexed by [(type * Orientations.MAX + orientation) * X_SLOTS + x + X_OFFSET]. */
+  private static final long[] paths = new long[Bag.NUM_PIECES *
+    Orientations.MAX *
+    X_SLOTS];
+
+  static {
+    Arrays.fill(paths, UNREACHABLE);
+    Board board = new Board(WIDTH, HEIGHT);
+
+    for (int type = 0; type < Bag.NUM_PIECES; type++) {
+      Piece spawnPiece = Bag.prototype(type).clone();
+      Position spawn = board.nextPiecePosition(spawnPiece);
+
+      // The queue of places to explore from, as indices into `paths`.
+      int[] queue = new int[Orientations.MAX * X_SLOTS];
+      int head = 0, tail = 0;
+
+      int start = index(type, 0, spawn.getX());
+      paths[start] = 0;
+      queue[tail++] = start;
+
+      while (head < tail) {
+        int from = queue[head++];
+        int orientation = (from / X_SLOTS) % Orientations.MAX;
+        int x = from % X_SLOTS - X_OFFSET;
+
+        for (Input input : INPUTS) {
+          Piece piece = Orientations.get(type, orientation);
+          Position position = new Position(x, spawn.getY());
+          if (!apply(input, board, piece, position)) continue;
+
+          int to = index(
+            type,
+            Orientations.indexOf(type, piece.toMask()),
+            position.getX()
+          );
+          if (paths[to] != UNREACHABLE) continue;
+
+          paths[to] = append(paths[from], input);
+          queue[tail++] = to;
+        }
+      }
+    }
+  }
+
+  private static int index(int type, int orientation, int x) {
+    return (type * Orientations.MAX + orientation) * X_SLOTS + x + X_OFFSET;
+  }
+
+  private static long append(long path, Input input) {
+    int length = length(path);
+    long inputBits = (long) input.ordinal() << (LENGTH_BITS + INPUT_BITS * length);
+    return (path & ~((1L << LENGTH_BITS) - 1)) | inputBits | (length + 1);
+  }
+
+  /** Does one input with Game's rules. Returns whether anything moved. */
+  private static boolean apply(
+    Input input,
+    Board board,
+    Piece piece,
+    Position position
+  ) {
+    switch (input) {
+      case LEFT:
+        return Game.tryToMove(board, piece, position, -1, 0);
+      case RIGHT:
+        return Game.tryToMove(board, piece, position, 1, 0);
+      case ROTATE_RIGHT:
+        return Game.tryToRotate(
+          board,
+          piece,
+          position,
+          Game.RotationDirection.RIGHT
+        );
+      case ROTATE_LEFT:
+        return Game.tryToRotate(
+          board,
+          piece,
+          position,
+          Game.RotationDirection.LEFT
+        );
+      case FLIP:
+        return Game.tryToFlip(board, piece, position);
+      default:
+        throw new IllegalArgumentException("Unknown input " + input);
+    }
+  }
+
+  /** The shortest path to the placement (without the final drop),
+   * or UNREACHABLE. `x` is the piece's x, like Game.getPieceX().
+   */
+  public static long path(int type, int orientation, int x) {
+    if (
+      orientation < 0 ||
+      orientation >= Orientations.count(type) ||
+      x < -X_OFFSET ||
+      x >= WIDTH
+    ) {
+      return UNREACHABLE;
+    }
+    return paths[index(type, orientation, x)];
+  }
+
+  public static int length(long path) {
+    return (int) (path & ((1L << LENGTH_BITS) - 1));
+  }
+
+  public static Input input(long path, int i) {
+    int shift = LENGTH_BITS + INPUT_BITS * i;
+    return INPUTS[(int) ((path >>> shift) & ((1 << INPUT_BITS) - 1))];
+  }
+
+  /** Presses the inputs in `path` (but not the drop). */
+  public static void play(long path, Game game) {
+    for (int i = 0; i < length(path); i++) {
+      switch (input(path, i)) {
+        case LEFT -> game.moveLeft();
+        case RIGHT -> game.moveRight();
+        case ROTATE_RIGHT -> game.rotateRight();
+        case ROTATE_LEFT -> game.rotateLeft();
+        case FLIP -> game.flip();
+      }
+    }
+  }
+
+  /** Checks whether `path` would really get the piece from `start`
+   * to (`orientation`, `x`) on this board. (On a real board there
+   * might be blocks in the way that the empty board didn't have.)
+   */
+  static boolean works(
+    long path,
+    Board board,
+    Piece start,
+    Position startPosition,
+    int orientation,
+    int x
+  ) {
+    Piece piece = start.clone();
+    Position position = new Position(startPosition.getX(), startPosition.getY());
+    for (int i = 0; i < length(path); i++) {
+      apply(input(path, i), board, piece, position);
+    }
+    return (
+      position.getX() == x &&
+      piece.toMask() == Orientations.mask(start.getType(), orientation)
+    );
+  }
+
+  /** How many more inputs than necessary were used to place a piece. */
+  public static int faults(int type, int orientation, int x, int inputsUsed) {
+    long path = path(type, orientation, x);
+    if (path == UNREACHABLE) return 0;
+    return Math.max(0, inputsUsed - length(path));
+  }
+
+  /** faults() over a whole recording at once: the total number of
+   * wasted inputs over `n` placements.
+   */
+  public static long faults(
+    byte[] types,
+    byte[] orientations,
+    byte[] xs,
+    byte[] inputsUsed,
+    int n
+  ) {
+    long total = 0;
+    for (int i = 0; i < n; i++) {
+      total += faults(types[i], orientations[i], xs[i], inputsUsed[i]);
+    }
+    return total;
+  }
+
+  /** Keeps a running finesse score for a game, e.g. one a human plays. */
+  public static class Tracker implements Game.Listener {
+
+    private long placements = 0;
+    private long faults = 0;
+
+    @Override
+    public void piecePlaced(Game game, int linesCleared) {
+      int type = game.getLastPlacedType();
+      if (type < 0) return;
+
+      int orientation = Orientations.indexOf(type, game.getLastPlacedMask());
+      placements++;
+      faults +=
+        Finesse.faults(
+          type,
+          orientation,
+          game.getLastPlacedX(),
+          game.getLastPlacedInputs()
+        );
+    }
+
+    public long getPlacements() {
+      return placements;
+    }
+
+    public long getFaults() {
+      return faults;
+    }
+
+    public void reset() {
+      placements = 0;
+      faults = 0;
+    }
+  }
+
+  /** Prints every path, then times the replay analyzer.
+   * In the printout, C and A are rotating clockwise (right)
+   * and anticlockwise (left).
+   */
+  public static void main(String[] args) {
+    String letters = "LRCAF";
+    for (int type = 0; type < Bag.NUM_PIECES; type++) {
+      for (int o = 0; o < Orientations.count(type); o++) {
+        StringBuilder line = new StringBuilder("piece " + type + " orientation " + o + ":");
+        for (int x = -X_OFFSET; x < WIDTH; x++) {
+          long path = path(type, o, x);
+          if (path == UNREACHABLE) continue;
+          line.append(" ").append(x).append("=");
+          for (int i = 0; i < length(path); i++) {
+            line.append(letters.charAt(input(path, i).ordinal()));
+          }
+          if (length(path) == 0) line.append("-");
+        }
+        System.out.println(line);
+      }
+    }
+
+    // A made up "recording" of random placements.
+    int n = 10_000_000;
+    byte[] types = new byte[n], orientations = new byte[n], xs = new byte[n];
+    byte[] inputsUsed = new byte[n];
+    Random random = new Random(1452);
+    for (int i = 0; i < n; i++) {
+      types[i] = (byte) random.nextInt(Bag.NUM_PIECES);
+      orientations[i] = (byte) random.nextInt(Orientations.count(types[i]));
+      xs[i] = (byte) random.nextInt(WIDTH);
+      inputsUsed[i] = (byte) random.nextInt(8);
+    }
+
+    for (int round = 0; round < 5; round++) {
+      long start = System.nanoTime();
+      long total = faults(types, orientations, xs, inputsUsed, n);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf(
+        "%d placements in %.3fs (%.0f million/s), %d faults%n",
+        n,
+        seconds,
+        n / seconds / 1e6,
+        total
+      );
+    }
+  }
+}
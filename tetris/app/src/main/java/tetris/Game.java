@@ -2,6 +2,8 @@ package tetris;
 
 import static tetris.Game.DrawingConstants.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import javafx.geometry.VPos;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
@@ -19,8 +21,8 @@ import javafx.scene.text.TextAlignment;
  */
 public class Game {
 
-  private static int BOARD_WIDTH = 10;
-  private static int BOARD_HEIGHT = 20;
+  static final int BOARD_WIDTH = 10;
+  static final int BOARD_HEIGHT = 20;
 
   private double ticksPerStep;
   private double ticksSinceLastStep;
@@ -45,6 +47,35 @@ public class Game {
 
   private boolean gameOver = false;
 
+  /** Lets other code react to what happens in a game
+   * without Game needing to know anything about it.
+   * (This is the "Observer" pattern.) E.g. a battle
+   * listens for line clears to send garbage to opponents.
+   */
+  public interface Listener {
+    /** Called after a piece locks into the board,
+     * clearing `linesCleared` lines, and the next piece
+     * has spawned.
+     */
+    void piecePlaced(Game game, int linesCleared);
+  }
+
+  private final List<Listener> listeners = new ArrayList<>();
+
+  /** How many times update() has been called this game,
+   * i.e. how long the game has lasted (in ticks, not seconds).
+   */
+  private long ticks;
+
+  /** What the last piece placed was, where it went and how many
+   * control inputs it took, for Finesse to grade.
+   */
+  private int inputsThisPiece;
+  private int lastPlacedType = -1;
+  private int lastPlacedMask;
+  private int lastPlacedX;
+  private int lastPlacedInputs;
+
   private static int calculateTicksPerUpdate(int level) {
     return Math.max(1, 20 - level);
   }
@@ -53,6 +84,13 @@ public class Game {
     reset();
   }
 
+  /** Starts a game whose pieces are dealt from the given seed.
+   * Two games with the same seed get the exact same pieces.
+   */
+  public Game(long seed) {
+    reset(seed);
+  }
+
   /** The following public methods are the interface to Game.java.
    * Namely, they're how App.java, where `public static void main(String[] args)` is,
    * bridges the gap between the user and the state of our game.
@@ -60,11 +98,19 @@ public class Game {
 
   /** Resets/initializes our game state. */
   public void reset() {
+    reset(System.nanoTime());
+  }
+
+  public void reset(long seed) {
     ticksPerStep = calculateTicksPerUpdate(1);
     ticksSinceLastStep = 0;
+    ticks = 0;
+    gameOver = false;
+    inputsThisPiece = 0;
+    lastPlacedType = -1;
 
-    board = new Board(10, 20);
-    bag = new Bag();
+    board = new Board(BOARD_WIDTH, BOARD_HEIGHT);
+    bag = new Bag(seed);
     piece = bag.nextPiece();
     piecePosition = board.nextPiecePosition(piece);
 
@@ -77,6 +123,10 @@ public class Game {
    * based on how advanced the current level is.
    */
   public void update() {
+    if (!gameOver) {
+      ticks += 1;
+    }
+
     if (ticksSinceLastStep == ticksPerStep) {
       step();
       ticksSinceLastStep = 0;
@@ -85,29 +135,216 @@ public class Game {
     }
   }
 
+  /** Read-only views of the game state, e.g. for
+   * recording a finished game on the Leaderboard.
+   */
+  public boolean isGameOver() {
+    return gameOver;
+  }
+
+  public int getScore() {
+    return score.get();
+  }
+
+  public int getLines() {
+    return lines;
+  }
+
+  public int getLevel() {
+    return level.get();
+  }
+
+  public long getSeed() {
+    return bag.getSeed();
+  }
+
+  public long getTicks() {
+    return ticks;
+  }
+
+  /** A copy of the current piece, so whoever asks can
+   * rotate it around without affecting the game.
+   */
+  public Piece getPiece() {
+    return piece.clone();
+  }
+
+  /** A copy of the piece coming up `n` pieces after the current one
+   * (0 is the very next one), like the previews on the side.
+   */
+  public Piece getNextPiece(int n) {
+    return bag.peekPiecePrototype(n).clone();
+  }
+
+  public int getPieceX() {
+    return piecePosition.getX();
+  }
+
+  public int getPieceY() {
+    return piecePosition.getY();
+  }
+
+  /** Copies the (locked-in) board into `out`. */
+  public void copyBoard(Board out) {
+    out.copyFrom(board);
+  }
+
+  /** The type of the last piece placed (see Piece.getType()),
+   * or -1 if none has been placed yet.
+   */
+  public int getLastPlacedType() {
+    return lastPlacedType;
+  }
+
+  /** The last piece placed's slots, see Piece.toMask(). */
+  public int getLastPlacedMask() {
+    return lastPlacedMask;
+  }
+
+  public int getLastPlacedX() {
+    return lastPlacedX;
+  }
+
+  /** How many rotates, flips and moves left/right went into
+   * the last piece placed (including ones that did nothing).
+   */
+  public int getLastPlacedInputs() {
+    return lastPlacedInputs;
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /** Everything about the game, squeezed into a handful of longs
+   * so History can keep thousands of them around. The board comes
+   * first (see Board.pack()), then:
+   *
+   *   piece slots (16 bits), piece size (4), piece x (8), piece y (8),
+   *     bag grab index (4), game over (1), ticks per step (8),
+   *     ticks since last step (8), piece type (4)
+   *   bag number
+   *   score (32), lines (32)
+   *   level (32), lines to next level (32)
+   *   ticks
+   *
+   * The seed isn't included: it never changes during a game.
+   */
+  private static final int BOARD_WORDS = new Board(BOARD_WIDTH, BOARD_HEIGHT)
+    .packedWords();
+  public static final int STATE_WORDS = BOARD_WORDS + 5;
+  private static final int TICKS_WORD = BOARD_WORDS + 4;
+
+  public void saveState(long[] out, int offset) {
+    board.pack(out, offset);
+
+    int i = offset + BOARD_WORDS;
+    out[i] =
+      (long) piece.toMask() |
+      (long) piece.getSize() << 16 |
+      (long) (piecePosition.getX() & 0xff) << 20 |
+      (long) (piecePosition.getY() & 0xff) << 28 |
+      (long) bag.getGrabIndex() << 36 |
+      (gameOver ? 1L : 0L) << 40 |
+      (long) ticksPerStep << 41 |
+      (long) ticksSinceLastStep << 49 |
+      (long) (piece.getType() & 0xf) << 57;
+    out[i + 1] = bag.getBagNumber();
+    out[i + 2] = (long) lines << 32 | (score.get() & 0xffffffffL);
+    out[i + 3] =
+      (long) level.getLinesToNextLevel() << 32 | (level.get() & 0xffffffffL);
+    out[i + 4] = ticks;
+  }
+
+  /** Puts the game back into a state from saveState().
+   * (Which has to have come from a game with the same seed.)
+   */
+  public void loadState(long[] in, int offset) {
+    board.unpack(in, offset);
+
+    int i = offset + BOARD_WORDS;
+    long word = in[i];
+    int size = (int) (word >>> 16) & 0xf;
+    int type = (int) (word >>> 57) & 0xf;
+    piece = Piece.fromMask(type == 0xf ? -1 : type, size, (int) word & 0xffff);
+    // Casting to a byte turns e.g. 0xff back into -1.
+    piecePosition =
+      new Position((byte) (word >>> 20), (byte) (word >>> 28));
+    bag.restore(in[i + 1], (int) (word >>> 36) & 0xf);
+    gameOver = ((word >>> 40) & 1) != 0;
+    ticksPerStep = (word >>> 41) & 0xff;
+    ticksSinceLastStep = (word >>> 49) & 0xff;
+
+    lines = (int) (in[i + 2] >>> 32);
+    score.set((int) in[i + 2]);
+    level.set((int) in[i + 3], (int) (in[i + 3] >>> 32));
+    ticks = in[i + 4];
+  }
+
+  /** The tick a state from saveState() was saved on. */
+  public static long ticksOfState(long[] state, int offset) {
+    return state[offset + TICKS_WORD];
+  }
+
+  /** Pushes garbage rows (full except for a gap at `holeX`)
+   * in from the bottom of the board. See Board.addGarbage().
+   */
+  public void receiveGarbage(int rows, int holeX) {
+    if (gameOver || rows <= 0) {
+      return;
+    }
+
+    boolean overflowed = board.addGarbage(rows, holeX);
+
+    // The rising stack might have run into the falling piece,
+    // in which case we nudge the piece up to sit on top of it.
+    while (
+      board.collides(piece, piecePosition.getX(), piecePosition.getY()) &&
+      piecePosition.getY() > 0
+    ) {
+      piecePosition.add(0, -1);
+    }
+
+    if (
+      overflowed ||
+      board.collides(piece, piecePosition.getX(), piecePosition.getY())
+    ) {
+      gameOver = true;
+    }
+  }
+
   /** The controls to the game. */
   public void rotateRight() {
-    tryToRotate(RotationDirection.RIGHT);
+    inputsThisPiece++;
+    tryToRotate(board, piece, piecePosition, RotationDirection.RIGHT);
   }
 
   public void rotateLeft() {
-    tryToRotate(RotationDirection.LEFT);
+    inputsThisPiece++;
+    tryToRotate(board, piece, piecePosition, RotationDirection.LEFT);
   }
 
   public void moveRight() {
-    tryToMove(1, 0);
+    inputsThisPiece++;
+    tryToMove(board, piece, piecePosition, 1, 0);
   }
 
   public void moveLeft() {
-    tryToMove(-1, 0);
+    inputsThisPiece++;
+    tryToMove(board, piece, piecePosition, -1, 0);
   }
 
   public void moveDown() {
-    tryToMove(0, 1);
+    tryToMove(board, piece, piecePosition, 0, 1);
   }
 
   public void flip() {
-    tryToFlip();
+    inputsThisPiece++;
+    tryToFlip(board, piece, piecePosition);
   }
 
   public void drop() {
@@ -149,6 +386,12 @@ public class Game {
       level.clear(linesJustCleared);
       ticksPerStep = calculateTicksPerUpdate(level.get());
 
+      lastPlacedType = piece.getType();
+      lastPlacedMask = piece.toMask();
+      lastPlacedX = piecePosition.getX();
+      lastPlacedInputs = inputsThisPiece;
+      inputsThisPiece = 0;
+
       piece = bag.nextPiece();
       piecePosition = board.nextPiecePosition(piece);
 
@@ -158,7 +401,10 @@ public class Game {
       // In Tetris, this is called "topping out".
       if (board.collides(piece, piecePosition.getX(), piecePosition.getY())) {
         gameOver = true;
-        return;
+      }
+
+      for (int i = 0; i < listeners.size(); i++) {
+        listeners.get(i).piecePlaced(this, linesJustCleared);
       }
     } else {
       // Drop a row
@@ -166,7 +412,18 @@ public class Game {
     }
   }
 
-  private void tryToMove(int deltaX, int deltaY) {
+  /** The movement rules. These are static, and take the board, piece
+   * and position to work with instead of using the game's own, so
+   * Finesse (and bots) can play "what if" with the exact same rules.
+   * They each return whether the piece actually moved.
+   */
+  static boolean tryToMove(
+    Board board,
+    Piece piece,
+    Position piecePosition,
+    int deltaX,
+    int deltaY
+  ) {
     boolean validMove = !board.collides(
       piece,
       piecePosition.getX() + deltaX,
@@ -176,9 +433,10 @@ public class Game {
     if (validMove) {
       piecePosition.add(deltaX, deltaY);
     }
+    return validMove;
   }
 
-  private void tryToFlip() {
+  static boolean tryToFlip(Board board, Piece piece, Position piecePosition) {
     piece.flip();
 
     boolean shouldReset = board.collides(
@@ -190,6 +448,7 @@ public class Game {
     if (shouldReset) {
       piece.flip();
     }
+    return !shouldReset;
   }
 
   /** Another helper for rotating the piece.
@@ -207,7 +466,12 @@ public class Game {
     RIGHT,
   }
 
-  private void tryToRotate(RotationDirection direction) {
+  static boolean tryToRotate(
+    Board board,
+    Piece piece,
+    Position piecePosition,
+    RotationDirection direction
+  ) {
     if (
       direction == RotationDirection.RIGHT
     ) piece.rotateRight(); else piece.rotateLeft();
@@ -232,7 +496,7 @@ public class Game {
           );
           if (valid) {
             piecePosition.add(dx, 0);
-            return;
+            return true;
           }
         }
       }
@@ -241,9 +505,10 @@ public class Game {
       if (
         direction == RotationDirection.RIGHT
       ) piece.rotateLeft(); else piece.rotateRight();
+      return false;
     }
 
-    return;
+    return true;
   }
 
   /** Drawing logic. */
@@ -0,0 +1,220 @@
+package tetris;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Undo for Tetris: remembers the state of a Game every time a
+ * new piece spawns, so you can go back a piece (undo()) or back to
+ * any earlier point in time (rewindTo()). Handy for practicing, and
+ * for bots that want to try something and back out of it.
+ *
+ * Each state is just Game.STATE_WORDS longs (see Game.saveState()),
+ * so instead of keeping a list of objects we keep one big long[]
+ * used as a "ring buffer": a fixed-size array where, once we reach
+ * the end, we wrap around to the start again. That caps how much
+ * memory the history uses. Rather than throwing away the oldest
+ * states when it fills up, we move them into a file on disk. The
+ * file is "memory-mapped", meaning the operating system lets us
+ * treat it like a big array and takes care of reading and writing
+ * the disk for us.
+ *
+ * States are numbered from 0 (the oldest) to size() - 1 (the newest).
+ * The first `spilled` of them live in the file, the rest in the ring.
+ */
+public class History implements Game.Listener, Closeable {
+
+  private static final int WORDS = Game.STATE_WORDS;
+
+  /** How many states each piece of the spill file that we map holds. */
+  private static final int STATES_PER_CHUNK = 1 << 14;
+
+  private final long[] ring;
+  private final int capacity;
+  private int ringStart = 0;
+  private int ringCount = 0;
+
+  private final Path spillPath;
+  private FileChannel spillFile;
+  private final List<LongBuffer> spillChunks = new ArrayList<>();
+  private long spilled = 0;
+
+  /** Scratch space for moving one state around. */
+  private final long[] state = new long[WORDS];
+
+  /** Keeps up to `statesInMemory` states in memory, and spills
+   * older ones to a temporary file.
+   */
+  public History(int statesInMemory) throws IOException {
+    this(statesInMemory, Files.createTempFile("tetris-history", ".bin"));
+  }
+
+  public History(int statesInMemory, Path spillPath) {
+    capacity = statesInMemory;
+    ring = new long[capacity * WORDS];
+    this.spillPath = spillPath;
+  }
+
+  /** The total number of states, in memory and on disk. */
+  public long size() {
+    return spilled + ringCount;
+  }
+
+  /** Forgets everything, e.g. when a new game starts. */
+  public void clear() {
+    ringStart = 0;
+    ringCount = 0;
+    spilled = 0;
+  }
+
+  /** Called by the Game every time a piece is placed. */
+  @Override
+  public void piecePlaced(Game game, int linesCleared) {
+    push(game);
+  }
+
+  /** Saves the game's current state as the newest one. */
+  public void push(Game game) {
+    if (ringCount == capacity) {
+      // Full: move the oldest state in memory out to disk.
+      spill(ringStart);
+      ringStart = (ringStart + 1) % capacity;
+      ringCount--;
+    }
+
+    int slot = (ringStart + ringCount) % capacity;
+    game.saveState(ring, slot * WORDS);
+    ringCount++;
+  }
+
+  /** Goes back to the state before the newest one, i.e. undoes the
+   * last piece. Returns false if there's nothing to undo.
+   */
+  public boolean undo(Game game) {
+    if (size() < 2) {
+      return false;
+    }
+    removeNewest();
+    load(size() - 1, game);
+    return true;
+  }
+
+  /** Goes back to the newest state saved on or before `tick`,
+   * forgetting everything after it. Returns false if there isn't one.
+   */
+  public boolean rewindTo(long tick, Game game) {
+    // States were saved in order, so their ticks only go up, which
+    // means we can binary search for the one we want.
+    long low = 0, high = size() - 1, found = -1;
+    while (low <= high) {
+      long middle = (low + high) >>> 1;
+      if (ticksOf(middle) <= tick) {
+        found = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+
+    if (found == -1) {
+      return false;
+    }
+    long newSize = found + 1;
+    if (newSize >= spilled) {
+      ringCount = (int) (newSize - spilled);
+    } else {
+      spilled = newSize;
+      ringCount = 0;
+    }
+    load(found, game);
+    return true;
+  }
+
+  private void removeNewest() {
+    if (ringCount > 0) {
+      ringCount--;
+    } else {
+      spilled--;
+    }
+  }
+
+  private long ticksOf(long index) {
+    if (index >= spilled) {
+      return Game.ticksOfState(ring, ringSlot(index) * WORDS);
+    }
+    readSpilled(index, state);
+    return Game.ticksOfState(state, 0);
+  }
+
+  private void load(long index, Game game) {
+    if (index >= spilled) {
+      game.loadState(ring, ringSlot(index) * WORDS);
+    } else {
+      readSpilled(index, state);
+      game.loadState(state, 0);
+    }
+  }
+
+  private int ringSlot(long index) {
+    return (int) ((ringStart + (index - spilled)) % capacity);
+  }
+
+  private void spill(int slot) {
+    long index = spilled;
+    LongBuffer chunk = chunkFor(index);
+    int position = (int) (index % STATES_PER_CHUNK) * WORDS;
+    chunk.put(position, ring, slot * WORDS, WORDS);
+    spilled++;
+  }
+
+  private void readSpilled(long index, long[] out) {
+    int position = (int) (index % STATES_PER_CHUNK) * WORDS;
+    chunkFor(index).get(position, out, 0, WORDS);
+  }
+
+  /** Maps in more of the spill file as we need it. */
+  private LongBuffer chunkFor(long index) {
+    int chunk = (int) (index / STATES_PER_CHUNK);
+    try {
+      if (spillFile == null) {
+        spillFile =
+          FileChannel.open(
+            spillPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+          );
+      }
+      while (spillChunks.size() <= chunk) {
+        long bytes = (long) STATES_PER_CHUNK * WORDS * Long.BYTES;
+        spillChunks.add(
+          spillFile
+            .map(
+              FileChannel.MapMode.READ_WRITE,
+              spillChunks.size() * bytes,
+              bytes
+            )
+            .asLongBuffer()
+        );
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Couldn't grow the undo history file", e);
+    }
+    return spillChunks.get(chunk);
+  }
+
+  /** Closes and deletes the spill file. */
+  @Override
+  public void close() throws IOException {
+    if (spillFile != null) {
+      spillFile.close();
+    }
+    Files.deleteIfExists(spillPath);
+  }
+}
@@ -0,0 +1,271 @@
+package tetris;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A high score table that outlives a single Game.
+ *
+ * Every finished game is appended to a file as a small
+ * fixed-size record, so nothing already written ever has to
+ * be rewritten ("append-only"). In memory we keep two indexes
+ * over those records so we can answer questions quickly:
+ *
+ *  - a ConcurrentSkipListSet, sorted from best to worst score,
+ *    for "what are the top 10 games?" A skip list is a sorted
+ *    linked list with extra "express lanes" stacked on top, so
+ *    finding a spot in it takes O(log n) steps, and (unlike a
+ *    TreeSet) many threads can insert into it at the same time.
+ *
+ *  - a Fenwick tree (or "binary indexed tree") that counts how
+ *    many games landed in each score bucket, for "what rank would
+ *    this score be?" Counting everything above a score is then
+ *    O(log n) too, instead of walking the whole list.
+ *
+ * All of the public methods can be called from any thread.
+ */
+public class Leaderboard implements Closeable {
+
+  /** One finished game. A `record` is Java's shorthand for
+   * a class that only holds some final fields: it writes the
+   * constructor, getters (`score()`, `lines()`, ...), equals()
+   * and hashCode() for us.
+   *
+   * `id` is the record's position in the file, which also breaks
+   * ties between equal scores (whoever got there first ranks higher).
+   */
+  public record Entry(
+    long id,
+    int score,
+    int lines,
+    int level,
+    long seed,
+    long durationTicks
+  ) {}
+
+  private static final int MAGIC = 0x544c4231; // "TLB1"
+  private static final int HEADER_BYTES = 8;
+  private static final int RECORD_BYTES = 32;
+
+  /** Every score in Score.java's table is a multiple of 20,
+   * so a bucket this wide only ever holds one distinct score.
+   * Anything past the last bucket gets lumped into it.
+   */
+  private static final int BUCKET_WIDTH = 20;
+  private static final int NUM_BUCKETS = 1 << 16;
+
+  /** Best score first, then earliest game first. */
+  private static final Comparator<Entry> ORDER = Comparator
+    .comparingInt(Entry::score)
+    .reversed()
+    .thenComparingLong(Entry::id);
+
+  private final ConcurrentSkipListSet<Entry> index = new ConcurrentSkipListSet<>(
+    ORDER
+  );
+
+  /** Fenwick trees are 1-indexed: slot i is responsible for
+   * the (i & -i) buckets ending at i. (i & -i is the lowest
+   * set bit of i.) AtomicLongArray lets threads bump counts
+   * without a lock.
+   */
+  private final AtomicLongArray bucketCounts = new AtomicLongArray(
+    NUM_BUCKETS + 1
+  );
+
+  private final FileChannel file;
+  private long nextId = 0;
+
+  /** Opens (or creates) the leaderboard at `path`, rebuilding
+   * the in-memory indexes by streaming through the records one
+   * at a time rather than reading the whole file into memory.
+   */
+  public Leaderboard(Path path) throws IOException {
+    file =
+      FileChannel.open(
+        path,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE
+      );
+
+    if (file.size() == 0) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      header.putInt(MAGIC).putInt(RECORD_BYTES).flip();
+      file.write(header, 0);
+    } else {
+      load();
+    }
+
+    file.position(HEADER_BYTES + nextId * RECORD_BYTES);
+  }
+
+  private void load() throws IOException {
+    // Note we don't close this stream, since that would close `file` too.
+    InputStream channelStream = Channels.newInputStream(file.position(0));
+    DataInputStream in = new DataInputStream(
+      new BufferedInputStream(channelStream, 1 << 16)
+    );
+
+    if (in.readInt() != MAGIC || in.readInt() != RECORD_BYTES) {
+      throw new IOException("Not a leaderboard file (or a different version).");
+    }
+
+    while (true) {
+      try {
+        int score = in.readInt();
+        int lines = in.readInt();
+        int level = in.readInt();
+        in.readInt(); // Padding, to keep the longs 8-byte aligned
+        long seed = in.readLong();
+        long durationTicks = in.readLong();
+        addToIndex(
+          new Entry(nextId, score, lines, level, seed, durationTicks)
+        );
+        nextId++;
+      } catch (EOFException e) {
+        break;
+      }
+    }
+
+    // If we crashed halfway through writing a record, chop off
+    // the partial record so the next one starts in the right place.
+    file.truncate(HEADER_BYTES + nextId * RECORD_BYTES);
+  }
+
+  private static int bucketOf(int score) {
+    return Math.min(Math.max(score, 0) / BUCKET_WIDTH, NUM_BUCKETS - 1);
+  }
+
+  private void addToIndex(Entry entry) {
+    index.add(entry);
+    for (int i = bucketOf(entry.score()) + 1; i <= NUM_BUCKETS; i += i & -i) {
+      bucketCounts.incrementAndGet(i);
+    }
+  }
+
+  /** How many games landed in buckets 0 through `bucket`. */
+  private long countUpToBucket(int bucket) {
+    long count = 0;
+    for (int i = bucket + 1; i > 0; i -= i & -i) {
+      count += bucketCounts.get(i);
+    }
+    return count;
+  }
+
+  /** Records a finished game and returns its entry. */
+  public Entry submit(Game game) throws IOException {
+    return submit(
+      game.getScore(),
+      game.getLines(),
+      game.getLevel(),
+      game.getSeed(),
+      game.getTicks()
+    );
+  }
+
+  public Entry submit(
+    int score,
+    int lines,
+    int level,
+    long seed,
+    long durationTicks
+  ) throws IOException {
+    ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+    record
+      .putInt(score)
+      .putInt(lines)
+      .putInt(level)
+      .putInt(0)
+      .putLong(seed)
+      .putLong(durationTicks)
+      .flip();
+
+    // Only the file write (and handing out the id, so ids match
+    // the order in the file) has to happen one thread at a time.
+    // Updating the indexes afterwards is safe to do concurrently.
+    Entry entry;
+    synchronized (file) {
+      while (record.hasRemaining()) {
+        file.write(record);
+      }
+      entry = new Entry(nextId++, score, lines, level, seed, durationTicks);
+    }
+
+    addToIndex(entry);
+    return entry;
+  }
+
+  /** The best game so far, or null if there aren't any yet. */
+  public Entry best() {
+    // Entries are never removed, so once it's not empty it stays so.
+    return index.isEmpty() ? null : index.first();
+  }
+
+  /** The best `k` games, best first. */
+  public List<Entry> top(int k) {
+    List<Entry> best = new ArrayList<>(k);
+    for (Entry entry : index) {
+      if (best.size() == k) break;
+      best.add(entry);
+    }
+    return best;
+  }
+
+  /** Where a game with this score places, starting at 1.
+   * (Games with equal scores share a rank.)
+   */
+  public long rankOf(int score) {
+    int bucket = bucketOf(score);
+    long inHigherBuckets = countUpToBucket(NUM_BUCKETS - 1) -
+    countUpToBucket(bucket);
+
+    // Within our own bucket, count the entries that beat us directly.
+    // Since each bucket is (nearly always) one distinct score, this is
+    // usually empty.
+    int bucketTop = bucket == NUM_BUCKETS - 1
+      ? Integer.MAX_VALUE
+      : (bucket + 1) * BUCKET_WIDTH - 1;
+    long inOurBucket = 0;
+    if (bucketTop > score) {
+      inOurBucket =
+        index
+          .subSet(
+            new Entry(Long.MIN_VALUE, bucketTop, 0, 0, 0, 0),
+            new Entry(Long.MIN_VALUE, score, 0, 0, 0, 0)
+          )
+          .size();
+    }
+
+    return 1 + inHigherBuckets + inOurBucket;
+  }
+
+  public long size() {
+    // (index.size() would work too, but a skip list has to walk
+    // every element to count them.)
+    return countUpToBucket(NUM_BUCKETS - 1);
+  }
+
+  /** Makes sure everything submitted so far is actually on disk. */
+  public void flush() throws IOException {
+    file.force(false);
+  }
+
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+}
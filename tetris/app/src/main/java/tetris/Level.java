@@ -20,4 +20,13 @@ public class Level {
   public int get() {
     return level;
   }
+
+  public int getLinesToNextLevel() {
+    return linesToNextLevel;
+  }
+
+  public void set(int level, int linesToNextLevel) {
+    this.level = level;
+    this.linesToNextLevel = linesToNextLevel;
+  }
 }
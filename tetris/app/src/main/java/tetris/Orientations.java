@@ -0,0 +1,68 @@
+package tetris;
+
+/** Every distinct way each of Bag's pieces can be turned.
+ *
+ * Game lets you rotate left and right and flip, so a piece can end
+ * up in (at most) 4 rotations times flipped-or-not = 8 orientations.
+ * Some of those look the same (the O piece always looks the same),
+ * so we only keep the distinct ones, numbered in the order we find
+ * them: rotate right 0-3 times, then flip or not.
+ *
+ * VectorEnv and Finesse both need to agree on what "orientation 2 of
+ * the T piece" means, so they both get it from here.
+ */
+class Orientations {
+
+  static final int MAX = 8;
+
+  private static final Piece[] pieces = new Piece[Bag.NUM_PIECES * MAX];
+  private static final int[] masks = new int[Bag.NUM_PIECES * MAX];
+  private static final int[] counts = new int[Bag.NUM_PIECES];
+
+  static {
+    for (int type = 0; type < Bag.NUM_PIECES; type++) {
+      int count = 0;
+      for (int rotations = 0; rotations < 4; rotations++) {
+        for (int flip = 0; flip < 2; flip++) {
+          Piece piece = Bag.prototype(type).clone();
+          for (int i = 0; i < rotations; i++) piece.rotateRight();
+          if (flip == 1) piece.flip();
+
+          int mask = piece.toMask();
+          if (indexOf(type, mask, count) != -1) continue;
+
+          pieces[type * MAX + count] = piece;
+          masks[type * MAX + count] = mask;
+          count++;
+        }
+      }
+      counts[type] = count;
+    }
+  }
+
+  private static int indexOf(int type, int mask, int count) {
+    for (int o = 0; o < count; o++) {
+      if (masks[type * MAX + o] == mask) return o;
+    }
+    return -1;
+  }
+
+  /** How many distinct orientations the piece has. */
+  static int count(int type) {
+    return counts[type];
+  }
+
+  /** A copy of the piece in the given orientation. */
+  static Piece get(int type, int orientation) {
+    return pieces[type * MAX + orientation].clone();
+  }
+
+  static int mask(int type, int orientation) {
+    return masks[type * MAX + orientation];
+  }
+
+  /** Which orientation of the piece has these slots, or -1. */
+  static int indexOf(int type, int mask) {
+    return indexOf(type, mask, counts[type]);
+  }
+}
@@ -9,6 +9,11 @@ public class Piece {
 
   private int size;
 
+  /** Which of Bag's pieces this is (0 is O, ..., 6 is I),
+   * or -1 if it didn't come from the Bag.
+   */
+  int type = -1;
+
   /** We also use row-major ordering
    * here to be consistent.
    */
@@ -36,8 +41,39 @@ public class Piece {
     }
   }
 
+  /** The slots as bits: bit (y * size + x) is slot (x, y).
+   * Pieces are at most 4x4, so this always fits in an int.
+   */
+  public int toMask() {
+    int mask = 0;
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        if (slots[y][x]) mask |= 1 << (y * size + x);
+      }
+    }
+    return mask;
+  }
+
+  public static Piece fromMask(int type, int size, int mask) {
+    boolean[][] slots = new boolean[size][size];
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        slots[y][x] = ((mask >>> (y * size + x)) & 1) != 0;
+      }
+    }
+    Piece piece = new Piece(size, slots);
+    piece.type = type;
+    return piece;
+  }
+
   public Piece clone() {
-    return new Piece(size, slots);
+    Piece clone = new Piece(size, slots);
+    clone.type = type;
+    return clone;
+  }
+
+  public int getType() {
+    return type;
   }
 
   public int getSize() {
@@ -7,7 +7,10 @@ public class Score {
 
   private int score = 0;
 
-  private int calculateScore(int lines) {
+  /** Package-private and static (it doesn't depend on any
+   * one Score) so VectorEnv can share the same table.
+   */
+  static int calculateScore(int lines) {
     /** Note that this function is hardcoded
      * to use the same max piece size that
      * happens to be in Bag.java. E.g., if you
@@ -41,4 +44,8 @@ public class Score {
   public int get() {
     return score;
   }
+
+  public void set(int score) {
+    this.score = score;
+  }
 }
@@ -0,0 +1,112 @@
+package tetris;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** The same as BoardEvaluator, but using the Java Vector API to
+ * work on several boards at once: an IntVector holds row y of
+ * boards i, i + 1, ..., i + lanes - 1, and each operation (and, or,
+ * bitCount...) happens to all of those "lanes" in one instruction.
+ * How many lanes there are depends on the CPU (SPECIES_PREFERRED
+ * picks the widest it supports), e.g. 8 with AVX2 or 16 with AVX-512.
+ *
+ * Don't create this directly, use BoardEvaluator.create(), which
+ * checks that the Vector API is actually available first.
+ */
+class VectorBoardEvaluator extends BoardEvaluator {
+
+  private static final VectorSpecies<Integer> SPECIES =
+    IntVector.SPECIES_PREFERRED;
+
+  @Override
+  public void features(BoardBatch batch) {
+    int width = batch.getWidth(), height = batch.getHeight();
+    int capacity = batch.capacity(), n = batch.size();
+    int[] rows = batch.rows, features = batch.features;
+
+    int full = (1 << width) - 1;
+    int pairs = (1 << (width - 1)) - 1;
+    int walls = 1 | 1 << (width + 1);
+    int walledPairs = (1 << (width + 1)) - 1;
+    int rightWall = 1 << (width - 1);
+
+    // The boards that fill up whole vectors; the rest (fewer than
+    // one vector's worth) get done one at a time at the end.
+    int bound = SPECIES.loopBound(n);
+    for (int i = 0; i < bound; i += SPECIES.length()) {
+      IntVector cover = IntVector.zero(SPECIES);
+      IntVector aggregateHeight = IntVector.zero(SPECIES);
+      IntVector holes = IntVector.zero(SPECIES);
+      IntVector bumpiness = IntVector.zero(SPECIES);
+      IntVector rowTransitions = IntVector.zero(SPECIES);
+      IntVector wells = IntVector.zero(SPECIES);
+
+      for (int y = 0; y < height; y++) {
+        IntVector row = IntVector.fromArray(SPECIES, rows, y * capacity + i);
+
+        // See BoardEvaluator.scalarFeatures() for what each line means.
+        aggregateHeight =
+          aggregateHeight.add(
+            row
+              .and(cover.not())
+              .lanewise(VectorOperators.BIT_COUNT)
+              .mul(height - y)
+          );
+        cover = cover.or(row);
+
+        holes =
+          holes.add(row.not().and(cover).lanewise(VectorOperators.BIT_COUNT));
+
+        bumpiness =
+          bumpiness.add(
+            cover
+              .lanewise(VectorOperators.XOR, cover.lanewise(VectorOperators.LSHR, 1))
+              .and(pairs)
+              .lanewise(VectorOperators.BIT_COUNT)
+          );
+
+        IntVector walled = row.lanewise(VectorOperators.LSHL, 1).or(walls);
+        rowTransitions =
+          rowTransitions.add(
+            walled
+              .lanewise(
+                VectorOperators.XOR,
+                walled.lanewise(VectorOperators.LSHR, 1)
+              )
+              .and(walledPairs)
+              .lanewise(VectorOperators.BIT_COUNT)
+          );
+
+        IntVector leftFilled = row.lanewise(VectorOperators.LSHL, 1).or(1);
+        IntVector rightFilled = row
+          .lanewise(VectorOperators.LSHR, 1)
+          .or(rightWall);
+        wells =
+          wells.add(
+            cover
+              .not()
+              .and(leftFilled)
+              .and(rightFilled)
+              .and(full)
+              .lanewise(VectorOperators.BIT_COUNT)
+          );
+      }
+
+      aggregateHeight.intoArray(features, HEIGHT * capacity + i);
+      holes.intoArray(features, HOLES * capacity + i);
+      bumpiness.intoArray(features, BUMPINESS * capacity + i);
+      rowTransitions.intoArray(features, ROW_TRANSITIONS * capacity + i);
+      wells.intoArray(features, WELLS * capacity + i);
+      System.arraycopy(
+        batch.linesCleared,
+        i,
+        features,
+        LINES * capacity + i,
+        SPECIES.length()
+      );
+    }
+
+    scalarFeatures(batch, bound, n);
+  }
+}
@@ -0,0 +1,488 @@
+package tetris;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Lots of Tetris games ("environments") for training a
+ * reinforcement learning agent, in the style of OpenAI Gym:
+ * reset() starts every game, and step() takes one action per
+ * game and reports what the agent now sees ("observations"),
+ * how many points it got ("rewards") and which games ended.
+ *
+ * Trainers usually live in another language (Python) and want
+ * thousands of games per call, so this is built differently from
+ * Game.java, while following the same rules (same Bag, same Score
+ * table):
+ *
+ *  - Instead of one Game object per environment (each pointing to a
+ *    Board, which points to 20 boolean arrays, ...) we store each
+ *    piece of state in one big array with a slot per environment.
+ *    This is called "structure of arrays": environment e's board is
+ *    rows[e * HEIGHT .. (e + 1) * HEIGHT), each row packed into the
+ *    bits of an int (bit x set = column x filled).
+ *
+ *  - Results are written straight into ByteBuffers the caller hands
+ *    us. If those are "direct" buffers (memory outside the Java heap)
+ *    a Python trainer can wrap the very same memory as a numpy array,
+ *    so nothing has to be copied between the two.
+ *
+ *  - Environments are split into chunks that step in parallel,
+ *    the same way Battle splits up its boards.
+ *
+ * An action is a whole placement rather than a single key press:
+ * action = orientation * X_SLOTS + (x + X_OFFSET), after which the
+ * piece hard drops. Which orientations exist depends on the piece
+ * (the O piece only has one); the observation includes a mask of the
+ * actions that are valid right now. An invalid action just drops the
+ * piece where it spawned. When a game tops out it's marked done and
+ * immediately restarted (with a new seed).
+ */
+public class VectorEnv {
+
+  public static final int WIDTH = 10;
+  public static final int HEIGHT = 20;
+  public static final int PREVIEW = 5;
+
+  public static final int MAX_ORIENTATIONS = Orientations.MAX;
+  public static final int X_OFFSET = 3;
+  public static final int X_SLOTS = WIDTH + X_OFFSET;
+  public static final int NUM_ACTIONS = MAX_ORIENTATIONS * X_SLOTS;
+
+  /** Layout of one environment's observation, in bytes:
+   *
+   *    0 .. 39   board, one 16-bit row at a time, top row first
+   *   40         current piece (0-6, same order as Bag)
+   *   41 .. 45   the next PREVIEW pieces
+   *   48 .. 60   valid action mask, bit a = action a
+   *
+   * Rewards are one 32-bit float per environment, dones one byte,
+   * and actions one 32-bit int. Everything is in the machine's native
+   * byte order (which is what numpy expects).
+   */
+  public static final int OBS_BYTES = 64;
+  public static final int OBS_BOARD = 0;
+  public static final int OBS_PIECE = 40;
+  public static final int OBS_PREVIEW = 41;
+  public static final int OBS_ACTION_MASK = 48;
+
+  private static final int FULL_ROW = (1 << WIDTH) - 1;
+  private static final int BAG_SLOTS = 2 * Bag.NUM_PIECES;
+
+  /** Every orientation of every piece (see Orientations), as packed
+   * rows. Indexed by [piece * MAX_ORIENTATIONS + orientation].
+   */
+  private static final int SLOTS = Bag.NUM_PIECES * MAX_ORIENTATIONS;
+  private static final int[] pieceSizes = new int[Bag.NUM_PIECES];
+  private static final int[] orientationCounts = new int[Bag.NUM_PIECES];
+  private static final int[][] orientationRows = new int[SLOTS][];
+  private static final int[] orientationMinX = new int[SLOTS];
+  private static final int[] orientationMaxX = new int[SLOTS];
+
+  static {
+    for (int type = 0; type < Bag.NUM_PIECES; type++) {
+      pieceSizes[type] = Bag.prototype(type).getSize();
+      orientationCounts[type] = Orientations.count(type);
+
+      for (int o = 0; o < Orientations.count(type); o++) {
+        Piece piece = Orientations.get(type, o);
+        int size = piece.getSize();
+
+        int[] rows = new int[size];
+        int occupiedColumns = 0;
+        for (int y = 0; y < size; y++) {
+          for (int x = 0; x < size; x++) {
+            if (piece.get(x, y)) rows[y] |= 1 << x;
+          }
+          occupiedColumns |= rows[y];
+        }
+
+        int index = type * MAX_ORIENTATIONS + o;
+        orientationRows[index] = rows;
+        // Leftmost/rightmost x where the piece stays inside the walls.
+        orientationMinX[index] = -Integer.numberOfTrailingZeros(occupiedColumns);
+        orientationMaxX[index] =
+          WIDTH - 32 + Integer.numberOfLeadingZeros(occupiedColumns);
+      }
+    }
+  }
+
+  private final int n;
+
+  // The structure of arrays. Slot e (or slice e) belongs to environment e.
+  private final int[] rows;
+  private final byte[] bags;
+  private final long[] bagNumbers;
+  private final byte[] grabIndices;
+  private final byte[] pieces;
+  private final long[] seeds;
+  private final long[] episodes;
+  private final boolean[] toppedOut;
+
+  private final long baseSeed;
+
+  // The buffers for the step() in progress, read by every chunk.
+  private ByteBuffer actions, observations, rewards, dones;
+
+  private final ExecutorService threads;
+  private final List<Callable<Void>> stepChunks = new ArrayList<>();
+  private final List<Callable<Void>> resetChunks = new ArrayList<>();
+
+  public VectorEnv(int n, long seed, int nThreads) {
+    this.n = n;
+    this.baseSeed = seed;
+
+    rows = new int[n * HEIGHT];
+    bags = new byte[n * BAG_SLOTS];
+    bagNumbers = new long[n];
+    grabIndices = new byte[n];
+    pieces = new byte[n];
+    seeds = new long[n];
+    episodes = new long[n];
+    toppedOut = new boolean[n];
+
+    int nChunks = Math.min(n, nThreads * 4);
+    for (int c = 0; c < nChunks; c++) {
+      int start = (int) ((long) n * c / nChunks);
+      int end = (int) ((long) n * (c + 1) / nChunks);
+      // Each chunk gets its own scratch array for shuffling bags,
+      // so chunks never share anything they write to.
+      int[] scratch = new int[Bag.NUM_PIECES];
+      stepChunks.add(() -> {
+        stepRange(start, end, scratch);
+        return null;
+      });
+      resetChunks.add(() -> {
+        resetRange(start, end, scratch);
+        return null;
+      });
+    }
+
+    threads =
+      Executors.newFixedThreadPool(
+        nThreads,
+        runnable -> {
+          Thread thread = new Thread(runnable, "vector-env");
+          thread.setDaemon(true);
+          return thread;
+        }
+      );
+  }
+
+  public int size() {
+    return n;
+  }
+
+  /** Starts every environment over and writes the first observations.
+   * Like step(), `observations` has to be in the native byte order.
+   */
+  public void reset(ByteBuffer observations) {
+    this.observations = checked(observations, OBS_BYTES);
+    run(resetChunks);
+  }
+
+  /** Plays one action in every environment.
+   *
+   * @param actions one int per environment (read)
+   * @param observations OBS_BYTES per environment (written)
+   * @param rewards one float per environment (written)
+   * @param dones one byte per environment, 1 if that game just ended (written)
+   * @throws IllegalArgumentException if a buffer is too small, or isn't
+   *   in the native byte order
+   */
+  public void step(
+    ByteBuffer actions,
+    ByteBuffer observations,
+    ByteBuffer rewards,
+    ByteBuffer dones
+  ) {
+    this.actions = checked(actions, Integer.BYTES);
+    this.observations = checked(observations, OBS_BYTES);
+    this.rewards = checked(rewards, Float.BYTES);
+    this.dones = checked(dones, 1);
+    run(stepChunks);
+  }
+
+  public void close() {
+    threads.shutdown();
+  }
+
+  private ByteBuffer checked(ByteBuffer buffer, int bytesPerEnv) {
+    if (buffer.capacity() < (long) n * bytesPerEnv) {
+      throw new IllegalArgumentException(
+        "Buffer has " +
+        buffer.capacity() +
+        " bytes, but needs " +
+        (long) n * bytesPerEnv
+      );
+    }
+    // We'd rather not quietly change the caller's buffer, since
+    // they'd then read it back in an order they didn't ask for.
+    if (buffer.order() != ByteOrder.nativeOrder()) {
+      throw new IllegalArgumentException(
+        "Buffer is " +
+        buffer.order() +
+        ", but needs to be in the native order (" +
+        ByteOrder.nativeOrder() +
+        "), see ByteBuffer.order()"
+      );
+    }
+    return buffer;
+  }
+
+  private void run(List<Callable<Void>> chunks) {
+    try {
+      for (var result : threads.invokeAll(chunks)) {
+        result.get();
+      }
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void resetRange(int start, int end, int[] scratch) {
+    for (int e = start; e < end; e++) {
+      resetEnv(e, scratch);
+      writeObservation(e);
+    }
+  }
+
+  private void stepRange(int start, int end, int[] scratch) {
+    for (int e = start; e < end; e++) {
+      int reward = play(e, actions.getInt(e * Integer.BYTES), scratch);
+
+      rewards.putFloat(e * Float.BYTES, reward);
+      dones.put(e, (byte) (toppedOut[e] ? 1 : 0));
+
+      if (toppedOut[e]) {
+        resetEnv(e, scratch);
+      }
+      writeObservation(e);
+    }
+  }
+
+  private void resetEnv(int e, int[] scratch) {
+    Arrays.fill(rows, e * HEIGHT, (e + 1) * HEIGHT, 0);
+
+    seeds[e] = Bag.mix(baseSeed + e * 0x9e3779b97f4a7c15L + episodes[e]);
+    episodes[e]++;
+    bagNumbers[e] = 0;
+    grabIndices[e] = 0;
+    fillBag(e, 0, 0, scratch);
+    fillBag(e, 1, Bag.NUM_PIECES, scratch);
+    pieces[e] = nextPiece(e, scratch);
+    toppedOut[e] = false;
+  }
+
+  private void fillBag(int e, long bagNumber, int offset, int[] scratch) {
+    Bag.fillBag(seeds[e], bagNumber, scratch);
+    for (int i = 0; i < Bag.NUM_PIECES; i++) {
+      bags[e * BAG_SLOTS + offset + i] = (byte) scratch[i];
+    }
+  }
+
+  /** Same as Bag.nextPiece(), except the current and next
+   * bag sit back to back in `bags`.
+   */
+  private byte nextPiece(int e, int[] scratch) {
+    int base = e * BAG_SLOTS;
+    byte piece = bags[base + grabIndices[e]];
+    grabIndices[e]++;
+    if (grabIndices[e] == Bag.NUM_PIECES) {
+      System.arraycopy(bags, base + Bag.NUM_PIECES, bags, base, Bag.NUM_PIECES);
+      bagNumbers[e]++;
+      fillBag(e, bagNumbers[e] + 1, Bag.NUM_PIECES, scratch);
+      grabIndices[e] = 0;
+    }
+    return piece;
+  }
+
+  private static int spawnX(int piece) {
+    // Same as Board.nextPiecePosition()
+    return WIDTH / 2 - pieceSizes[piece] / 2;
+  }
+
+  /** Same as Board.collides(), but a whole row at a time. */
+  private boolean collides(int e, int orientation, int x, int y) {
+    if (x < orientationMinX[orientation] || x > orientationMaxX[orientation]) {
+      return true;
+    }
+
+    int[] pieceRows = orientationRows[orientation];
+    int base = e * HEIGHT;
+    for (int pieceY = 0; pieceY < pieceRows.length; pieceY++) {
+      int pieceRow = pieceRows[pieceY];
+      if (pieceRow == 0) continue;
+      int boardY = y + pieceY;
+      if (boardY >= HEIGHT) return true;
+      int shifted = x >= 0 ? pieceRow << x : pieceRow >>> -x;
+      if ((rows[base + boardY] & shifted) != 0) return true;
+    }
+    return false;
+  }
+
+  /** Plays an action in environment e, returning the points
+   * scored. Sets toppedOut[e] if that ended the game.
+   */
+  private int play(int e, int action, int[] scratch) {
+    int piece = pieces[e];
+    int orientation = action / X_SLOTS;
+    int x = action % X_SLOTS - X_OFFSET;
+
+    boolean valid =
+      action >= 0 &&
+      action < NUM_ACTIONS &&
+      orientation < orientationCounts[piece] &&
+      !collides(e, piece * MAX_ORIENTATIONS + orientation, x, 0);
+    if (!valid) {
+      orientation = 0;
+      x = spawnX(piece);
+    }
+
+    int index = piece * MAX_ORIENTATIONS + orientation;
+    if (collides(e, index, x, 0)) {
+      toppedOut[e] = true;
+      return 0;
+    }
+
+    // Hard drop, then place (Board.place()).
+    int y = 0;
+    while (!collides(e, index, x, y + 1)) y++;
+
+    int[] pieceRows = orientationRows[index];
+    int base = e * HEIGHT;
+    for (int pieceY = 0; pieceY < pieceRows.length; pieceY++) {
+      int pieceRow = pieceRows[pieceY];
+      if (pieceRow == 0) continue;
+      rows[base + y + pieceY] |= x >= 0 ? pieceRow << x : pieceRow >>> -x;
+    }
+
+    // Clear full rows by copying every other row down, bottom up.
+    int linesCleared = 0;
+    int write = base + HEIGHT - 1;
+    for (int read = base + HEIGHT - 1; read >= base; read--) {
+      if (rows[read] == FULL_ROW) {
+        linesCleared++;
+      } else {
+        rows[write--] = rows[read];
+      }
+    }
+    while (write >= base) rows[write--] = 0;
+
+    // Spawn the next piece, and check for topping out.
+    // (Since every action is a hard drop, there's no gravity,
+    // so unlike Game we don't need to keep track of the Level.)
+    int next = nextPiece(e, scratch);
+    pieces[e] = (byte) next;
+    toppedOut[e] = collides(e, next * MAX_ORIENTATIONS, spawnX(next), 0);
+
+    return Score.calculateScore(linesCleared);
+  }
+
+  private void writeObservation(int e) {
+    int base = e * OBS_BYTES;
+    for (int y = 0; y < HEIGHT; y++) {
+      short row = (short) rows[e * HEIGHT + y];
+      observations.putShort(base + OBS_BOARD + 2 * y, row);
+    }
+
+    int piece = pieces[e];
+    observations.put(base + OBS_PIECE, (byte) piece);
+    for (int i = 0; i < PREVIEW; i++) {
+      observations.put(
+        base + OBS_PREVIEW + i,
+        bags[e * BAG_SLOTS + grabIndices[e] + i]
+      );
+    }
+
+    for (int i = 0; i < (NUM_ACTIONS + 7) / 8; i++) {
+      observations.put(base + OBS_ACTION_MASK + i, (byte) 0);
+    }
+    for (int o = 0; o < orientationCounts[piece]; o++) {
+      int index = piece * MAX_ORIENTATIONS + o;
+      for (int x = orientationMinX[index]; x <= orientationMaxX[index]; x++) {
+        if (collides(e, index, x, 0)) continue;
+        int action = o * X_SLOTS + x + X_OFFSET;
+        int maskByte = base + OBS_ACTION_MASK + action / 8;
+        observations.put(
+          maskByte,
+          (byte) (observations.get(maskByte) | (1 << (action % 8)))
+        );
+      }
+    }
+  }
+
+  /** A quick benchmark: plays random valid moves in every
+   * environment and prints how many steps per second that is.
+   * Usage: VectorEnv [environments] [threads] [steps]
+   */
+  public static void main(String[] args) {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+    int nThreads = args.length > 1
+      ? Integer.parseInt(args[1])
+      : Runtime.getRuntime().availableProcessors();
+    int steps = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+    VectorEnv env = new VectorEnv(n, System.nanoTime(), nThreads);
+    ByteBuffer actions = ByteBuffer.allocateDirect(n * Integer.BYTES);
+    ByteBuffer observations = ByteBuffer.allocateDirect(n * OBS_BYTES);
+    ByteBuffer rewards = ByteBuffer.allocateDirect(n * Float.BYTES);
+    ByteBuffer dones = ByteBuffer.allocateDirect(n);
+    for (ByteBuffer buffer : List.of(actions, observations, rewards, dones)) {
+      buffer.order(ByteOrder.nativeOrder());
+    }
+
+    env.reset(observations);
+
+    Random random = new Random();
+    long start = System.nanoTime();
+    double totalReward = 0;
+    int episodesDone = 0;
+    for (int step = 0; step < steps; step++) {
+      // Pick a random action out of the valid ones for each game.
+      for (int e = 0; e < n; e++) {
+        int action = 0;
+        for (int tries = 0; tries < 32; tries++) {
+          int candidate = random.nextInt(NUM_ACTIONS);
+          int maskByte = observations.get(
+            e * OBS_BYTES + OBS_ACTION_MASK + candidate / 8
+          );
+          if ((maskByte & (1 << (candidate % 8))) != 0) {
+            action = candidate;
+            break;
+          }
+        }
+        actions.putInt(e * Integer.BYTES, action);
+      }
+
+      env.step(actions, observations, rewards, dones);
+
+      for (int e = 0; e < n; e++) {
+        totalReward += rewards.getFloat(e * Float.BYTES);
+        episodesDone += dones.get(e);
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.printf(
+      "%d envs x %d steps in %.2fs: %.0f steps/s (%d episodes, %.1f avg reward/step)%n",
+      n,
+      steps,
+      seconds,
+      n * (double) steps / seconds,
+      episodesDone,
+      totalReward / n / steps
+    );
+    env.close();
+  }
+}
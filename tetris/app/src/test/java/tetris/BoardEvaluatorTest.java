@@ -0,0 +1,132 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class BoardEvaluatorTest {
+
+  private static final int WIDTH = 10;
+  private static final int HEIGHT = 20;
+
+  /** Random boards, some with holes and wells, some nearly empty.
+   * An odd number, so the vector version has some left over to do
+   * one at a time too.
+   */
+  private static Board[] randomBoards(int n, long seed) {
+    Random random = new Random(seed);
+    Board[] boards = new Board[n];
+    for (int b = 0; b < n; b++) {
+      Board board = new Board(WIDTH, HEIGHT);
+      int stackHeight = random.nextInt(HEIGHT + 1);
+      double density = random.nextDouble();
+      for (int y = HEIGHT - stackHeight; y < HEIGHT; y++) {
+        for (int x = 0; x < WIDTH; x++) {
+          board.set(x, y, random.nextDouble() < density);
+        }
+      }
+      boards[b] = board;
+    }
+    return boards;
+  }
+
+  /** The features worked out the slow, obvious way, one slot at a time. */
+  private static int[] slowFeatures(Board board, int linesCleared) {
+    int[] heights = new int[WIDTH];
+    int holes = 0, wells = 0, rowTransitions = 0;
+    for (int x = 0; x < WIDTH; x++) {
+      boolean covered = false;
+      for (int y = 0; y < HEIGHT; y++) {
+        if (board.get(x, y)) {
+          if (!covered) heights[x] = HEIGHT - y;
+          covered = true;
+        } else if (covered) {
+          holes++;
+        } else {
+          boolean left = x == 0 || board.get(x - 1, y);
+          boolean right = x == WIDTH - 1 || board.get(x + 1, y);
+          if (left && right) wells++;
+        }
+      }
+    }
+    for (int y = 0; y < HEIGHT; y++) {
+      boolean previous = true; // The left wall
+      for (int x = 0; x <= WIDTH; x++) {
+        boolean filled = x == WIDTH || board.get(x, y); // Or right wall
+        if (filled != previous) rowTransitions++;
+        previous = filled;
+      }
+    }
+    int height = 0, bumpiness = 0;
+    for (int x = 0; x < WIDTH; x++) {
+      height += heights[x];
+      if (x + 1 < WIDTH) bumpiness += Math.abs(heights[x] - heights[x + 1]);
+    }
+
+    int[] features = new int[BoardEvaluator.FEATURES];
+    features[BoardEvaluator.HEIGHT] = height;
+    features[BoardEvaluator.HOLES] = holes;
+    features[BoardEvaluator.BUMPINESS] = bumpiness;
+    features[BoardEvaluator.ROW_TRANSITIONS] = rowTransitions;
+    features[BoardEvaluator.WELLS] = wells;
+    features[BoardEvaluator.LINES] = linesCleared;
+    return features;
+  }
+
+  private static void assertFeatures(BoardEvaluator evaluator) {
+    Board[] boards = randomBoards(301, 1452);
+    BoardBatch batch = new BoardBatch(WIDTH, HEIGHT, boards.length);
+    for (int b = 0; b < boards.length; b++) {
+      batch.add(boards[b], b % 5);
+    }
+    evaluator.features(batch);
+
+    for (int b = 0; b < boards.length; b++) {
+      int[] expected = slowFeatures(boards[b], b % 5);
+      for (int f = 0; f < BoardEvaluator.FEATURES; f++) {
+        assertEquals(
+          expected[f],
+          batch.getFeature(b, f),
+          "board " + b + " feature " + f
+        );
+      }
+    }
+  }
+
+  @Test
+  void scalarMatchesSlotBySlot() {
+    assertFeatures(new BoardEvaluator());
+  }
+
+  @Test
+  void vectorMatchesSlotBySlot() {
+    assertFeatures(new VectorBoardEvaluator());
+  }
+
+  @Test
+  void packedBoardsMatchBoards() {
+    Board[] boards = randomBoards(17, 7);
+    BoardBatch fromBoards = new BoardBatch(WIDTH, HEIGHT, boards.length);
+    BoardBatch fromPacked = new BoardBatch(WIDTH, HEIGHT, boards.length);
+    int[] packedRows = new int[HEIGHT];
+    for (Board board : boards) {
+      for (int y = 0; y < HEIGHT; y++) {
+        packedRows[y] = 0;
+        for (int x = 0; x < WIDTH; x++) {
+          if (board.get(x, y)) packedRows[y] |= 1 << x;
+        }
+      }
+      fromBoards.add(board, 1);
+      fromPacked.add(packedRows, 0, 1);
+    }
+    BoardEvaluator evaluator = BoardEvaluator.create();
+    evaluator.features(fromBoards);
+    evaluator.features(fromPacked);
+    for (int b = 0; b < boards.length; b++) {
+      for (int f = 0; f < BoardEvaluator.FEATURES; f++) {
+        assertEquals(fromBoards.getFeature(b, f), fromPacked.getFeature(b, f));
+      }
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class FinesseTest {
+
+  private static final int WIDTH = 10;
+  private static final int HEIGHT = 20;
+  private static final int MAX_LENGTH = 4;
+
+  /** The fewest inputs to each (orientation, x) found by trying every
+   * sequence of up to MAX_LENGTH inputs, or -1 if none of them get
+   * there. Indexed by [orientation * X_SLOTS + x + X_OFFSET].
+   */
+  private static int[] bruteForce(int type) {
+    int[] shortest = new int[Orientations.MAX * Finesse.X_SLOTS];
+    Arrays.fill(shortest, -1);
+    Board board = new Board(WIDTH, HEIGHT);
+    Position spawn = board.nextPiecePosition(Bag.prototype(type).clone());
+    Finesse.Input[] inputs = Finesse.Input.values();
+
+    for (int length = 0; length <= MAX_LENGTH; length++) {
+      int sequences = (int) Math.pow(inputs.length, length);
+      for (int sequence = 0; sequence < sequences; sequence++) {
+        Piece piece = Bag.prototype(type).clone();
+        Position position = new Position(spawn.getX(), spawn.getY());
+        int rest = sequence;
+        for (int i = 0; i < length; i++) {
+          press(inputs[rest % inputs.length], board, piece, position);
+          rest /= inputs.length;
+        }
+        int orientation = Orientations.indexOf(type, piece.toMask());
+        int slot =
+          orientation * Finesse.X_SLOTS + position.getX() + Finesse.X_OFFSET;
+        if (shortest[slot] == -1) shortest[slot] = length;
+      }
+    }
+    return shortest;
+  }
+
+  private static void press(
+    Finesse.Input input,
+    Board board,
+    Piece piece,
+    Position position
+  ) {
+    switch (input) {
+      case LEFT -> Game.tryToMove(board, piece, position, -1, 0);
+      case RIGHT -> Game.tryToMove(board, piece, position, 1, 0);
+      case ROTATE_RIGHT -> Game.tryToRotate(
+        board,
+        piece,
+        position,
+        Game.RotationDirection.RIGHT
+      );
+      case ROTATE_LEFT -> Game.tryToRotate(
+        board,
+        piece,
+        position,
+        Game.RotationDirection.LEFT
+      );
+      case FLIP -> Game.tryToFlip(board, piece, position);
+    }
+  }
+
+  @Test
+  void pathsAreAsShortAsTryingEverything() {
+    for (int type = 0; type < Bag.NUM_PIECES; type++) {
+      int[] shortest = bruteForce(type);
+      for (int o = 0; o < Orientations.count(type); o++) {
+        for (int x = -Finesse.X_OFFSET; x < WIDTH; x++) {
+          long path = Finesse.path(type, o, x);
+          int expected = shortest[o * Finesse.X_SLOTS + x + Finesse.X_OFFSET];
+          String where = "piece " + type + " orientation " + o + " x " + x;
+          if (expected != -1) {
+            assertTrue(path != Finesse.UNREACHABLE, where);
+            assertEquals(expected, Finesse.length(path), where);
+          } else if (path != Finesse.UNREACHABLE) {
+            // Too far for the brute force to find.
+            assertTrue(Finesse.length(path) > MAX_LENGTH, where);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void pathsGetWhereTheySay() {
+    Board board = new Board(WIDTH, HEIGHT);
+    for (int type = 0; type < Bag.NUM_PIECES; type++) {
+      Piece start = Bag.prototype(type).clone();
+      Position spawn = board.nextPiecePosition(start);
+      // Spawning is already a placement, with no inputs at all.
+      assertEquals(0, Finesse.length(Finesse.path(type, 0, spawn.getX())));
+
+      for (int o = 0; o < Orientations.count(type); o++) {
+        for (int x = -Finesse.X_OFFSET; x < WIDTH; x++) {
+          long path = Finesse.path(type, o, x);
+          if (path == Finesse.UNREACHABLE) continue;
+          assertTrue(Finesse.works(path, board, start, spawn, o, x));
+        }
+      }
+    }
+  }
+}
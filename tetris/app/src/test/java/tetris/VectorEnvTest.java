@@ -0,0 +1,117 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.jupiter.api.Test;
+
+class VectorEnvTest {
+
+  private static final int N = 8;
+
+  private static ByteBuffer buffer(int bytes) {
+    return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+  }
+
+  /** Whether the mask in environment e's observation has action a. */
+  private static boolean masked(ByteBuffer observations, int e, int a) {
+    int maskByte = observations.get(
+      e * VectorEnv.OBS_BYTES + VectorEnv.OBS_ACTION_MASK + a / 8
+    );
+    return (maskByte & (1 << (a % 8))) != 0;
+  }
+
+  /** Whether the piece fits at x on an empty board. */
+  private static boolean fitsInWalls(Piece piece, int x) {
+    for (int y = 0; y < piece.getSize(); y++) {
+      for (int pieceX = 0; pieceX < piece.getSize(); pieceX++) {
+        if (!piece.get(pieceX, y)) continue;
+        if (x + pieceX < 0 || x + pieceX >= VectorEnv.WIDTH) return false;
+      }
+    }
+    return true;
+  }
+
+  @Test
+  void resetWritesAnEmptyBoardAndEveryPlacementThatFits() {
+    VectorEnv env = new VectorEnv(N, 1, 2);
+    ByteBuffer observations = buffer(N * VectorEnv.OBS_BYTES);
+    env.reset(observations);
+
+    for (int e = 0; e < N; e++) {
+      int base = e * VectorEnv.OBS_BYTES;
+      for (int y = 0; y < VectorEnv.HEIGHT; y++) {
+        assertEquals(0, observations.getShort(base + 2 * y));
+      }
+      int piece = observations.get(base + VectorEnv.OBS_PIECE);
+      assertTrue(piece >= 0 && piece < Bag.NUM_PIECES);
+      for (int i = 0; i < VectorEnv.PREVIEW; i++) {
+        int next = observations.get(base + VectorEnv.OBS_PREVIEW + i);
+        assertTrue(next >= 0 && next < Bag.NUM_PIECES);
+      }
+
+      // On an empty board, an action's valid exactly when the
+      // orientation exists and the piece is inside the walls.
+      for (int a = 0; a < VectorEnv.NUM_ACTIONS; a++) {
+        int orientation = a / VectorEnv.X_SLOTS;
+        int x = a % VectorEnv.X_SLOTS - VectorEnv.X_OFFSET;
+        boolean expected =
+          orientation < Orientations.count(piece) &&
+          fitsInWalls(Orientations.get(piece, orientation), x);
+        assertEquals(expected, masked(observations, e, a), "action " + a);
+      }
+    }
+    env.close();
+  }
+
+  @Test
+  void stepDropsThePieceToTheBottom() {
+    VectorEnv env = new VectorEnv(N, 2, 2);
+    ByteBuffer actions = buffer(N * Integer.BYTES);
+    ByteBuffer observations = buffer(N * VectorEnv.OBS_BYTES);
+    ByteBuffer rewards = buffer(N * Float.BYTES);
+    ByteBuffer dones = buffer(N);
+    env.reset(observations);
+
+    for (int e = 0; e < N; e++) {
+      int action = 0;
+      while (!masked(observations, e, action)) action++;
+      actions.putInt(e * Integer.BYTES, action);
+    }
+    env.step(actions, observations, rewards, dones);
+
+    for (int e = 0; e < N; e++) {
+      int base = e * VectorEnv.OBS_BYTES;
+      int cells = 0;
+      for (int y = 0; y < VectorEnv.HEIGHT; y++) {
+        cells += Integer.bitCount(observations.getShort(base + 2 * y) & 0xffff);
+      }
+      assertEquals(4, cells);
+      int bottom = base + 2 * (VectorEnv.HEIGHT - 1);
+      assertTrue(observations.getShort(bottom) != 0);
+      assertEquals(0, rewards.getFloat(e * Float.BYTES), 0);
+      assertEquals(0, dones.get(e));
+    }
+    env.close();
+  }
+
+  @Test
+  void refusesBuffersInTheWrongOrder() {
+    VectorEnv env = new VectorEnv(N, 3, 1);
+    ByteOrder other = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN
+      ? ByteOrder.LITTLE_ENDIAN
+      : ByteOrder.BIG_ENDIAN;
+    ByteBuffer observations = ByteBuffer
+      .allocateDirect(N * VectorEnv.OBS_BYTES)
+      .order(other);
+
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> env.reset(observations)
+    );
+    // ...and leaves the caller's buffer alone.
+    assertEquals(other, observations.order());
+    env.close();
+  }
+}